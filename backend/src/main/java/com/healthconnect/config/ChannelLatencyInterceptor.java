@@ -0,0 +1,72 @@
+package com.healthconnect.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long each handler takes per message, tagged by channel, handler
+ * and destination. Destination segments containing digits (chat, room and
+ * user ids) are collapsed to {id} to keep the number of series bounded.
+ */
+public class ChannelLatencyInterceptor implements ExecutorChannelInterceptor {
+
+    static final String METRIC = "websocket.channel.handling";
+
+    private final String channel;
+    private final MeterRegistry registry;
+    // A stack, since a caller-runs executor can handle a message inside another handler
+    private final ThreadLocal<Deque<Long>> startedAt = ThreadLocal.withInitial(ArrayDeque::new);
+
+    public ChannelLatencyInterceptor(String channel, MeterRegistry registry) {
+        this.channel = channel;
+        this.registry = registry;
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        startedAt.get().push(System.nanoTime());
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        Long start = startedAt.get().poll();
+        if (start == null) {
+            return;
+        }
+
+        Timer.builder(METRIC)
+                .tag("channel", this.channel)
+                .tag("handler", handler.getClass().getSimpleName())
+                .tag("destination", normalize(SimpMessageHeaderAccessor.getDestination(message.getHeaders())))
+                .tag("outcome", ex == null ? "success" : "error")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    static String normalize(String destination) {
+        if (destination == null) {
+            return "none";
+        }
+        String[] segments = destination.split("/");
+        StringBuilder normalized = new StringBuilder();
+        for (String segment : segments) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            normalized.append('/');
+            normalized.append(segment.chars().anyMatch(Character::isDigit) ? "{id}" : segment);
+        }
+        return normalized.length() > 0 ? normalized.toString() : "/";
+    }
+}
@@ -0,0 +1,103 @@
+package com.healthconnect.config;
+
+import com.healthconnect.service.ClusterTransport.ClusterNode;
+import com.healthconnect.service.RoomOwnership;
+import com.healthconnect.service.WebClientClusterTransport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Multi-node WebRTC signaling. With {@code app.cluster.enabled=true}, every
+ * node lists all nodes as {@code id=baseUrl} in {@code app.cluster.nodes} and
+ * names itself in {@code app.cluster.node-id}; rooms are then owned by one node
+ * each (see {@link RoomOwnership}). Clustering needs the broker relay
+ * ({@code app.websocket.broker.mode=relay}) so the owner can reach sessions on
+ * other nodes; the node refuses to start without it.
+ */
+@Configuration
+@Slf4j
+public class ClusterConfig {
+
+    @Value("${app.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.cluster.node-id:local}")
+    private String nodeId;
+
+    @Value("${app.cluster.nodes:}")
+    private String[] nodes;
+
+    @Value("${app.cluster.secret:}")
+    private String secret;
+
+    @Value("${app.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${app.cluster.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${app.cluster.request-timeout:2000}")
+    private long requestTimeoutMillis;
+
+    @Value("${app.cluster.heartbeat-interval:2000}")
+    private long heartbeatIntervalMillis;
+
+    @Value("${app.websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Bean(destroyMethod = "shutdown")
+    public RoomOwnership roomOwnership(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry) {
+        if (!enabled) {
+            return RoomOwnership.singleNode(nodeId, meterRegistry);
+        }
+        if (!"relay".equalsIgnoreCase(brokerMode)) {
+            // The simple broker only reaches sessions on this node, so signals for the others would be lost
+            throw new IllegalStateException("app.cluster.enabled=true requires app.websocket.broker.mode=relay, got: "
+                    + brokerMode);
+        }
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("app.cluster.secret is required when app.cluster.enabled=true");
+        }
+
+        List<ClusterNode> clusterNodes = new ArrayList<>();
+        ClusterNode localNode = null;
+        for (String entry : nodes) {
+            String[] parts = entry.trim().split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalStateException("app.cluster.nodes entries must be id=baseUrl, got: " + entry);
+            }
+            ClusterNode node = new ClusterNode(parts[0].trim(), parts[1].trim());
+            clusterNodes.add(node);
+            if (node.id().equals(nodeId)) {
+                localNode = node;
+            }
+        }
+        if (localNode == null) {
+            throw new IllegalStateException("app.cluster.node-id " + nodeId + " is not listed in app.cluster.nodes");
+        }
+
+        log.info("Room ownership across {} cluster nodes, this node is {}", clusterNodes.size(), nodeId);
+        Duration timeout = Duration.ofMillis(requestTimeoutMillis);
+        // An unreachable node fails the connect instead of waiting on the OS timeout
+        HttpClient httpClient = HttpClient.create()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) requestTimeoutMillis)
+                .responseTimeout(timeout);
+        WebClientClusterTransport transport = new WebClientClusterTransport(
+                webClientBuilder.clientConnector(new ReactorClientHttpConnector(httpClient)).build(), secret, timeout);
+        RoomOwnership ownership = new RoomOwnership(localNode, clusterNodes, transport, virtualNodes,
+                failureThreshold, meterRegistry);
+        ownership.startHeartbeat(Duration.ofMillis(heartbeatIntervalMillis));
+        return ownership;
+    }
+}
@@ -0,0 +1,269 @@
+package com.healthconnect.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.session.AbstractSockJsSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-session frame encoding. A client lists the encodings it accepts in the
+ * {@code frame-encoding} header of its CONNECT frame (for example
+ * {@code frame-encoding:cbor,json}); the first one the server supports is used
+ * for the rest of the session. MESSAGE frames to matching destinations are then
+ * sent as binary frames with {@code content-type:application/octet-stream} and
+ * a {@code frame-encoding} header naming the format. Anything else, and every
+ * SockJS session (no binary frames), stays JSON.
+ *
+ * Payloads are serialized once to JSON by the broker path and transcoded
+ * token by token. The result is cached per payload array, so a fan-out to
+ * many CBOR sessions usually transcodes once; the cache lock is only held
+ * for the lookup and the insert, never while transcoding.
+ */
+@Component
+@Slf4j
+public class FrameEncodingNegotiator {
+
+    public static final String ENCODING_HEADER = "frame-encoding";
+
+    public enum FrameEncoding {
+        JSON(MimeTypeUtils.APPLICATION_JSON),
+        CBOR(new MimeType("application", "cbor")),
+        SMILE(new MimeType("application", "x-jackson-smile"));
+
+        private final MimeType mimeType;
+
+        FrameEncoding(MimeType mimeType) {
+            this.mimeType = mimeType;
+        }
+
+        public MimeType getMimeType() {
+            return mimeType;
+        }
+
+        static FrameEncoding fromToken(String token) {
+            for (FrameEncoding encoding : values()) {
+                if (encoding.name().equalsIgnoreCase(token.trim())) {
+                    return encoding;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final ObjectMapper jsonMapper;
+    private final Map<FrameEncoding, ObjectMapper> binaryMappers = new EnumMap<>(FrameEncoding.class);
+    private final Map<FrameEncoding, Map<byte[], byte[]>> transcoded = new EnumMap<>(FrameEncoding.class);
+    private final Map<String, FrameEncoding> sessionEncodings = new ConcurrentHashMap<>();
+    private final Set<String> sockJsSessions = ConcurrentHashMap.newKeySet();
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    @Value("${app.websocket.encoding.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.websocket.encoding.destinations:/topic/webrtc/**,/queue/webrtc/**,/topic/video/**,/topic/chat/**,/topic/presence,/topic/status/**}")
+    private String[] destinations = {"/topic/webrtc/**", "/queue/webrtc/**", "/topic/video/**", "/topic/chat/**", "/topic/presence", "/topic/status/**"};
+
+    public FrameEncodingNegotiator(ObjectMapper objectMapper) {
+        this.jsonMapper = objectMapper;
+        // Same modules and features as the JSON mapper, only the wire format differs
+        binaryMappers.put(FrameEncoding.CBOR, objectMapper.copyWith(new CBORFactory()));
+        binaryMappers.put(FrameEncoding.SMILE, objectMapper.copyWith(new SmileFactory()));
+        for (FrameEncoding encoding : binaryMappers.keySet()) {
+            // Weak identity keys: entries live as long as the shared payload array
+            transcoded.put(encoding, Collections.synchronizedMap(new WeakHashMap<>()));
+        }
+    }
+
+    /**
+     * Converters for CBOR and Smile frames sent by clients. Strict content type
+     * matching keeps them out of outbound conversions, which stay JSON.
+     */
+    public List<MessageConverter> messageConverters() {
+        return binaryMappers.entrySet().stream()
+                .map(entry -> {
+                    MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(entry.getKey().getMimeType());
+                    converter.setObjectMapper(entry.getValue());
+                    converter.setStrictContentTypeMatch(true);
+                    return (MessageConverter) converter;
+                })
+                .toList();
+    }
+
+    /**
+     * Picks the session encoding from the CONNECT frame.
+     */
+    public ChannelInterceptor inboundInterceptor() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                if (accessor == null || !enabled) {
+                    return message;
+                }
+                if (StompCommand.CONNECT.equals(accessor.getCommand()) || StompCommand.STOMP.equals(accessor.getCommand())) {
+                    FrameEncoding encoding = negotiate(accessor.getSessionId(), accessor.getFirstNativeHeader(ENCODING_HEADER));
+                    if (encoding != FrameEncoding.JSON) {
+                        sessionEncodings.put(accessor.getSessionId(), encoding);
+                        log.debug("WebSocket session {} uses {} frames", accessor.getSessionId(), encoding);
+                    }
+                }
+                return message;
+            }
+        };
+    }
+
+    /**
+     * Re-encodes JSON MESSAGE frames for sessions that negotiated a binary format.
+     */
+    public ChannelInterceptor outboundInterceptor() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+                FrameEncoding encoding = sessionId != null ? sessionEncodings.get(sessionId) : null;
+                if (encoding == null
+                        || !SimpMessageType.MESSAGE.equals(SimpMessageHeaderAccessor.getMessageType(message.getHeaders()))
+                        || !(message.getPayload() instanceof byte[] json)
+                        || !isJson(message)
+                        || !matches(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+                    return message;
+                }
+                return encode(message, json, encoding);
+            }
+        };
+    }
+
+    /**
+     * Tracks SockJS sessions, which cannot carry binary frames, and forgets
+     * closed sessions.
+     */
+    public WebSocketHandlerDecoratorFactory decoratorFactory() {
+        return handler -> new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                if (isSockJs(session)) {
+                    sockJsSessions.add(session.getId());
+                }
+                super.afterConnectionEstablished(session);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sockJsSessions.remove(session.getId());
+                sessionEncodings.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    FrameEncoding negotiate(String sessionId, String acceptHeader) {
+        if (acceptHeader == null || sockJsSessions.contains(sessionId)) {
+            return FrameEncoding.JSON;
+        }
+        for (String token : acceptHeader.split(",")) {
+            FrameEncoding encoding = FrameEncoding.fromToken(token);
+            if (encoding != null) {
+                return encoding;
+            }
+        }
+        return FrameEncoding.JSON;
+    }
+
+    /**
+     * JSON bytes re-encoded in the given binary format, cached per payload array.
+     */
+    public byte[] transcode(byte[] json, FrameEncoding encoding) {
+        Map<byte[], byte[]> cache = transcoded.get(encoding);
+        byte[] cached = cache.get(json);
+        if (cached != null) {
+            return cached;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = jsonMapper.createParser(json);
+             JsonGenerator generator = binaryMappers.get(encoding).createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to transcode frame to " + encoding + ": " + e.getMessage(), e);
+        }
+        // Sessions racing on the same payload may both transcode; all of them send the first result
+        byte[] encoded = out.toByteArray();
+        byte[] first = cache.putIfAbsent(json, encoded);
+        return first != null ? first : encoded;
+    }
+
+    private Message<?> encode(Message<?> message, byte[] json, FrameEncoding encoding) {
+        byte[] payload;
+        try {
+            payload = transcode(json, encoding);
+        } catch (RuntimeException e) {
+            log.debug("Sending JSON frame instead: {}", e.getMessage());
+            return message;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        // Spring sends a binary WebSocket frame only for octet-stream content
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(ENCODING_HEADER, encoding.name().toLowerCase());
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    private boolean isJson(Message<?> message) {
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        if (contentType == null) {
+            return true;
+        }
+        MimeType mimeType = contentType instanceof MimeType type ? type : MimeType.valueOf(contentType.toString());
+        return MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType);
+    }
+
+    private boolean matches(String destination) {
+        if (destination == null) {
+            return false;
+        }
+        for (String pattern : destinations) {
+            if (pathMatcher.match(pattern, destination)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSockJs(WebSocketSession session) {
+        return WebSocketSessionDecorator.unwrap(session) instanceof AbstractSockJsSession;
+    }
+}
@@ -0,0 +1,106 @@
+package com.healthconnect.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for a STOMP message channel that tracks how many tasks are queued
+ * and running and how long they waited. A {@link TaskExecutor}, because that is
+ * the type Spring's broker stats look the channel executors up by.
+ */
+public final class InstrumentedChannelExecutor implements TaskExecutor {
+
+    private final String channel;
+    private final Executor delegate;
+    private final Runnable shutdown;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private Timer queueWait;
+
+    private InstrumentedChannelExecutor(String channel, Executor delegate, Runnable shutdown) {
+        this.channel = channel;
+        this.delegate = delegate;
+        this.shutdown = shutdown;
+    }
+
+    /**
+     * Bounded pool. When the queue is full the sending thread runs the task
+     * itself, which pushes back on the WebSocket reader instead of dropping frames.
+     */
+    public static InstrumentedChannelExecutor platform(String channel, int corePoolSize, int maxPoolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+        pool.setThreadNamePrefix(channel + "-");
+        pool.setCorePoolSize(corePoolSize);
+        pool.setMaxPoolSize(Math.max(corePoolSize, maxPoolSize));
+        pool.setQueueCapacity(queueCapacity);
+        pool.setAllowCoreThreadTimeOut(true);
+        pool.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.initialize();
+        return new InstrumentedChannelExecutor(channel, pool, pool::shutdown);
+    }
+
+    public InstrumentedChannelExecutor bindTo(MeterRegistry registry) {
+        Gauge.builder("websocket.channel.queued", queued, AtomicInteger::get)
+                .description("Messages waiting for a channel thread")
+                .tag("channel", channel)
+                .register(registry);
+        Gauge.builder("websocket.channel.active", active, AtomicInteger::get)
+                .description("Messages being handled")
+                .tag("channel", channel)
+                .register(registry);
+        queueWait = Timer.builder("websocket.channel.queue.wait")
+                .description("Time from send until a channel thread picked the message up")
+                .tag("channel", channel)
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        return this;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long submitted = System.nanoTime();
+        queued.incrementAndGet();
+        try {
+            delegate.execute(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                if (queueWait != null) {
+                    queueWait.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                }
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public int getQueued() {
+        return queued.get();
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public void shutdown() {
+        shutdown.run();
+    }
+}
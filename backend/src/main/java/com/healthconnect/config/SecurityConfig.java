@@ -60,7 +60,9 @@ public class SecurityConfig {
                 .requestMatchers("/api/insurance/providers").permitAll() // Allow public insurance info
                 .requestMatchers("/api/insurance/health").permitAll() // Allow insurance health check
                 .requestMatchers("/api/ai-health-bot/health").permitAll() // Allow AI health bot health check
-                .requestMatchers("/actuator/**").permitAll()
+                .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN") // Metrics expose executor and traffic internals
+                .requestMatchers("/api/internal/cluster/**").permitAll() // Node-to-node, checked against the cluster secret
                 .requestMatchers("/error").permitAll()
                 .requestMatchers("/favicon.ico").permitAll()
                 .requestMatchers("/api/appointments/**").authenticated()
@@ -90,7 +92,7 @@ public class SecurityConfig {
         configuration.setAllowedMethods(List.of("*"));
         configuration.setAllowedHeaders(List.of("*"));
         configuration.setAllowCredentials(true);
-        configuration.setExposedHeaders(List.of("Authorization", "Content-Type"));
+        configuration.setExposedHeaders(List.of("Authorization", "Content-Type", "X-Next-Cursor"));
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", configuration);
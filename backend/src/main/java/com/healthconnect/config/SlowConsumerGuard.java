@@ -0,0 +1,295 @@
+package com.healthconnect.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-session outbound backpressure. Counts the MESSAGE frames each session has
+ * been handed on the client outbound channel but not yet written to its socket;
+ * other frames are neither counted nor held.
+ * Once that backlog passes {@code ephemeral-threshold}, ephemeral frames are
+ * held back: typing and per-user status updates are coalesced to the latest
+ * frame per destination and sent once the backlog drains, and presence
+ * broadcasts are dropped. Chat messages, notifications and signaling are
+ * never held back. A session whose backlog stays above {@code slow-threshold}
+ * for longer than {@code slow-timeout} is disconnected. Held frames go out
+ * again through the outbound channel, in publish order when that is
+ * preserved, so they pass this guard and the encoding interceptor again.
+ *
+ * Spring's own send-time and buffer-size limits (see
+ * {@link WebSocketChannelConfig}) remain the hard stop for a socket that stops
+ * reading entirely.
+ */
+@Component
+@Slf4j
+public class SlowConsumerGuard implements ChannelInterceptor {
+
+    // Set by the broker's ordered publishing; a held frame must not carry it into a later send
+    private static final String NEXT_MESSAGE_TASK_HEADER = "simpNextMessageTask";
+    private static final byte[] MESSAGE_COMMAND = "MESSAGE\n".getBytes(StandardCharsets.UTF_8);
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<String, SessionBacklog> sessions = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+    private final Counter dropped;
+    private final Counter backlogDisconnects;
+    private final Counter limitDisconnects;
+
+    @Value("${app.websocket.backpressure.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.websocket.backpressure.ephemeral-threshold:32}")
+    private int ephemeralThreshold = 32;
+
+    @Value("${app.websocket.backpressure.slow-threshold:256}")
+    private int slowThreshold = 256;
+
+    @Value("${app.websocket.backpressure.slow-timeout:15000}")
+    private long slowTimeoutMillis = 15000;
+
+    @Value("${app.websocket.backpressure.coalesce-destinations:/topic/chat/*/typing,/topic/status/**}")
+    private String[] coalesceDestinations = {"/topic/chat/*/typing", "/topic/status/**"};
+
+    @Value("${app.websocket.backpressure.drop-destinations:/topic/presence}")
+    private String[] dropDestinations = {"/topic/presence"};
+
+    public SlowConsumerGuard(MeterRegistry meterRegistry) {
+        this.coalesced = Counter.builder("websocket.outbound.held")
+                .description("Ephemeral frames replaced by a newer frame for a backlogged session")
+                .tag("action", "coalesced")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("websocket.outbound.held")
+                .description("Ephemeral frames dropped for a backlogged session")
+                .tag("action", "dropped")
+                .register(meterRegistry);
+        this.backlogDisconnects = Counter.builder("websocket.slow.disconnects")
+                .description("Sessions closed because they could not keep up")
+                .tag("reason", "backlog")
+                .register(meterRegistry);
+        this.limitDisconnects = Counter.builder("websocket.slow.disconnects")
+                .description("Sessions closed because they could not keep up")
+                .tag("reason", "send-limit")
+                .register(meterRegistry);
+        Gauge.builder("websocket.slow.sessions", sessions,
+                        s -> s.values().stream().filter(SessionBacklog::isBacklogged).count())
+                .description("Sessions currently above the slow threshold")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Wraps the STOMP handler so every session is tracked from connect to close.
+     */
+    public WebSocketHandlerDecoratorFactory decoratorFactory() {
+        return handler -> new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                super.afterConnectionEstablished(track(session));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                untrack(session.getId(), closeStatus);
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    WebSocketSession track(WebSocketSession session) {
+        SessionBacklog backlog = new SessionBacklog(session);
+        sessions.put(session.getId(), backlog);
+        return new TrackedSession(session, backlog);
+    }
+
+    void untrack(String sessionId, CloseStatus closeStatus) {
+        SessionBacklog backlog = sessions.remove(sessionId);
+        if (backlog != null && !backlog.closing.get() && CloseStatus.SESSION_NOT_RELIABLE.equals(closeStatus)) {
+            // Closed by Spring's send-time or buffer-size limit
+            limitDisconnects.increment();
+        }
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionBacklog backlog = sessionId != null ? sessions.get(sessionId) : null;
+        if (!enabled || backlog == null
+                || !SimpMessageType.MESSAGE.equals(SimpMessageHeaderAccessor.getMessageType(message.getHeaders()))) {
+            return message;
+        }
+        if (backlog.outbound == null) {
+            backlog.outbound = OrderedMessageChannelDecorator.supportsOrderedMessages(channel)
+                    ? new OrderedMessageChannelDecorator(channel, LogFactory.getLog(SlowConsumerGuard.class))
+                    : channel;
+        }
+
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        boolean backlogged = backlog.pending.get() >= ephemeralThreshold;
+        if (matches(coalesceDestinations, destination)) {
+            if (backlogged) {
+                if (backlog.held.put(destination, detach(message)) != null) {
+                    coalesced.increment();
+                }
+                checkSlow(backlog);
+                return null;
+            }
+            // Sent now, so an older held frame for this destination is stale
+            if (backlog.held.remove(destination) != null) {
+                coalesced.increment();
+            }
+        } else if (backlogged && matches(dropDestinations, destination)) {
+            dropped.increment();
+            checkSlow(backlog);
+            return null;
+        }
+
+        backlog.pending.incrementAndGet();
+        checkSlow(backlog);
+        return message;
+    }
+
+    private void delivered(SessionBacklog backlog) {
+        int pending = backlog.pending.updateAndGet(p -> Math.max(0, p - 1));
+        if (pending < slowThreshold) {
+            backlog.backloggedSince = 0;
+        }
+        if (pending < ephemeralThreshold / 2 && !backlog.held.isEmpty() && backlog.outbound != null) {
+            // Caught up again: queue the latest held frame per destination behind what was published since
+            for (String destination : backlog.held.keySet()) {
+                Message<?> latest = backlog.held.remove(destination);
+                if (latest != null) {
+                    backlog.outbound.send(latest);
+                }
+            }
+        }
+    }
+
+    private void checkSlow(SessionBacklog backlog) {
+        if (backlog.pending.get() < slowThreshold) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (backlog.backloggedSince == 0) {
+            backlog.backloggedSince = now;
+        } else if (now - backlog.backloggedSince > slowTimeoutMillis && backlog.closing.compareAndSet(false, true)) {
+            backlogDisconnects.increment();
+            log.warn("Closing WebSocket session {}: {} frames pending for over {} ms",
+                    backlog.session.getId(), backlog.pending.get(), slowTimeoutMillis);
+            backlog.held.clear();
+            try {
+                backlog.session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                log.debug("Failed to close slow WebSocket session {}: {}", backlog.session.getId(), e.getMessage());
+            }
+        }
+    }
+
+    private boolean matches(String[] patterns, String destination) {
+        if (destination == null) {
+            return false;
+        }
+        for (String pattern : patterns) {
+            if (pathMatcher.match(pattern, destination)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Message<?> detach(Message<?> message) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.removeHeader(NEXT_MESSAGE_TASK_HEADER);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+    }
+
+    // Only MESSAGE frames were counted on the way in
+    private static boolean isMessageFrame(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            return text.getPayload().startsWith("MESSAGE\n");
+        }
+        if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload();
+            if (payload.remaining() < MESSAGE_COMMAND.length) {
+                return false;
+            }
+            for (int i = 0; i < MESSAGE_COMMAND.length; i++) {
+                if (payload.get(payload.position() + i) != MESSAGE_COMMAND[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    int getPending(String sessionId) {
+        SessionBacklog backlog = sessions.get(sessionId);
+        return backlog != null ? backlog.pending.get() : 0;
+    }
+
+    private final class SessionBacklog {
+        private final WebSocketSession session;
+        private final AtomicInteger pending = new AtomicInteger();
+        private final Map<String, Message<?>> held = new ConcurrentHashMap<>();
+        private final AtomicBoolean closing = new AtomicBoolean();
+        private volatile long backloggedSince;
+        private volatile MessageChannel outbound;
+
+        private SessionBacklog(WebSocketSession session) {
+            this.session = session;
+        }
+
+        private boolean isBacklogged() {
+            return backloggedSince != 0;
+        }
+    }
+
+    private final class TrackedSession extends WebSocketSessionDecorator {
+        private final SessionBacklog backlog;
+
+        private TrackedSession(WebSocketSession session, SessionBacklog backlog) {
+            super(session);
+            this.backlog = backlog;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            try {
+                super.sendMessage(message);
+            } finally {
+                if (isMessageFrame(message)) {
+                    delivered(backlog);
+                }
+            }
+        }
+    }
+}
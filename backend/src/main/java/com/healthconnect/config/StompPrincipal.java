@@ -0,0 +1,22 @@
+package com.healthconnect.config;
+
+import com.healthconnect.entity.UserRole;
+
+import java.security.Principal;
+
+/**
+ * The user behind a STOMP session, resolved once when the session connects.
+ * Spring attaches it to every inbound frame of the session, so
+ * {@code @MessageMapping} methods can declare a {@code StompPrincipal}
+ * parameter instead of parsing the JWT again. The name is the email, which is
+ * also what {@code /user} destinations resolve against.
+ */
+public record StompPrincipal(Long userId, String email, UserRole role) implements Principal {
+
+    public static final String SESSION_ATTRIBUTE = "stompPrincipal";
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -1,22 +1,36 @@
 package com.healthconnect.config;
 
-import com.healthconnect.entity.UserPresence.PresenceStatus;
+import com.healthconnect.entity.User;
 import com.healthconnect.service.JwtService;
 import com.healthconnect.service.UserPresenceService;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.messaging.support.MessageHeaderAccessor;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 
+import java.security.Principal;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Authenticates a STOMP session once, on CONNECT. The JWT is verified a single
+ * time and the user loaded once; the resulting {@link StompPrincipal} becomes
+ * the session user and is kept in the session attributes. Later frames are not
+ * authenticated again. A session whose user came from elsewhere, such as an
+ * authenticated HTTP handshake, is mapped to a {@link StompPrincipal} by
+ * {@link Principal#getName()} once, so handlers always see that type.
+ */
 @Component
 @RequiredArgsConstructor
 @Slf4j
@@ -24,69 +38,55 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
-    private final UserPresenceService userPresenceService;
+    // Looked up on use: the presence service reaches back into the broker configuration that registers this interceptor
+    private final ObjectProvider<UserPresenceService> userPresenceService;
 
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
         StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
 
-        if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand())) {
-            String authHeader = accessor.getFirstNativeHeader("Authorization");
-
-            if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                try {
-                    String token = authHeader.substring(7);
-                    String username = jwtService.extractUsername(token);
-
-                    if (username != null && !username.isEmpty()) {
-                        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-
-                        if (jwtService.isTokenValid(token, userDetails)) {
-                            UsernamePasswordAuthenticationToken authToken =
-                                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-
-                            SecurityContextHolder.getContext().setAuthentication(authToken);
-                            accessor.setUser(authToken);
-
-                            // Set user online when they connect
-                            Long userId = jwtService.extractUserId(token);
-                            if (userId != null) {
-                                String userAgent = accessor.getFirstNativeHeader("User-Agent");
-                                String clientIp = accessor.getFirstNativeHeader("X-Forwarded-For");
-                                userPresenceService.setUserOnline(userId, userAgent, clientIp);
-                            }
-
-                            log.info("WebSocket authentication successful for user: {}", username);
-                            return message; // Allow connection
-                        } else {
-                            log.warn("Invalid JWT token for WebSocket connection from user: {}", username);
-                        }
-                    } else {
-                        log.warn("Empty username extracted from JWT token");
-                    }
-                } catch (Exception e) {
-                    log.error("WebSocket authentication failed: {}", e.getMessage());
-                }
-            } else {
-                log.warn("No Authorization header found in WebSocket connection - allowing for now");
+        if (StompCommand.CONNECT.equals(accessor.getCommand()) || StompCommand.STOMP.equals(accessor.getCommand())) {
+            StompPrincipal principal = authenticate(accessor.getFirstNativeHeader("Authorization"));
+            if (principal == null && accessor.getUser() != null) {
+                // Authenticated on the HTTP handshake rather than with a token on CONNECT
+                principal = forName(accessor.getUser().getName());
+            }
+            if (principal == null) {
+                // Allow connection even if authentication fails to prevent connection issues;
+                // handlers that need a user reject the frame
+                log.info("WebSocket connection allowed without authentication");
+                return message;
             }
 
-            // Allow connection even if authentication fails to prevent connection issues
-            log.info("WebSocket connection allowed (authentication optional)");
-            return message;
+            message = withUser(message, accessor, principal);
+
+            // Set user online when they connect
+            try {
+                String userAgent = accessor.getFirstNativeHeader("User-Agent");
+                String clientIp = accessor.getFirstNativeHeader("X-Forwarded-For");
+                userPresenceService.getObject().setUserOnline(principal.userId(), userAgent, clientIp);
+            } catch (Exception e) {
+                log.warn("Failed to mark user {} online: {}", principal.userId(), e.getMessage());
+            }
+            log.info("WebSocket authentication successful for user: {}", principal.email());
+
+        } else if (accessor.getUser() != null && !(accessor.getUser() instanceof StompPrincipal)) {
+            // A handshake user takes precedence over the CONNECT user on later frames
+            StompPrincipal principal = sessionPrincipal(accessor);
+            if (principal != null) {
+                message = withUser(message, accessor, principal);
+            }
+        }
 
-        } else if (accessor != null && StompCommand.DISCONNECT.equals(accessor.getCommand())) {
-            // Handle user disconnect
+        if (StompCommand.DISCONNECT.equals(accessor.getCommand())
+                && SimpMessageHeaderAccessor.getUser(message.getHeaders()) instanceof StompPrincipal principal) {
+            // Sent by the client, and again by Spring when the socket closes
             try {
-                String authHeader = accessor.getFirstNativeHeader("Authorization");
-                if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                    String token = authHeader.substring(7);
-                    Long userId = jwtService.extractUserId(token);
-                    if (userId != null) {
-                        userPresenceService.setUserOffline(userId);
-                        log.info("User {} disconnected from WebSocket", userId);
-                    }
-                }
+                userPresenceService.getObject().setUserOffline(principal.userId());
+                log.info("User {} disconnected from WebSocket", principal.userId());
             } catch (Exception e) {
                 log.error("Error handling WebSocket disconnect: {}", e.getMessage());
             }
@@ -94,4 +94,70 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
 
         return message;
     }
+
+    private StompPrincipal sessionPrincipal(StompHeaderAccessor accessor) {
+        Map<String, Object> sessionAttributes = accessor.getSessionAttributes();
+        if (sessionAttributes != null
+                && sessionAttributes.get(StompPrincipal.SESSION_ATTRIBUTE) instanceof StompPrincipal cached
+                && cached.getName().equals(accessor.getUser().getName())) {
+            return cached;
+        }
+        return forName(accessor.getUser().getName());
+    }
+
+    private static Message<?> withUser(Message<?> message, StompHeaderAccessor accessor, StompPrincipal principal) {
+        Map<String, Object> sessionAttributes = accessor.getSessionAttributes();
+        if (sessionAttributes != null) {
+            sessionAttributes.put(StompPrincipal.SESSION_ATTRIBUTE, principal);
+        }
+        if (accessor.isMutable()) {
+            accessor.setUser(principal);
+            return message;
+        }
+        StompHeaderAccessor copy = StompHeaderAccessor.wrap(message);
+        copy.setUser(principal);
+        return MessageBuilder.createMessage(message.getPayload(), copy.getMessageHeaders());
+    }
+
+    private StompPrincipal forName(String username) {
+        try {
+            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            if (!(userDetails instanceof User user) || !user.isEnabled()) {
+                log.warn("WebSocket session for unknown or disabled user: {}", username);
+                return null;
+            }
+            return new StompPrincipal(user.getId(), username, user.getRole());
+        } catch (Exception e) {
+            log.warn("Could not resolve WebSocket user {}: {}", username, e.getMessage());
+            return null;
+        }
+    }
+
+    private StompPrincipal authenticate(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            log.warn("No Authorization header found in WebSocket connection");
+            return null;
+        }
+
+        try {
+            // One signature and expiry check for the whole session
+            Claims claims = jwtService.extractClaim(authHeader.substring(7), Function.identity());
+            String username = claims.getSubject();
+            if (username == null || username.isEmpty()) {
+                log.warn("Empty username extracted from JWT token");
+                return null;
+            }
+
+            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            if (!(userDetails instanceof User user) || !user.isEnabled()) {
+                log.warn("WebSocket connection for unknown or disabled user: {}", username);
+                return null;
+            }
+            Long userId = claims.get("userId", Long.class);
+            return new StompPrincipal(userId != null ? userId : user.getId(), username, user.getRole());
+        } catch (Exception e) {
+            log.error("WebSocket authentication failed: {}", e.getMessage());
+            return null;
+        }
+    }
 }
@@ -0,0 +1,171 @@
+package com.healthconnect.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.List;
+
+/**
+ * Dedicated, instrumented executors for the STOMP client inbound, client
+ * outbound and broker channels. Runs after the other configurers, including
+ * Spring Boot's messaging auto-configuration which would otherwise put both
+ * client channels on the shared application task executor.
+ */
+@Configuration
+@Order(Ordered.LOWEST_PRECEDENCE)
+@Slf4j
+public class WebSocketChannelConfig implements WebSocketMessageBrokerConfigurer {
+
+    private static final int MAX_DESTINATION_TAGS = 200;
+
+    private final MeterRegistry meterRegistry;
+    private final SlowConsumerGuard slowConsumerGuard;
+    private final FrameEncodingNegotiator frameEncodingNegotiator;
+
+    @Value("${app.websocket.inbound.core-pool-size:64}")
+    private int inboundCorePoolSize;
+
+    @Value("${app.websocket.inbound.max-pool-size:64}")
+    private int inboundMaxPoolSize;
+
+    @Value("${app.websocket.inbound.queue-capacity:2000}")
+    private int inboundQueueCapacity;
+
+    @Value("${app.websocket.inbound.preserve-order:true}")
+    private boolean preserveReceiveOrder;
+
+    @Value("${app.websocket.outbound.core-pool-size:16}")
+    private int outboundCorePoolSize;
+
+    @Value("${app.websocket.outbound.max-pool-size:32}")
+    private int outboundMaxPoolSize;
+
+    @Value("${app.websocket.outbound.queue-capacity:5000}")
+    private int outboundQueueCapacity;
+
+    @Value("${app.websocket.outbound.preserve-order:true}")
+    private boolean preservePublishOrder;
+
+    // 0 keeps broker delivery on the sending thread
+    @Value("${app.websocket.broker.pool-size:0}")
+    private int brokerPoolSize;
+
+    @Value("${app.websocket.broker.queue-capacity:5000}")
+    private int brokerQueueCapacity;
+
+    // Hard per-session limits; a session exceeding either is closed by Spring
+    @Value("${app.websocket.transport.send-time-limit:10000}")
+    private int sendTimeLimit;
+
+    @Value("${app.websocket.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    private InstrumentedChannelExecutor inboundExecutor;
+    private InstrumentedChannelExecutor outboundExecutor;
+    private InstrumentedChannelExecutor brokerExecutor;
+
+    public WebSocketChannelConfig(MeterRegistry meterRegistry, SlowConsumerGuard slowConsumerGuard,
+                                  FrameEncodingNegotiator frameEncodingNegotiator) {
+        this.meterRegistry = meterRegistry;
+        this.slowConsumerGuard = slowConsumerGuard;
+        this.frameEncodingNegotiator = frameEncodingNegotiator;
+    }
+
+    @PostConstruct
+    public void createExecutors() {
+        meterRegistry.config().meterFilter(MeterFilter.maximumAllowableTags(
+                ChannelLatencyInterceptor.METRIC, "destination", MAX_DESTINATION_TAGS, MeterFilter.deny()));
+
+        // Blocking handlers (chat writes, presence updates) run here, so it gets the larger pool
+        inboundExecutor = InstrumentedChannelExecutor
+                .platform("ws-inbound", inboundCorePoolSize, inboundMaxPoolSize, inboundQueueCapacity)
+                .bindTo(meterRegistry);
+        outboundExecutor = InstrumentedChannelExecutor
+                .platform("ws-outbound", outboundCorePoolSize, outboundMaxPoolSize, outboundQueueCapacity)
+                .bindTo(meterRegistry);
+        if (brokerPoolSize > 0) {
+            brokerExecutor = InstrumentedChannelExecutor
+                    .platform("ws-broker", brokerPoolSize, brokerPoolSize, brokerQueueCapacity)
+                    .bindTo(meterRegistry);
+        }
+
+        log.info("WebSocket channels: inbound={} threads, outbound={} threads, broker={}",
+                inboundMaxPoolSize, outboundMaxPoolSize, brokerExecutor != null ? brokerPoolSize + " threads" : "caller thread");
+    }
+
+    @PreDestroy
+    public void shutdownExecutors() {
+        inboundExecutor.shutdown();
+        outboundExecutor.shutdown();
+        if (brokerExecutor != null) {
+            brokerExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.executor(inboundExecutor);
+        registration.interceptors(new ChannelLatencyInterceptor("inbound", meterRegistry),
+                frameEncodingNegotiator.inboundInterceptor());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(outboundExecutor);
+        // Encoding last, so frames the guard holds back are never transcoded
+        registration.interceptors(new ChannelLatencyInterceptor("outbound", meterRegistry), slowConsumerGuard,
+                frameEncodingNegotiator.outboundInterceptor());
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimit)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .addDecoratorFactory(slowConsumerGuard.decoratorFactory())
+                .addDecoratorFactory(frameEncodingNegotiator.decoratorFactory());
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.addAll(frameEncodingNegotiator.messageConverters());
+        return true;
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        // Multi-threaded outbound delivery must not reorder frames within a session
+        registry.setPreservePublishOrder(preservePublishOrder);
+        if (brokerExecutor != null) {
+            registry.configureBrokerChannel()
+                    .executor(brokerExecutor)
+                    .interceptors(new ChannelLatencyInterceptor("broker", meterRegistry));
+        }
+    }
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Keeps an offer ahead of its ICE candidates when one session's frames land on different threads
+        registry.setPreserveReceiveOrder(preserveReceiveOrder);
+    }
+
+    public InstrumentedChannelExecutor getInboundExecutor() {
+        return inboundExecutor;
+    }
+
+    public InstrumentedChannelExecutor getOutboundExecutor() {
+        return outboundExecutor;
+    }
+}
@@ -1,30 +1,16 @@
 package com.healthconnect.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.messaging.simp.stomp.StompCommand;
-import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
-import org.springframework.messaging.support.ChannelInterceptor;
-import org.springframework.messaging.support.MessageHeaderAccessor;
-import org.springframework.security.authentication.AnonymousAuthenticationToken;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.context.SecurityContextHolder;
-
-import java.util.List;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
-import com.healthconnect.service.JwtService;
-import com.healthconnect.service.UserService;
-
 import lombok.extern.slf4j.Slf4j;
 
 @Configuration
@@ -34,15 +20,55 @@ import lombok.extern.slf4j.Slf4j;
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Autowired
-    private JwtService jwtService;
+    private WebSocketAuthInterceptor webSocketAuthInterceptor;
 
-    @Autowired
-    private UserService userService;
+    // simple: in-memory broker, single node only; relay: external STOMP broker shared by all nodes
+    @Value("${app.websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${app.websocket.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${app.websocket.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${app.websocket.relay.client-login:guest}")
+    private String relayClientLogin;
+
+    @Value("${app.websocket.relay.client-passcode:guest}")
+    private String relayClientPasscode;
+
+    @Value("${app.websocket.relay.system-login:guest}")
+    private String relaySystemLogin;
+
+    @Value("${app.websocket.relay.system-passcode:guest}")
+    private String relaySystemPasscode;
+
+    @Value("${app.websocket.relay.virtual-host:}")
+    private String relayVirtualHost;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable simple broker for topics and queues
-        config.enableSimpleBroker("/topic", "/queue");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            var relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayClientLogin)
+                    .setClientPasscode(relayClientPasscode)
+                    .setSystemLogin(relaySystemLogin)
+                    .setSystemPasscode(relaySystemPasscode)
+                    // A /user destination is resolved on the node holding the session; nodes that
+                    // cannot resolve it rebroadcast it, and share their user registries, through the broker
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+            if (!relayVirtualHost.isBlank()) {
+                relay.setVirtualHost(relayVirtualHost);
+            }
+            log.info("WebSocket broker relay enabled: {}:{}", relayHost, relayPort);
+        } else {
+            // Enable simple broker for topics and queues
+            config.enableSimpleBroker("/topic", "/queue");
+        }
         // Set application destination prefix
         config.setApplicationDestinationPrefixes("/app");
         // Set user destination prefix
@@ -67,62 +93,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(new ChannelInterceptor() {
-            @Override
-            public Message<?> preSend(Message<?> message, MessageChannel channel) {
-                StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
-
-                if (StompCommand.CONNECT.equals(accessor.getCommand())) {
-                    String authToken = accessor.getFirstNativeHeader("Authorization");
-                    log.info("WebSocket CONNECT attempt with token: {}", authToken != null ? "present" : "missing");
-
-                    // Allow connection even without authentication for now
-                    // This prevents WebSocket connection failures
-                    if (authToken == null || !authToken.startsWith("Bearer ")) {
-                        log.warn("WebSocket connection without proper authentication - allowing for now");
-                        accessor.setUser(new AnonymousAuthenticationToken("anonymous", "anonymous",
-                            List.of(new SimpleGrantedAuthority("ROLE_ANONYMOUS"))));
-                        return message; // Allow connection without auth
-                    }
-
-                    // Handle valid authentication
-                    try {
-                        String token = authToken.substring(7);
-                        String username = jwtService.extractUsername(token);
-
-                        if (username != null) {
-                            try {
-                                var userDetails = userService.loadUserByUsername(username);
-                                if (jwtService.isTokenValid(token, userDetails)) {
-                                    var authToken2 = new UsernamePasswordAuthenticationToken(
-                                        userDetails, null, userDetails.getAuthorities());
-                                    SecurityContextHolder.getContext().setAuthentication(authToken2);
-                                    accessor.setUser(authToken2);
-                                    log.info("WebSocket authentication successful for user: {}", username);
-                                } else {
-                                    log.warn("Invalid JWT token for WebSocket connection - allowing anonymous access");
-                                    accessor.setUser(new AnonymousAuthenticationToken("anonymous", "anonymous",
-                                        List.of(new SimpleGrantedAuthority("ROLE_ANONYMOUS"))));
-                                }
-                            } catch (Exception userEx) {
-                                log.warn("User not found for WebSocket connection: {} - allowing anonymous access", username);
-                                accessor.setUser(new AnonymousAuthenticationToken("anonymous", "anonymous",
-                                    List.of(new SimpleGrantedAuthority("ROLE_ANONYMOUS"))));
-                            }
-                        } else {
-                            log.warn("No username in JWT token for WebSocket connection - allowing anonymous access");
-                            accessor.setUser(new AnonymousAuthenticationToken("anonymous", "anonymous",
-                                List.of(new SimpleGrantedAuthority("ROLE_ANONYMOUS"))));
-                        }
-                    } catch (Exception e) {
-                        log.error("WebSocket authentication failed: {} - allowing anonymous access", e.getMessage());
-                        accessor.setUser(new AnonymousAuthenticationToken("anonymous", "anonymous",
-                            List.of(new SimpleGrantedAuthority("ROLE_ANONYMOUS"))));
-                    }
-                }
-
-                return message;
-            }
-        });
+        // Authenticates CONNECT once; later frames carry the session principal
+        registration.interceptors(webSocketAuthInterceptor);
     }
 }
@@ -1,5 +1,6 @@
 package com.healthconnect.controller;
 
+import com.healthconnect.dto.AppointmentCursor;
 import com.healthconnect.dto.AppointmentRequest;
 import com.healthconnect.dto.AppointmentUpdateRequest;
 import com.healthconnect.dto.AppointmentResponse;
@@ -34,22 +35,40 @@ import java.util.Map;
 // CORS disabled - removed @CrossOrigin annotation
 public class AppointmentController {
     
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final AppointmentService appointmentService;
     
-    // Get appointments with optional filters
+    // Get appointments with optional filters, paged by cursor: when more follow, the
+    // X-Next-Cursor header holds the value to pass as cursor for the next page.
+    // Without cursor or limit the whole list is returned unpaged.
     @GetMapping
     public ResponseEntity<List<AppointmentResponse>> getAppointments(
             @AuthenticationPrincipal User user,
             @RequestParam(required = false) AppointmentStatus status,
             @RequestParam(required = false) AppointmentType type,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
 
-        List<Appointment> appointments = appointmentService.getAppointments(user, status, type, startDate, endDate);
-        List<AppointmentResponse> response = appointments.stream()
+        AppointmentCursor after;
+        try {
+            after = cursor != null && !cursor.isBlank() ? AppointmentCursor.parse(cursor) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        AppointmentService.AppointmentPage page =
+                appointmentService.getAppointments(user, status, type, startDate, endDate, after, limit);
+        List<AppointmentResponse> response = page.appointments().stream()
                 .map(AppointmentResponse::new)
                 .toList();
-        return ResponseEntity.ok(response);
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+        if (page.next() != null) {
+            ok.header(NEXT_CURSOR_HEADER, page.next().toString());
+        }
+        return ok.body(response);
     }
     
     // Get appointment by ID
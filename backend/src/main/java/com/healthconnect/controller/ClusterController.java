@@ -0,0 +1,66 @@
+package com.healthconnect.controller;
+
+import com.healthconnect.dto.RoomCommand;
+import com.healthconnect.service.RoomOwnership;
+import com.healthconnect.service.WaitingRoomService;
+import com.healthconnect.service.WebClientClusterTransport;
+import com.healthconnect.service.WebRTCService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Node-to-node endpoints for WebRTC room and waiting-room ownership. Only callers presenting
+ * the shared cluster secret are accepted; with no secret configured the
+ * endpoints are closed.
+ */
+@RestController
+@RequestMapping("/api/internal/cluster")
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterController {
+
+    private final WebRTCService webRTCService;
+    private final WaitingRoomService waitingRoomService;
+    private final RoomOwnership roomOwnership;
+
+    @Value("${app.cluster.secret:}")
+    private String secret;
+
+    @GetMapping("/ping")
+    public ResponseEntity<String> ping(@RequestHeader(value = WebClientClusterTransport.SECRET_HEADER, required = false) String callerSecret) {
+        if (!authorized(callerSecret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(roomOwnership.getLocalNode().id());
+    }
+
+    @PostMapping("/rooms")
+    public ResponseEntity<Object> execute(
+            @RequestHeader(value = WebClientClusterTransport.SECRET_HEADER, required = false) String callerSecret,
+            @RequestBody RoomCommand command) {
+        if (!authorized(callerSecret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            if (command.getType().isWaitingRoom()) {
+                return ResponseEntity.ok(waitingRoomService.execute(command));
+            }
+            return ResponseEntity.ok(webRTCService.execute(command));
+        } catch (Exception e) {
+            log.error("Failed to run forwarded {} for room {}: {}", command.getType(), command.getRoomId(), e.getMessage());
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    private boolean authorized(String callerSecret) {
+        return secret != null && !secret.isBlank() && callerSecret != null
+                && MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8), callerSecret.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -66,6 +66,26 @@ public class DoctorController {
         }
     }
     
+    // Get available time slots for each day from one date to another (inclusive)
+    @GetMapping("/{doctorId}/time-slots/range")
+    public ResponseEntity<?> getAvailableTimeSlotRange(
+            @PathVariable Long doctorId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        try {
+            Map<LocalDate, List<TimeSlotResponse>> timeSlots = appointmentService.getAvailableTimeSlots(doctorId, from, to);
+            return ResponseEntity.ok(timeSlots);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "error", e.getMessage(),
+                "doctorId", doctorId,
+                "from", from.toString(),
+                "to", to.toString()
+            ));
+        }
+    }
+    
     // Get doctor's specializations (for filtering)
     @GetMapping("/specializations")
     public ResponseEntity<List<String>> getSpecializations() {
@@ -0,0 +1,129 @@
+package com.healthconnect.controller;
+
+import com.healthconnect.dto.NotificationResponse;
+import com.healthconnect.entity.User;
+import com.healthconnect.service.NotificationInboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/notifications")
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationController {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final NotificationInboxService notificationInboxService;
+
+    // Paged inbox, newest first
+    @GetMapping
+    public ResponseEntity<Page<NotificationResponse>> getNotifications(
+            @AuthenticationPrincipal User user,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean unreadOnly) {
+
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        PageRequest pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+        Page<NotificationResponse> notifications = notificationInboxService
+                .getInbox(user.getId(), unreadOnly, pageable)
+                .map(NotificationResponse::new);
+        return ResponseEntity.ok(notifications);
+    }
+
+    // Catch-up after reconnect: everything issued after the last sequence the client saw
+    @GetMapping("/since/{sequence}")
+    public ResponseEntity<Map<String, Object>> getNotificationsSince(
+            @AuthenticationPrincipal User user,
+            @PathVariable Long sequence,
+            @RequestParam(defaultValue = "100") int limit) {
+
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        List<NotificationResponse> notifications = notificationInboxService
+                .getNotificationsSince(user.getId(), sequence, limit)
+                .stream()
+                .map(NotificationResponse::new)
+                .toList();
+
+        return ResponseEntity.ok(Map.of(
+                "notifications", notifications,
+                "lastSequence", notificationInboxService.getLastSequence(user.getId()),
+                "unreadCount", notificationInboxService.getUnreadCount(user.getId())
+        ));
+    }
+
+    @GetMapping("/unread-count")
+    public ResponseEntity<Map<String, Long>> getUnreadCount(@AuthenticationPrincipal User user) {
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(Map.of("unreadCount", notificationInboxService.getUnreadCount(user.getId())));
+    }
+
+    // Bulk mark-read by sequence numbers, or everything up to a sequence when upToSequence is set
+    @PostMapping("/mark-read")
+    public ResponseEntity<Map<String, Object>> markAsRead(
+            @AuthenticationPrincipal User user,
+            @RequestBody MarkReadRequest request) {
+
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        try {
+            int updated;
+            if (request.getUpToSequence() != null) {
+                updated = notificationInboxService.markAllAsRead(user.getId(), request.getUpToSequence());
+            } else {
+                updated = notificationInboxService.markAsRead(user.getId(), request.getSequences());
+            }
+            return ResponseEntity.ok(Map.of(
+                    "updated", updated,
+                    "unreadCount", notificationInboxService.getUnreadCount(user.getId())
+            ));
+        } catch (Exception e) {
+            log.error("Error marking notifications as read for user {}: {}", user.getId(), e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/mark-all-read")
+    public ResponseEntity<Map<String, Object>> markAllAsRead(@AuthenticationPrincipal User user) {
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        int updated = notificationInboxService.markAllAsRead(user.getId(), null);
+        return ResponseEntity.ok(Map.of(
+                "updated", updated,
+                "unreadCount", notificationInboxService.getUnreadCount(user.getId())
+        ));
+    }
+
+    // Request DTOs
+    public static class MarkReadRequest {
+        private List<Long> sequences;
+        private Long upToSequence;
+
+        public List<Long> getSequences() { return sequences; }
+        public void setSequences(List<Long> sequences) { this.sequences = sequences; }
+        public Long getUpToSequence() { return upToSequence; }
+        public void setUpToSequence(Long upToSequence) { this.upToSequence = upToSequence; }
+    }
+}
@@ -1,10 +1,12 @@
 package com.healthconnect.controller;
 
+import com.healthconnect.dto.WaitingRoomPosition;
 import com.healthconnect.entity.Appointment;
 import com.healthconnect.entity.User;
 import com.healthconnect.entity.VideoConsultation;
 import com.healthconnect.service.AppointmentService;
 import com.healthconnect.service.VideoConsultationService;
+import com.healthconnect.service.WaitingRoomService;
 
 import com.healthconnect.repository.VideoConsultationRepository;
 import lombok.RequiredArgsConstructor;
@@ -30,6 +32,7 @@ public class VideoConsultationController {
     private final VideoConsultationService videoConsultationService;
     private final AppointmentService appointmentService;
     private final VideoConsultationRepository consultationRepository;
+    private final WaitingRoomService waitingRoomService;
     
     // Create consultation
     @PostMapping("/create")
@@ -309,6 +312,37 @@ public class VideoConsultationController {
         }
     }
 
+    // Current doctor's waiting room; live updates follow on /user/queue/waiting-room
+    @GetMapping("/waiting-room")
+    public ResponseEntity<List<WaitingRoomPosition>> getWaitingRoom(Authentication authentication) {
+        User currentUser = (User) authentication.getPrincipal();
+        return ResponseEntity.ok(waitingRoomService.getQueue(currentUser.getId()));
+    }
+
+    // Patient's place in the waiting room, 404 when not waiting
+    @GetMapping("/{consultationId}/waiting-room")
+    public ResponseEntity<WaitingRoomPosition> getWaitingRoomPosition(
+            @PathVariable Long consultationId,
+            Authentication authentication) {
+
+        User currentUser = (User) authentication.getPrincipal();
+
+        VideoConsultation consultation = consultationRepository.findById(consultationId).orElse(null);
+        if (consultation == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!consultation.getDoctor().getId().equals(currentUser.getId()) &&
+            !consultation.getPatient().getId().equals(currentUser.getId())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        WaitingRoomPosition position = waitingRoomService.getPosition(consultationId, consultation.getDoctor().getId());
+        if (position == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(position);
+    }
+
     // Health check
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> healthCheck() {
@@ -1,23 +1,38 @@
 package com.healthconnect.controller;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.healthconnect.config.StompPrincipal;
 import com.healthconnect.dto.WebRTCSignalRequest;
 import com.healthconnect.dto.CallRecordingRequest;
 import com.healthconnect.dto.CallQualityMetrics;
+import com.healthconnect.dto.CallQualityReport;
+import com.healthconnect.dto.RecordingUploadRequest;
+import com.healthconnect.dto.RecordingUploadStatus;
+import com.healthconnect.service.CallQualityService;
 import com.healthconnect.service.JwtService;
+import com.healthconnect.service.RecordingUploadService;
 import com.healthconnect.service.WebRTCService;
 import com.healthconnect.service.VideoConsultationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
-import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Controller
 @RestController
 @RequestMapping("/api/webrtc")
@@ -28,23 +43,23 @@ public class WebRTCController {
     private final WebRTCService webRTCService;
     private final VideoConsultationService videoConsultationService;
     private final JwtService jwtService;
+    private final RecordingUploadService recordingUploadService;
+    private final CallQualityService callQualityService;
 
     @MessageMapping("/webrtc/{roomId}/join")
     public void joinRoom(
             @DestinationVariable String roomId,
-            @Payload JoinRoomRequest request) {
+            @Payload JoinRoomRequest request,
+            StompPrincipal principal,
+            SimpMessageHeaderAccessor headerAccessor) {
         try {
-            // For now, use the userId from the request payload
-            // In production, extract from authenticated session
-            Long userId = request.getUserId();
-            String userRole = request.getUserRole();
-
-            if (userId == null) {
-                log.error("User ID is required to join WebRTC room");
-                return;
-            }
+            // Identity and role come from the session authenticated on CONNECT, not the payload
+            Long userId = principal.userId();
+            String userRole = principal.role().name();
 
-            webRTCService.initializeUserSession(roomId, userId, userRole);
+            // Signals for this peer are delivered to the joining session only
+            webRTCService.initializeUserSession(roomId, userId, userRole, Boolean.TRUE.equals(request.getIceBatching()),
+                    principal.getName(), headerAccessor.getSessionId());
 
             log.info("User {} joined WebRTC room: {} as {}", userId, roomId, userRole);
 
@@ -56,16 +71,10 @@ public class WebRTCController {
     @MessageMapping("/webrtc/{roomId}/signal")
     public void handleSignal(
             @DestinationVariable String roomId,
-            @Payload WebRTCSignalRequest signal) {
+            @Payload WebRTCSignalRequest signal,
+            StompPrincipal principal) {
         try {
-            // For now, use the userId from the signal payload
-            // In production, extract from authenticated session
-            Long userId = signal.getUserId();
-
-            if (userId == null) {
-                log.error("User ID is required for WebRTC signal");
-                return;
-            }
+            Long userId = principal.userId();
 
             webRTCService.handleWebRTCSignal(roomId, userId, signal);
 
@@ -80,10 +89,9 @@ public class WebRTCController {
     @MessageMapping("/webrtc/{roomId}/leave")
     public void leaveRoom(
             @DestinationVariable String roomId,
-            @Header("Authorization") String authHeader) {
+            StompPrincipal principal) {
         try {
-            String token = authHeader.substring(7);
-            Long userId = jwtService.extractUserId(token);
+            Long userId = principal.userId();
             
             webRTCService.removeUserFromRoom(roomId, userId);
             
@@ -97,10 +105,9 @@ public class WebRTCController {
     @MessageMapping("/webrtc/{roomId}/end")
     public void endSession(
             @DestinationVariable String roomId,
-            @Header("Authorization") String authHeader) {
+            StompPrincipal principal) {
         try {
-            String token = authHeader.substring(7);
-            Long userId = jwtService.extractUserId(token);
+            Long userId = principal.userId();
             
             // TODO: Add authorization check - only doctor or session creator should be able to end
             webRTCService.endSession(roomId);
@@ -116,10 +123,9 @@ public class WebRTCController {
     public void handleMute(
             @DestinationVariable String roomId,
             @Payload MuteRequest request,
-            @Header("Authorization") String authHeader) {
+            StompPrincipal principal) {
         try {
-            String token = authHeader.substring(7);
-            Long userId = jwtService.extractUserId(token);
+            Long userId = principal.userId();
             
             // Broadcast mute status to other participants
             MuteStatusMessage message = new MuteStatusMessage(
@@ -145,7 +151,7 @@ public class WebRTCController {
             String token = authHeader.substring(7);
             Long userId = jwtService.extractUserId(token);
 
-            String recordingUrl = webRTCService.saveRecording(request, userId);
+            String recordingUrl = recordingUploadService.saveRecording(request, userId);
 
             log.info("Recording uploaded for consultation: {} by user: {}",
                     request.getConsultationId(), userId);
@@ -158,6 +164,75 @@ public class WebRTCController {
         }
     }
 
+    @PostMapping("/recording/uploads")
+    public ResponseEntity<?> startRecordingUpload(
+            @Valid @RequestBody RecordingUploadRequest request,
+            @RequestHeader("Authorization") String authHeader) {
+        try {
+            Long userId = jwtService.extractUserId(authHeader.substring(7));
+            return ResponseEntity.ok(recordingUploadService.startUpload(request, userId));
+        } catch (Exception e) {
+            log.error("Failed to start recording upload: {}", e.getMessage());
+            return ResponseEntity.badRequest().body("Failed to start recording upload: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/recording/uploads/{uploadId}")
+    public ResponseEntity<?> getRecordingUpload(
+            @PathVariable String uploadId,
+            @RequestHeader("Authorization") String authHeader) {
+        try {
+            Long userId = jwtService.extractUserId(authHeader.substring(7));
+            return ResponseEntity.ok(recordingUploadService.getUpload(uploadId, userId));
+        } catch (Exception e) {
+            log.error("Failed to get recording upload {}: {}", uploadId, e.getMessage());
+            return ResponseEntity.badRequest().body("Failed to get recording upload: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends the raw request body at {@code Upload-Offset}. The body is
+     * streamed to disk, never buffered. A 409 carries the current offset to
+     * resume from.
+     */
+    @PutMapping("/recording/uploads/{uploadId}")
+    public ResponseEntity<?> uploadRecordingChunk(
+            @PathVariable String uploadId,
+            @RequestHeader("Upload-Offset") long offset,
+            @RequestHeader("X-Chunk-SHA256") String sha256,
+            @RequestHeader("Authorization") String authHeader,
+            HttpServletRequest request) {
+        Long userId = null;
+        try {
+            userId = jwtService.extractUserId(authHeader.substring(7));
+            return ResponseEntity.ok(recordingUploadService.writeChunk(uploadId, userId, offset, sha256, request.getInputStream()));
+        } catch (IllegalStateException e) {
+            log.warn("Rejected recording chunk for upload {} at offset {}: {}", uploadId, offset, e.getMessage());
+            RecordingUploadStatus current = recordingUploadService.getUpload(uploadId, userId);
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(current);
+        } catch (Exception e) {
+            log.error("Failed to upload recording chunk for upload {}: {}", uploadId, e.getMessage());
+            return ResponseEntity.badRequest().body("Failed to upload recording chunk: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/recording/uploads/{uploadId}/complete")
+    public ResponseEntity<?> completeRecordingUpload(
+            @PathVariable String uploadId,
+            @RequestHeader(value = "X-Recording-SHA256", required = false) String sha256,
+            @RequestHeader("Authorization") String authHeader) {
+        try {
+            Long userId = jwtService.extractUserId(authHeader.substring(7));
+            RecordingUploadStatus status = recordingUploadService.completeUpload(uploadId, userId, sha256);
+            log.info("Recording upload {} completed for consultation {} by user {}",
+                    uploadId, status.getConsultationId(), userId);
+            return ResponseEntity.ok(status);
+        } catch (Exception e) {
+            log.error("Failed to complete recording upload {}: {}", uploadId, e.getMessage());
+            return ResponseEntity.badRequest().body("Failed to complete recording upload: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/quality/metrics")
     public ResponseEntity<String> submitQualityMetrics(
             @Valid @RequestBody CallQualityMetrics metrics,
@@ -166,7 +241,7 @@ public class WebRTCController {
             String token = authHeader.substring(7);
             Long userId = jwtService.extractUserId(token);
 
-            webRTCService.saveQualityMetrics(metrics, userId);
+            callQualityService.record(metrics, userId);
 
             log.debug("Quality metrics submitted for consultation: {} by user: {}",
                      metrics.getConsultationId(), userId);
@@ -179,6 +254,68 @@ public class WebRTCController {
         }
     }
 
+    @GetMapping("/quality/consultations/{consultationId}")
+    public ResponseEntity<CallQualityReport> getConsultationQuality(
+            @PathVariable Long consultationId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer intervalMinutes,
+            @RequestHeader("Authorization") String authHeader) {
+        try {
+            Long userId = jwtService.extractUserId(authHeader.substring(7));
+            return ResponseEntity.ok(callQualityService.getConsultationReport(consultationId, userId, from, to, intervalMinutes));
+        } catch (Exception e) {
+            log.error("Failed to get call quality for consultation {}: {}", consultationId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/quality/consultations/{consultationId}/recent")
+    public ResponseEntity<List<CallQualityMetrics>> getRecentQualitySamples(
+            @PathVariable Long consultationId,
+            @RequestHeader("Authorization") String authHeader) {
+        try {
+            Long userId = jwtService.extractUserId(authHeader.substring(7));
+            return ResponseEntity.ok(callQualityService.getRecentSamples(consultationId, userId));
+        } catch (Exception e) {
+            log.error("Failed to get recent call quality for consultation {}: {}", consultationId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/quality/doctors/{doctorId}")
+    public ResponseEntity<CallQualityReport> getDoctorQuality(
+            @PathVariable Long doctorId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer intervalMinutes,
+            @RequestHeader("Authorization") String authHeader) {
+        try {
+            Long userId = jwtService.extractUserId(authHeader.substring(7));
+            return ResponseEntity.ok(callQualityService.getDoctorReport(doctorId, userId, from, to, intervalMinutes));
+        } catch (Exception e) {
+            log.error("Failed to get call quality for doctor {}: {}", doctorId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // The calling doctor's own calls; there is no cross-doctor view
+    @GetMapping("/quality")
+    @PreAuthorize("hasRole('DOCTOR')")
+    public ResponseEntity<CallQualityReport> getQuality(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer intervalMinutes,
+            @RequestHeader("Authorization") String authHeader) {
+        try {
+            Long userId = jwtService.extractUserId(authHeader.substring(7));
+            return ResponseEntity.ok(callQualityService.getDoctorReport(userId, userId, from, to, intervalMinutes));
+        } catch (Exception e) {
+            log.error("Failed to get call quality: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/room/{roomId}/status")
     public ResponseEntity<RoomStatusResponse> getRoomStatus(
             @PathVariable String roomId,
@@ -199,9 +336,11 @@ public class WebRTCController {
 
     // DTOs for WebRTC requests
     public static class JoinRoomRequest {
+        // Still sent by clients; ignored in favour of the authenticated principal
         private String userRole;
         private Long userId;
         private String peerId;
+        private Boolean iceBatching; // client understands ICE_CANDIDATE_BATCH
 
         public String getUserRole() { return userRole; }
         public void setUserRole(String userRole) { this.userRole = userRole; }
@@ -209,6 +348,8 @@ public class WebRTCController {
         public void setUserId(Long userId) { this.userId = userId; }
         public String getPeerId() { return peerId; }
         public void setPeerId(String peerId) { this.peerId = peerId; }
+        public Boolean getIceBatching() { return iceBatching; }
+        public void setIceBatching(Boolean iceBatching) { this.iceBatching = iceBatching; }
     }
 
     public static class MuteRequest {
@@ -245,8 +386,12 @@ public class WebRTCController {
         private long sessionStartTime;
         private String sessionStatus;
 
-        public RoomStatusResponse(String roomId, int participantCount, boolean isActive,
-                                long sessionStartTime, String sessionStatus) {
+        @JsonCreator
+        public RoomStatusResponse(@JsonProperty("roomId") String roomId,
+                                @JsonProperty("participantCount") int participantCount,
+                                @JsonProperty("active") boolean isActive,
+                                @JsonProperty("sessionStartTime") long sessionStartTime,
+                                @JsonProperty("sessionStatus") String sessionStatus) {
             this.roomId = roomId;
             this.participantCount = participantCount;
             this.isActive = isActive;
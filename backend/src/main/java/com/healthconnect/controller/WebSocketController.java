@@ -1,13 +1,14 @@
 package com.healthconnect.controller;
 
+import com.healthconnect.config.StompPrincipal;
 import com.healthconnect.dto.MessageRequest;
 import com.healthconnect.dto.MessageResponse;
 import com.healthconnect.service.ChatService;
-import com.healthconnect.service.JwtService;
+import com.healthconnect.service.IceCandidateBatcher;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
-import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
@@ -21,12 +22,16 @@ import java.util.Map;
 public class WebSocketController {
 
     private final ChatService chatService;
+    private final IceCandidateBatcher iceCandidateBatcher;
     private SimpMessagingTemplate messagingTemplate;
-    private final JwtService jwtService;
 
-    public WebSocketController(ChatService chatService, JwtService jwtService) {
+    // /topic/video has no member list to check, so batching there is all or nothing
+    @Value("${app.webrtc.ice-batching.video-topic:false}")
+    private boolean videoTopicBatching;
+
+    public WebSocketController(ChatService chatService, IceCandidateBatcher iceCandidateBatcher) {
         this.chatService = chatService;
-        this.jwtService = jwtService;
+        this.iceCandidateBatcher = iceCandidateBatcher;
     }
 
     @Autowired(required = false)
@@ -35,12 +40,11 @@ public class WebSocketController {
     }
 
     @MessageMapping("/test")
-    public void test(String message, @Header("Authorization") String authHeader) {
+    public void test(String message, StompPrincipal principal) {
         try {
-            // Extract user info from JWT token for testing
-            String token = authHeader.substring(7); // Remove "Bearer " prefix
-            String userEmail = jwtService.extractUsername(token);
-            Long userId = jwtService.extractUserId(token);
+            // User authenticated once on CONNECT
+            String userEmail = principal.email();
+            Long userId = principal.userId();
 
             log.info("Received test message from user {}: {}", userEmail, message);
 
@@ -61,12 +65,11 @@ public class WebSocketController {
     public void sendMessage(
             @DestinationVariable Long chatId,
             @Payload MessageRequest request,
-            @Header("Authorization") String authHeader) {
+            StompPrincipal principal) {
         try {
-            // Extract user ID from JWT token
-            String token = authHeader.substring(7); // Remove "Bearer " prefix
-            String userEmail = jwtService.extractUsername(token);
-            Long senderId = jwtService.extractUserId(token);
+            // User authenticated once on CONNECT
+            String userEmail = principal.email();
+            Long senderId = principal.userId();
 
             log.info("WebSocket message received - chatId: {}, senderId: {}, userEmail: {}, content: {}",
                     chatId, senderId, userEmail, request.getContent());
@@ -89,7 +92,7 @@ public class WebSocketController {
             // Send error message back to sender
             if (messagingTemplate != null) {
                 messagingTemplate.convertAndSendToUser(
-                    jwtService.extractUsername(authHeader.substring(7)),
+                    principal.getName(),
                     "/queue/errors",
                     "Failed to send message: " + e.getMessage()
                 );
@@ -101,11 +104,10 @@ public class WebSocketController {
     public void handleTyping(
             @DestinationVariable Long chatId,
             @Payload String typingStatus,
-            @Header("Authorization") String authHeader) {
+            StompPrincipal principal) {
         try {
-            String token = authHeader.substring(7);
-            String userEmail = jwtService.extractUsername(token);
-            Long userId = jwtService.extractUserId(token);
+            String userEmail = principal.email();
+            Long userId = principal.userId();
             
             // Broadcast typing status to other participants
             if (messagingTemplate != null) {
@@ -125,15 +127,35 @@ public class WebSocketController {
     public void handleVideoSignal(
             @DestinationVariable String roomId,
             @Payload Map<String, Object> signal,
-            @Header("Authorization") String authHeader) {
+            StompPrincipal principal) {
         try {
-            String token = authHeader.substring(7);
-            String userEmail = jwtService.extractUsername(token);
-            Long userId = jwtService.extractUserId(token);
+            String userEmail = principal.email();
+            Long userId = principal.userId();
 
             log.info("WebRTC signal received - roomId: {}, userId: {}, type: {}",
                     roomId, userId, signal.get("type"));
 
+            String scope = "video/" + roomId;
+            Object type = signal.get("type");
+            if ("ice-candidate".equals(type) && signal.get("candidate") != null
+                    && videoTopicBatching && iceCandidateBatcher.isEnabled()) {
+                // Sent as one ice-candidates signal when the window closes
+                iceCandidateBatcher.add(scope, String.valueOf(userId), null, signal.get("candidate"), candidates -> {
+                    Map<String, Object> batch = new HashMap<>();
+                    batch.put("type", "ice-candidates");
+                    batch.put("candidates", candidates);
+                    batch.put("senderId", userId);
+                    batch.put("senderEmail", userEmail);
+                    if (messagingTemplate != null) {
+                        messagingTemplate.convertAndSend("/topic/video/" + roomId, batch);
+                    }
+                });
+                return;
+            }
+            if ("offer".equals(type) || "answer".equals(type)) {
+                iceCandidateBatcher.flush(scope, String.valueOf(userId));
+            }
+
             // Add sender info to signal
             signal.put("senderId", userId);
             signal.put("senderEmail", userEmail);
@@ -151,11 +173,10 @@ public class WebSocketController {
     @MessageMapping("/video/{roomId}/join")
     public void handleVideoJoin(
             @DestinationVariable String roomId,
-            @Header("Authorization") String authHeader) {
+            StompPrincipal principal) {
         try {
-            String token = authHeader.substring(7);
-            String userEmail = jwtService.extractUsername(token);
-            Long userId = jwtService.extractUserId(token);
+            String userEmail = principal.email();
+            Long userId = principal.userId();
 
             log.info("User joining video room - roomId: {}, userId: {}, email: {}",
                     roomId, userId, userEmail);
@@ -178,11 +199,10 @@ public class WebSocketController {
     @MessageMapping("/video/{roomId}/leave")
     public void handleVideoLeave(
             @DestinationVariable String roomId,
-            @Header("Authorization") String authHeader) {
+            StompPrincipal principal) {
         try {
-            String token = authHeader.substring(7);
-            String userEmail = jwtService.extractUsername(token);
-            Long userId = jwtService.extractUserId(token);
+            String userEmail = principal.email();
+            Long userId = principal.userId();
 
             log.info("User leaving video room - roomId: {}, userId: {}", roomId, userId);
 
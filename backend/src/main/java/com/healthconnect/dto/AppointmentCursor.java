@@ -0,0 +1,38 @@
+package com.healthconnect.dto;
+
+import com.healthconnect.entity.Appointment;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Keyset position in an appointment list ordered by (date, startTime, id).
+ * Sent to clients as "2025-03-01T09:30_42": the next page starts after the
+ * appointment with that start and id.
+ */
+public record AppointmentCursor(LocalDate date, LocalTime startTime, Long id) {
+
+    public static AppointmentCursor of(Appointment appointment) {
+        return new AppointmentCursor(appointment.getDate(), appointment.getStartTime(), appointment.getId());
+    }
+
+    public static AppointmentCursor parse(String value) {
+        try {
+            int time = value.indexOf('T');
+            int id = value.lastIndexOf('_');
+            if (time < 0 || id < time) {
+                throw new IllegalArgumentException("Invalid appointment cursor: " + value);
+            }
+            return new AppointmentCursor(LocalDate.parse(value.substring(0, time)),
+                    LocalTime.parse(value.substring(time + 1, id)), Long.parseLong(value.substring(id + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid appointment cursor: " + value, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return date + "T" + startTime + "_" + id;
+    }
+}
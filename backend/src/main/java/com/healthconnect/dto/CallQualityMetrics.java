@@ -17,6 +17,7 @@ public class CallQualityMetrics {
     private Integer videoQuality; // 1-5 scale
     private Integer connectionStability; // 1-5 scale
     private Long latencyMs;
+    private Double jitterMs;
     private Double packetLossPercentage;
     private String networkType; // wifi, cellular, ethernet
     private String deviceType; // desktop, mobile, tablet
@@ -0,0 +1,49 @@
+package com.healthconnect.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CallQualityReport {
+    private String scope; // consultation, doctor or all
+    private Long scopeId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private long samples;
+    private Percentiles latencyMs;
+    private Percentiles jitterMs;
+    private Percentiles packetLossPercentage;
+    private List<Interval> series; // only when an interval was requested
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Percentiles {
+        private Double p50;
+        private Double p90;
+        private Double p95;
+        private Double p99;
+        private Double max;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Interval {
+        private LocalDateTime start;
+        private long samples;
+        private Percentiles latencyMs;
+        private Percentiles jitterMs;
+        private Percentiles packetLossPercentage;
+    }
+}
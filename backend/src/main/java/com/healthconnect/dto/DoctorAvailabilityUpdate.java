@@ -0,0 +1,10 @@
+package com.healthconnect.dto;
+
+import lombok.Value;
+
+@Value
+public class DoctorAvailabilityUpdate {
+    Long doctorId;
+    String availability;
+    long timestamp;
+}
@@ -0,0 +1,38 @@
+package com.healthconnect.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Immutable notification pushed over WebSocket. Per-user fields (sequence,
+ * unreadCount) are stamped on a copy by the inbox writer, so one instance can
+ * safely be handed to several recipients.
+ */
+@Value
+@Builder(toBuilder = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NotificationPayload {
+    String type;
+    String title;
+    String message;
+    String priority;
+    Long relatedId;
+    Long timestamp;
+    Boolean read;
+
+    // Chat notifications
+    Long senderId;
+    String senderName;
+    Boolean isUrgent;
+
+    // Digests produced by the notification coalescer
+    Integer count;
+    Boolean coalesced;
+    Long firstTimestamp;
+    String latestMessage;
+
+    // Assigned by the inbox writer
+    Long sequence;
+    Long unreadCount;
+}
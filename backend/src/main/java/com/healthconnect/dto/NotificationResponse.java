@@ -0,0 +1,42 @@
+package com.healthconnect.dto;
+
+import com.healthconnect.entity.Notification;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NotificationResponse {
+
+    private Long id;
+    private Long sequence;
+    private String type;
+    private String title;
+    private String message;
+    private String priority;
+    private Long relatedId;
+    private String metadata;
+    private Boolean read;
+    private LocalDateTime createdAt;
+    private LocalDateTime readAt;
+
+    public NotificationResponse(Notification notification) {
+        this.id = notification.getId();
+        this.sequence = notification.getSequenceNumber();
+        this.type = notification.getType();
+        this.title = notification.getTitle();
+        this.message = notification.getMessage();
+        this.priority = notification.getPriority();
+        this.relatedId = notification.getRelatedId();
+        this.metadata = notification.getMetadata();
+        this.read = notification.getIsRead();
+        this.createdAt = notification.getCreatedAt();
+        this.readAt = notification.getReadAt();
+    }
+}
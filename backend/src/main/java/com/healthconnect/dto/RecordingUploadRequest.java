@@ -0,0 +1,21 @@
+package com.healthconnect.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RecordingUploadRequest {
+    @NotNull
+    private Long consultationId;
+    private String mimeType;
+    @Positive
+    private Long fileSizeBytes; // optional, checked when the upload completes
+    private Integer durationSeconds;
+}
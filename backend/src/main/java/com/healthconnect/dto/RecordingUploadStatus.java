@@ -0,0 +1,20 @@
+package com.healthconnect.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RecordingUploadStatus {
+    private String uploadId;
+    private Long consultationId;
+    private String status; // UPLOADING or COMPLETED
+    private long offset; // bytes stored so far, where the next chunk starts
+    private long maxChunkBytes;
+    private String sha256; // whole recording, once completed
+    private String recordingUrl;
+}
@@ -0,0 +1,58 @@
+package com.healthconnect.dto;
+
+import com.healthconnect.service.WaitingRoomService;
+import com.healthconnect.service.WebRTCService.WebRTCPeer;
+import com.healthconnect.service.WebRTCService.WebRTCSession;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A WebRTC room or waiting-room operation forwarded to the node that owns
+ * the room, or the doctor's queue.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RoomCommand {
+
+    public enum Type {
+        CREATE, PREWARM, JOIN, SIGNAL, LEAVE, END, STATUS, HANDOFF,
+        WAITING_ROOM_ENQUEUE, WAITING_ROOM_START, WAITING_ROOM_CLOSE, WAITING_ROOM_QUEUE;
+
+        public boolean isWaitingRoom() {
+            return name().startsWith("WAITING_ROOM_");
+        }
+    }
+
+    private Type type;
+    private String roomId;
+
+    // JOIN, SIGNAL, LEAVE, STATUS
+    private Long userId;
+    private String userRole;
+    private boolean iceBatching;
+    private String principalName;
+    private String stompSessionId;
+    private WebRTCSignalRequest signal;
+
+    // END: sent to the remaining peers with SESSION_END
+    private String reason;
+
+    // HANDOFF: the room's state, moved to its new owner
+    private WebRTCSession session;
+    private List<WebRTCPeer> peers;
+
+    // WAITING_ROOM_*: roomId is the doctor's queue key
+    private Long doctorId;
+    private String doctorEmail;
+    private Long consultationId;
+    private WaitingRoomService.Entry waitingEntry;
+    private LocalDateTime since;
+    private Integer durationMinutes;
+}
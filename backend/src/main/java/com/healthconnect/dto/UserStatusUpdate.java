@@ -0,0 +1,10 @@
+package com.healthconnect.dto;
+
+import lombok.Value;
+
+@Value
+public class UserStatusUpdate {
+    Long userId;
+    String status;
+    long timestamp;
+}
@@ -0,0 +1,31 @@
+package com.healthconnect.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A patient's place in a doctor's waiting room. Sent to the patient on
+ * /user/queue/waiting-room whenever it changes; the doctor receives the
+ * whole queue as a list of these on the same destination.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WaitingRoomPosition {
+    private Long consultationId;
+    private Long doctorId;
+    private Long patientId;
+    private String patientName;
+    private String status; // WAITING, or LEFT once the consultation started or closed
+    private int position; // 1 is next, 0 once LEFT
+    private int queueLength;
+    private long estimatedWaitMinutes;
+    private boolean urgent;
+    private LocalDateTime scheduledStartTime;
+    private LocalDateTime waitingSince;
+}
@@ -11,7 +11,10 @@ import java.time.LocalTime;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "appointments")
+@Table(name = "appointments", indexes = {
+    @Index(name = "idx_appointments_doctor_date_time", columnList = "doctor_id, date, start_time, id"),
+    @Index(name = "idx_appointments_patient_date_time", columnList = "patient_id, date, start_time, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
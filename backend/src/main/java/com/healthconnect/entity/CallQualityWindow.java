@@ -0,0 +1,57 @@
+package com.healthconnect.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Call-quality summary of one consultation over one window. The histograms
+ * are {@code QualityHistogram} encodings and merge by addition, so reports
+ * over consultations, doctors and time ranges are built from these rows.
+ * Several rows may exist for the same window when it spanned a flush.
+ */
+@Entity
+@Table(name = "call_quality_windows",
+       indexes = {
+           @Index(name = "idx_quality_consultation_window", columnList = "consultation_id, window_start"),
+           @Index(name = "idx_quality_doctor_window", columnList = "doctor_id, window_start"),
+           @Index(name = "idx_quality_window", columnList = "window_start")
+       })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CallQualityWindow {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "consultation_id", nullable = false)
+    private Long consultationId;
+
+    @Column(name = "doctor_id", nullable = false)
+    private Long doctorId;
+
+    @Column(name = "window_start", nullable = false)
+    private LocalDateTime windowStart;
+
+    @Column(name = "sample_count", nullable = false)
+    private Long sampleCount;
+
+    @Column(name = "latency_histogram", columnDefinition = "TEXT")
+    private String latencyHistogram;
+
+    @Column(name = "jitter_histogram", columnDefinition = "TEXT")
+    private String jitterHistogram;
+
+    @Column(name = "packet_loss_histogram", columnDefinition = "TEXT")
+    private String packetLossHistogram;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
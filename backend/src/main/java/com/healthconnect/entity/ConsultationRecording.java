@@ -0,0 +1,72 @@
+package com.healthconnect.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A consultation recording, uploaded in chunks. While UPLOADING the bytes
+ * received so far are the {@code .part} file on disk, whose size is the offset
+ * a client resumes from; COMPLETED recordings have been moved to their final
+ * file and checksummed.
+ */
+@Entity
+@Table(name = "consultation_recordings",
+       indexes = @Index(name = "idx_recordings_consultation", columnList = "consultation_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ConsultationRecording {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "upload_id", nullable = false, unique = true, length = 36)
+    private String uploadId;
+
+    @Column(name = "consultation_id", nullable = false)
+    private Long consultationId;
+
+    @Column(name = "uploaded_by", nullable = false)
+    private Long uploadedBy;
+
+    @Column(name = "mime_type", nullable = false)
+    private String mimeType;
+
+    // Declared by the client when the upload starts, checked on completion
+    @Column(name = "expected_size_bytes")
+    private Long expectedSizeBytes;
+
+    @Column(name = "duration_seconds")
+    private Integer durationSeconds;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private RecordingStatus status;
+
+    @Column(name = "file_path", nullable = false, length = 500)
+    private String filePath;
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
+
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    public enum RecordingStatus {
+        UPLOADING,
+        COMPLETED
+    }
+}
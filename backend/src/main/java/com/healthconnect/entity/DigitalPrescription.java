@@ -13,7 +13,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "digital_prescriptions")
+@Table(name = "digital_prescriptions", indexes = {
+    @Index(name = "idx_prescriptions_status_valid_until", columnList = "status, valid_until"),
+    @Index(name = "idx_prescriptions_expiry_notice", columnList = "expiry_notified_at, status, expiry_date")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -60,6 +63,10 @@ public class DigitalPrescription {
     @Column(name = "valid_until")
     private LocalDate validUntil;
     
+    // Set once when the patient has been told the prescription is expiring
+    @Column(name = "expiry_notified_at")
+    private LocalDateTime expiryNotifiedAt;
+    
     @Column(columnDefinition = "TEXT")
     private String diagnosis;
     
@@ -0,0 +1,61 @@
+package com.healthconnect.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "notifications",
+       uniqueConstraints = @UniqueConstraint(name = "uk_notifications_user_sequence",
+                                             columnNames = {"user_id", "sequence_number"}),
+       indexes = @Index(name = "idx_notifications_user_read", columnList = "user_id, is_read"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Notification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // Per-user, gap-free sequence used by clients to catch up after reconnecting
+    @Column(name = "sequence_number", nullable = false)
+    private Long sequenceNumber;
+
+    @Column(nullable = false)
+    private String type;
+
+    @Column
+    private String title;
+
+    @Column(columnDefinition = "TEXT")
+    private String message;
+
+    @Column
+    private String priority;
+
+    @Column(name = "related_id")
+    private Long relatedId;
+
+    // Type-specific extras (e.g. senderId for chat notifications) as JSON
+    @Column(columnDefinition = "TEXT")
+    private String metadata;
+
+    @Column(name = "is_read", nullable = false)
+    @Builder.Default
+    private Boolean isRead = false;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "read_at")
+    private LocalDateTime readAt;
+}
@@ -0,0 +1,40 @@
+package com.healthconnect.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A notification the inbox writer could not store. It was still delivered
+ * live; the payload is kept here so it can be inspected and replayed.
+ */
+@Entity
+@Table(name = "notification_dead_letters",
+       indexes = @Index(name = "idx_notification_dead_letters_created", columnList = "created_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NotificationDeadLetter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    // The NotificationPayload as JSON
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,37 @@
+package com.healthconnect.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One row per user holding the unread counter and the last issued
+ * notification sequence, so neither needs a COUNT or MAX over notifications.
+ */
+@Entity
+@Table(name = "notification_inbox_state")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NotificationInboxState {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "unread_count", nullable = false)
+    @Builder.Default
+    private Long unreadCount = 0L;
+
+    @Column(name = "last_sequence", nullable = false)
+    @Builder.Default
+    private Long lastSequence = 0L;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,46 @@
+package com.healthconnect.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a batch sweep: the last id processed in the current run, the
+ * day that run belongs to, and the day the last full run completed, so an
+ * interrupted run resumes where it stopped on the same day and a completed
+ * one is not repeated. Time-driven jobs
+ * record the instant they have handled everything before instead.
+ */
+@Entity
+@Table(name = "sweeper_watermarks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SweeperWatermark {
+
+    @Id
+    @Column(name = "job_name", length = 100)
+    private String jobName;
+
+    @Column(name = "last_id", nullable = false)
+    @Builder.Default
+    private Long lastId = 0L;
+
+    @Column(name = "run_date")
+    private LocalDate runDate;
+
+    @Column(name = "completed_through")
+    private LocalDate completedThrough;
+
+    @Column(name = "completed_until")
+    private LocalDateTime completedUntil;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
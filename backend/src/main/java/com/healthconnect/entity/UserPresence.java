@@ -36,7 +36,8 @@ public class UserPresence {
     @Builder.Default
     private LocalDateTime lastSeen = LocalDateTime.now();
 
-    @Column
+    // Only set on insert; later activity goes through UserActivityTracker so an older value never overwrites a newer one
+    @Column(updatable = false)
     private LocalDateTime lastActivity;
 
     @Column
@@ -61,11 +62,6 @@ public class UserPresence {
         lastActivity = LocalDateTime.now();
     }
 
-    @PreUpdate
-    protected void onUpdate() {
-        lastActivity = LocalDateTime.now();
-    }
-
     public void updatePresence(PresenceStatus status) {
         this.status = status;
         this.lastSeen = LocalDateTime.now();
@@ -75,6 +75,10 @@ public class VideoConsultation {
     
     @Column(name = "recording_url")
     private String recordingUrl;
+
+    // Latest completed ConsultationRecording
+    @Column(name = "recording_id")
+    private Long recordingId;
     
     @Column(name = "recording_consent")
     private Boolean recordingConsent = false;
@@ -5,16 +5,18 @@ import com.healthconnect.entity.AppointmentStatus;
 import com.healthconnect.entity.AppointmentType;
 import com.healthconnect.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
+public interface AppointmentRepository extends JpaRepository<Appointment, Long>, JpaSpecificationExecutor<Appointment> {
     
     // Find appointments by doctor
     List<Appointment> findByDoctorOrderByDateAscStartTimeAsc(User doctor);
@@ -78,4 +80,29 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
     // Count appointments by patient and status
     @Query("SELECT COUNT(a) FROM Appointment a WHERE a.patient = :patient AND a.status = :status")
     Long countByPatientAndStatus(@Param("patient") User patient, @Param("status") AppointmentStatus status);
+    
+    // Find appointments starting in (from, to], with participants, for reminder scheduling
+    @Query("SELECT a FROM Appointment a JOIN FETCH a.doctor JOIN FETCH a.patient WHERE a.status NOT IN :excluded AND " +
+           "(a.date > :fromDate OR (a.date = :fromDate AND a.startTime > :fromTime)) AND " +
+           "(a.date < :toDate OR (a.date = :toDate AND a.startTime <= :toTime)) " +
+           "ORDER BY a.date ASC, a.startTime ASC")
+    List<Appointment> findStartingBetween(@Param("excluded") Collection<AppointmentStatus> excluded,
+                                          @Param("fromDate") LocalDate fromDate,
+                                          @Param("fromTime") LocalTime fromTime,
+                                          @Param("toDate") LocalDate toDate,
+                                          @Param("toTime") LocalTime toTime);
+    
+    // Whether the patient saw this doctor before the given date, to tell follow-ups from first visits
+    boolean existsByDoctorIdAndPatientIdAndStatusAndDateBefore(Long doctorId, Long patientId,
+                                                               AppointmentStatus status, LocalDate date);
+    
+    // (id, doctor id, date, start, end) of appointments occupying slots from the given date, for the slot index
+    @Query("SELECT a.id, a.doctor.id, a.date, a.startTime, a.endTime FROM Appointment a " +
+           "WHERE a.date >= :from AND a.status NOT IN :excluded")
+    List<Object[]> findSlotRowsFrom(@Param("from") LocalDate from,
+                                    @Param("excluded") Collection<AppointmentStatus> excluded);
+    
+    // Find appointments by IDs with participants loaded in the same query
+    @Query("SELECT a FROM Appointment a JOIN FETCH a.doctor JOIN FETCH a.patient WHERE a.id IN :ids")
+    List<Appointment> findWithParticipantsByIdIn(@Param("ids") Collection<Long> ids);
 }
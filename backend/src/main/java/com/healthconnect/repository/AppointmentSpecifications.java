@@ -0,0 +1,74 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.dto.AppointmentCursor;
+import com.healthconnect.entity.Appointment;
+import com.healthconnect.entity.AppointmentStatus;
+import com.healthconnect.entity.AppointmentType;
+import jakarta.persistence.criteria.JoinType;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+
+/**
+ * Filters for appointment lists. A null argument means no restriction, so
+ * optional request filters can be combined with {@code and} directly.
+ */
+public final class AppointmentSpecifications {
+
+    private AppointmentSpecifications() {
+    }
+
+    public static Specification<Appointment> forDoctor(Long doctorId) {
+        return (root, query, cb) -> cb.equal(root.get("doctor").get("id"), doctorId);
+    }
+
+    public static Specification<Appointment> forPatient(Long patientId) {
+        return (root, query, cb) -> cb.equal(root.get("patient").get("id"), patientId);
+    }
+
+    public static Specification<Appointment> hasStatus(AppointmentStatus status) {
+        return (root, query, cb) -> status == null ? null : cb.equal(root.get("status"), status);
+    }
+
+    public static Specification<Appointment> hasType(AppointmentType type) {
+        return (root, query, cb) -> type == null ? null : cb.equal(root.get("type"), type);
+    }
+
+    public static Specification<Appointment> onOrAfter(LocalDate date) {
+        return (root, query, cb) -> date == null ? null : cb.greaterThanOrEqualTo(root.get("date"), date);
+    }
+
+    public static Specification<Appointment> onOrBefore(LocalDate date) {
+        return (root, query, cb) -> date == null ? null : cb.lessThanOrEqualTo(root.get("date"), date);
+    }
+
+    /**
+     * Appointments after the cursor in (date, startTime, id) order.
+     */
+    public static Specification<Appointment> after(AppointmentCursor cursor) {
+        return (root, query, cb) -> {
+            if (cursor == null) {
+                return null;
+            }
+            return cb.or(
+                    cb.greaterThan(root.get("date"), cursor.date()),
+                    cb.and(cb.equal(root.get("date"), cursor.date()),
+                            cb.or(cb.greaterThan(root.get("startTime"), cursor.startTime()),
+                                    cb.and(cb.equal(root.get("startTime"), cursor.startTime()),
+                                            cb.greaterThan(root.get("id"), cursor.id())))));
+        };
+    }
+
+    /**
+     * Loads doctor and patient in the same query instead of one select per user.
+     */
+    public static Specification<Appointment> fetchParticipants() {
+        return (root, query, cb) -> {
+            if (query != null && !Long.class.equals(query.getResultType())) {
+                root.fetch("doctor", JoinType.INNER);
+                root.fetch("patient", JoinType.INNER);
+            }
+            return null;
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.entity.CallQualityWindow;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CallQualityWindowRepository extends JpaRepository<CallQualityWindow, Long> {
+
+    @Query("SELECT w FROM CallQualityWindow w WHERE w.consultationId = :consultationId AND w.windowStart >= :from AND w.windowStart < :to")
+    List<CallQualityWindow> findForConsultation(@Param("consultationId") Long consultationId,
+                                                @Param("from") LocalDateTime from,
+                                                @Param("to") LocalDateTime to);
+
+    @Query("SELECT w FROM CallQualityWindow w WHERE w.doctorId = :doctorId AND w.windowStart >= :from AND w.windowStart < :to")
+    List<CallQualityWindow> findForDoctor(@Param("doctorId") Long doctorId,
+                                          @Param("from") LocalDateTime from,
+                                          @Param("to") LocalDateTime to);
+}
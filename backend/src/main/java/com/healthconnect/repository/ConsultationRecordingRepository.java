@@ -0,0 +1,13 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.entity.ConsultationRecording;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ConsultationRecordingRepository extends JpaRepository<ConsultationRecording, Long> {
+
+    Optional<ConsultationRecording> findByUploadId(String uploadId);
+}
@@ -4,12 +4,17 @@ import com.healthconnect.entity.DigitalPrescription;
 import com.healthconnect.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -42,6 +47,35 @@ public interface DigitalPrescriptionRepository extends JpaRepository<DigitalPres
     @Query("SELECT dp FROM DigitalPrescription dp WHERE dp.refillsRemaining > 0 AND dp.status = 'ISSUED' AND dp.validUntil >= :today")
     List<DigitalPrescription> findPrescriptionsEligibleForRefill(@Param("today") LocalDate today);
     
+    // Keyset page of prescriptions past their validity that are still in an active status
+    @Query("SELECT dp.id FROM DigitalPrescription dp WHERE dp.status IN :statuses AND dp.validUntil < :today AND dp.id > :afterId ORDER BY dp.id ASC")
+    List<Long> findIdsToExpire(@Param("statuses") Collection<DigitalPrescription.PrescriptionStatus> statuses,
+                               @Param("today") LocalDate today,
+                               @Param("afterId") Long afterId,
+                               Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE DigitalPrescription dp SET dp.status = :expired, dp.updatedAt = :now " +
+           "WHERE dp.id IN :ids AND dp.status IN :statuses AND dp.validUntil < :today")
+    int markExpired(@Param("ids") Collection<Long> ids,
+                    @Param("statuses") Collection<DigitalPrescription.PrescriptionStatus> statuses,
+                    @Param("expired") DigitalPrescription.PrescriptionStatus expired,
+                    @Param("today") LocalDate today,
+                    @Param("now") LocalDateTime now);
+    
+    // Keyset page of issued prescriptions expiring by the horizon whose patient has not been told yet.
+    // Rows are locked so a concurrent sweep cannot claim the same prescriptions.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT dp FROM DigitalPrescription dp WHERE dp.status = 'ISSUED' AND dp.expiryNotifiedAt IS NULL " +
+           "AND dp.expiryDate <= :horizon AND dp.id > :afterId ORDER BY dp.id ASC")
+    List<DigitalPrescription> findUnnotifiedExpiring(@Param("horizon") LocalDate horizon,
+                                                     @Param("afterId") Long afterId,
+                                                     Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE DigitalPrescription dp SET dp.expiryNotifiedAt = :now WHERE dp.id IN :ids AND dp.expiryNotifiedAt IS NULL")
+    int markExpiryNotified(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+    
     Long countByDoctorAndStatus(User doctor, DigitalPrescription.PrescriptionStatus status);
     
     Long countByPatientAndStatus(User patient, DigitalPrescription.PrescriptionStatus status);
@@ -0,0 +1,17 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.entity.NotificationInboxState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface NotificationInboxStateRepository extends JpaRepository<NotificationInboxState, Long> {
+
+    // Relative update so it cannot lose increments made concurrently by the inbox writer
+    @Modifying
+    @Query("UPDATE NotificationInboxState s SET s.unreadCount = CASE WHEN s.unreadCount > :count THEN s.unreadCount - :count ELSE 0 END WHERE s.userId = :userId")
+    int decrementUnreadCount(@Param("userId") Long userId, @Param("count") long count);
+}
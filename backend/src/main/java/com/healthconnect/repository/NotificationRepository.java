@@ -0,0 +1,36 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.entity.Notification;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationRepository extends JpaRepository<Notification, Long> {
+
+    Page<Notification> findByUserIdOrderBySequenceNumberDesc(Long userId, Pageable pageable);
+
+    Page<Notification> findByUserIdAndIsReadFalseOrderBySequenceNumberDesc(Long userId, Pageable pageable);
+
+    List<Notification> findByUserIdAndSequenceNumberGreaterThanOrderBySequenceNumberAsc(Long userId, Long sequenceNumber, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true, n.readAt = :readAt WHERE n.userId = :userId AND n.isRead = false AND n.sequenceNumber IN :sequences")
+    int markAsRead(@Param("userId") Long userId,
+                   @Param("sequences") Collection<Long> sequences,
+                   @Param("readAt") LocalDateTime readAt);
+
+    @Modifying
+    @Query("UPDATE Notification n SET n.isRead = true, n.readAt = :readAt WHERE n.userId = :userId AND n.isRead = false AND n.sequenceNumber <= :upToSequence")
+    int markAsReadUpTo(@Param("userId") Long userId,
+                       @Param("upToSequence") Long upToSequence,
+                       @Param("readAt") LocalDateTime readAt);
+}
@@ -0,0 +1,9 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.entity.SweeperWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SweeperWatermarkRepository extends JpaRepository<SweeperWatermark, String> {
+}
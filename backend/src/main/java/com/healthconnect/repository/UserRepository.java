@@ -37,6 +37,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // Find user by ID and role
     Optional<User> findByIdAndRoleAndIsActiveTrue(Long id, UserRole role);
 
+    // Ids of all doctors, for the slot index
+    @Query("SELECT u.id FROM User u WHERE u.role = 'DOCTOR'")
+    List<Long> findDoctorIds();
+
     // Get distinct specializations
     @Query("SELECT DISTINCT u.specialization FROM User u WHERE u.role = 'DOCTOR' AND u.specialization IS NOT NULL AND u.isActive = true")
     List<String> findDistinctSpecializations();
@@ -2,12 +2,15 @@ package com.healthconnect.repository;
 
 import com.healthconnect.entity.User;
 import com.healthconnect.entity.VideoConsultation;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -33,11 +36,36 @@ public interface VideoConsultationRepository extends JpaRepository<VideoConsulta
     @Query("SELECT vc FROM VideoConsultation vc WHERE vc.patient = :patient AND vc.scheduledStartTime >= :now AND vc.status IN ('SCHEDULED', 'WAITING_FOR_PATIENT', 'WAITING_FOR_DOCTOR') ORDER BY vc.scheduledStartTime ASC")
     List<VideoConsultation> findUpcomingConsultationsForPatient(@Param("patient") User patient, @Param("now") LocalDateTime now);
     
-    @Query("SELECT vc FROM VideoConsultation vc WHERE vc.status = 'IN_PROGRESS' AND vc.actualStartTime < :cutoff")
-    List<VideoConsultation> findLongRunningConsultations(@Param("cutoff") LocalDateTime cutoff);
+    @Query("SELECT vc FROM VideoConsultation vc JOIN FETCH vc.doctor JOIN FETCH vc.patient " +
+           "WHERE vc.scheduledStartTime >= :from AND vc.scheduledStartTime < :to " +
+           "AND vc.status IN ('SCHEDULED', 'WAITING_FOR_DOCTOR', 'WAITING_FOR_PATIENT')")
+    List<VideoConsultation> findStartingBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
     
-    @Query("SELECT vc FROM VideoConsultation vc WHERE vc.status IN ('WAITING_FOR_DOCTOR', 'WAITING_FOR_PATIENT') AND vc.scheduledStartTime < :cutoff")
-    List<VideoConsultation> findAbandonedConsultations(@Param("cutoff") LocalDateTime cutoff);
+    @Query("SELECT vc FROM VideoConsultation vc JOIN FETCH vc.doctor JOIN FETCH vc.patient WHERE vc.status IN :statuses")
+    List<VideoConsultation> findWithParticipantsByStatusIn(@Param("statuses") Collection<VideoConsultation.ConsultationStatus> statuses);
+    
+    // Keyset pages for the lifecycle sweeper, in id order after afterId.
+    @Query("SELECT vc FROM VideoConsultation vc WHERE vc.status = 'IN_PROGRESS' AND vc.actualStartTime < :cutoff " +
+           "AND vc.id > :afterId ORDER BY vc.id")
+    List<VideoConsultation> findLongRunningConsultations(@Param("cutoff") LocalDateTime cutoff,
+                                                         @Param("afterId") Long afterId,
+                                                         Pageable pageable);
+    
+    @Query("SELECT vc FROM VideoConsultation vc WHERE vc.status IN ('WAITING_FOR_DOCTOR', 'WAITING_FOR_PATIENT') " +
+           "AND vc.scheduledStartTime < :cutoff AND vc.id > :afterId ORDER BY vc.id")
+    List<VideoConsultation> findAbandonedConsultations(@Param("cutoff") LocalDateTime cutoff,
+                                                       @Param("afterId") Long afterId,
+                                                       Pageable pageable);
+    
+    // Changes the row only while it is still in one of the given statuses; returns 0 if it moved on meanwhile.
+    @Modifying
+    @Query("UPDATE VideoConsultation vc SET vc.status = :status, vc.endTime = :now, vc.updatedAt = :now, " +
+           "vc.durationMinutes = :durationMinutes WHERE vc.id = :id AND vc.status IN :fromStatuses")
+    int closeConsultation(@Param("id") Long id,
+                          @Param("fromStatuses") Collection<VideoConsultation.ConsultationStatus> fromStatuses,
+                          @Param("status") VideoConsultation.ConsultationStatus status,
+                          @Param("now") LocalDateTime now,
+                          @Param("durationMinutes") Integer durationMinutes);
     
     Long countByDoctorAndStatus(User doctor, VideoConsultation.ConsultationStatus status);
     
@@ -0,0 +1,66 @@
+package com.healthconnect.service;
+
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.repository.VideoConsultationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Signs the Agora tokens of consultations about to start, for both
+ * participants, with the channel, uid and lifetime the client asks for
+ * (room id, user id, {@code expire-seconds}). Joins at the top of the hour
+ * are then served from the token cache.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AgoraTokenPreIssuer {
+
+    private final VideoConsultationRepository consultationRepository;
+    private final AgoraTokenService agoraTokenService;
+
+    @Value("${app.agora.token-prewarm.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.agora.token-prewarm.lookahead-minutes:5}")
+    private long lookaheadMinutes;
+
+    @Value("${app.agora.token-prewarm.expire-seconds:3600}")
+    private int expireSeconds;
+
+    @Scheduled(initialDelayString = "${app.agora.token-prewarm.interval:60000}",
+               fixedDelayString = "${app.agora.token-prewarm.interval:60000}")
+    public void preIssueUpcomingTokens() {
+        if (!enabled || !agoraTokenService.isConfigurationValid()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            List<VideoConsultation> upcoming = consultationRepository.findStartingBetween(now, now.plusMinutes(lookaheadMinutes));
+            for (VideoConsultation consultation : upcoming) {
+                preIssue(consultation.getRoomId(), consultation.getDoctor().getId());
+                preIssue(consultation.getRoomId(), consultation.getPatient().getId());
+            }
+            if (!upcoming.isEmpty()) {
+                log.debug("Pre-issued Agora tokens for {} upcoming consultations", upcoming.size());
+            }
+        } catch (Exception e) {
+            log.error("Failed to pre-issue Agora tokens: {}", e.getMessage());
+        }
+    }
+
+    private void preIssue(String roomId, Long userId) {
+        try {
+            agoraTokenService.preIssueRtcToken(roomId, Math.toIntExact(userId), expireSeconds);
+        } catch (Exception e) {
+            log.warn("Failed to pre-issue Agora token for room {} and user {}: {}", roomId, userId, e.getMessage());
+        }
+    }
+}
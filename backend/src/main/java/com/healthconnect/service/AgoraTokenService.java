@@ -1,10 +1,35 @@
 package com.healthconnect.service;
 
 import io.agora.media.RtcTokenBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issues Agora RTC tokens. Tokens are cached per (channel, uid, role,
+ * lifetime) and handed out only while at least {@code refresh-before-seconds}
+ * or half their lifetime is left, whichever is more, so a late joiner never
+ * gets a token about to expire mid-call; after that a fresh one is signed.
+ * Concurrent requests for a token that is not cached share one
+ * generation: the first caller signs it and the others wait for its result,
+ * so a room full of participants joining at once costs one signature each.
+ *
+ * Cache hits, misses and requests that waited on another caller's generation
+ * are counted as {@code agora.token.requests}; signing time is the
+ * {@code agora.token.generation} timer.
+ */
 @Service
 @Slf4j
 public class AgoraTokenService {
@@ -15,8 +40,38 @@ public class AgoraTokenService {
     @Value("${agora.app.certificate}")
     private String appCertificate;
 
+    @Value("${app.agora.token-cache.enabled:true}")
+    private boolean cacheEnabled = true;
+
+    @Value("${app.agora.token-cache.refresh-before-seconds:1800}")
+    private long refreshBeforeSeconds = 1800;
+
+    private final Map<TokenKey, CompletableFuture<CachedToken>> tokens = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Timer generationTimer;
+    private Clock clock = Clock.systemUTC();
+
+    public AgoraTokenService(MeterRegistry meterRegistry) {
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.coalesced = requests(meterRegistry, "coalesced");
+        this.generationTimer = Timer.builder("agora.token.generation")
+                .description("Time to sign an Agora RTC token")
+                .register(meterRegistry);
+        Gauge.builder("agora.token.cache.size", tokens, Map::size)
+                .description("Agora RTC tokens held in the cache")
+                .register(meterRegistry);
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
     /**
-     * Generate a proper Agora RTC token using the official library
+     * Generate a proper Agora RTC token using the official library, or return
+     * a cached one with enough lifetime left
      */
     public String generateRtcToken(String channelName, int uid, int expireTimeInSeconds) {
         try {
@@ -24,23 +79,11 @@ public class AgoraTokenService {
                 log.warn("Agora configuration is invalid, returning null token for testing");
                 return null;
             }
-
-            long currentTimestamp = System.currentTimeMillis() / 1000;
-            long privilegeExpiredTs = currentTimestamp + expireTimeInSeconds;
-
-            // Use the official Agora token builder
-            RtcTokenBuilder tokenBuilder = new RtcTokenBuilder();
-            String token = tokenBuilder.buildTokenWithUid(
-                appId,
-                appCertificate,
-                channelName,
-                uid,
-                RtcTokenBuilder.Role.Role_Publisher,
-                (int) privilegeExpiredTs
-            );
-
-            log.info("Generated Agora token for channel: {}, uid: {}, expires: {}", channelName, uid, privilegeExpiredTs);
-            return token;
+            if (!cacheEnabled) {
+                misses.increment();
+                return buildToken(channelName, uid, RtcTokenBuilder.Role.Role_Publisher, expireTimeInSeconds).token();
+            }
+            return cachedToken(new TokenKey(channelName, uid, RtcTokenBuilder.Role.Role_Publisher, expireTimeInSeconds)).token();
 
         } catch (Exception e) {
             log.error("Error generating Agora token: {}", e.getMessage());
@@ -49,13 +92,30 @@ public class AgoraTokenService {
         }
     }
 
+    /**
+     * Signs the token ahead of time, so the first request for it is a cache hit.
+     */
+    public void preIssueRtcToken(String channelName, int uid, int expireTimeInSeconds) {
+        if (!cacheEnabled || !isConfigurationValid()) {
+            return;
+        }
+        cachedToken(new TokenKey(channelName, uid, RtcTokenBuilder.Role.Role_Publisher, expireTimeInSeconds));
+    }
 
+    /**
+     * Drops tokens past their reuse window.
+     */
+    @Scheduled(fixedDelayString = "${app.agora.token-cache.purge-interval:60000}")
+    public void purgeExpiredTokens() {
+        long now = clock.millis() / 1000;
+        tokens.values().removeIf(future -> future.isDone() && !isFresh(future, now));
+    }
 
     /**
      * Validate if the app configuration is valid
      */
     public boolean isConfigurationValid() {
-        return appId != null && !appId.isEmpty() && 
+        return appId != null && !appId.isEmpty() &&
                appCertificate != null && !appCertificate.isEmpty();
     }
 
@@ -65,4 +125,79 @@ public class AgoraTokenService {
     public String getAppId() {
         return appId;
     }
+
+    private CachedToken cachedToken(TokenKey key) {
+        long now = clock.millis() / 1000;
+        CompletableFuture<CachedToken> current = tokens.get(key);
+        if (current != null && isFresh(current, now)) {
+            hits.increment();
+            return current.join();
+        }
+
+        CompletableFuture<CachedToken> created = new CompletableFuture<>();
+        CompletableFuture<CachedToken> winner = tokens.compute(key, (k, existing) ->
+                existing != null && (!existing.isDone() || isFresh(existing, now)) ? existing : created);
+        if (winner != created) {
+            // Another request is signing this token, or just finished
+            (winner.isDone() ? hits : coalesced).increment();
+            try {
+                return winner.join();
+            } catch (CompletionException e) {
+                throw new RuntimeException("Agora token generation failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        misses.increment();
+        try {
+            CachedToken token = buildToken(key.channelName(), key.uid(), key.role(), key.expireSeconds());
+            created.complete(token);
+            return token;
+        } catch (RuntimeException e) {
+            tokens.remove(key, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private boolean isFresh(CompletableFuture<CachedToken> future, long now) {
+        if (!future.isDone() || future.isCompletedExceptionally()) {
+            return false;
+        }
+        return future.join().reuseUntil() > now;
+    }
+
+    private CachedToken buildToken(String channelName, int uid, RtcTokenBuilder.Role role, int expireTimeInSeconds) {
+        long start = System.nanoTime();
+        long currentTimestamp = clock.millis() / 1000;
+        long privilegeExpiredTs = currentTimestamp + expireTimeInSeconds;
+
+        // Use the official Agora token builder
+        RtcTokenBuilder tokenBuilder = new RtcTokenBuilder();
+        String token = tokenBuilder.buildTokenWithUid(
+            appId,
+            appCertificate,
+            channelName,
+            uid,
+            role,
+            (int) privilegeExpiredTs
+        );
+        generationTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        log.info("Generated Agora token for channel: {}, uid: {}, expires: {}", channelName, uid, privilegeExpiredTs);
+        long reuseUntil = privilegeExpiredTs - Math.max(refreshBeforeSeconds, expireTimeInSeconds / 2);
+        return new CachedToken(token, reuseUntil);
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("agora.token.requests")
+                .description("Agora RTC token requests by cache result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record TokenKey(String channelName, int uid, RtcTokenBuilder.Role role, int expireSeconds) {
+    }
+
+    private record CachedToken(String token, long reuseUntil) {
+    }
 }
@@ -0,0 +1,369 @@
+package com.healthconnect.service;
+
+import com.healthconnect.entity.Appointment;
+import com.healthconnect.entity.AppointmentStatus;
+import com.healthconnect.entity.SweeperWatermark;
+import com.healthconnect.repository.AppointmentRepository;
+import com.healthconnect.repository.SweeperWatermarkRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Sends appointment reminders at configurable offsets before the start time.
+ * Only reminders due within the look-ahead horizon are held in memory: the
+ * loader extends the horizon a slice at a time and AppointmentService reports
+ * creates, updates and cancellations after commit, so nothing is rescanned.
+ * Due reminders are checked against the current appointment before sending,
+ * which drops any that a concurrent change made stale.
+ *
+ * One node runs the scheduler: the one that owns the job on the room
+ * ownership ring. The owner records in {@code sweeper_watermarks} how far it
+ * has sent, and a node that starts or takes over resumes from there, going
+ * back at most {@code catch-up-minutes}, so reminders that fell due while no
+ * node was running are sent late rather than skipped.
+ */
+@Component
+@Slf4j
+public class AppointmentReminderScheduler {
+
+    private static final Set<AppointmentStatus> INACTIVE_STATUSES =
+            EnumSet.of(AppointmentStatus.CANCELLED, AppointmentStatus.NO_SHOW, AppointmentStatus.COMPLETED);
+
+    private static final int WHEEL_SIZE = 64;
+
+    static final String JOB = "appointment-reminders";
+
+    // Reminders due just before a checkpoint may still be dispatching; resuming this much earlier re-sends them instead of losing them
+    private static final Duration CHECKPOINT_LAG = Duration.ofSeconds(10);
+
+    private final AppointmentRepository appointmentRepository;
+    private final NotificationService notificationService;
+    private final SweeperWatermarkRepository watermarkRepository;
+    private final RoomOwnership roomOwnership;
+    private Clock clock = Clock.systemDefaultZone();
+
+    // appointmentId -> pending reminders for that appointment
+    private final Map<Long, List<TimingWheel.Timeout<Reminder>>> scheduled = new ConcurrentHashMap<>();
+    private List<Duration> offsets = List.of(Duration.ofHours(24), Duration.ofHours(1), Duration.ofMinutes(10));
+    private TimingWheel<Reminder> wheel;
+
+    // Reminders firing up to this instant are either in the wheel or owned by the hooks; null while another node runs the job
+    private volatile LocalDateTime loadedUntil;
+
+    @Value("${app.reminders.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.reminders.lookahead-minutes:30}")
+    private long lookaheadMinutes;
+
+    @Value("${app.reminders.tick-ms:100}")
+    private long tickMs;
+
+    @Value("${app.reminders.catch-up-minutes:30}")
+    private long catchUpMinutes;
+
+    public AppointmentReminderScheduler(AppointmentRepository appointmentRepository,
+                                        NotificationService notificationService,
+                                        SweeperWatermarkRepository watermarkRepository,
+                                        RoomOwnership roomOwnership) {
+        this.appointmentRepository = appointmentRepository;
+        this.notificationService = notificationService;
+        this.watermarkRepository = watermarkRepository;
+        this.roomOwnership = roomOwnership;
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Value("${app.reminders.offsets:24h,1h,10m}")
+    public void setOffsets(String[] values) {
+        List<Duration> parsed = new ArrayList<>();
+        for (String value : values) {
+            parsed.add(DurationStyle.detectAndParse(value.trim()));
+        }
+        parsed.sort(Comparator.reverseOrder());
+        this.offsets = List.copyOf(parsed);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        createWheel();
+        wheel.start();
+    }
+
+    // Without start() the wheel only moves on advanceWheel()
+    void createWheel() {
+        wheel = new TimingWheel<>(JOB, tickMs, WHEEL_SIZE, clock, this::dispatch);
+        roomOwnership.onRebalance(() -> {
+            if (!roomOwnership.ownsJob(JOB)) {
+                release();
+            }
+        });
+    }
+
+    void advanceWheel() {
+        wheel.advance();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    /**
+     * Extends the horizon and schedules every reminder that fires in the new
+     * slice. Each offset maps the slice onto its own start-time range, so a
+     * reminder is loaded exactly once however often this runs. The first run
+     * on the owning node starts from the stored watermark, and reminders that
+     * fell due since then are sent on the next wheel pass.
+     */
+    @Scheduled(initialDelayString = "${app.reminders.initial-delay:5000}",
+               fixedDelayString = "${app.reminders.load-interval:60000}")
+    public void loadUpcoming() {
+        if (!enabled) {
+            return;
+        }
+        if (!roomOwnership.ownsJob(JOB)) {
+            release();
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now(clock);
+        LocalDateTime from = loadedUntil;
+        if (from == null) {
+            from = resumePoint(now);
+            log.info("Running appointment reminders on this node from {}", from);
+        }
+        checkpoint(now.minus(CHECKPOINT_LAG).isBefore(from) ? now.minus(CHECKPOINT_LAG) : from);
+
+        LocalDateTime to = now.plusMinutes(lookaheadMinutes);
+        if (!to.isAfter(from)) {
+            return;
+        }
+        // Publish the horizon before reading: changes committed from now on are scheduled by the hooks
+        loadedUntil = to;
+        long notBefore = toMillis(from);
+
+        int loaded = 0;
+        for (Duration offset : offsets) {
+            LocalDateTime startFrom = from.plus(offset);
+            LocalDateTime startTo = to.plus(offset);
+            List<Appointment> appointments = appointmentRepository.findStartingBetween(INACTIVE_STATUSES,
+                    startFrom.toLocalDate(), startFrom.toLocalTime(), startTo.toLocalDate(), startTo.toLocalTime());
+            for (Appointment appointment : appointments) {
+                if (schedule(new Reminder(appointment.getId(), offset, fireAt(appointment, offset)), notBefore)) {
+                    loaded++;
+                }
+            }
+        }
+
+        if (loaded > 0) {
+            log.info("Scheduled {} appointment reminders up to {}", loaded, to);
+        }
+    }
+
+    /** Reschedules an appointment's reminders once the surrounding transaction commits. */
+    public void appointmentChanged(Appointment appointment) {
+        if (!enabled) {
+            return;
+        }
+        Long appointmentId = appointment.getId();
+        List<Reminder> reminders = new ArrayList<>();
+        if (!INACTIVE_STATUSES.contains(appointment.getStatus())) {
+            for (Duration offset : offsets) {
+                reminders.add(new Reminder(appointmentId, offset, fireAt(appointment, offset)));
+            }
+        }
+        afterCommit(() -> {
+            cancelReminders(appointmentId);
+            long now = clock.millis();
+            reminders.forEach(reminder -> schedule(reminder, now));
+        });
+    }
+
+    public void appointmentCancelled(Long appointmentId) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> cancelReminders(appointmentId));
+    }
+
+    public int getPendingReminderCount() {
+        return wheel != null ? wheel.size() : 0;
+    }
+
+    public LocalDateTime getLoadedUntil() {
+        return loadedUntil;
+    }
+
+    /**
+     * Puts the reminder on the wheel unless it is due before {@code notBeforeMillis}
+     * or beyond the horizon, where the loader will pick it up.
+     */
+    private boolean schedule(Reminder reminder, long notBeforeMillis) {
+        LocalDateTime horizon = loadedUntil;
+        if (horizon == null || reminder.fireAtMillis() < notBeforeMillis || reminder.fireAtMillis() > toMillis(horizon)) {
+            return false;
+        }
+
+        boolean[] added = new boolean[1];
+        scheduled.compute(reminder.appointmentId(), (id, pending) -> {
+            List<TimingWheel.Timeout<Reminder>> next = new ArrayList<>();
+            if (pending != null) {
+                for (TimingWheel.Timeout<Reminder> timeout : pending) {
+                    if (!timeout.isPending()) {
+                        continue;
+                    }
+                    if (timeout.payload().equals(reminder)) {
+                        // Loaded and hooked for the same change; keep one
+                        return pending;
+                    }
+                    next.add(timeout);
+                }
+            }
+            next.add(wheel.schedule(reminder, reminder.fireAtMillis()));
+            added[0] = true;
+            return next;
+        });
+        return added[0];
+    }
+
+    /**
+     * Drops everything scheduled here; the node that owns the job now resumes
+     * from the watermark.
+     */
+    private void release() {
+        if (loadedUntil == null) {
+            return;
+        }
+        loadedUntil = null;
+        scheduled.keySet().forEach(this::cancelReminders);
+        log.info("Appointment reminders moved to another node");
+    }
+
+    private LocalDateTime resumePoint(LocalDateTime now) {
+        LocalDateTime earliest = now.minusMinutes(catchUpMinutes);
+        LocalDateTime completedUntil = watermarkRepository.findById(JOB)
+                .map(SweeperWatermark::getCompletedUntil)
+                .orElse(null);
+        return completedUntil != null && completedUntil.isAfter(earliest) ? completedUntil : earliest;
+    }
+
+    private void checkpoint(LocalDateTime completedUntil) {
+        try {
+            SweeperWatermark watermark = watermarkRepository.findById(JOB)
+                    .orElseGet(() -> SweeperWatermark.builder().jobName(JOB).build());
+            watermark.setCompletedUntil(completedUntil);
+            watermark.setUpdatedAt(LocalDateTime.now(clock));
+            watermarkRepository.save(watermark);
+        } catch (Exception e) {
+            log.warn("Failed to record appointment reminder watermark: {}", e.getMessage());
+        }
+    }
+
+    private void cancelReminders(Long appointmentId) {
+        List<TimingWheel.Timeout<Reminder>> pending = scheduled.remove(appointmentId);
+        if (pending != null) {
+            pending.forEach(TimingWheel.Timeout::cancel);
+        }
+    }
+
+    private void forget(Reminder reminder) {
+        scheduled.computeIfPresent(reminder.appointmentId(), (id, pending) -> {
+            List<TimingWheel.Timeout<Reminder>> remaining = pending.stream()
+                    .filter(timeout -> timeout.isPending() && !timeout.payload().equals(reminder))
+                    .collect(Collectors.toList());
+            return remaining.isEmpty() ? null : remaining;
+        });
+    }
+
+    // Runs on the wheel thread with every reminder that expired in one pass
+    private void dispatch(List<Reminder> due) {
+        Set<Long> ids = due.stream().map(Reminder::appointmentId).collect(Collectors.toSet());
+        Map<Long, Appointment> current = new HashMap<>();
+        appointmentRepository.findWithParticipantsByIdIn(ids).forEach(a -> current.put(a.getId(), a));
+
+        int sent = 0;
+        for (Reminder reminder : due) {
+            forget(reminder);
+            Appointment appointment = current.get(reminder.appointmentId());
+            if (appointment == null
+                    || INACTIVE_STATUSES.contains(appointment.getStatus())
+                    || fireAt(appointment, reminder.offset()) != reminder.fireAtMillis()) {
+                continue;
+            }
+            send(appointment, reminder.offset());
+            sent++;
+        }
+        log.debug("Sent {} of {} due appointment reminders", sent, due.size());
+    }
+
+    private void send(Appointment appointment, Duration offset) {
+        String lead = describe(offset);
+        String when = appointment.getDate() + " at " + appointment.getStartTime();
+        notificationService.sendAppointmentReminderNotification(appointment.getPatient().getId(), appointment.getId(),
+                String.format("Your appointment with Dr. %s starts in %s (%s).",
+                        appointment.getDoctor().getFullName(), lead, when));
+        notificationService.sendAppointmentReminderNotification(appointment.getDoctor().getId(), appointment.getId(),
+                String.format("Your appointment with %s starts in %s (%s).",
+                        appointment.getPatient().getFullName(), lead, when));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private long fireAt(Appointment appointment, Duration offset) {
+        return toMillis(LocalDateTime.of(appointment.getDate(), appointment.getStartTime()).minus(offset));
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(clock.getZone()).toInstant().toEpochMilli();
+    }
+
+    private static String describe(Duration offset) {
+        long minutes = offset.toMinutes();
+        if (minutes % 60 != 0) {
+            return minutes == 1 ? "1 minute" : minutes + " minutes";
+        }
+        long hours = minutes / 60;
+        return hours == 1 ? "1 hour" : hours + " hours";
+    }
+
+    private record Reminder(Long appointmentId, Duration offset, long fireAtMillis) {}
+}
@@ -1,20 +1,28 @@
 package com.healthconnect.service;
 
+import com.healthconnect.dto.AppointmentCursor;
 import com.healthconnect.dto.AppointmentRequest;
 import com.healthconnect.dto.AppointmentUpdateRequest;
 import com.healthconnect.dto.TimeSlotResponse;
 import com.healthconnect.entity.*;
 import com.healthconnect.repository.AppointmentRepository;
+import com.healthconnect.repository.AppointmentSpecifications;
 import com.healthconnect.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -25,6 +33,17 @@ public class AppointmentService {
     
     private final AppointmentRepository appointmentRepository;
     private final UserRepository userRepository;
+    private final AppointmentReminderScheduler reminderScheduler;
+    private final DoctorSlotIndex slotIndex;
+
+    @Value("${app.appointments.page-size:200}")
+    private int defaultPageSize = 200;
+
+    @Value("${app.appointments.max-page-size:500}")
+    private int maxPageSize = 500;
+
+    @Value("${app.slots.max-range-days:31}")
+    private int maxSlotRangeDays = 31;
     
     // Create a new appointment
     public Appointment createAppointment(AppointmentRequest request, User patient) {
@@ -82,27 +101,52 @@ public class AppointmentService {
             appointment = appointmentRepository.save(appointment);
         }
 
+        reminderScheduler.appointmentChanged(appointment);
+        slotIndex.appointmentChanged(appointment);
         return appointment;
     }
     
-    // Get appointments for current user
-    public List<Appointment> getAppointments(User user, AppointmentStatus status, 
-                                           AppointmentType type, LocalDate startDate, LocalDate endDate) {
-        List<Appointment> appointments;
-        
-        if (user.isDoctor()) {
-            appointments = appointmentRepository.findByDoctorOrderByDateAscStartTimeAsc(user);
-        } else {
-            appointments = appointmentRepository.findByPatientOrderByDateAscStartTimeAsc(user);
+    // Get appointments for current user, one keyset page at a time in (date, startTime, id) order.
+    // Filters and paging run in the database, so a page costs the same however long the history is.
+    // Without a cursor or limit every match is returned, as for clients that predate paging.
+    @Transactional(readOnly = true)
+    public AppointmentPage getAppointments(User user, AppointmentStatus status, AppointmentType type,
+                                           LocalDate startDate, LocalDate endDate,
+                                           AppointmentCursor after, Integer limit) {
+        Specification<Appointment> filter = Specification
+                .where(user.isDoctor()
+                        ? AppointmentSpecifications.forDoctor(user.getId())
+                        : AppointmentSpecifications.forPatient(user.getId()))
+                .and(AppointmentSpecifications.hasStatus(status))
+                .and(AppointmentSpecifications.hasType(type))
+                .and(AppointmentSpecifications.onOrAfter(startDate))
+                .and(AppointmentSpecifications.onOrBefore(endDate))
+                .and(AppointmentSpecifications.after(after))
+                .and(AppointmentSpecifications.fetchParticipants());
+
+        if (after == null && limit == null) {
+            return new AppointmentPage(appointmentRepository.findBy(filter, query -> query
+                    .sortBy(Sort.by("date", "startTime", "id"))
+                    .all()), null);
         }
-        
-        // Apply filters
-        return appointments.stream()
-                .filter(a -> status == null || a.getStatus() == status)
-                .filter(a -> type == null || a.getType() == type)
-                .filter(a -> startDate == null || !a.getDate().isBefore(startDate))
-                .filter(a -> endDate == null || !a.getDate().isAfter(endDate))
-                .toList();
+
+        // One extra row tells whether another page follows, without a count query
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        List<Appointment> rows = appointmentRepository.findBy(filter, query -> query
+                .sortBy(Sort.by("date", "startTime", "id"))
+                .limit(pageSize + 1)
+                .all());
+        if (rows.size() <= pageSize) {
+            return new AppointmentPage(rows, null);
+        }
+        List<Appointment> page = rows.subList(0, pageSize);
+        return new AppointmentPage(page, AppointmentCursor.of(page.get(pageSize - 1)));
+    }
+
+    /**
+     * A page of appointments, and where the next one starts (null on the last page).
+     */
+    public record AppointmentPage(List<Appointment> appointments, AppointmentCursor next) {
     }
     
     // Get appointment by ID
@@ -164,7 +208,10 @@ public class AppointmentService {
             appointment.setMeetingLink(request.getMeetingLink());
         }
         
-        return appointmentRepository.save(appointment);
+        Appointment saved = appointmentRepository.save(appointment);
+        reminderScheduler.appointmentChanged(saved);
+        slotIndex.appointmentChanged(saved);
+        return saved;
     }
     
     // Cancel appointment
@@ -174,45 +221,55 @@ public class AppointmentService {
         
         appointment.setStatus(AppointmentStatus.CANCELLED);
         appointmentRepository.save(appointment);
+        reminderScheduler.appointmentCancelled(appointment.getId());
+        slotIndex.appointmentCancelled(appointment.getId());
     }
     
-    // Get available time slots for a doctor
+    // Get available time slots for a doctor, from the slot index when it covers the date.
+    // Index hits need no connection, so no transaction is opened; on a miss each query runs in its own.
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public List<TimeSlotResponse> getAvailableTimeSlots(Long doctorId, LocalDate date) {
+        if (slotIndex.covers(doctorId, date)) {
+            return toTimeSlots(date, slotIndex.busySlots(doctorId, date));
+        }
+
         User doctor = userRepository.findById(doctorId)
                 .orElseThrow(() -> new RuntimeException("Doctor not found"));
         
         if (!doctor.isDoctor()) {
             throw new RuntimeException("User is not a doctor");
         }
+        slotIndex.registerDoctor(doctorId);
         
         // Get existing appointments for the doctor on this date
         List<Appointment> existingAppointments = appointmentRepository
                 .findByDoctorAndDateOrderByStartTimeAsc(doctor, date);
         
-        // Generate time slots (9 AM to 5 PM, 30-minute slots)
-        List<TimeSlotResponse> timeSlots = new ArrayList<>();
-        LocalTime currentTime = LocalTime.of(9, 0);
-        LocalTime endTime = LocalTime.of(17, 0);
-
-        while (currentTime.isBefore(endTime)) {
-            LocalTime slotEnd = currentTime.plusMinutes(30);
-            TimeSlotResponse slot = new TimeSlotResponse(date, currentTime, slotEnd);
-
-            // Check if this slot conflicts with existing appointments
-            final LocalTime finalCurrentTime = currentTime;
-            final LocalTime finalSlotEnd = slotEnd;
-            boolean isAvailable = existingAppointments.stream()
-                    .noneMatch(apt -> apt.getStatus() != AppointmentStatus.CANCELLED &&
-                                     apt.getStatus() != AppointmentStatus.NO_SHOW &&
-                                     isTimeSlotConflict(finalCurrentTime, finalSlotEnd, apt.getStartTime(), apt.getEndTime()));
-
-            slot.setAvailable(isAvailable);
-            timeSlots.add(slot);
+        long busy = 0;
+        for (Appointment apt : existingAppointments) {
+            if (apt.getStatus() != AppointmentStatus.CANCELLED && apt.getStatus() != AppointmentStatus.NO_SHOW) {
+                busy |= DoctorSlotIndex.maskOf(apt.getStartTime(), apt.getEndTime());
+            }
+        }
+        return toTimeSlots(date, busy);
+    }
 
-            currentTime = slotEnd;
+    // Get available time slots for each day of a range (inclusive)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Map<LocalDate, List<TimeSlotResponse>> getAvailableTimeSlots(Long doctorId, LocalDate from, LocalDate to) {
+        if (to.isBefore(from) || from.plusDays(maxSlotRangeDays).isBefore(to.plusDays(1))) {
+            throw new RuntimeException("Date range must cover 1 to " + maxSlotRangeDays + " days");
         }
-        
-        return timeSlots;
+
+        Map<LocalDate, List<TimeSlotResponse>> slots = new LinkedHashMap<>();
+        if (slotIndex.covers(doctorId, from)) {
+            slotIndex.busySlots(doctorId, from, to).forEach((date, busy) -> slots.put(date, toTimeSlots(date, busy)));
+            return slots;
+        }
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            slots.put(date, getAvailableTimeSlots(doctorId, date));
+        }
+        return slots;
     }
     
     // Get today's appointments for a user
@@ -227,9 +284,18 @@ public class AppointmentService {
     }
     
     // Helper methods
-    private boolean isTimeSlotConflict(LocalTime slot1Start, LocalTime slot1End, 
-                                      LocalTime slot2Start, LocalTime slot2End) {
-        return slot1Start.isBefore(slot2End) && slot1End.isAfter(slot2Start);
+    // Slots of the day (9 AM to 5 PM, 30-minute slots), free unless their bit is set
+    private static List<TimeSlotResponse> toTimeSlots(LocalDate date, long busy) {
+        List<TimeSlotResponse> timeSlots = new ArrayList<>(DoctorSlotIndex.SLOTS_PER_DAY);
+        LocalTime currentTime = DoctorSlotIndex.DAY_START;
+        for (int slot = 0; slot < DoctorSlotIndex.SLOTS_PER_DAY; slot++) {
+            LocalTime slotEnd = currentTime.plusMinutes(DoctorSlotIndex.SLOT_MINUTES);
+            TimeSlotResponse timeSlot = new TimeSlotResponse(date, currentTime, slotEnd);
+            timeSlot.setAvailable((busy & (1L << slot)) == 0);
+            timeSlots.add(timeSlot);
+            currentTime = slotEnd;
+        }
+        return timeSlots;
     }
     
     private String generateMeetingLink(Appointment appointment) {
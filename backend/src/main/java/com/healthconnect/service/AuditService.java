@@ -3,6 +3,7 @@ package com.healthconnect.service;
 import com.healthconnect.entity.AuditLog;
 import com.healthconnect.entity.User;
 import com.healthconnect.entity.UserRole;
+import com.healthconnect.entity.VideoConsultation;
 import com.healthconnect.repository.AuditLogRepository;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -85,6 +86,28 @@ public class AuditService {
                 "Exported " + dataType + ": " + exportDetails, AuditLog.RiskLevel.HIGH, "HIPAA_EXPORT");
     }
     
+    /**
+     * Records system-initiated consultation transitions as one saveAll, in the
+     * caller's transaction, so they commit with the change they describe.
+     */
+    public void logVideoConsultationTransitions(List<VideoConsultation> consultations, String action, String details) {
+        if (consultations.isEmpty()) {
+            return;
+        }
+        List<AuditLog> entries = consultations.stream()
+                .map(consultation -> AuditLog.builder()
+                        .action(action)
+                        .resourceType("VIDEO_CONSULTATION")
+                        .resourceId(String.valueOf(consultation.getId()))
+                        .details(details)
+                        .status(AuditLog.AuditStatus.SUCCESS)
+                        .riskLevel(AuditLog.RiskLevel.MEDIUM)
+                        .complianceFlags("HIPAA_SENSITIVE")
+                        .build())
+                .toList();
+        auditLogRepository.saveAll(entries);
+    }
+    
     private void logAudit(User user, String action, String resourceType, String resourceId, 
                          String details, AuditLog.RiskLevel riskLevel, String complianceFlags) {
         
@@ -0,0 +1,400 @@
+package com.healthconnect.service;
+
+import com.healthconnect.dto.CallQualityMetrics;
+import com.healthconnect.dto.CallQualityReport;
+import com.healthconnect.entity.CallQualityWindow;
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.repository.CallQualityWindowRepository;
+import com.healthconnect.repository.VideoConsultationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Ingests call-quality metrics without touching the database per post. Each
+ * consultation keeps a ring buffer of its latest samples and one set of
+ * latency, jitter and packet-loss histograms per {@code window-seconds}
+ * window. A scheduled flush writes the open windows as
+ * {@code call_quality_windows} rows in one JDBC batch.
+ *
+ * Reports merge the stored windows with the ones not yet flushed, including
+ * windows a flush has taken but not yet committed, so percentiles per
+ * consultation or per doctor in a time range are current to the last post.
+ * A report never runs while a flush commits, so no window is counted twice.
+ */
+@Service
+@Slf4j
+public class CallQualityService {
+
+    private static final String INSERT_WINDOW_SQL =
+            "INSERT INTO call_quality_windows (consultation_id, doctor_id, window_start, sample_count, " +
+            "latency_histogram, jitter_histogram, packet_loss_histogram, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CallQualityWindowRepository windowRepository;
+    private final VideoConsultationRepository consultationRepository;
+    private final TransactionTemplate flushTransaction;
+    private final Counter samplesReceived;
+
+    // consultationId -> samples and windows not yet flushed
+    private final Map<Long, ConsultationQuality> consultations = new ConcurrentHashMap<>();
+    // Reports read, a flush writes: stored rows and flushing windows change together
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    @Value("${app.quality.window-seconds:60}")
+    private long windowSeconds = 60;
+
+    @Value("${app.quality.recent-samples:120}")
+    private int recentSamples = 120;
+
+    @Value("${app.quality.idle-eviction-minutes:30}")
+    private long idleEvictionMinutes = 30;
+
+    public CallQualityService(JdbcTemplate jdbcTemplate,
+                              CallQualityWindowRepository windowRepository,
+                              VideoConsultationRepository consultationRepository,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.windowRepository = windowRepository;
+        this.consultationRepository = consultationRepository;
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.samplesReceived = Counter.builder("webrtc.quality.samples")
+                .description("Call-quality metric posts received")
+                .register(meterRegistry);
+    }
+
+    public void record(CallQualityMetrics metrics, Long userId) {
+        if (metrics.getConsultationId() == null) {
+            throw new IllegalArgumentException("Consultation id is required");
+        }
+        LocalDateTime windowStart = truncate(LocalDateTime.now(), windowSeconds);
+        while (true) {
+            ConsultationQuality quality = participantState(metrics.getConsultationId(), userId);
+            if (quality.record(metrics, windowStart)) {
+                break;
+            }
+            // Evicted between lookup and record; the next lookup starts a fresh state
+        }
+        samplesReceived.increment();
+    }
+
+    public List<CallQualityMetrics> getRecentSamples(Long consultationId, Long userId) {
+        return participantState(consultationId, userId).recent();
+    }
+
+    public CallQualityReport getConsultationReport(Long consultationId, Long userId,
+                                                   LocalDateTime from, LocalDateTime to, Integer intervalMinutes) {
+        participantState(consultationId, userId);
+        Range range = range(from, to);
+        return report("consultation", consultationId, range, intervalMinutes,
+                () -> windowRepository.findForConsultation(consultationId, range.from, range.to),
+                quality -> quality.consultationId.equals(consultationId));
+    }
+
+    public CallQualityReport getDoctorReport(Long doctorId, Long userId,
+                                             LocalDateTime from, LocalDateTime to, Integer intervalMinutes) {
+        if (!doctorId.equals(userId)) {
+            throw new RuntimeException("Access denied to this doctor's call quality");
+        }
+        Range range = range(from, to);
+        return report("doctor", doctorId, range, intervalMinutes,
+                () -> windowRepository.findForDoctor(doctorId, range.from, range.to),
+                quality -> quality.doctorId.equals(doctorId));
+    }
+
+    /**
+     * Writes every open window in a single JDBC batch, in its own transaction.
+     * Windows that fail to write are put back for the next flush.
+     */
+    @Scheduled(fixedDelayString = "${app.quality.flush-interval:30000}")
+    public synchronized int flush() {
+        List<ConsultationQuality> drained = new ArrayList<>();
+        List<Object[]> args = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (ConsultationQuality quality : consultations.values()) {
+            Map<LocalDateTime, WindowSummary> windows = quality.drain();
+            if (windows.isEmpty()) {
+                continue;
+            }
+            drained.add(quality);
+            windows.forEach((windowStart, window) -> args.add(new Object[]{
+                    quality.consultationId, quality.doctorId, Timestamp.valueOf(windowStart), window.samples,
+                    window.latency.encode(), window.jitter.encode(), window.packetLoss.encode(), now}));
+        }
+
+        if (!args.isEmpty()) {
+            flushLock.writeLock().lock();
+            try {
+                flushTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_WINDOW_SQL, args));
+                drained.forEach(ConsultationQuality::flushed);
+            } catch (RuntimeException e) {
+                drained.forEach(ConsultationQuality::restore);
+                log.warn("Failed to flush {} call-quality windows, retrying on the next flush: {}", args.size(), e.getMessage());
+                return 0;
+            } finally {
+                flushLock.writeLock().unlock();
+            }
+        }
+
+        LocalDateTime idleCutoff = LocalDateTime.now().minusMinutes(idleEvictionMinutes);
+        consultations.values().removeIf(quality -> quality.evictIfIdle(idleCutoff));
+
+        if (!args.isEmpty()) {
+            log.debug("Flushed {} call-quality windows for {} consultations", args.size(), drained.size());
+        }
+        return args.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Failed to flush call-quality windows on shutdown: {}", e.getMessage());
+        }
+    }
+
+    public int getPendingConsultationCount() {
+        return consultations.size();
+    }
+
+    private ConsultationQuality participantState(Long consultationId, Long userId) {
+        ConsultationQuality quality = consultations.get(consultationId);
+        if (quality == null) {
+            VideoConsultation consultation = consultationRepository.findById(consultationId)
+                    .orElseThrow(() -> new RuntimeException("Consultation not found"));
+            ConsultationQuality loaded = new ConsultationQuality(consultationId,
+                    consultation.getDoctor().getId(), consultation.getPatient().getId(), recentSamples);
+            quality = consultations.putIfAbsent(consultationId, loaded);
+            if (quality == null) {
+                quality = loaded;
+            }
+        }
+        if (!userId.equals(quality.doctorId) && !userId.equals(quality.patientId)) {
+            throw new RuntimeException("Access denied to this consultation");
+        }
+        return quality;
+    }
+
+    private CallQualityReport report(String scope, Long scopeId, Range range, Integer intervalMinutes,
+                                     Supplier<List<CallQualityWindow>> stored, Predicate<ConsultationQuality> pending) {
+        if (intervalMinutes != null && intervalMinutes < 1) {
+            throw new IllegalArgumentException("Interval must be at least one minute");
+        }
+        WindowSummary overall = new WindowSummary();
+        Map<LocalDateTime, WindowSummary> series = new TreeMap<>();
+
+        flushLock.readLock().lock();
+        try {
+            for (CallQualityWindow row : stored.get()) {
+                WindowSummary window = new WindowSummary();
+                window.samples = row.getSampleCount();
+                window.latency = QualityHistogram.decode(row.getLatencyHistogram());
+                window.jitter = QualityHistogram.decode(row.getJitterHistogram());
+                window.packetLoss = QualityHistogram.decode(row.getPacketLossHistogram());
+                accumulate(row.getWindowStart(), window, overall, series, intervalMinutes);
+            }
+            for (ConsultationQuality quality : consultations.values()) {
+                if (pending.test(quality)) {
+                    quality.forEachPending(range, (windowStart, window) ->
+                            accumulate(windowStart, window, overall, series, intervalMinutes));
+                }
+            }
+        } finally {
+            flushLock.readLock().unlock();
+        }
+
+        List<CallQualityReport.Interval> intervals = null;
+        if (intervalMinutes != null) {
+            intervals = new ArrayList<>(series.size());
+            for (Map.Entry<LocalDateTime, WindowSummary> entry : series.entrySet()) {
+                WindowSummary window = entry.getValue();
+                intervals.add(CallQualityReport.Interval.builder()
+                        .start(entry.getKey())
+                        .samples(window.samples)
+                        .latencyMs(percentiles(window.latency))
+                        .jitterMs(percentiles(window.jitter))
+                        .packetLossPercentage(percentiles(window.packetLoss))
+                        .build());
+            }
+        }
+
+        return CallQualityReport.builder()
+                .scope(scope)
+                .scopeId(scopeId)
+                .from(range.from)
+                .to(range.to)
+                .samples(overall.samples)
+                .latencyMs(percentiles(overall.latency))
+                .jitterMs(percentiles(overall.jitter))
+                .packetLossPercentage(percentiles(overall.packetLoss))
+                .series(intervals)
+                .build();
+    }
+
+    private static void accumulate(LocalDateTime windowStart, WindowSummary window, WindowSummary overall,
+                                   Map<LocalDateTime, WindowSummary> series, Integer intervalMinutes) {
+        overall.merge(window);
+        if (intervalMinutes != null) {
+            series.computeIfAbsent(truncate(windowStart, intervalMinutes * 60L), start -> new WindowSummary()).merge(window);
+        }
+    }
+
+    private static CallQualityReport.Percentiles percentiles(QualityHistogram histogram) {
+        return CallQualityReport.Percentiles.builder()
+                .p50(histogram.percentile(50))
+                .p90(histogram.percentile(90))
+                .p95(histogram.percentile(95))
+                .p99(histogram.percentile(99))
+                .max(histogram.getCount() > 0 ? histogram.getMax() : null)
+                .build();
+    }
+
+    private static Range range(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now().plusSeconds(1);
+        LocalDateTime start = from != null ? from : end.minusHours(24);
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("Report range must start before it ends");
+        }
+        return new Range(start, end);
+    }
+
+    private static LocalDateTime truncate(LocalDateTime time, long seconds) {
+        long epochSecond = time.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(epochSecond - Math.floorMod(epochSecond, seconds), 0, ZoneOffset.UTC);
+    }
+
+    private record Range(LocalDateTime from, LocalDateTime to) {
+    }
+
+    private static final class WindowSummary {
+        private long samples;
+        private QualityHistogram latency = new QualityHistogram();
+        private QualityHistogram jitter = new QualityHistogram();
+        private QualityHistogram packetLoss = new QualityHistogram();
+
+        private void record(CallQualityMetrics metrics) {
+            samples++;
+            if (metrics.getLatencyMs() != null) {
+                latency.record(metrics.getLatencyMs());
+            }
+            if (metrics.getJitterMs() != null) {
+                jitter.record(metrics.getJitterMs());
+            }
+            if (metrics.getPacketLossPercentage() != null) {
+                packetLoss.record(metrics.getPacketLossPercentage());
+            }
+        }
+
+        private void merge(WindowSummary other) {
+            samples += other.samples;
+            latency.merge(other.latency);
+            jitter.merge(other.jitter);
+            packetLoss.merge(other.packetLoss);
+        }
+    }
+
+    /**
+     * Samples and open windows of one consultation. Guarded by its own lock,
+     * so posts for different consultations never contend.
+     */
+    private static final class ConsultationQuality {
+        private final Long consultationId;
+        private final Long doctorId;
+        private final Long patientId;
+        private final CallQualityMetrics[] recent;
+        private int next;
+        private int size;
+        private Map<LocalDateTime, WindowSummary> open = new TreeMap<>();
+        // Taken by the running flush, reported until it commits
+        private Map<LocalDateTime, WindowSummary> flushing = Map.of();
+        private LocalDateTime lastSampleAt = LocalDateTime.now();
+        private boolean evicted;
+
+        private ConsultationQuality(Long consultationId, Long doctorId, Long patientId, int recentSamples) {
+            this.consultationId = consultationId;
+            this.doctorId = doctorId;
+            this.patientId = patientId;
+            this.recent = new CallQualityMetrics[Math.max(1, recentSamples)];
+        }
+
+        private synchronized boolean record(CallQualityMetrics metrics, LocalDateTime windowStart) {
+            if (evicted) {
+                return false;
+            }
+            recent[next] = metrics;
+            next = (next + 1) % recent.length;
+            size = Math.min(size + 1, recent.length);
+            open.computeIfAbsent(windowStart, start -> new WindowSummary()).record(metrics);
+            lastSampleAt = LocalDateTime.now();
+            return true;
+        }
+
+        // Oldest first
+        private synchronized List<CallQualityMetrics> recent() {
+            List<CallQualityMetrics> samples = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                samples.add(recent[(next - size + i + recent.length) % recent.length]);
+            }
+            return samples;
+        }
+
+        private synchronized void forEachPending(Range range, BiConsumer<LocalDateTime, WindowSummary> action) {
+            BiConsumer<LocalDateTime, WindowSummary> inRange = (windowStart, window) -> {
+                if (!windowStart.isBefore(range.from) && windowStart.isBefore(range.to)) {
+                    action.accept(windowStart, window);
+                }
+            };
+            flushing.forEach(inRange);
+            open.forEach(inRange);
+        }
+
+        private synchronized Map<LocalDateTime, WindowSummary> drain() {
+            if (open.isEmpty()) {
+                return Map.of();
+            }
+            flushing = open;
+            open = new TreeMap<>();
+            return flushing;
+        }
+
+        private synchronized void flushed() {
+            flushing = Map.of();
+        }
+
+        private synchronized void restore() {
+            flushing.forEach((windowStart, window) ->
+                    open.computeIfAbsent(windowStart, start -> new WindowSummary()).merge(window));
+            flushing = Map.of();
+        }
+
+        private synchronized boolean evictIfIdle(LocalDateTime cutoff) {
+            evicted = open.isEmpty() && flushing.isEmpty() && lastSampleAt.isBefore(cutoff);
+            return evicted;
+        }
+    }
+}
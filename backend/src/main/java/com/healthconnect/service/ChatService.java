@@ -14,6 +14,8 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -29,6 +31,7 @@ public class ChatService {
     private final UserRepository userRepository;
     private final AppointmentRepository appointmentRepository;
     private SimpMessagingTemplate messagingTemplate;
+    private NotificationService notificationService;
 
     public ChatService(ChatRepository chatRepository, MessageRepository messageRepository,
                       UserRepository userRepository, AppointmentRepository appointmentRepository) {
@@ -42,6 +45,11 @@ public class ChatService {
     public void setMessagingTemplate(SimpMessagingTemplate messagingTemplate) {
         this.messagingTemplate = messagingTemplate;
     }
+
+    @Autowired(required = false)
+    public void setNotificationService(NotificationService notificationService) {
+        this.notificationService = notificationService;
+    }
     
     public ChatResponse createOrGetChat(Long currentUserId, Long participantId) {
         return createOrGetChat(currentUserId, participantId, null, ChatType.GENERAL, null);
@@ -136,6 +144,8 @@ public class ChatService {
         // Update chat timestamp
         chat.setUpdatedAt(message.getCreatedAt());
         chatRepository.save(chat);
+
+        notifyRecipient(chat, sender, message);
         
         return convertToMessageResponse(message);
     }
@@ -231,6 +241,8 @@ public class ChatService {
         chat.setUpdatedAt(message.getCreatedAt());
         chatRepository.save(chat);
 
+        notifyRecipient(chat, sender, message);
+
         MessageResponse response = convertToMessageResponse(message);
 
         // Broadcast message to chat participants
@@ -299,6 +311,31 @@ public class ChatService {
         return response;
     }
 
+    private void notifyRecipient(Chat chat, User sender, Message message) {
+        if (notificationService == null) {
+            return;
+        }
+        User recipient = chat.getPatient().getId().equals(sender.getId()) ? chat.getDoctor() : chat.getPatient();
+        String content = message.getContent();
+        String preview = content.length() > 100 ? content.substring(0, 100) + "..." : content;
+        boolean urgent = Boolean.TRUE.equals(message.getIsUrgent());
+        // Only once the message is stored; bursts from the same sender are merged by the notification coalescer
+        afterCommit(() -> notificationService.sendChatMessageNotification(recipient, sender, preview, urgent));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
     private void broadcastMessage(MessageResponse message) {
         if (messagingTemplate != null) {
             try {
@@ -0,0 +1,26 @@
+package com.healthconnect.service;
+
+import com.healthconnect.dto.RoomCommand;
+
+/**
+ * Node-to-node calls used by {@link RoomOwnership}.
+ */
+public interface ClusterTransport {
+
+    /**
+     * A backend node: its id in {@code app.cluster.nodes} and the base URL other
+     * nodes reach it on.
+     */
+    record ClusterNode(String id, String baseUrl) {
+    }
+
+    /**
+     * True when the node answers as itself.
+     */
+    boolean ping(ClusterNode node);
+
+    /**
+     * Runs a room command on the node and returns its result.
+     */
+    <T> T send(ClusterNode node, RoomCommand command, Class<T> responseType);
+}
@@ -0,0 +1,157 @@
+package com.healthconnect.service;
+
+import com.healthconnect.entity.Appointment;
+import com.healthconnect.entity.AppointmentStatus;
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.repository.AppointmentRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prepares video calls a few minutes before they start, so the joins at the
+ * top of the hour find everything in place: the consultation record is
+ * created for video appointments that do not have one yet, and the signaling
+ * room is opened on its owning node. A join then only attaches a peer.
+ * Records created here send no notifications and write no audit entries;
+ * they are a follow-up when the patient has completed an earlier appointment
+ * with the same doctor, a routine check-up otherwise. Only the node owning
+ * the job scans.
+ *
+ * Each scan splits the upcoming calls into batches of {@code batch-size} and
+ * runs every batch after a random delay of up to {@code max-jitter-millis},
+ * capped at half the time left before the batch's first call, so a full hour
+ * of appointments is not created in one burst. Tokens are pre-issued by
+ * {@link AgoraTokenPreIssuer} once the records exist.
+ */
+@Component
+@Slf4j
+public class ConsultationPreWarmer {
+
+    private static final String JOB = "consultation-prewarm";
+    private static final Set<AppointmentStatus> INACTIVE_STATUSES =
+            EnumSet.of(AppointmentStatus.CANCELLED, AppointmentStatus.NO_SHOW, AppointmentStatus.COMPLETED);
+
+    private final AppointmentRepository appointmentRepository;
+    private final VideoConsultationService videoConsultationService;
+    private final WebRTCService webRTCService;
+    private final RoomOwnership roomOwnership;
+    private final ScheduledExecutorService executor;
+    // Appointments handed to a batch, by start time, so the next scan skips them
+    private final Map<Long, LocalDateTime> scheduled = new ConcurrentHashMap<>();
+
+    @Value("${app.video.prewarm.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.video.prewarm.lookahead-minutes:6}")
+    private long lookaheadMinutes = 6;
+
+    @Value("${app.video.prewarm.batch-size:20}")
+    private int batchSize = 20;
+
+    @Value("${app.video.prewarm.max-jitter-millis:30000}")
+    private long maxJitterMillis = 30000;
+
+    public ConsultationPreWarmer(AppointmentRepository appointmentRepository,
+                                 VideoConsultationService videoConsultationService,
+                                 WebRTCService webRTCService,
+                                 RoomOwnership roomOwnership) {
+        this.appointmentRepository = appointmentRepository;
+        this.videoConsultationService = videoConsultationService;
+        this.webRTCService = webRTCService;
+        this.roomOwnership = roomOwnership;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "consultation-prewarm");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Scheduled(initialDelayString = "${app.video.prewarm.interval:60000}",
+               fixedDelayString = "${app.video.prewarm.interval:60000}")
+    public void scan() {
+        if (!enabled || !roomOwnership.ownsJob(JOB)) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime to = now.plusMinutes(lookaheadMinutes);
+        scheduled.values().removeIf(start -> start.isBefore(now));
+        try {
+            List<Appointment> upcoming = appointmentRepository.findStartingBetween(INACTIVE_STATUSES,
+                            now.toLocalDate(), now.toLocalTime(), to.toLocalDate(), to.toLocalTime()).stream()
+                    .filter(Appointment::isVideoCall)
+                    .filter(appointment -> scheduled.putIfAbsent(appointment.getId(), startOf(appointment)) == null)
+                    .toList();
+            // Sorted by start time, so each batch's first call is its earliest
+            for (int from = 0; from < upcoming.size(); from += batchSize) {
+                List<Appointment> batch = upcoming.subList(from, Math.min(from + batchSize, upcoming.size()));
+                executor.schedule(() -> prewarm(batch), jitter(now, startOf(batch.get(0))), TimeUnit.MILLISECONDS);
+            }
+            if (!upcoming.isEmpty()) {
+                log.debug("Scheduled pre-warming of {} upcoming video consultations", upcoming.size());
+            }
+        } catch (Exception e) {
+            log.error("Failed to scan upcoming video consultations for pre-warming: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the consultation of each appointment, if missing, and opens its
+     * room. Returns the number of rooms opened.
+     */
+    public int prewarm(List<Appointment> appointments) {
+        int opened = 0;
+        for (Appointment appointment : appointments) {
+            try {
+                // Returns the existing consultation if the appointment already has one
+                VideoConsultation consultation = videoConsultationService.prepareConsultation(
+                        appointment, typeOf(appointment));
+                if (webRTCService.prewarmRoom(consultation.getRoomId())) {
+                    opened++;
+                }
+            } catch (Exception e) {
+                // Left for the next scan; the join path still works without it
+                scheduled.remove(appointment.getId());
+                log.warn("Failed to pre-warm video consultation for appointment {}: {}",
+                        appointment.getId(), e.getMessage());
+            }
+        }
+        return opened;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private long jitter(LocalDateTime now, LocalDateTime firstStart) {
+        long bound = Math.min(maxJitterMillis, Duration.between(now, firstStart).toMillis() / 2);
+        return bound > 0 ? ThreadLocalRandom.current().nextLong(bound) : 0;
+    }
+
+    private VideoConsultation.ConsultationType typeOf(Appointment appointment) {
+        boolean seenBefore = appointmentRepository.existsByDoctorIdAndPatientIdAndStatusAndDateBefore(
+                appointment.getDoctor().getId(), appointment.getPatient().getId(),
+                AppointmentStatus.COMPLETED, appointment.getDate());
+        return seenBefore ? VideoConsultation.ConsultationType.FOLLOW_UP : VideoConsultation.ConsultationType.ROUTINE_CHECKUP;
+    }
+
+    private static LocalDateTime startOf(Appointment appointment) {
+        return appointment.getDate().atTime(appointment.getStartTime());
+    }
+}
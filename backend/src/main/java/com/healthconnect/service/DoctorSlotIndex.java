@@ -0,0 +1,274 @@
+package com.healthconnect.service;
+
+import com.healthconnect.entity.Appointment;
+import com.healthconnect.entity.AppointmentStatus;
+import com.healthconnect.repository.AppointmentRepository;
+import com.healthconnect.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Booked time slots of every doctor, from today on, held as one bitmap per
+ * doctor and day: bit {@code i} is set when the slot starting at
+ * {@code DAY_START + i * SLOT_MINUTES} overlaps an active appointment. A day
+ * is a map lookup and a range of days is a sorted-map view, so availability
+ * is answered from memory without touching the database.
+ *
+ * The index is built from the database once the application is ready and
+ * rebuilt every {@code refresh-interval}, which also drops past days and
+ * picks up changes made by other nodes. Appointment changes on this node are
+ * applied after their transaction commits. Until the first build, and for
+ * dates or doctors it does not cover, callers fall back to the database.
+ * Booking itself is still checked against the database, so a stale bit can
+ * only show a slot as free that then fails to book.
+ */
+@Component
+@Slf4j
+public class DoctorSlotIndex {
+
+    public static final LocalTime DAY_START = LocalTime.of(9, 0);
+    public static final int SLOT_MINUTES = 30;
+    public static final int SLOTS_PER_DAY = 16;
+
+    // Appointments in these statuses do not occupy their slots
+    private static final Set<AppointmentStatus> FREE_STATUSES =
+            EnumSet.of(AppointmentStatus.CANCELLED, AppointmentStatus.NO_SHOW);
+
+    private final AppointmentRepository appointmentRepository;
+    private final UserRepository userRepository;
+
+    @Value("${app.slots.index.enabled:true}")
+    private boolean enabled = true;
+
+    private volatile State state;
+    // Changes committed while a rebuild reads the database, by appointment id (null: removed)
+    private final Map<Long, Booking> changedDuringRebuild = new HashMap<>();
+    private boolean rebuilding;
+
+    public DoctorSlotIndex(AppointmentRepository appointmentRepository, UserRepository userRepository) {
+        this.appointmentRepository = appointmentRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Whether {@link #busySlots} can answer for this doctor and date.
+     */
+    public boolean covers(Long doctorId, LocalDate date) {
+        State current = state;
+        return current != null && !date.isBefore(current.from) && current.doctorIds.contains(doctorId);
+    }
+
+    public long busySlots(Long doctorId, LocalDate date) {
+        NavigableMap<Long, Day> days = state.days.get(doctorId);
+        Day day = days != null ? days.get(date.toEpochDay()) : null;
+        return day != null ? day.busy : 0L;
+    }
+
+    /**
+     * Busy slots of each day from {@code from} to {@code to} inclusive, in date order.
+     */
+    public Map<LocalDate, Long> busySlots(Long doctorId, LocalDate from, LocalDate to) {
+        Map<LocalDate, Long> result = new LinkedHashMap<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            result.put(date, 0L);
+        }
+        NavigableMap<Long, Day> days = state.days.get(doctorId);
+        if (days != null) {
+            days.subMap(from.toEpochDay(), true, to.toEpochDay(), true)
+                    .forEach((epochDay, day) -> result.put(LocalDate.ofEpochDay(epochDay), day.busy));
+        }
+        return result;
+    }
+
+    /**
+     * A doctor validated against the database after the last build; from now
+     * on their availability is answered here.
+     */
+    public void registerDoctor(Long doctorId) {
+        State current = state;
+        if (current != null) {
+            current.doctorIds.add(doctorId);
+        }
+    }
+
+    /**
+     * The appointment was created or changed. Applied once the current
+     * transaction commits.
+     */
+    public void appointmentChanged(Appointment appointment) {
+        if (!enabled) {
+            return;
+        }
+        Long id = appointment.getId();
+        Booking booking = FREE_STATUSES.contains(appointment.getStatus()) ? null
+                : new Booking(appointment.getDoctor().getId(), appointment.getDate(),
+                              maskOf(appointment.getStartTime(), appointment.getEndTime()));
+        afterCommit(() -> apply(id, booking));
+    }
+
+    public void appointmentCancelled(Long appointmentId) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> apply(appointmentId, null));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${app.slots.index.refresh-interval:600000}",
+               fixedDelayString = "${app.slots.index.refresh-interval:600000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            rebuilding = true;
+            changedDuringRebuild.clear();
+        }
+        try {
+            LocalDate from = LocalDate.now();
+            List<Object[]> rows = appointmentRepository.findSlotRowsFrom(from, FREE_STATUSES);
+            State fresh = new State(from);
+            fresh.doctorIds.addAll(userRepository.findDoctorIds());
+            for (Object[] row : rows) {
+                fresh.put((Long) row[0], new Booking((Long) row[1], (LocalDate) row[2],
+                        maskOf((LocalTime) row[3], (LocalTime) row[4])));
+            }
+            synchronized (this) {
+                changedDuringRebuild.forEach(fresh::put);
+                state = fresh;
+            }
+            log.info("Built slot index with {} appointments from {} for {} doctors", rows.size(), from, fresh.doctorIds.size());
+        } catch (Exception e) {
+            log.error("Failed to build slot index, availability falls back to the database: {}", e.getMessage());
+        } finally {
+            synchronized (this) {
+                rebuilding = false;
+                changedDuringRebuild.clear();
+            }
+        }
+    }
+
+    /**
+     * Slots overlapping [start, end) as a bitmap.
+     */
+    public static long maskOf(LocalTime start, LocalTime end) {
+        long mask = 0;
+        for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+            LocalTime slotStart = DAY_START.plusMinutes((long) slot * SLOT_MINUTES);
+            LocalTime slotEnd = slotStart.plusMinutes(SLOT_MINUTES);
+            if (slotStart.isBefore(end) && slotEnd.isAfter(start)) {
+                mask |= 1L << slot;
+            }
+        }
+        return mask;
+    }
+
+    private synchronized void apply(Long appointmentId, Booking booking) {
+        if (rebuilding) {
+            changedDuringRebuild.put(appointmentId, booking);
+        }
+        State current = state;
+        if (current != null) {
+            current.put(appointmentId, booking);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private record Booking(Long doctorId, LocalDate date, long mask) {
+    }
+
+    /**
+     * One doctor's day: the slots of each appointment and their union. Written
+     * under the index's monitor, read without locking.
+     */
+    private static final class Day {
+        private final Map<Long, Long> masks = new HashMap<>();
+        private volatile long busy;
+
+        void put(Long appointmentId, long mask) {
+            masks.put(appointmentId, mask);
+            busy |= mask;
+        }
+
+        void remove(Long appointmentId) {
+            if (masks.remove(appointmentId) == null) {
+                return;
+            }
+            // Another appointment may share a slot, so the union is recomputed
+            long union = 0;
+            for (long mask : masks.values()) {
+                union |= mask;
+            }
+            busy = union;
+        }
+
+        boolean isEmpty() {
+            return masks.isEmpty();
+        }
+    }
+
+    private static final class State {
+        private final LocalDate from;
+        private final Set<Long> doctorIds = ConcurrentHashMap.newKeySet();
+        private final Map<Long, NavigableMap<Long, Day>> days = new ConcurrentHashMap<>();
+        // Where each indexed appointment is, so a change can clear its old day
+        private final Map<Long, Booking> bookings = new HashMap<>();
+
+        State(LocalDate from) {
+            this.from = from;
+        }
+
+        void put(Long appointmentId, Booking booking) {
+            Booking previous = booking != null ? bookings.put(appointmentId, booking) : bookings.remove(appointmentId);
+            if (previous != null) {
+                NavigableMap<Long, Day> doctorDays = days.get(previous.doctorId());
+                Day day = doctorDays != null ? doctorDays.get(previous.date().toEpochDay()) : null;
+                if (day != null) {
+                    day.remove(appointmentId);
+                    if (day.isEmpty()) {
+                        doctorDays.remove(previous.date().toEpochDay());
+                    }
+                }
+            }
+            if (booking != null && !booking.date().isBefore(from)) {
+                days.computeIfAbsent(booking.doctorId(), id -> new ConcurrentSkipListMap<>())
+                        .computeIfAbsent(booking.date().toEpochDay(), epochDay -> new Day())
+                        .put(appointmentId, booking.mask());
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.healthconnect.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Collects ICE candidates per (scope, sender, target) for a few milliseconds
+ * and hands them on as one batch. Candidates are gathered in bursts during call
+ * setup, so a burst leaves as one signaling frame instead of one per candidate.
+ * A batch is flushed when the window closes, when it reaches
+ * {@code max-batch} candidates, or when the sender's next offer or answer has to
+ * go out behind it.
+ *
+ * Callers decide whether the receivers understand batches; this class only
+ * buffers. Candidates received and batches sent are counted as
+ * {@code webrtc.ice.candidates} and {@code webrtc.ice.batches}.
+ */
+@Component
+@Slf4j
+public class IceCandidateBatcher {
+
+    private static final String SEPARATOR = "|";
+
+    private final Map<String, Batch> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Counter candidatesReceived;
+    private final Counter batchesSent;
+
+    @Value("${app.webrtc.ice-batching.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.webrtc.ice-batching.window-ms:20}")
+    private long windowMillis = 20;
+
+    @Value("${app.webrtc.ice-batching.max-batch:16}")
+    private int maxBatch = 16;
+
+    public IceCandidateBatcher(MeterRegistry meterRegistry) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ice-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.candidatesReceived = Counter.builder("webrtc.ice.candidates")
+                .description("ICE candidates received for batching")
+                .register(meterRegistry);
+        this.batchesSent = Counter.builder("webrtc.ice.batches")
+                .description("ICE candidate batches sent")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Adds a candidate to the open batch for this sender and target, opening
+     * one if needed. The sink of the batch's first candidate receives the batch.
+     */
+    public void add(String scope, String senderId, String targetId, Object candidate, Consumer<List<Object>> sink) {
+        candidatesReceived.increment();
+        String key = scope + SEPARATOR + senderId + SEPARATOR + (targetId != null ? targetId : "");
+        Batch[] full = new Batch[1];
+        pending.compute(key, (k, batch) -> {
+            if (batch == null) {
+                Batch opened = new Batch(sink);
+                opened.timer = scheduler.schedule(() -> flush(k, opened), windowMillis, TimeUnit.MILLISECONDS);
+                batch = opened;
+            }
+            batch.candidates.add(candidate);
+            if (batch.candidates.size() >= maxBatch) {
+                full[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+        if (full[0] != null) {
+            full[0].timer.cancel(false);
+            send(full[0]);
+        }
+    }
+
+    /**
+     * Sends every open batch of this sender now, so its candidates do not
+     * arrive after a later offer or answer.
+     */
+    public void flush(String scope, String senderId) {
+        drain(scope + SEPARATOR + senderId + SEPARATOR, true);
+    }
+
+    /**
+     * Drops the open batches of a sender that left.
+     */
+    public void discard(String scope, String senderId) {
+        drain(scope + SEPARATOR + senderId + SEPARATOR, false);
+    }
+
+    /**
+     * Drops the open batches of a closed room.
+     */
+    public void discard(String scope) {
+        drain(scope + SEPARATOR, false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        pending.clear();
+    }
+
+    private void flush(String key, Batch batch) {
+        if (pending.remove(key, batch)) {
+            send(batch);
+        }
+    }
+
+    private void drain(String prefix, boolean send) {
+        for (String key : pending.keySet()) {
+            if (!key.startsWith(prefix)) {
+                continue;
+            }
+            Batch batch = pending.remove(key);
+            if (batch != null) {
+                batch.timer.cancel(false);
+                if (send) {
+                    send(batch);
+                }
+            }
+        }
+    }
+
+    private void send(Batch batch) {
+        batchesSent.increment();
+        try {
+            batch.sink.accept(Collections.unmodifiableList(batch.candidates));
+        } catch (Exception e) {
+            log.warn("Failed to send ICE candidate batch: {}", e.getMessage());
+        }
+    }
+
+    private static final class Batch {
+        private final List<Object> candidates = new ArrayList<>();
+        private final Consumer<List<Object>> sink;
+        private volatile ScheduledFuture<?> timer;
+
+        private Batch(Consumer<List<Object>> sink) {
+            this.sink = sink;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.healthconnect.service;
+
+import com.healthconnect.dto.NotificationPayload;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges bursts of notifications with the same (user, type, related id) into
+ * one digest per window. A window is flushed when it expires or when it
+ * reaches the threshold; urgent notifications are never held back.
+ */
+@Component
+@Slf4j
+public class NotificationCoalescer {
+
+    private final NotificationInboxService notificationInboxService;
+    private final Map<DigestKey, Digest> windows = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private Set<String> coalescedTypes = Set.of("NEW_CHAT_MESSAGE");
+    private Clock clock = Clock.systemUTC();
+
+    @Value("${app.notifications.coalesce.window-ms:2000}")
+    private long windowMillis;
+
+    @Value("${app.notifications.coalesce.threshold:20}")
+    private int threshold;
+
+    public NotificationCoalescer(NotificationInboxService notificationInboxService) {
+        this.notificationInboxService = notificationInboxService;
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Value("${app.notifications.coalesce.types:NEW_CHAT_MESSAGE}")
+    public void setCoalescedTypes(String[] types) {
+        this.coalescedTypes = new HashSet<>(Arrays.asList(types));
+    }
+
+    public void submit(Long userId, NotificationPayload notification) {
+        if (!isCoalescible(notification)) {
+            notificationInboxService.enqueue(userId, notification);
+            return;
+        }
+
+        DigestKey key = new DigestKey(userId, notification.getType(), relatedKey(notification));
+        long now = clock.millis();
+        Digest digest = windows.compute(key, (k, existing) -> {
+            Digest d = existing != null ? existing : new Digest(now, notification);
+            d.add(notification);
+            return d;
+        });
+
+        if (digest.count >= threshold) {
+            flush(key, digest);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.notifications.coalesce.sweep-interval-ms:250}")
+    public void flushExpiredWindows() {
+        long cutoff = clock.millis() - windowMillis;
+        windows.forEach((key, digest) -> {
+            if (digest.openedAt <= cutoff) {
+                flush(key, digest);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        windows.forEach(this::flush);
+    }
+
+    public int getOpenWindowCount() {
+        return windows.size();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    private void flush(DigestKey key, Digest digest) {
+        // Only the thread that removes the window delivers it; later submits open a new one
+        if (!windows.remove(key, digest)) {
+            return;
+        }
+        if (digest.count > 1) {
+            coalescedCount.addAndGet(digest.count - 1);
+        }
+        notificationInboxService.enqueue(key.userId(), digest.toNotification());
+    }
+
+    private boolean isCoalescible(NotificationPayload notification) {
+        if (windowMillis <= 0) {
+            return false;
+        }
+        if ("URGENT".equals(notification.getPriority()) || Boolean.TRUE.equals(notification.getIsUrgent())) {
+            return false;
+        }
+        return coalescedTypes.contains(notification.getType());
+    }
+
+    private static Long relatedKey(NotificationPayload notification) {
+        // Chat notifications carry no relatedId; the sender identifies the conversation
+        return notification.getRelatedId() != null ? notification.getRelatedId() : notification.getSenderId();
+    }
+
+    private record DigestKey(Long userId, String type, Long relatedId) {}
+
+    // Mutated only inside ConcurrentHashMap.compute for its key
+    private static class Digest {
+        private final long openedAt;
+        private final NotificationPayload first;
+        private NotificationPayload latest;
+        private int count;
+
+        Digest(long openedAt, NotificationPayload first) {
+            this.openedAt = openedAt;
+            this.first = first;
+        }
+
+        void add(NotificationPayload notification) {
+            latest = notification;
+            count++;
+        }
+
+        NotificationPayload toNotification() {
+            if (count == 1) {
+                return first;
+            }
+
+            NotificationPayload.NotificationPayloadBuilder merged = latest.toBuilder()
+                    .count(count)
+                    .coalesced(true)
+                    .firstTimestamp(first.getTimestamp());
+            if ("NEW_CHAT_MESSAGE".equals(latest.getType())) {
+                merged.title("New Messages")
+                        .latestMessage(latest.getMessage())
+                        .message(String.format("%d new messages from %s", count, latest.getSenderName()));
+            }
+            return merged.build();
+        }
+    }
+}
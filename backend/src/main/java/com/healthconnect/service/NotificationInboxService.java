@@ -0,0 +1,353 @@
+package com.healthconnect.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthconnect.dto.NotificationPayload;
+import com.healthconnect.entity.Notification;
+import com.healthconnect.entity.NotificationDeadLetter;
+import com.healthconnect.entity.NotificationInboxState;
+import com.healthconnect.repository.NotificationDeadLetterRepository;
+import com.healthconnect.repository.NotificationInboxStateRepository;
+import com.healthconnect.repository.NotificationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Persistent per-user notification inbox. Callers only enqueue; a scheduled
+ * writer stores each drained batch in one transaction and then pushes the
+ * notifications over WebSocket. Per-user sequences are reserved by a relative
+ * UPDATE of the user's inbox state row in that same transaction, so writers
+ * on several nodes serialize on the row and never issue the same sequence.
+ * If a batch fails it is retried one notification at a time, and only the
+ * notifications that still fail are dead-lettered.
+ */
+@Service
+@Slf4j
+public class NotificationInboxService {
+
+    private static final String INSERT_NOTIFICATION_SQL =
+            "INSERT INTO notifications (user_id, sequence_number, type, title, message, priority, " +
+            "related_id, metadata, is_read, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, FALSE, ?)";
+
+    private static final String INSERT_STATE_SQL =
+            "INSERT INTO notification_inbox_state (user_id, unread_count, last_sequence, updated_at) VALUES (?, 0, 0, ?)";
+
+    // Relative, so the row lock it takes orders concurrent writers and no sequence is handed out twice
+    private static final String RESERVE_SEQUENCES_SQL =
+            "UPDATE notification_inbox_state SET last_sequence = last_sequence + ?, unread_count = unread_count + ?, " +
+            "updated_at = ? WHERE user_id = ?";
+
+    private static final String SELECT_STATES_SQL =
+            "SELECT user_id, last_sequence, unread_count FROM notification_inbox_state WHERE user_id IN (%s)";
+
+    private static final int MAX_CATCH_UP = 500;
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationInboxStateRepository inboxStateRepository;
+    private final NotificationDeadLetterRepository deadLetterRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate writeTransaction;
+    private final ObjectMapper objectMapper;
+    private final SerializedMessagePublisher messagePublisher;
+    private final BlockingQueue<PendingNotification> queue;
+
+    @Value("${app.notifications.writer-batch-size:500}")
+    private int batchSize;
+
+    public NotificationInboxService(NotificationRepository notificationRepository,
+                                    NotificationInboxStateRepository inboxStateRepository,
+                                    NotificationDeadLetterRepository deadLetterRepository,
+                                    JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    ObjectMapper objectMapper,
+                                    SerializedMessagePublisher messagePublisher,
+                                    @Value("${app.notifications.queue-capacity:10000}") int queueCapacity) {
+        this.notificationRepository = notificationRepository;
+        this.inboxStateRepository = inboxStateRepository;
+        this.deadLetterRepository = deadLetterRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.messagePublisher = messagePublisher;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Hands a notification to the writer. Never blocks and never touches the
+     * database, so it adds no latency to the calling transaction.
+     */
+    public void enqueue(Long userId, NotificationPayload notification) {
+        PendingNotification pending = new PendingNotification(userId, notification, LocalDateTime.now());
+        if (!queue.offer(pending)) {
+            log.warn("Notification queue full, delivering to user {} without persisting", userId);
+            push(userId, notification);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.notifications.flush-interval:100}")
+    public synchronized void flushPending() {
+        while (!queue.isEmpty()) {
+            List<PendingNotification> batch = new ArrayList<>(batchSize);
+            queue.drainTo(batch, batchSize);
+            if (batch.isEmpty()) {
+                return;
+            }
+            writeAndDeliver(batch);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flushPending();
+        } catch (Exception e) {
+            log.warn("Failed to flush notifications on shutdown: {}", e.getMessage());
+        }
+    }
+
+    public Page<Notification> getInbox(Long userId, boolean unreadOnly, Pageable pageable) {
+        if (unreadOnly) {
+            return notificationRepository.findByUserIdAndIsReadFalseOrderBySequenceNumberDesc(userId, pageable);
+        }
+        return notificationRepository.findByUserIdOrderBySequenceNumberDesc(userId, pageable);
+    }
+
+    public List<Notification> getNotificationsSince(Long userId, Long afterSequence, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_CATCH_UP));
+        return notificationRepository.findByUserIdAndSequenceNumberGreaterThanOrderBySequenceNumberAsc(
+                userId, afterSequence != null ? afterSequence : 0L, PageRequest.of(0, size));
+    }
+
+    public long getUnreadCount(Long userId) {
+        return inboxStateRepository.findById(userId)
+                .map(NotificationInboxState::getUnreadCount)
+                .orElse(0L);
+    }
+
+    public long getLastSequence(Long userId) {
+        return inboxStateRepository.findById(userId)
+                .map(NotificationInboxState::getLastSequence)
+                .orElse(0L);
+    }
+
+    @Transactional
+    public int markAsRead(Long userId, Collection<Long> sequences) {
+        if (sequences == null || sequences.isEmpty()) {
+            return 0;
+        }
+        int updated = notificationRepository.markAsRead(userId, sequences, LocalDateTime.now());
+        if (updated > 0) {
+            inboxStateRepository.decrementUnreadCount(userId, updated);
+        }
+        return updated;
+    }
+
+    @Transactional
+    public int markAllAsRead(Long userId, Long upToSequence) {
+        long limit = upToSequence != null ? upToSequence : Long.MAX_VALUE;
+        int updated = notificationRepository.markAsReadUpTo(userId, limit, LocalDateTime.now());
+        if (updated > 0) {
+            inboxStateRepository.decrementUnreadCount(userId, updated);
+        }
+        return updated;
+    }
+
+    private void writeAndDeliver(List<PendingNotification> batch) {
+        List<PendingNotification> delivered;
+        try {
+            delivered = store(batch);
+        } catch (Exception e) {
+            log.warn("Failed to persist {} notifications as a batch, retrying one at a time: {}",
+                    batch.size(), e.getMessage());
+            delivered = storeEach(batch);
+        }
+
+        for (PendingNotification pending : delivered) {
+            push(pending.userId(), pending.notification());
+        }
+        log.debug("Persisted and delivered {} notifications", delivered.size());
+    }
+
+    /**
+     * Stores each notification in its own transaction. One that still fails
+     * is dead-lettered and delivered live without a sequence.
+     */
+    private List<PendingNotification> storeEach(List<PendingNotification> batch) {
+        List<PendingNotification> delivered = new ArrayList<>(batch.size());
+        for (PendingNotification pending : batch) {
+            try {
+                delivered.addAll(store(List.of(pending)));
+            } catch (Exception e) {
+                log.error("Failed to persist notification for user {}, dead-lettering it: {}",
+                        pending.userId(), e.getMessage());
+                deadLetter(pending, e);
+                delivered.add(pending);
+            }
+        }
+        return delivered;
+    }
+
+    private List<PendingNotification> store(List<PendingNotification> batch) {
+        Set<Long> userIds = new HashSet<>();
+        batch.forEach(p -> userIds.add(p.userId()));
+        ensureInboxStates(userIds);
+        return writeTransaction.execute(status -> persist(batch));
+    }
+
+    /**
+     * Creates missing inbox state rows, each committed on its own. A row
+     * another node created first is left as it is.
+     */
+    private void ensureInboxStates(Set<Long> userIds) {
+        Set<Long> missing = new HashSet<>(userIds);
+        inboxStateRepository.findAllById(userIds).forEach(s -> missing.remove(s.getUserId()));
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (Long userId : missing) {
+            try {
+                jdbcTemplate.update(INSERT_STATE_SQL, userId, now);
+            } catch (DuplicateKeyException e) {
+                // created concurrently
+            }
+        }
+    }
+
+    /**
+     * Reserves each user's sequences and writes the batch. Returns the batch
+     * with each notification stamped with its sequence and the user's unread
+     * count. A rollback releases the reservation, so sequences stay gap-free.
+     */
+    private List<PendingNotification> persist(List<PendingNotification> batch) {
+        // In user id order, so concurrent writers lock the state rows in the same order
+        Map<Long, Integer> counts = new TreeMap<>();
+        batch.forEach(p -> counts.merge(p.userId(), 1, Integer::sum));
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> reservations = new ArrayList<>(counts.size());
+        counts.forEach((userId, count) -> reservations.add(new Object[]{count, count, now, userId}));
+        jdbcTemplate.batchUpdate(RESERVE_SEQUENCES_SQL, reservations);
+
+        // First reserved sequence and the unread count after it, per user
+        Map<Long, long[]> next = new HashMap<>();
+        String placeholders = String.join(",", Collections.nCopies(counts.size(), "?"));
+        jdbcTemplate.query(String.format(SELECT_STATES_SQL, placeholders), rs -> {
+            long userId = rs.getLong("user_id");
+            int count = counts.get(userId);
+            next.put(userId, new long[]{
+                    rs.getLong("last_sequence") - count + 1,
+                    rs.getLong("unread_count") - count + 1});
+        }, counts.keySet().toArray());
+
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        List<PendingNotification> stamped = new ArrayList<>(batch.size());
+        for (PendingNotification pending : batch) {
+            long[] state = next.get(pending.userId());
+            if (state == null) {
+                throw new IllegalStateException("No inbox state for user " + pending.userId());
+            }
+            long sequence = state[0]++;
+            long unreadCount = state[1]++;
+
+            NotificationPayload data = pending.notification();
+            stamped.add(new PendingNotification(pending.userId(),
+                    data.toBuilder().sequence(sequence).unreadCount(unreadCount).build(),
+                    pending.createdAt()));
+
+            rows.add(new Object[]{
+                    pending.userId(),
+                    sequence,
+                    data.getType(),
+                    data.getTitle(),
+                    data.getMessage(),
+                    data.getPriority(),
+                    data.getRelatedId(),
+                    toMetadata(data),
+                    Timestamp.valueOf(pending.createdAt())
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_NOTIFICATION_SQL, rows);
+        return stamped;
+    }
+
+    private void deadLetter(PendingNotification pending, Exception cause) {
+        try {
+            deadLetterRepository.save(NotificationDeadLetter.builder()
+                    .userId(pending.userId())
+                    .payload(objectMapper.writeValueAsString(pending.notification()))
+                    .error(String.valueOf(cause.getMessage()))
+                    .createdAt(pending.createdAt())
+                    .build());
+        } catch (Exception e) {
+            log.error("Failed to dead-letter notification for user {}: {}", pending.userId(), e.getMessage());
+        }
+    }
+
+    private String toMetadata(NotificationPayload data) {
+        // Fields without a dedicated column
+        Map<String, Object> extras = new LinkedHashMap<>();
+        putIfPresent(extras, "senderId", data.getSenderId());
+        putIfPresent(extras, "senderName", data.getSenderName());
+        putIfPresent(extras, "isUrgent", data.getIsUrgent());
+        putIfPresent(extras, "count", data.getCount());
+        putIfPresent(extras, "coalesced", data.getCoalesced());
+        putIfPresent(extras, "firstTimestamp", data.getFirstTimestamp());
+        putIfPresent(extras, "latestMessage", data.getLatestMessage());
+        if (extras.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(extras);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize notification metadata: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static void putIfPresent(Map<String, Object> target, String key, Object value) {
+        if (value != null) {
+            target.put(key, value);
+        }
+    }
+
+    private void push(Long userId, NotificationPayload notification) {
+        if (!messagePublisher.isEnabled()) {
+            log.debug("WebSocket not enabled, notification for user {} kept in inbox only", userId);
+            return;
+        }
+
+        try {
+            String destination = "/topic/notifications/user/" + userId;
+            messagePublisher.publish(notification, destination);
+            log.debug("Notification sent to user {} at destination: {}", userId, destination);
+        } catch (Exception e) {
+            log.error("Failed to send notification to user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private record PendingNotification(Long userId, NotificationPayload notification, LocalDateTime createdAt) {}
+}
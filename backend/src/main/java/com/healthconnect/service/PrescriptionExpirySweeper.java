@@ -0,0 +1,191 @@
+package com.healthconnect.service;
+
+import com.healthconnect.entity.DigitalPrescription;
+import com.healthconnect.entity.DigitalPrescription.PrescriptionStatus;
+import com.healthconnect.entity.SweeperWatermark;
+import com.healthconnect.repository.DigitalPrescriptionRepository;
+import com.healthconnect.repository.SweeperWatermarkRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Expires lapsed prescriptions and tells patients about ones expiring soon.
+ * Both passes walk the table in id order, one batch per transaction, and
+ * store their position in {@code sweeper_watermarks} with each batch, so a run
+ * cut short by its time budget or a restart resumes instead of starting over.
+ * A position left by an earlier day's run is discarded: the new day selects
+ * more rows, including ones below it.
+ * A patient is notified at most once per prescription: the batch that selects
+ * it also stamps {@code expiry_notified_at}, and notifications go out only
+ * after that commit.
+ */
+@Component
+@Slf4j
+public class PrescriptionExpirySweeper {
+
+    static final String EXPIRY_JOB = "prescription-expiry";
+    static final String NOTICE_JOB = "prescription-expiry-notice";
+
+    private static final List<PrescriptionStatus> EXPIRABLE_STATUSES = List.of(
+            PrescriptionStatus.ISSUED,
+            PrescriptionStatus.SENT_TO_PHARMACY,
+            PrescriptionStatus.PARTIALLY_DISPENSED);
+
+    private final DigitalPrescriptionRepository prescriptionRepository;
+    private final SweeperWatermarkRepository watermarkRepository;
+    private final NotificationService notificationService;
+    private final TransactionTemplate batchTransaction;
+
+    @Value("${app.prescriptions.sweep.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.prescriptions.sweep.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.prescriptions.sweep.notice-days:7}")
+    private int noticeDays;
+
+    @Value("${app.prescriptions.sweep.max-run-seconds:300}")
+    private long maxRunSeconds;
+
+    public PrescriptionExpirySweeper(DigitalPrescriptionRepository prescriptionRepository,
+                                     SweeperWatermarkRepository watermarkRepository,
+                                     NotificationService notificationService,
+                                     PlatformTransactionManager transactionManager) {
+        this.prescriptionRepository = prescriptionRepository;
+        this.watermarkRepository = watermarkRepository;
+        this.notificationService = notificationService;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(initialDelayString = "${app.prescriptions.sweep.initial-delay:60000}",
+               fixedDelayString = "${app.prescriptions.sweep.interval:3600000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        long deadline = System.currentTimeMillis() + maxRunSeconds * 1000;
+        try {
+            int expired = expireLapsed(today, deadline);
+            int notified = notifyExpiring(today, deadline);
+            if (expired > 0 || notified > 0) {
+                log.info("Prescription sweep expired {} and notified {} prescriptions", expired, notified);
+            }
+        } catch (Exception e) {
+            log.error("Prescription sweep failed, will resume from the last watermark: {}", e.getMessage(), e);
+        }
+    }
+
+    int expireLapsed(LocalDate today, long deadline) {
+        SweeperWatermark watermark = loadWatermark(EXPIRY_JOB, today);
+        if (today.equals(watermark.getCompletedThrough())) {
+            return 0;
+        }
+
+        int total = 0;
+        while (System.currentTimeMillis() < deadline) {
+            Integer updated = batchTransaction.execute(status -> {
+                List<Long> ids = prescriptionRepository.findIdsToExpire(
+                        EXPIRABLE_STATUSES, today, watermark.getLastId(), PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    complete(watermark, today);
+                    return null;
+                }
+                int count = prescriptionRepository.markExpired(
+                        ids, EXPIRABLE_STATUSES, PrescriptionStatus.EXPIRED, today, LocalDateTime.now());
+                advance(watermark, ids.get(ids.size() - 1));
+                return count;
+            });
+            if (updated == null) {
+                break;
+            }
+            total += updated;
+        }
+        return total;
+    }
+
+    int notifyExpiring(LocalDate today, long deadline) {
+        SweeperWatermark watermark = loadWatermark(NOTICE_JOB, today);
+        if (today.equals(watermark.getCompletedThrough())) {
+            return 0;
+        }
+
+        LocalDate horizon = today.plusDays(noticeDays);
+        int total = 0;
+        while (System.currentTimeMillis() < deadline) {
+            List<DigitalPrescription> claimed = batchTransaction.execute(status -> {
+                List<DigitalPrescription> page = prescriptionRepository.findUnnotifiedExpiring(
+                        horizon, watermark.getLastId(), PageRequest.of(0, batchSize));
+                if (page.isEmpty()) {
+                    complete(watermark, today);
+                    return null;
+                }
+                List<Long> ids = page.stream().map(DigitalPrescription::getId).toList();
+                prescriptionRepository.markExpiryNotified(ids, LocalDateTime.now());
+                advance(watermark, ids.get(ids.size() - 1));
+                return page;
+            });
+            if (claimed == null) {
+                break;
+            }
+
+            // Marked and committed above; the inbox writer batches the resulting notifications
+            for (DigitalPrescription prescription : claimed) {
+                notifyPatient(prescription, today);
+            }
+            total += claimed.size();
+        }
+        return total;
+    }
+
+    private void notifyPatient(DigitalPrescription prescription, LocalDate today) {
+        try {
+            boolean refillable = prescription.getRefillsRemaining() != null
+                    && prescription.getRefillsRemaining() > 0
+                    && prescription.getValidUntil() != null
+                    && !prescription.getValidUntil().isBefore(today);
+            if (refillable) {
+                notificationService.sendPrescriptionRefillReminderNotification(prescription);
+            } else {
+                notificationService.sendPrescriptionExpiringNotification(prescription);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to notify patient about expiring prescription {}: {}", prescription.getId(), e.getMessage());
+        }
+    }
+
+    private SweeperWatermark loadWatermark(String jobName, LocalDate today) {
+        SweeperWatermark watermark = watermarkRepository.findById(jobName)
+                .orElseGet(() -> SweeperWatermark.builder().jobName(jobName).build());
+        if (!today.equals(watermark.getRunDate())) {
+            // Saved with the next batch or the completion
+            watermark.setLastId(0L);
+            watermark.setRunDate(today);
+        }
+        return watermark;
+    }
+
+    private void advance(SweeperWatermark watermark, Long lastId) {
+        watermark.setLastId(lastId);
+        watermark.setUpdatedAt(LocalDateTime.now());
+        watermarkRepository.save(watermark);
+    }
+
+    private void complete(SweeperWatermark watermark, LocalDate today) {
+        watermark.setLastId(0L);
+        watermark.setCompletedThrough(today);
+        watermark.setUpdatedAt(LocalDateTime.now());
+        watermarkRepository.save(watermark);
+    }
+}
@@ -0,0 +1,133 @@
+package com.healthconnect.service;
+
+import java.util.Arrays;
+
+/**
+ * Log-bucketed histogram for call-quality values such as latency, jitter and
+ * packet loss. Bucket {@code i} covers {@code (MIN * GAMMA^(i-1), MIN * GAMMA^i]},
+ * so a reported percentile is within about 2% of the true value whatever its
+ * magnitude. Every histogram uses the same buckets, which makes merging a
+ * plain addition of counts: windows are summed into consultations, doctors
+ * and time ranges without keeping raw samples.
+ *
+ * Only the range of buckets actually used is stored, so a call whose latency
+ * stays between 40 and 200 ms needs about forty counters. Not thread-safe.
+ */
+public final class QualityHistogram {
+
+    private static final double GAMMA = 1.04;
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    // Values at or below this are counted as zero, e.g. no packet loss
+    private static final double MIN_VALUE = 0.01;
+
+    private int offset;
+    private int[] counts = new int[0];
+    private long count;
+    private double max;
+
+    public void record(double value) {
+        if (Double.isNaN(value) || value < 0) {
+            return;
+        }
+        add(index(value), 1);
+        count++;
+        max = Math.max(max, value);
+    }
+
+    public void merge(QualityHistogram other) {
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] != 0) {
+                add(other.offset + i, other.counts[i]);
+            }
+        }
+        count += other.count;
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Value at the given percentile (0-100), or null without samples.
+     */
+    public Double percentile(double percentile) {
+        if (count == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        if (rank >= count) {
+            return max;
+        }
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(value(offset + i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Compact text form, "max;offset;c0,c1,...", for the summary table.
+     */
+    public String encode() {
+        StringBuilder text = new StringBuilder(16 + counts.length * 3);
+        text.append(max).append(';').append(offset).append(';');
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(counts[i]);
+        }
+        return text.toString();
+    }
+
+    public static QualityHistogram decode(String text) {
+        QualityHistogram histogram = new QualityHistogram();
+        if (text == null || text.isEmpty()) {
+            return histogram;
+        }
+        String[] parts = text.split(";", 3);
+        histogram.max = Double.parseDouble(parts[0]);
+        histogram.offset = Integer.parseInt(parts[1]);
+        if (!parts[2].isEmpty()) {
+            String[] values = parts[2].split(",");
+            histogram.counts = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                histogram.counts[i] = Integer.parseInt(values[i]);
+                histogram.count += histogram.counts[i];
+            }
+        }
+        return histogram;
+    }
+
+    private void add(int index, int increment) {
+        if (counts.length == 0) {
+            offset = index;
+            counts = new int[1];
+        } else if (index < offset) {
+            int[] grown = new int[counts.length + offset - index];
+            System.arraycopy(counts, 0, grown, offset - index, counts.length);
+            counts = grown;
+            offset = index;
+        } else if (index >= offset + counts.length) {
+            counts = Arrays.copyOf(counts, index - offset + 1);
+        }
+        counts[index - offset] += increment;
+    }
+
+    private static int index(double value) {
+        return value <= MIN_VALUE ? 0 : (int) Math.ceil(Math.log(value / MIN_VALUE) / LOG_GAMMA);
+    }
+
+    // Midpoint of the bucket, which halves the worst-case relative error
+    private static double value(int index) {
+        return index == 0 ? 0 : MIN_VALUE * 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+}
@@ -0,0 +1,356 @@
+package com.healthconnect.service;
+
+import com.healthconnect.dto.CallRecordingRequest;
+import com.healthconnect.dto.RecordingUploadRequest;
+import com.healthconnect.dto.RecordingUploadStatus;
+import com.healthconnect.entity.ConsultationRecording;
+import com.healthconnect.entity.ConsultationRecording.RecordingStatus;
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.repository.ConsultationRecordingRepository;
+import com.healthconnect.repository.VideoConsultationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Chunked, resumable recording uploads. Each upload is a {@code .part} file
+ * under {@code app.recordings.dir/{consultationId}/}. A chunk must start at
+ * the current file size, is streamed through a {@link FileChannel} in
+ * {@code buffer-bytes} pieces while its SHA-256 is computed, and is truncated
+ * away again if the checksum does not match or the stream breaks, so the file
+ * only ever holds whole, verified chunks. A client that lost its connection
+ * asks for the upload's offset and continues from there.
+ *
+ * Completion checks the size and whole-file checksum and then renames the
+ * file into place in one atomic move before the recording is attached to its
+ * consultation. One request at a time writes an upload; a second one is
+ * rejected rather than queued, and an upload is only tracked while it is being
+ * written, so abandoned uploads leave nothing behind in memory.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RecordingUploadService {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final ConsultationRecordingRepository recordingRepository;
+    private final VideoConsultationRepository consultationRepository;
+    private final Set<String> uploadsInProgress = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.recordings.dir:recordings}")
+    private String recordingsDir = "recordings";
+
+    @Value("${app.recordings.max-chunk-bytes:8388608}")
+    private long maxChunkBytes = 8388608;
+
+    @Value("${app.recordings.max-size-bytes:4294967296}")
+    private long maxSizeBytes = 4294967296L;
+
+    @Value("${app.recordings.buffer-bytes:65536}")
+    private int bufferBytes = 65536;
+
+    public RecordingUploadStatus startUpload(RecordingUploadRequest request, Long userId) {
+        VideoConsultation consultation = participantConsultation(request.getConsultationId(), userId);
+        if (request.getFileSizeBytes() != null && request.getFileSizeBytes() > maxSizeBytes) {
+            throw new IllegalArgumentException("Recording exceeds the maximum size of " + maxSizeBytes + " bytes");
+        }
+
+        String uploadId = UUID.randomUUID().toString();
+        Path directory = Paths.get(recordingsDir).toAbsolutePath().normalize().resolve(String.valueOf(consultation.getId()));
+        Path part = directory.resolve(uploadId + ".part");
+        try {
+            Files.createDirectories(directory);
+            Files.createFile(part);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to start recording upload: " + e.getMessage(), e);
+        }
+
+        ConsultationRecording recording = recordingRepository.save(ConsultationRecording.builder()
+                .uploadId(uploadId)
+                .consultationId(consultation.getId())
+                .uploadedBy(userId)
+                .mimeType(request.getMimeType() != null ? request.getMimeType() : "video/webm")
+                .expectedSizeBytes(request.getFileSizeBytes())
+                .durationSeconds(request.getDurationSeconds())
+                .status(RecordingStatus.UPLOADING)
+                .filePath(part.toString())
+                .createdAt(LocalDateTime.now())
+                .build());
+
+        log.info("Started recording upload {} for consultation {} by user {}", uploadId, consultation.getId(), userId);
+        return status(recording, 0);
+    }
+
+    public RecordingUploadStatus getUpload(String uploadId, Long userId) {
+        ConsultationRecording recording = uploaderRecording(uploadId, userId);
+        return status(recording, storedBytes(recording));
+    }
+
+    /**
+     * Appends one chunk read from {@code body}. {@code offset} must equal the
+     * bytes already stored; otherwise an IllegalStateException is thrown and
+     * the client should resume from {@link #getUpload}.
+     */
+    public RecordingUploadStatus writeChunk(String uploadId, Long userId, long offset, String sha256, InputStream body) {
+        if (sha256 == null || sha256.isBlank()) {
+            throw new IllegalArgumentException("Chunk checksum is required");
+        }
+        ConsultationRecording recording = uploaderRecording(uploadId, userId);
+        return withUploadLock(recording, () ->
+                status(recording, append(Paths.get(recording.getFilePath()), offset, sha256, body, maxChunkBytes)));
+    }
+
+    /**
+     * Verifies the stored recording and moves it into place. Completing an
+     * upload again returns the completed recording.
+     */
+    public RecordingUploadStatus completeUpload(String uploadId, Long userId, String sha256) {
+        ConsultationRecording recording = uploaderRecording(uploadId, userId);
+        if (recording.getStatus() == RecordingStatus.COMPLETED) {
+            return status(recording, recording.getSizeBytes());
+        }
+        return withUploadLock(recording, () -> {
+            Path part = Paths.get(recording.getFilePath());
+            Path target = part.resolveSibling(uploadId + "." + getFileExtension(recording.getMimeType()));
+            // A retry after a failed save finds the file already moved
+            Path stored = Files.exists(part) || !Files.exists(target) ? part : target;
+
+            long size;
+            String digest;
+            try (FileChannel channel = FileChannel.open(stored, StandardOpenOption.READ)) {
+                size = channel.size();
+                digest = checksum(channel);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read recording upload: " + e.getMessage(), e);
+            }
+            if (recording.getExpectedSizeBytes() != null && size != recording.getExpectedSizeBytes()) {
+                throw new IllegalStateException("Recording has " + size + " of " + recording.getExpectedSizeBytes() + " bytes");
+            }
+            if (sha256 != null && !sha256.isBlank() && !sha256.equalsIgnoreCase(digest)) {
+                throw new IllegalArgumentException("Recording checksum mismatch");
+            }
+
+            try {
+                if (stored.equals(part)) {
+                    Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to finalize recording: " + e.getMessage(), e);
+            }
+
+            recording.setStatus(RecordingStatus.COMPLETED);
+            recording.setFilePath(target.toString());
+            recording.setSizeBytes(size);
+            recording.setSha256(digest);
+            recording.setCompletedAt(LocalDateTime.now());
+            recordingRepository.save(recording);
+
+            VideoConsultation consultation = consultationRepository.findById(recording.getConsultationId())
+                    .orElseThrow(() -> new RuntimeException("Consultation not found"));
+            consultation.setRecordingId(recording.getId());
+            consultation.setRecordingUrl(recordingUrl(recording));
+            consultationRepository.save(consultation);
+
+            log.info("Completed recording upload {} for consultation {}: {} bytes", uploadId, recording.getConsultationId(), size);
+            return status(recording, size);
+        });
+    }
+
+    /**
+     * Single-request upload of a base64 recording. The base64 text is decoded
+     * while it is written, so no decoded copy of the recording is held.
+     */
+    public String saveRecording(CallRecordingRequest request, Long userId) {
+        if (request.getRecordingData() == null) {
+            throw new IllegalArgumentException("Recording data is required");
+        }
+        RecordingUploadStatus upload = startUpload(RecordingUploadRequest.builder()
+                .consultationId(request.getConsultationId())
+                .mimeType(request.getMimeType())
+                .durationSeconds(request.getDurationSeconds())
+                .build(), userId);
+
+        ConsultationRecording recording = uploaderRecording(upload.getUploadId(), userId);
+        InputStream decoded = Base64.getMimeDecoder().wrap(new CharSequenceInputStream(request.getRecordingData()));
+        withUploadLock(recording, () -> append(Paths.get(recording.getFilePath()), 0, null, decoded, maxSizeBytes));
+        return completeUpload(upload.getUploadId(), userId, null).getRecordingUrl();
+    }
+
+    private long append(Path part, long offset, String expectedSha256, InputStream body, long chunkLimit) {
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+            long stored = channel.size();
+            if (offset != stored) {
+                throw new IllegalStateException("Chunk offset " + offset + " does not match the " + stored + " bytes stored");
+            }
+            channel.position(stored);
+            try {
+                MessageDigest digest = sha256();
+                ByteBuffer buffer = ByteBuffer.allocate(bufferBytes);
+                long written = 0;
+                int read;
+                while ((read = body.read(buffer.array(), 0, buffer.capacity())) != -1) {
+                    written += read;
+                    if (written > chunkLimit || stored + written > maxSizeBytes) {
+                        throw new IllegalArgumentException("Chunk exceeds the upload limits");
+                    }
+                    digest.update(buffer.array(), 0, read);
+                    buffer.limit(read);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(HEX.formatHex(digest.digest()))) {
+                    throw new IllegalArgumentException("Chunk checksum mismatch at offset " + offset);
+                }
+            } catch (IOException | RuntimeException e) {
+                // A partial or corrupt chunk is never kept
+                channel.truncate(stored);
+                throw e;
+            }
+            channel.force(false);
+            return channel.size();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write recording chunk: " + e.getMessage(), e);
+        }
+    }
+
+    private String checksum(FileChannel channel) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferBytes);
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+        return HEX.formatHex(digest.digest());
+    }
+
+    private <T> T withUploadLock(ConsultationRecording recording, Supplier<T> action) {
+        if (recording.getStatus() != RecordingStatus.UPLOADING) {
+            throw new IllegalStateException("Recording upload " + recording.getUploadId() + " is already completed");
+        }
+        if (!uploadsInProgress.add(recording.getUploadId())) {
+            throw new IllegalStateException("Another request is writing recording upload " + recording.getUploadId());
+        }
+        try {
+            return action.get();
+        } finally {
+            uploadsInProgress.remove(recording.getUploadId());
+        }
+    }
+
+    private VideoConsultation participantConsultation(Long consultationId, Long userId) {
+        VideoConsultation consultation = consultationRepository.findById(consultationId)
+                .orElseThrow(() -> new RuntimeException("Consultation not found"));
+        if (!userId.equals(consultation.getDoctor().getId()) && !userId.equals(consultation.getPatient().getId())) {
+            throw new RuntimeException("Access denied to this consultation");
+        }
+        return consultation;
+    }
+
+    private ConsultationRecording uploaderRecording(String uploadId, Long userId) {
+        ConsultationRecording recording = recordingRepository.findByUploadId(uploadId)
+                .orElseThrow(() -> new RuntimeException("Recording upload not found"));
+        if (!userId.equals(recording.getUploadedBy())) {
+            throw new RuntimeException("Access denied to this recording upload");
+        }
+        return recording;
+    }
+
+    private long storedBytes(ConsultationRecording recording) {
+        if (recording.getStatus() == RecordingStatus.COMPLETED) {
+            return recording.getSizeBytes();
+        }
+        try {
+            return Files.size(Paths.get(recording.getFilePath()));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read recording upload: " + e.getMessage(), e);
+        }
+    }
+
+    private RecordingUploadStatus status(ConsultationRecording recording, long offset) {
+        boolean completed = recording.getStatus() == RecordingStatus.COMPLETED;
+        return RecordingUploadStatus.builder()
+                .uploadId(recording.getUploadId())
+                .consultationId(recording.getConsultationId())
+                .status(recording.getStatus().name())
+                .offset(offset)
+                .maxChunkBytes(maxChunkBytes)
+                .sha256(completed ? recording.getSha256() : null)
+                .recordingUrl(completed ? recordingUrl(recording) : null)
+                .build();
+    }
+
+    private static String recordingUrl(ConsultationRecording recording) {
+        return "/api/recordings/" + recording.getUploadId();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String getFileExtension(String mimeType) {
+        switch (mimeType) {
+            case "video/webm": return "webm";
+            case "video/mp4": return "mp4";
+            case "audio/webm": return "webm";
+            case "audio/wav": return "wav";
+            default: return "webm";
+        }
+    }
+
+    /**
+     * Reads the characters of base64 text as bytes, without copying it.
+     */
+    private static final class CharSequenceInputStream extends InputStream {
+        private final CharSequence text;
+        private int position;
+
+        private CharSequenceInputStream(CharSequence text) {
+            this.text = text;
+        }
+
+        @Override
+        public int read() {
+            return position < text.length() ? text.charAt(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (position >= text.length()) {
+                return -1;
+            }
+            int count = Math.min(length, text.length() - position);
+            for (int i = 0; i < count; i++) {
+                bytes[offset + i] = (byte) text.charAt(position++);
+            }
+            return count;
+        }
+    }
+}
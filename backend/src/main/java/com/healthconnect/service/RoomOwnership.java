@@ -0,0 +1,199 @@
+package com.healthconnect.service;
+
+import com.healthconnect.dto.RoomCommand;
+import com.healthconnect.service.ClusterTransport.ClusterNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Assigns every WebRTC room to one backend node by consistent hashing over the
+ * live nodes, so all participants of a consultation meet in the same room
+ * state whichever node their WebSocket landed on. Operations on a room owned
+ * elsewhere are forwarded to the owner; the owner delivers through the shared
+ * broker relay, which reaches sessions on every node.
+ *
+ * Peers start out unknown and join the ring once they answer a heartbeat. A
+ * node that misses {@code failure-threshold} heartbeats in a row leaves it.
+ * Heartbeats block on the peers, so they run on a thread of their own rather
+ * than the shared scheduling pool.
+ * Either change rebuilds the ring and tells listeners, so rooms can move to
+ * their new owner. With clustering off the ring holds only the local node and
+ * every room is local.
+ */
+@Slf4j
+public class RoomOwnership {
+
+    private final ClusterNode localNode;
+    private final Map<String, ClusterNode> peers;
+    private final ClusterTransport transport;
+    private final int virtualNodes;
+    private final int failureThreshold;
+    private final Set<String> liveNodeIds = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> missedHeartbeats = new ConcurrentHashMap<>();
+    private final List<Runnable> rebalanceListeners = new CopyOnWriteArrayList<>();
+    private final Timer forwardTimer;
+    private final Counter forwardFailures;
+    private volatile ConsistentHashRing ring;
+    private ScheduledExecutorService heartbeats;
+
+    public RoomOwnership(ClusterNode localNode, Collection<ClusterNode> peers, ClusterTransport transport,
+                         int virtualNodes, int failureThreshold, MeterRegistry meterRegistry) {
+        this.localNode = localNode;
+        this.peers = peers.stream()
+                .filter(node -> !node.id().equals(localNode.id()))
+                .collect(Collectors.toUnmodifiableMap(ClusterNode::id, node -> node));
+        this.transport = transport;
+        this.virtualNodes = virtualNodes;
+        this.failureThreshold = failureThreshold;
+        this.liveNodeIds.add(localNode.id());
+        this.ring = new ConsistentHashRing(liveNodeIds, virtualNodes);
+
+        this.forwardTimer = Timer.builder("webrtc.cluster.forward")
+                .description("Room operations forwarded to the owning node")
+                .register(meterRegistry);
+        this.forwardFailures = Counter.builder("webrtc.cluster.forward.failures")
+                .description("Room operations the owning node did not accept")
+                .register(meterRegistry);
+        Gauge.builder("webrtc.cluster.nodes.live", liveNodeIds, Set::size)
+                .description("Nodes currently in the room ownership ring")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ownership for a single node: every room is local.
+     */
+    public static RoomOwnership singleNode(String nodeId, MeterRegistry meterRegistry) {
+        return new RoomOwnership(new ClusterNode(nodeId, null), List.of(), null, 1, 1, meterRegistry);
+    }
+
+    public ClusterNode getLocalNode() {
+        return localNode;
+    }
+
+    public ClusterNode ownerOf(String roomId) {
+        String ownerId = ring.nodeFor(roomId);
+        return localNode.id().equals(ownerId) ? localNode : peers.getOrDefault(ownerId, localNode);
+    }
+
+    public boolean isLocal(String roomId) {
+        return peers.isEmpty() || ownerOf(roomId) == localNode;
+    }
+
+    /**
+     * Whether this node runs the cluster-wide job {@code jobName}. The name is
+     * placed on the same ring as rooms, so once the ring has settled exactly one
+     * live node owns it; when that node leaves, the job moves with the ring.
+     */
+    public boolean ownsJob(String jobName) {
+        return isLocal("job:" + jobName);
+    }
+
+    public Set<String> liveNodes() {
+        return Set.copyOf(liveNodeIds);
+    }
+
+    /**
+     * Called after the ring changed, on the heartbeat thread.
+     */
+    public void onRebalance(Runnable listener) {
+        rebalanceListeners.add(listener);
+    }
+
+    /**
+     * Runs the command on the room's owner.
+     */
+    public <T> T forward(String roomId, RoomCommand command, Class<T> responseType) {
+        return send(ownerOf(roomId), command, responseType);
+    }
+
+    public <T> T send(ClusterNode node, RoomCommand command, Class<T> responseType) {
+        long start = System.nanoTime();
+        try {
+            return transport.send(node, command, responseType);
+        } catch (RuntimeException e) {
+            forwardFailures.increment();
+            throw new RuntimeException("Room " + command.getRoomId() + " owner " + node.id()
+                    + " did not accept " + command.getType() + ": " + e.getMessage(), e);
+        } finally {
+            forwardTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Heartbeats the peers every {@code interval}, starting now. Does nothing
+     * for a single node.
+     */
+    public synchronized void startHeartbeat(Duration interval) {
+        if (peers.isEmpty() || heartbeats != null) {
+            return;
+        }
+        heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleWithFixedDelay(() -> {
+            try {
+                heartbeat();
+            } catch (Exception e) {
+                // A failed round must not cancel the ones after it
+                log.error("Cluster heartbeat failed: {}", e.getMessage());
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (heartbeats != null) {
+            heartbeats.shutdownNow();
+            heartbeats = null;
+        }
+    }
+
+    public void heartbeat() {
+        if (peers.isEmpty()) {
+            return;
+        }
+        boolean changed = false;
+        for (ClusterNode node : peers.values()) {
+            if (transport.ping(node)) {
+                missedHeartbeats.remove(node.id());
+                if (liveNodeIds.add(node.id())) {
+                    log.info("Cluster node {} joined the room ownership ring", node.id());
+                    changed = true;
+                }
+            } else {
+                int missed = missedHeartbeats.merge(node.id(), 1, Integer::sum);
+                if (missed >= failureThreshold && liveNodeIds.remove(node.id())) {
+                    log.warn("Cluster node {} left the room ownership ring after {} missed heartbeats", node.id(), missed);
+                    changed = true;
+                }
+            }
+        }
+        if (changed) {
+            ring = new ConsistentHashRing(new ArrayList<>(liveNodeIds), virtualNodes);
+            for (Runnable listener : rebalanceListeners) {
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    log.error("Room rebalance failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
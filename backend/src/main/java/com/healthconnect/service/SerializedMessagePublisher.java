@@ -0,0 +1,86 @@
+package com.healthconnect.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Sends payloads that are serialized to JSON exactly once. The resulting bytes
+ * are shared by every destination and, through the broker, every subscribed
+ * session; only the per-destination headers are allocated on each send.
+ */
+@Component
+public class SerializedMessagePublisher {
+
+    private final ObjectMapper objectMapper;
+    private SimpMessagingTemplate messagingTemplate;
+
+    public SerializedMessagePublisher(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Autowired(required = false)
+    public void setMessagingTemplate(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    public boolean isEnabled() {
+        return messagingTemplate != null;
+    }
+
+    public SerializedPayload serialize(Object payload) {
+        try {
+            return new SerializedPayload(objectMapper.writeValueAsBytes(payload));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize WebSocket payload: " + e.getMessage(), e);
+        }
+    }
+
+    public void publish(Object payload, String... destinations) {
+        if (messagingTemplate == null) {
+            return;
+        }
+        publish(serialize(payload), destinations);
+    }
+
+    public void publish(SerializedPayload payload, String... destinations) {
+        if (messagingTemplate == null) {
+            return;
+        }
+        for (String destination : destinations) {
+            messagingTemplate.send(destination, payload.toMessage());
+        }
+    }
+
+    /**
+     * JSON bytes of a payload. The array is never exposed or modified, which is
+     * what makes sharing it across messages safe.
+     */
+    public static final class SerializedPayload {
+
+        private final byte[] json;
+
+        private SerializedPayload(byte[] json) {
+            this.json = json;
+        }
+
+        public int size() {
+            return json.length;
+        }
+
+        Message<byte[]> toMessage() {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            // Left mutable so the template can set the destination without copying headers
+            accessor.setLeaveMutable(true);
+            return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package com.healthconnect.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Each level has a fixed number of buckets; a
+ * deadline beyond a level's span goes to a coarser overflow level created on
+ * demand and cascades down as the clock reaches it. Only non-empty buckets sit
+ * in the delay queue, so the worker sleeps until the next bucket is due instead
+ * of ticking, and scheduling and cancelling are O(1). Time comes from the
+ * given clock; without {@link #start()} the wheel only moves when
+ * {@link #advance()} is called.
+ */
+@Slf4j
+final class TimingWheel<T> {
+
+    private static final int PENDING = 0;
+    private static final int FIRED = 1;
+    private static final int CANCELLED = 2;
+
+    private final String name;
+    private final DelayQueue<Bucket> queue = new DelayQueue<>();
+    private final Queue<Timeout<T>> overdue = new ConcurrentLinkedQueue<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Consumer<List<T>> expiredHandler;
+    private final Level root;
+    private final Clock clock;
+    private volatile boolean running;
+    private Thread worker;
+
+    TimingWheel(String name, long tickMs, int wheelSize, Consumer<List<T>> expiredHandler) {
+        this(name, tickMs, wheelSize, Clock.systemUTC(), expiredHandler);
+    }
+
+    TimingWheel(String name, long tickMs, int wheelSize, Clock clock, Consumer<List<T>> expiredHandler) {
+        this.name = name;
+        this.clock = clock;
+        this.expiredHandler = expiredHandler;
+        this.root = new Level(tickMs, wheelSize, clock.millis());
+    }
+
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, name + "-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Schedules {@code payload} to be handed to the expiry handler at
+     * {@code expirationMs} (epoch millis). Deadlines already due fire on the next
+     * worker pass.
+     */
+    Timeout<T> schedule(T payload, long expirationMs) {
+        Timeout<T> timeout = new Timeout<>(this, payload, expirationMs);
+        size.incrementAndGet();
+        lock.readLock().lock();
+        try {
+            if (!root.add(timeout)) {
+                overdue.add(timeout);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return timeout;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Hands everything due by now to the expiry handler, on the calling thread.
+     */
+    void advance() {
+        process(queue.poll());
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                process(queue.poll(200, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Timing wheel {} failed to process expired entries: {}", name, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void process(Bucket bucket) {
+        List<T> expired = new ArrayList<>();
+        Timeout<T> late;
+        while ((late = overdue.poll()) != null) {
+            collect(late, expired);
+        }
+        if (bucket != null) {
+            lock.writeLock().lock();
+            try {
+                while (bucket != null) {
+                    root.advanceClock(bucket.getExpiration());
+                    bucket.flush(timeout -> reinsert(timeout, expired));
+                    bucket = queue.poll();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        if (!expired.isEmpty()) {
+            expiredHandler.accept(expired);
+        }
+    }
+
+    // Called with the write lock held: cascades to a finer level or expires
+    private void reinsert(Timeout<T> timeout, List<T> expired) {
+        if (timeout.state.get() != PENDING) {
+            return;
+        }
+        if (!root.add(timeout)) {
+            collect(timeout, expired);
+        }
+    }
+
+    private void collect(Timeout<T> timeout, List<T> expired) {
+        if (timeout.state.compareAndSet(PENDING, FIRED)) {
+            size.decrementAndGet();
+            expired.add(timeout.payload);
+        }
+    }
+
+    static final class Timeout<T> {
+
+        private final T payload;
+        private final long expirationMs;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private final TimingWheel<T> wheel;
+        private volatile TimingWheel<T>.Bucket bucket;
+
+        private Timeout(TimingWheel<T> wheel, T payload, long expirationMs) {
+            this.wheel = wheel;
+            this.payload = payload;
+            this.expirationMs = expirationMs;
+        }
+
+        T payload() {
+            return payload;
+        }
+
+        long expirationMs() {
+            return expirationMs;
+        }
+
+        boolean isPending() {
+            return state.get() == PENDING;
+        }
+
+        boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.size.decrementAndGet();
+            TimingWheel<T>.Bucket current = bucket;
+            if (current != null) {
+                current.remove(this);
+            }
+            return true;
+        }
+    }
+
+    private final class Level {
+
+        private final long tickMs;
+        private final int wheelSize;
+        private final long interval;
+        private final List<Bucket> buckets;
+        private long currentTime;
+        private volatile Level overflow;
+
+        Level(long tickMs, int wheelSize, long startMs) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.interval = tickMs * wheelSize;
+            this.currentTime = startMs - (startMs % tickMs);
+            this.buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new Bucket());
+            }
+        }
+
+        /** Returns false when the deadline falls in the current tick and should fire now. */
+        boolean add(Timeout<T> timeout) {
+            long expiration = timeout.expirationMs;
+            if (expiration < currentTime + tickMs) {
+                return false;
+            }
+            if (expiration < currentTime + interval) {
+                long virtualId = expiration / tickMs;
+                Bucket bucket = buckets.get((int) (virtualId % wheelSize));
+                bucket.add(timeout);
+                if (bucket.setExpiration(virtualId * tickMs)) {
+                    queue.offer(bucket);
+                }
+                return true;
+            }
+            return overflow().add(timeout);
+        }
+
+        void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - (timeMs % tickMs);
+                Level next = overflow;
+                if (next != null) {
+                    next.advanceClock(currentTime);
+                }
+            }
+        }
+
+        private Level overflow() {
+            Level next = overflow;
+            if (next == null) {
+                synchronized (this) {
+                    next = overflow;
+                    if (next == null) {
+                        next = new Level(interval, wheelSize, currentTime);
+                        overflow = next;
+                    }
+                }
+            }
+            return next;
+        }
+    }
+
+    private final class Bucket implements Delayed {
+
+        private final AtomicLong expiration = new AtomicLong(-1L);
+        private final Set<Timeout<T>> timeouts = new HashSet<>();
+
+        synchronized void add(Timeout<T> timeout) {
+            timeouts.add(timeout);
+            timeout.bucket = this;
+        }
+
+        synchronized void remove(Timeout<T> timeout) {
+            if (timeouts.remove(timeout)) {
+                timeout.bucket = null;
+            }
+        }
+
+        synchronized void flush(Consumer<Timeout<T>> action) {
+            List<Timeout<T>> drained = new ArrayList<>(timeouts);
+            timeouts.clear();
+            expiration.set(-1L);
+            for (Timeout<T> timeout : drained) {
+                timeout.bucket = null;
+                action.accept(timeout);
+            }
+        }
+
+        /** Returns true if the bucket was (re)armed and must be queued again. */
+        boolean setExpiration(long expirationMs) {
+            return expiration.getAndSet(expirationMs) != expirationMs;
+        }
+
+        long getExpiration() {
+            return expiration.get();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(getExpiration() - clock.millis(), 0L), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getExpiration(), ((TimingWheel<?>.Bucket) other).getExpiration());
+        }
+    }
+}
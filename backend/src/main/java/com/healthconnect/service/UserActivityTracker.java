@@ -0,0 +1,356 @@
+package com.healthconnect.service;
+
+import com.healthconnect.entity.UserPresence;
+import com.healthconnect.entity.UserPresence.PresenceStatus;
+import com.healthconnect.repository.UserPresenceRepository;
+import com.healthconnect.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces activity pings into an in-memory map and writes them to
+ * {@code user_presence.last_activity} in one batched UPDATE per flush.
+ * Recording only touches a concurrent map and, when a user first becomes
+ * dirty, a lock-free queue. The journal thread drains that queue every
+ * {@code activity-journal-sync-ms}, appending the entries and syncing them
+ * to disk once per batch, so pending activity survives a crash between
+ * flushes without a lock or disk I/O on the request thread. The UPDATE only
+ * moves {@code last_activity} forward, and once the presence row exists it
+ * is the only writer of that column.
+ */
+@Component
+@Slf4j
+public class UserActivityTracker {
+
+    private static final String UPDATE_LAST_ACTIVITY_SQL =
+            "UPDATE user_presence SET last_activity = ? " +
+            "WHERE user_id = ? AND (last_activity IS NULL OR last_activity < ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserPresenceRepository userPresenceRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate flushTransaction;
+
+    // userId -> newest activity not yet written to the database
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+    // Newly dirty users waiting for the journal thread
+    private final Queue<Activity> unjournaled = new ConcurrentLinkedQueue<>();
+
+    @Value("${app.presence.activity-journal-dir:data/presence}")
+    private String journalDir;
+
+    @Value("${app.presence.activity-journal-sync-ms:50}")
+    private long journalSyncMillis = 50;
+
+    private ActivityJournal journal;
+    private ScheduledExecutorService journalWriter;
+
+    public UserActivityTracker(JdbcTemplate jdbcTemplate,
+                               UserPresenceRepository userPresenceRepository,
+                               UserRepository userRepository,
+                               PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userPresenceRepository = userPresenceRepository;
+        this.userRepository = userRepository;
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            journal = new ActivityJournal(Paths.get(journalDir));
+            Map<Long, LocalDateTime> recovered = journal.recover();
+            recovered.forEach((userId, at) -> pending.merge(userId, at, UserActivityTracker::latest));
+            if (!recovered.isEmpty()) {
+                log.info("Recovered pending activity for {} users from journal", recovered.size());
+            }
+            journalWriter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "activity-journal");
+                thread.setDaemon(true);
+                return thread;
+            });
+            journalWriter.scheduleWithFixedDelay(this::syncJournal, journalSyncMillis, journalSyncMillis, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            log.error("Activity journal unavailable, pending activity will not survive a restart: {}", e.getMessage());
+            journal = null;
+        }
+    }
+
+    public void recordActivity(Long userId) {
+        recordActivity(userId, LocalDateTime.now());
+    }
+
+    public void recordActivity(Long userId, LocalDateTime at) {
+        LocalDateTime previous = pending.get(userId);
+        if (previous != null && !at.isAfter(previous)) {
+            return;
+        }
+
+        boolean[] becameDirty = new boolean[1];
+        pending.compute(userId, (id, current) -> {
+            if (current == null) {
+                becameDirty[0] = true;
+                return at;
+            }
+            return latest(current, at);
+        });
+
+        if (becameDirty[0] && journal != null) {
+            // First activity since the last flush: the journal thread makes it durable before the next flush
+            unjournaled.offer(new Activity(userId, at));
+        }
+    }
+
+    public LocalDateTime getPendingActivity(Long userId) {
+        return pending.get(userId);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes every changed timestamp in a single JDBC batch. Must run before
+     * the inactive-user sweep so the sweep sees all activity recorded so far.
+     * The batch commits in its own transaction before the pending entries and
+     * their journal segments are dropped, even when called from a transaction.
+     */
+    public synchronized int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+
+        rotateJournal();
+
+        Map<Long, LocalDateTime> batch = new HashMap<>(pending);
+        List<Object[]> args = new ArrayList<>(batch.size());
+        List<Long> userIds = new ArrayList<>(batch.size());
+        batch.forEach((userId, at) -> {
+            Timestamp ts = Timestamp.valueOf(at);
+            args.add(new Object[]{ts, userId, ts});
+            userIds.add(userId);
+        });
+
+        flushTransaction.executeWithoutResult(status -> {
+            int[] counts = jdbcTemplate.batchUpdate(UPDATE_LAST_ACTIVITY_SQL, args);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    createPresenceIfMissing(userIds.get(i), batch.get(userIds.get(i)));
+                }
+            }
+        });
+
+        // Only drop entries that were not bumped again while we were writing
+        batch.forEach(pending::remove);
+        compactJournal();
+
+        log.debug("Flushed activity for {} users", batch.size());
+        return batch.size();
+    }
+
+    /**
+     * Appends every queued entry and syncs the journal once for the whole
+     * batch. Runs on the journal thread.
+     */
+    int syncJournal() {
+        if (unjournaled.isEmpty()) {
+            return 0;
+        }
+        int written = 0;
+        try {
+            Activity activity;
+            while ((activity = unjournaled.poll()) != null) {
+                journal.append(activity.userId(), activity.at());
+                written++;
+            }
+            journal.force();
+        } catch (IOException e) {
+            log.warn("Failed to journal activity for {} users: {}", written, e.getMessage());
+        } catch (RuntimeException e) {
+            // A failed batch must not cancel the ones after it
+            log.error("Activity journal sync failed: {}", e.getMessage());
+        }
+        return written;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (journalWriter != null) {
+            journalWriter.shutdownNow();
+            syncJournal();
+        }
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Failed to flush activity on shutdown, journal will be replayed on restart: {}", e.getMessage());
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    private void createPresenceIfMissing(Long userId, LocalDateTime at) {
+        if (userPresenceRepository.findByUserId(userId).isPresent()) {
+            // Row exists with a newer timestamp than ours
+            return;
+        }
+        userRepository.findById(userId).ifPresent(user -> {
+            UserPresence presence = UserPresence.builder()
+                    .user(user)
+                    .status(PresenceStatus.ONLINE)
+                    .lastSeen(at)
+                    .lastActivity(at)
+                    .isTyping(false)
+                    .build();
+            userPresenceRepository.save(presence);
+        });
+    }
+
+    private void rotateJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.rotate();
+        } catch (IOException e) {
+            log.warn("Failed to rotate activity journal: {}", e.getMessage());
+        }
+    }
+
+    private void compactJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            // Entries still pending were journaled in a sealed segment; carry them over first
+            for (Map.Entry<Long, LocalDateTime> entry : pending.entrySet()) {
+                journal.append(entry.getKey(), entry.getValue());
+            }
+            journal.force();
+            journal.deleteSealedSegments();
+        } catch (IOException e) {
+            log.warn("Failed to compact activity journal: {}", e.getMessage());
+        }
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private record Activity(Long userId, LocalDateTime at) {
+    }
+
+    /**
+     * Append-only segment files of "userId,timestamp" lines. The active segment
+     * is sealed on each flush and deleted once its entries are in the database.
+     * Appends are only durable once {@link #force()} returns.
+     */
+    static class ActivityJournal {
+
+        private static final String SEGMENT_GLOB = "activity-*.log";
+
+        private final Path directory;
+        private final List<Path> sealedSegments = new ArrayList<>();
+        private Path activeSegment;
+        private FileChannel channel;
+
+        ActivityJournal(Path directory) throws IOException {
+            this.directory = directory;
+            Files.createDirectories(directory);
+        }
+
+        synchronized Map<Long, LocalDateTime> recover() throws IOException {
+            Map<Long, LocalDateTime> recovered = new HashMap<>();
+            try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, SEGMENT_GLOB)) {
+                for (Path segment : segments) {
+                    for (String line : Files.readAllLines(segment, StandardCharsets.UTF_8)) {
+                        int comma = line.indexOf(',');
+                        if (comma <= 0) {
+                            continue; // torn write at crash time
+                        }
+                        try {
+                            Long userId = Long.valueOf(line.substring(0, comma));
+                            LocalDateTime at = LocalDateTime.parse(line.substring(comma + 1));
+                            recovered.merge(userId, at, UserActivityTracker::latest);
+                        } catch (RuntimeException e) {
+                            // skip torn or corrupt line
+                        }
+                    }
+                    sealedSegments.add(segment);
+                }
+            }
+            openNewSegment();
+            return recovered;
+        }
+
+        synchronized void append(Long userId, LocalDateTime at) throws IOException {
+            byte[] line = (userId + "," + at + "\n").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        synchronized void force() throws IOException {
+            channel.force(false);
+        }
+
+        synchronized void rotate() throws IOException {
+            channel.force(false);
+            channel.close();
+            sealedSegments.add(activeSegment);
+            openNewSegment();
+        }
+
+        synchronized void deleteSealedSegments() throws IOException {
+            for (Path segment : sealedSegments) {
+                Files.deleteIfExists(segment);
+            }
+            sealedSegments.clear();
+        }
+
+        synchronized void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing left to do on shutdown
+            }
+        }
+
+        private void openNewSegment() throws IOException {
+            activeSegment = directory.resolve("activity-" + System.nanoTime() + ".log");
+            channel = FileChannel.open(activeSegment,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+}
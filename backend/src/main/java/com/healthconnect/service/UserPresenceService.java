@@ -22,11 +22,14 @@ public class UserPresenceService {
 
     private final UserPresenceRepository userPresenceRepository;
     private final UserRepository userRepository;
+    private final UserActivityTracker activityTracker;
     private SimpMessagingTemplate messagingTemplate;
 
-    public UserPresenceService(UserPresenceRepository userPresenceRepository, UserRepository userRepository) {
+    public UserPresenceService(UserPresenceRepository userPresenceRepository, UserRepository userRepository,
+                               UserActivityTracker activityTracker) {
         this.userPresenceRepository = userPresenceRepository;
         this.userRepository = userRepository;
+        this.activityTracker = activityTracker;
     }
 
     @Autowired(required = false)
@@ -44,6 +47,7 @@ public class UserPresenceService {
         presence.setIpAddress(ipAddress);
 
         UserPresence savedPresence = userPresenceRepository.save(presence);
+        activityTracker.recordActivity(userId, presence.getLastActivity());
         
         // Broadcast presence update to relevant users
         broadcastPresenceUpdate(savedPresence);
@@ -66,6 +70,7 @@ public class UserPresenceService {
             presence.updatePresence(PresenceStatus.OFFLINE);
             presence.stopTyping();
             UserPresence savedPresence = userPresenceRepository.save(presence);
+            activityTracker.recordActivity(userId, presence.getLastActivity());
             broadcastPresenceUpdate(savedPresence);
             log.info("Set user {} offline", userId);
         }
@@ -78,6 +83,7 @@ public class UserPresenceService {
 
         presence.startTyping(chatId);
         userPresenceRepository.save(presence);
+        activityTracker.recordActivity(userId);
 
         // Broadcast typing notification to chat participants
         broadcastTypingNotification(userId, chatId, true);
@@ -128,19 +134,28 @@ public class UserPresenceService {
         return userPresenceRepository.countOnlineUsers();
     }
 
-    @Transactional
+    // Activity pings are coalesced in memory and written in batches by flushActivity()
     public void updateActivity(Long userId) {
-        UserPresence presence = userPresenceRepository.findByUserId(userId)
-                .orElseGet(() -> createNewPresence(userId));
+        activityTracker.recordActivity(userId);
+    }
 
-        presence.setLastActivity(LocalDateTime.now());
-        userPresenceRepository.save(presence);
+    // Scheduled task to write coalesced activity timestamps (runs every few seconds)
+    @Scheduled(fixedDelayString = "${app.presence.activity-flush-interval:5000}")
+    public void flushActivity() {
+        try {
+            activityTracker.flush();
+        } catch (Exception e) {
+            log.error("Failed to flush user activity: {}", e.getMessage());
+        }
     }
 
     // Scheduled task to clean up inactive users (runs every 5 minutes)
     @Scheduled(fixedRate = 300000) // 5 minutes
     @Transactional
     public void cleanupInactiveUsers() {
+        // Flush first so users active since the last flush are not marked offline
+        activityTracker.flush();
+
         LocalDateTime cutoffTime = LocalDateTime.now().minusMinutes(10);
         LocalDateTime now = LocalDateTime.now();
         
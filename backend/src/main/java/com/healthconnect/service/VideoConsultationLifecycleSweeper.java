@@ -0,0 +1,157 @@
+package com.healthconnect.service;
+
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.entity.VideoConsultation.ConsultationStatus;
+import com.healthconnect.repository.VideoConsultationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Closes video consultations that were left behind: calls still IN_PROGRESS
+ * past the maximum duration are completed, and consultations still waiting
+ * for a participant long after their start time become NO_SHOW. Each batch
+ * is one keyset page closed row by row through
+ * {@link VideoConsultationService#closeConsultation}, plus one batch of audit
+ * entries, in a single transaction; the WebRTC rooms are ended after it
+ * commits. Rows that moved on between the read and their update are skipped
+ * and neither audited nor ended. A tick stops after {@code max-per-run}
+ * consultations or {@code max-run-millis}, whichever comes first, and the
+ * next tick picks up the rest, so a backlog is worked off in small steps.
+ *
+ * Live rooms are closed by the WebRTC session reaper through the same close
+ * routine; the sweeper's longer max duration only catches calls whose room
+ * no longer exists on any node.
+ */
+@Component
+@Slf4j
+public class VideoConsultationLifecycleSweeper {
+
+    private final VideoConsultationRepository consultationRepository;
+    private final VideoConsultationService videoConsultationService;
+    private final AuditService auditService;
+    private final WebRTCService webRTCService;
+    private final TransactionTemplate batchTransaction;
+
+    @Value("${app.video.sweep.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.video.sweep.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.video.sweep.max-per-run:500}")
+    private int maxPerRun;
+
+    @Value("${app.video.sweep.max-run-millis:2000}")
+    private long maxRunMillis;
+
+    @Value("${app.video.sweep.max-duration-minutes:300}")
+    private long maxDurationMinutes;
+
+    @Value("${app.video.sweep.no-show-after-minutes:30}")
+    private long noShowAfterMinutes;
+
+    public VideoConsultationLifecycleSweeper(VideoConsultationRepository consultationRepository,
+                                             VideoConsultationService videoConsultationService,
+                                             AuditService auditService,
+                                             WebRTCService webRTCService,
+                                             PlatformTransactionManager transactionManager) {
+        this.consultationRepository = consultationRepository;
+        this.videoConsultationService = videoConsultationService;
+        this.auditService = auditService;
+        this.webRTCService = webRTCService;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(initialDelayString = "${app.video.sweep.initial-delay:60000}",
+               fixedDelayString = "${app.video.sweep.interval:60000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        long deadline = System.currentTimeMillis() + maxRunMillis;
+        try {
+            Result completed = close(new Pass(ConsultationStatus.COMPLETED,
+                    "VIDEO_CONSULTATION_AUTO_COMPLETED", "max-duration",
+                    "Completed by the lifecycle sweeper after " + maxDurationMinutes + " minutes in progress",
+                    consultationRepository::findLongRunningConsultations),
+                    now.minusMinutes(maxDurationMinutes), maxPerRun, deadline);
+            Result noShows = close(new Pass(ConsultationStatus.NO_SHOW,
+                    "VIDEO_CONSULTATION_NO_SHOW", "no-show",
+                    "Marked no-show by the lifecycle sweeper " + noShowAfterMinutes + " minutes after the scheduled start",
+                    consultationRepository::findAbandonedConsultations),
+                    now.minusMinutes(noShowAfterMinutes), maxPerRun - completed.examined(), deadline);
+            if (completed.closed() > 0 || noShows.closed() > 0) {
+                log.info("Video consultation sweep completed {} long-running and marked {} no-show consultations",
+                        completed.closed(), noShows.closed());
+            }
+        } catch (Exception e) {
+            log.error("Video consultation sweep failed, will retry on the next tick: {}", e.getMessage(), e);
+        }
+    }
+
+    Result close(Pass pass, LocalDateTime cutoff, int budget, long deadline) {
+        long afterId = 0;
+        int examined = 0;
+        int closed = 0;
+        while (examined < budget && System.currentTimeMillis() < deadline) {
+            int limit = Math.min(batchSize, budget - examined);
+            long from = afterId;
+            List<VideoConsultation> page = new ArrayList<>();
+            List<VideoConsultation> moved = batchTransaction.execute(status -> {
+                page.addAll(pass.query.find(cutoff, from, PageRequest.of(0, limit)));
+                LocalDateTime now = LocalDateTime.now();
+                List<VideoConsultation> changed = page.stream()
+                        .filter(consultation -> videoConsultationService.closeConsultation(consultation, pass.toStatus, now))
+                        .toList();
+                auditService.logVideoConsultationTransitions(changed, pass.auditAction, pass.details);
+                return changed;
+            });
+            if (page.isEmpty()) {
+                break;
+            }
+
+            // Committed above; peers still in a room are told the session ended
+            moved.forEach(consultation -> endRoom(consultation.getRoomId(), pass.reason));
+            examined += page.size();
+            closed += moved.size();
+            afterId = page.get(page.size() - 1).getId();
+            if (page.size() < limit) {
+                break;
+            }
+        }
+        return new Result(examined, closed);
+    }
+
+    private void endRoom(String roomId, String reason) {
+        if (roomId == null) {
+            return;
+        }
+        try {
+            webRTCService.endSession(roomId, reason);
+        } catch (Exception e) {
+            log.warn("Failed to end WebRTC room {} of a swept consultation: {}", roomId, e.getMessage());
+        }
+    }
+
+    interface PageQuery {
+        List<VideoConsultation> find(LocalDateTime cutoff, Long afterId, Pageable pageable);
+    }
+
+    record Pass(ConsultationStatus toStatus, String auditAction, String reason, String details, PageQuery query) {
+    }
+
+    record Result(int examined, int closed) {
+    }
+}
@@ -9,6 +9,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -21,6 +22,7 @@ public class VideoConsultationService {
     private final VideoConsultationRepository consultationRepository;
     private final NotificationService notificationService;
     private final AuditService auditService;
+    private final WaitingRoomService waitingRoomService;
     
     @Transactional
     public VideoConsultation createConsultation(Appointment appointment, VideoConsultation.ConsultationType type) {
@@ -33,6 +35,43 @@ public class VideoConsultationService {
             return existing.get();
         }
         
+        VideoConsultation consultation = newConsultation(appointment, type);
+
+        // Audit log
+        auditService.logVideoConsultationAccess(appointment.getPatient(), consultation.getId().toString(),
+                "Created video consultation for appointment " + appointment.getId());
+        auditService.logVideoConsultationAccess(appointment.getDoctor(), consultation.getId().toString(),
+                "Video consultation created for patient " + appointment.getPatient().getFullName());
+
+        // Send notifications
+        notificationService.sendConsultationCreatedNotification(consultation);
+
+        return consultation;
+    }
+
+    /**
+     * Creates the consultation record of an upcoming appointment ahead of its
+     * start, without the audit entries and notifications of
+     * {@link #createConsultation}. Returns the existing record if there is one.
+     */
+    @Transactional
+    public VideoConsultation prepareConsultation(Appointment appointment, VideoConsultation.ConsultationType type) {
+        return consultationRepository.findByAppointmentId(appointment.getId())
+                .orElseGet(() -> newConsultation(appointment, type));
+    }
+
+    /**
+     * Whether the user is the doctor or patient of the consultation held in the room.
+     */
+    @Transactional(readOnly = true)
+    public boolean isParticipant(String roomId, Long userId) {
+        return consultationRepository.findByRoomId(roomId)
+                .filter(consultation -> consultation.getDoctor().getId().equals(userId) ||
+                        consultation.getPatient().getId().equals(userId))
+                .isPresent();
+    }
+
+    private VideoConsultation newConsultation(Appointment appointment, VideoConsultation.ConsultationType type) {
         String roomId = generateRoomId();
         String sessionId = "agora-session-" + roomId; // Simple session ID for Agora
         
@@ -51,18 +90,7 @@ public class VideoConsultationService {
                 .recordingConsent(false)
                 .build();
         
-        consultation = consultationRepository.save(consultation);
-
-        // Audit log
-        auditService.logVideoConsultationAccess(appointment.getPatient(), consultation.getId().toString(),
-                "Created video consultation for appointment " + appointment.getId());
-        auditService.logVideoConsultationAccess(appointment.getDoctor(), consultation.getId().toString(),
-                "Video consultation created for patient " + appointment.getPatient().getFullName());
-
-        // Send notifications
-        notificationService.sendConsultationCreatedNotification(consultation);
-
-        return consultation;
+        return consultationRepository.save(consultation);
     }
     
     @Transactional
@@ -101,6 +129,12 @@ public class VideoConsultationService {
 
         consultation = consultationRepository.save(consultation);
 
+        if (consultation.getStatus() == VideoConsultation.ConsultationStatus.WAITING_FOR_DOCTOR) {
+            waitingRoomService.patientWaiting(consultation);
+        } else if (consultation.getStatus() == VideoConsultation.ConsultationStatus.IN_PROGRESS) {
+            waitingRoomService.consultationStarted(consultation);
+        }
+
         // Audit log for joining
         auditService.logVideoConsultationAccess(user, consultation.getId().toString(),
                 "Joined video consultation room " + consultation.getRoomId());
@@ -135,6 +169,8 @@ public class VideoConsultationService {
         }
         
         consultation = consultationRepository.save(consultation);
+        waitingRoomService.consultationClosed(consultation.getId(), consultation.getDoctor().getId(),
+                consultation.getDurationMinutes());
 
         // Audit log for consultation end
         String duration = consultation.getDurationMinutes() != null ?
@@ -150,6 +186,50 @@ public class VideoConsultationService {
         return consultation;
     }
     
+    /**
+     * Closes the consultation behind a signaling room that was abandoned: a call
+     * in progress is completed, one nobody else joined is marked as a no-show.
+     */
+    @Transactional
+    public void closeAbandonedConsultation(String roomId) {
+        consultationRepository.findByRoomId(roomId).ifPresent(consultation -> {
+            VideoConsultation.ConsultationStatus status = switch (consultation.getStatus()) {
+                case IN_PROGRESS -> VideoConsultation.ConsultationStatus.COMPLETED;
+                case WAITING_FOR_DOCTOR, WAITING_FOR_PATIENT -> VideoConsultation.ConsultationStatus.NO_SHOW;
+                default -> null;
+            };
+            if (status != null && closeConsultation(consultation, status, LocalDateTime.now())) {
+                log.info("Closed abandoned video consultation {} for room {} as {}", consultation.getId(), roomId, status);
+            }
+        });
+    }
+
+    /**
+     * Completes a call still in progress or marks a consultation still waiting
+     * as a no-show, with one guarded update. Returns false, and changes
+     * nothing, if the consultation has moved on since it was read. The
+     * duration runs from the actual start to {@code now}.
+     */
+    @Transactional
+    public boolean closeConsultation(VideoConsultation consultation, VideoConsultation.ConsultationStatus status,
+                                     LocalDateTime now) {
+        List<VideoConsultation.ConsultationStatus> fromStatuses = switch (status) {
+            case COMPLETED -> List.of(VideoConsultation.ConsultationStatus.IN_PROGRESS);
+            case NO_SHOW -> List.of(VideoConsultation.ConsultationStatus.WAITING_FOR_DOCTOR,
+                    VideoConsultation.ConsultationStatus.WAITING_FOR_PATIENT);
+            default -> throw new IllegalArgumentException("A consultation cannot be closed as " + status);
+        };
+        Integer durationMinutes = status == VideoConsultation.ConsultationStatus.COMPLETED
+                && consultation.getActualStartTime() != null
+                ? (int) Duration.between(consultation.getActualStartTime(), now).toMinutes()
+                : null;
+        if (consultationRepository.closeConsultation(consultation.getId(), fromStatuses, status, now, durationMinutes) == 0) {
+            return false;
+        }
+        waitingRoomService.consultationClosed(consultation.getId(), consultation.getDoctor().getId(), durationMinutes);
+        return true;
+    }
+
     @Transactional
     public VideoConsultation updateConsultationSettings(Long consultationId, User user, ConsultationSettings settings) {
         VideoConsultation consultation = consultationRepository.findById(consultationId)
@@ -0,0 +1,513 @@
+package com.healthconnect.service;
+
+import com.healthconnect.dto.RoomCommand;
+import com.healthconnect.dto.WaitingRoomPosition;
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.entity.VideoConsultation.ConsultationStatus;
+import com.healthconnect.entity.VideoConsultation.ConsultationType;
+import com.healthconnect.repository.VideoConsultationRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-doctor waiting rooms for patients in WAITING_FOR_DOCTOR. Each queue is
+ * a sorted set ordered by urgency, then scheduled start, then arrival, so
+ * adding, removing and taking the next patient are O(log n). Whenever a
+ * queue changes, the patients whose position or estimated wait moved get a
+ * {@link WaitingRoomPosition} on /user/queue/waiting-room and the doctor gets
+ * the whole queue on the same destination, replacing client polling.
+ *
+ * The estimated wait is the remainder of the doctor's current call plus one
+ * average consultation per patient ahead, and never earlier than the
+ * scheduled start. The average starts at {@code default-consultation-minutes}
+ * and follows the doctor's completed calls.
+ *
+ * The queues are in memory and updated after the consultation change
+ * commits. Each doctor's queue lives on the node that owns
+ * {@code waiting-room:<doctorId>} in the room ownership ring: changes and
+ * reads on other nodes are forwarded to it, and its pushes reach the users on
+ * any node through the broker relay. After a restart, or when the ring
+ * changes, a node rebuilds the queues it owns from the consultations still
+ * waiting or in progress and drops the ones it no longer owns.
+ */
+@Service
+@Slf4j
+public class WaitingRoomService {
+
+    static final String DESTINATION = "/queue/waiting-room";
+    private static final String QUEUE_KEY_PREFIX = "waiting-room:";
+
+    // Weight of the latest completed call in the doctor's average duration
+    private static final double DURATION_WEIGHT = 0.2;
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::urgencyRank)
+            .thenComparing(Entry::scheduledStartTime, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Entry::waitingSince)
+            .thenComparing(Entry::consultationId);
+
+    private final VideoConsultationRepository consultationRepository;
+    private final RoomOwnership roomOwnership;
+    private final Map<Long, DoctorQueue> queues = new ConcurrentHashMap<>();
+    private SimpMessagingTemplate messagingTemplate;
+    private Clock clock = Clock.systemDefaultZone();
+
+    @Value("${app.waiting-room.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.waiting-room.default-consultation-minutes:15}")
+    private double defaultConsultationMinutes = 15;
+
+    public WaitingRoomService(VideoConsultationRepository consultationRepository, RoomOwnership roomOwnership,
+                              MeterRegistry meterRegistry) {
+        this.consultationRepository = consultationRepository;
+        this.roomOwnership = roomOwnership;
+        Gauge.builder("video.waiting-room.patients", queues,
+                        q -> q.values().stream().mapToInt(DoctorQueue::size).sum())
+                .description("Patients waiting for their doctor")
+                .register(meterRegistry);
+        roomOwnership.onRebalance(this::rebalance);
+    }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Autowired(required = false)
+    public void setMessagingTemplate(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    /**
+     * The patient joined and is waiting for the doctor. Applied once the
+     * current transaction commits; a patient already waiting keeps their place.
+     */
+    public void patientWaiting(VideoConsultation consultation) {
+        if (!enabled) {
+            return;
+        }
+        Entry entry = Entry.of(consultation, LocalDateTime.now(clock));
+        RoomCommand command = command(RoomCommand.Type.WAITING_ROOM_ENQUEUE, entry.doctorId())
+                .waitingEntry(entry)
+                .doctorEmail(consultation.getDoctor().getEmail())
+                .build();
+        afterCommit(() -> apply(command));
+    }
+
+    /**
+     * Both participants joined: the patient leaves the queue and the doctor is
+     * busy until the consultation closes.
+     */
+    public void consultationStarted(VideoConsultation consultation) {
+        if (!enabled) {
+            return;
+        }
+        RoomCommand command = command(RoomCommand.Type.WAITING_ROOM_START, consultation.getDoctor().getId())
+                .consultationId(consultation.getId())
+                .doctorEmail(consultation.getDoctor().getEmail())
+                .since(consultation.getActualStartTime() != null ? consultation.getActualStartTime() : LocalDateTime.now(clock))
+                .build();
+        afterCommit(() -> apply(command));
+    }
+
+    /**
+     * The consultation was completed, ended or abandoned. Its patient leaves
+     * the queue, and the doctor is free again if it was their current call.
+     */
+    public void consultationClosed(Long consultationId, Long doctorId, Integer durationMinutes) {
+        if (!enabled) {
+            return;
+        }
+        RoomCommand command = command(RoomCommand.Type.WAITING_ROOM_CLOSE, doctorId)
+                .consultationId(consultationId)
+                .durationMinutes(durationMinutes)
+                .build();
+        afterCommit(() -> apply(command));
+    }
+
+    public List<WaitingRoomPosition> getQueue(Long doctorId) {
+        String key = queueKey(doctorId);
+        if (!roomOwnership.isLocal(key)) {
+            WaitingRoomPosition[] queue = roomOwnership.forward(key,
+                    command(RoomCommand.Type.WAITING_ROOM_QUEUE, doctorId).build(), WaitingRoomPosition[].class);
+            return queue != null ? List.of(queue) : List.of();
+        }
+        return localQueue(doctorId);
+    }
+
+    /**
+     * The consultation's place in its doctor's queue, or null if it is not waiting.
+     */
+    public WaitingRoomPosition getPosition(Long consultationId, Long doctorId) {
+        return getQueue(doctorId).stream()
+                .filter(position -> position.getConsultationId().equals(consultationId))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Runs a waiting-room command on this node, which owns the doctor's
+     * queue. Changes are pushed from here; QUEUE returns the queue.
+     */
+    public Object execute(RoomCommand command) {
+        Long doctorId = command.getDoctorId();
+        switch (command.getType()) {
+            case WAITING_ROOM_ENQUEUE:
+                publish(enqueue(command.getWaitingEntry(), command.getDoctorEmail()));
+                return null;
+            case WAITING_ROOM_START:
+                publish(start(command.getConsultationId(), doctorId, command.getDoctorEmail(), command.getSince()));
+                return null;
+            case WAITING_ROOM_CLOSE:
+                publish(close(command.getConsultationId(), doctorId, command.getDurationMinutes()));
+                return null;
+            case WAITING_ROOM_QUEUE:
+                return localQueue(doctorId).toArray(new WaitingRoomPosition[0]);
+            default:
+                throw new IllegalArgumentException("Not a waiting room command: " + command.getType());
+        }
+    }
+
+    private List<WaitingRoomPosition> localQueue(Long doctorId) {
+        DoctorQueue queue = queues.get(doctorId);
+        if (queue == null) {
+            return List.of();
+        }
+        synchronized (queue) {
+            return queue.positions(LocalDateTime.now(clock)).stream().map(Update::position).toList();
+        }
+    }
+
+    /**
+     * Restores the queues this node owns from the database after a restart.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<VideoConsultation> open = consultationRepository.findWithParticipantsByStatusIn(
+                    List.of(ConsultationStatus.WAITING_FOR_DOCTOR, ConsultationStatus.IN_PROGRESS));
+            int waiting = 0;
+            for (VideoConsultation consultation : open) {
+                if (!roomOwnership.isLocal(queueKey(consultation.getDoctor().getId()))) {
+                    continue;
+                }
+                if (consultation.getStatus() == ConsultationStatus.IN_PROGRESS) {
+                    start(consultation.getId(), consultation.getDoctor().getId(), consultation.getDoctor().getEmail(),
+                            consultation.getActualStartTime() != null ? consultation.getActualStartTime() : LocalDateTime.now(clock));
+                } else if (!enqueue(Entry.of(consultation, LocalDateTime.now(clock)), consultation.getDoctor().getEmail()).isEmpty()) {
+                    waiting++;
+                }
+            }
+            log.info("Rebuilt waiting rooms with {} waiting patients", waiting);
+        } catch (Exception e) {
+            log.error("Failed to rebuild waiting rooms: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The ring changed: queues now owned elsewhere are dropped, and the ones
+     * this node took over are restored. Rebuilding a queue that stayed here
+     * changes nothing.
+     */
+    void rebalance() {
+        if (!enabled) {
+            return;
+        }
+        queues.keySet().removeIf(doctorId -> !roomOwnership.isLocal(queueKey(doctorId)));
+        rebuild();
+    }
+
+    /**
+     * Re-sends estimates, which drift as the doctors' current calls go on.
+     */
+    @Scheduled(initialDelayString = "${app.waiting-room.refresh-interval:60000}",
+               fixedDelayString = "${app.waiting-room.refresh-interval:60000}")
+    public void refreshEstimates() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now(clock);
+        for (DoctorQueue queue : queues.values()) {
+            List<Update> updates;
+            synchronized (queue) {
+                if (queue.size() == 0) {
+                    continue;
+                }
+                updates = queue.changes(now, 1);
+            }
+            publish(updates);
+        }
+    }
+
+    List<Update> enqueue(Entry entry, String doctorEmail) {
+        DoctorQueue queue = queueOf(entry.doctorId(), doctorEmail);
+        synchronized (queue) {
+            if (!queue.add(entry)) {
+                return List.of();
+            }
+            // Everyone from the new patient's place on moved back one
+            return queue.changes(LocalDateTime.now(clock), queue.positionOf(entry));
+        }
+    }
+
+    List<Update> start(Long consultationId, Long doctorId, String doctorEmail, LocalDateTime since) {
+        DoctorQueue queue = queueOf(doctorId, doctorEmail);
+        synchronized (queue) {
+            List<Update> updates = new ArrayList<>();
+            Entry removed = queue.remove(consultationId);
+            if (removed != null) {
+                updates.add(left(removed));
+            }
+            queue.activeConsultationId = consultationId;
+            queue.activeSince = since;
+            // The doctor's current call changed, so every estimate did
+            updates.addAll(queue.changes(LocalDateTime.now(clock), 1));
+            return updates;
+        }
+    }
+
+    List<Update> close(Long consultationId, Long doctorId, Integer durationMinutes) {
+        DoctorQueue queue = queues.get(doctorId);
+        if (queue == null) {
+            return List.of();
+        }
+        synchronized (queue) {
+            List<Update> updates = new ArrayList<>();
+            int from = Integer.MAX_VALUE;
+            Entry removed = queue.get(consultationId);
+            if (removed != null) {
+                from = queue.positionOf(removed);
+                queue.remove(consultationId);
+                updates.add(left(removed));
+            }
+            if (consultationId.equals(queue.activeConsultationId)) {
+                queue.activeConsultationId = null;
+                queue.activeSince = null;
+                if (durationMinutes != null && durationMinutes > 0) {
+                    queue.averageMinutes += DURATION_WEIGHT * (durationMinutes - queue.averageMinutes);
+                }
+                from = 1;
+            }
+            if (from != Integer.MAX_VALUE) {
+                updates.addAll(queue.changes(LocalDateTime.now(clock), from));
+            }
+            return updates;
+        }
+    }
+
+    private DoctorQueue queueOf(Long doctorId, String doctorEmail) {
+        DoctorQueue queue = queues.computeIfAbsent(doctorId, id -> new DoctorQueue(defaultConsultationMinutes));
+        if (doctorEmail != null) {
+            queue.doctorEmail = doctorEmail;
+        }
+        return queue;
+    }
+
+    private void apply(RoomCommand command) {
+        try {
+            if (roomOwnership.isLocal(command.getRoomId())) {
+                execute(command);
+            } else {
+                roomOwnership.forward(command.getRoomId(), command, Void.class);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to apply {} to {}: {}", command.getType(), command.getRoomId(), e.getMessage());
+        }
+    }
+
+    private static RoomCommand.RoomCommandBuilder command(RoomCommand.Type type, Long doctorId) {
+        return RoomCommand.builder().type(type).roomId(queueKey(doctorId)).doctorId(doctorId);
+    }
+
+    static String queueKey(Long doctorId) {
+        return QUEUE_KEY_PREFIX + doctorId;
+    }
+
+    private void publish(List<Update> updates) {
+        if (messagingTemplate == null || updates.isEmpty()) {
+            return;
+        }
+        // The doctor's view is the last update of each queue
+        Map<String, List<WaitingRoomPosition>> doctorViews = new HashMap<>();
+        for (Update update : updates) {
+            if (update.recipient() != null) {
+                send(update.recipient(), update.position());
+            }
+            if (update.doctorView() != null) {
+                doctorViews.put(update.doctorEmail(), update.doctorView());
+            }
+        }
+        doctorViews.forEach(this::send);
+    }
+
+    private void send(String user, Object payload) {
+        try {
+            messagingTemplate.convertAndSendToUser(user, DESTINATION, payload);
+        } catch (Exception e) {
+            log.warn("Failed to send waiting room update to {}: {}", user, e.getMessage());
+        }
+    }
+
+    private static Update left(Entry entry) {
+        WaitingRoomPosition position = entry.position(0, 0, 0);
+        position.setStatus("LEFT");
+        return new Update(entry.patientEmail(), position, null, null);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * A message to send: a patient's position, or the doctor's whole queue.
+     */
+    record Update(String recipient, WaitingRoomPosition position, String doctorEmail,
+                  List<WaitingRoomPosition> doctorView) {
+    }
+
+    /**
+     * A waiting patient, as sent to the queue's owner.
+     */
+    public record Entry(Long consultationId, Long doctorId, Long patientId, String patientEmail, String patientName,
+                 int urgencyRank, LocalDateTime scheduledStartTime, LocalDateTime waitingSince) {
+
+        static Entry of(VideoConsultation consultation, LocalDateTime now) {
+            return new Entry(consultation.getId(), consultation.getDoctor().getId(),
+                    consultation.getPatient().getId(), consultation.getPatient().getEmail(),
+                    consultation.getPatient().getFullName(), rankOf(consultation.getType()),
+                    consultation.getScheduledStartTime(),
+                    consultation.getPatientJoinTime() != null ? consultation.getPatientJoinTime() : now);
+        }
+
+        WaitingRoomPosition position(int position, int queueLength, long estimatedWaitMinutes) {
+            return WaitingRoomPosition.builder()
+                    .consultationId(consultationId)
+                    .doctorId(doctorId)
+                    .patientId(patientId)
+                    .patientName(patientName)
+                    .status("WAITING")
+                    .position(position)
+                    .queueLength(queueLength)
+                    .estimatedWaitMinutes(estimatedWaitMinutes)
+                    .urgent(urgencyRank < 2)
+                    .scheduledStartTime(scheduledStartTime)
+                    .waitingSince(waitingSince)
+                    .build();
+        }
+
+        private static int rankOf(ConsultationType type) {
+            if (type == ConsultationType.EMERGENCY_CONSULTATION) {
+                return 0;
+            }
+            return type == ConsultationType.URGENT_CARE ? 1 : 2;
+        }
+    }
+
+    /**
+     * One doctor's queue and current call. Guarded by its own monitor.
+     */
+    private static final class DoctorQueue {
+
+        private final TreeSet<Entry> waiting = new TreeSet<>(ORDER);
+        private final Map<Long, Entry> byConsultation = new HashMap<>();
+        private volatile String doctorEmail;
+        private Long activeConsultationId;
+        private LocalDateTime activeSince;
+        private double averageMinutes;
+
+        DoctorQueue(double averageMinutes) {
+            this.averageMinutes = averageMinutes;
+        }
+
+        int size() {
+            return byConsultation.size();
+        }
+
+        Entry get(Long consultationId) {
+            return byConsultation.get(consultationId);
+        }
+
+        boolean add(Entry entry) {
+            if (byConsultation.putIfAbsent(entry.consultationId(), entry) != null) {
+                return false;
+            }
+            waiting.add(entry);
+            return true;
+        }
+
+        Entry remove(Long consultationId) {
+            Entry entry = byConsultation.remove(consultationId);
+            if (entry != null) {
+                waiting.remove(entry);
+            }
+            return entry;
+        }
+
+        int positionOf(Entry entry) {
+            return waiting.headSet(entry).size() + 1;
+        }
+
+        /**
+         * Positions of the whole queue, each addressed to its patient.
+         */
+        List<Update> positions(LocalDateTime now) {
+            List<Update> positions = new ArrayList<>(waiting.size());
+            double remaining = activeSince == null ? 0
+                    : Math.max(0, averageMinutes - Duration.between(activeSince, now).toMinutes());
+            int position = 0;
+            for (Entry entry : waiting) {
+                double wait = remaining + position * averageMinutes;
+                long untilStart = entry.scheduledStartTime() != null
+                        ? Math.max(0, Duration.between(now, entry.scheduledStartTime()).toMinutes()) : 0;
+                position++;
+                positions.add(new Update(entry.patientEmail(),
+                        entry.position(position, waiting.size(), Math.max(Math.round(wait), untilStart)), null, null));
+            }
+            return positions;
+        }
+
+        /**
+         * Updates for the patients from the given position on, and the doctor's view.
+         */
+        List<Update> changes(LocalDateTime now, int from) {
+            List<Update> positions = positions(now);
+            List<Update> changes = new ArrayList<>(positions.subList(Math.min(from - 1, positions.size()), positions.size()));
+            if (doctorEmail != null) {
+                changes.add(new Update(null, null, doctorEmail, positions.stream().map(Update::position).toList()));
+            }
+            return changes;
+        }
+    }
+}
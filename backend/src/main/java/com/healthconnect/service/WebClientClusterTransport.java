@@ -0,0 +1,55 @@
+package com.healthconnect.service;
+
+import com.healthconnect.dto.RoomCommand;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+
+/**
+ * {@link ClusterTransport} over the internal cluster endpoints, authenticated
+ * with the shared {@code app.cluster.secret}. Calls block so that a sender's
+ * signals reach the owner in the order they were sent.
+ */
+@Slf4j
+public class WebClientClusterTransport implements ClusterTransport {
+
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    private final WebClient webClient;
+    private final String secret;
+    private final Duration timeout;
+
+    public WebClientClusterTransport(WebClient webClient, String secret, Duration timeout) {
+        this.webClient = webClient;
+        this.secret = secret;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public boolean ping(ClusterNode node) {
+        try {
+            String nodeId = webClient.get()
+                    .uri(node.baseUrl() + "/api/internal/cluster/ping")
+                    .header(SECRET_HEADER, secret)
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .block(timeout);
+            return node.id().equals(nodeId);
+        } catch (Exception e) {
+            log.debug("Cluster node {} did not answer: {}", node.id(), e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public <T> T send(ClusterNode node, RoomCommand command, Class<T> responseType) {
+        return webClient.post()
+                .uri(node.baseUrl() + "/api/internal/cluster/rooms")
+                .header(SECRET_HEADER, secret)
+                .bodyValue(command)
+                .retrieve()
+                .bodyToMono(responseType)
+                .block(timeout);
+    }
+}
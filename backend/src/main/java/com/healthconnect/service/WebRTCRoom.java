@@ -0,0 +1,118 @@
+package com.healthconnect.service;
+
+import com.healthconnect.service.WebRTCService.WebRTCPeer;
+import com.healthconnect.service.WebRTCService.WebRTCSession;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Peers of one WebRTC room, indexed by user id and by peer id. Lookups are
+ * plain concurrent map reads, so the per-signal cost of resolving sender and
+ * target does not depend on room size, and join and leave never copy the room.
+ * A user has at most one peer: joining again (a reconnect) replaces the old
+ * peer in both indexes.
+ */
+final class WebRTCRoom {
+
+    private final String roomId;
+    private final WebRTCSession session;
+    private final Map<Long, WebRTCPeer> peersByUser = new ConcurrentHashMap<>();
+    private final Map<String, WebRTCPeer> peersById = new ConcurrentHashMap<>();
+    // When the room last became empty, 0 while someone is in it
+    private volatile long emptySince;
+    // When the call started: the earliest join time of any peer, 0 until someone joins
+    private volatile long startedAt;
+
+    WebRTCRoom(String roomId, WebRTCSession session) {
+        this.roomId = roomId;
+        this.session = session;
+        this.emptySince = session.getCreatedAt();
+    }
+
+    String getRoomId() {
+        return roomId;
+    }
+
+    WebRTCSession getSession() {
+        return session;
+    }
+
+    /**
+     * Why the room should be closed at {@code now}, or null while it is live:
+     * "idle" once nobody has been in it for {@code idleTimeoutMillis}, and
+     * "max-duration" once the call has run for {@code maxDurationMillis}, which
+     * also catches peers that disappeared without leaving. The call runs from
+     * the first join, so time a room spent pre-warmed does not count.
+     */
+    String expiryReason(long now, long idleTimeoutMillis, long maxDurationMillis) {
+        long empty = emptySince;
+        if (empty > 0 && peersByUser.isEmpty() && now - empty >= idleTimeoutMillis) {
+            return "idle";
+        }
+        long started = startedAt;
+        if (started > 0 && now - started >= maxDurationMillis) {
+            return "max-duration";
+        }
+        return null;
+    }
+
+    /**
+     * Adds the peer and returns the peer it replaced for the same user, if any.
+     */
+    WebRTCPeer join(WebRTCPeer peer) {
+        WebRTCPeer[] replaced = new WebRTCPeer[1];
+        // compute holds the user's entry, so concurrent joins by one user apply one at a time
+        peersByUser.compute(peer.getUserId(), (userId, previous) -> {
+            if (previous != null) {
+                peersById.remove(previous.getPeerId(), previous);
+                replaced[0] = previous;
+            }
+            peersById.put(peer.getPeerId(), peer);
+            emptySince = 0;
+            // Peers handed off from another node keep their original join time
+            if (startedAt == 0 || peer.getJoinedAt() < startedAt) {
+                startedAt = peer.getJoinedAt();
+            }
+            return peer;
+        });
+        return replaced[0];
+    }
+
+    /**
+     * Removes the user's peer at {@code now} and returns it, or null if the user
+     * was not in the room.
+     */
+    WebRTCPeer leave(Long userId, long now) {
+        WebRTCPeer[] removed = new WebRTCPeer[1];
+        peersByUser.computeIfPresent(userId, (id, peer) -> {
+            peersById.remove(peer.getPeerId(), peer);
+            removed[0] = peer;
+            return null;
+        });
+        if (removed[0] != null && peersByUser.isEmpty()) {
+            emptySince = now;
+        }
+        return removed[0];
+    }
+
+    WebRTCPeer findByUserId(Long userId) {
+        return userId != null ? peersByUser.get(userId) : null;
+    }
+
+    WebRTCPeer findByPeerId(String peerId) {
+        return peerId != null ? peersById.get(peerId) : null;
+    }
+
+    /**
+     * Live view of the peers; iteration is weakly consistent and never copies.
+     */
+    Collection<WebRTCPeer> peers() {
+        return peersByUser.values();
+    }
+
+    int size() {
+        return peersByUser.size();
+    }
+}
@@ -1,86 +1,260 @@
 package com.healthconnect.service;
 
 import com.healthconnect.dto.WebRTCSignalRequest;
-import com.healthconnect.dto.CallRecordingRequest;
-import com.healthconnect.dto.CallQualityMetrics;
+import com.healthconnect.dto.RoomCommand;
 import com.healthconnect.controller.WebRTCController.RoomStatusResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.List;
 import java.util.UUID;
-import java.util.Base64;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
 public class WebRTCService {
 
+    private final VideoConsultationService videoConsultationService;
+    private final IceCandidateBatcher iceCandidateBatcher;
+    private final RoomOwnership roomOwnership;
+    private final Counter idleReaped;
+    private final Counter maxDurationReaped;
+    private final Counter prewarmed;
+    private final Timer existingRoomJoins;
+    private final Timer coldJoins;
     private SimpMessagingTemplate messagingTemplate;
+    private Clock clock = Clock.systemUTC();
+
+    @Value("${app.webrtc.session.idle-timeout-minutes:10}")
+    private long idleTimeoutMinutes;
+
+    @Value("${app.webrtc.session.max-duration-minutes:240}")
+    private long maxDurationMinutes;
+
+    // targeted: signals go to the target's own session; broadcast: legacy room topic copies
+    @Value("${app.webrtc.signaling.delivery:targeted}")
+    private String signalingDelivery = "targeted";
+
+    public WebRTCService(VideoConsultationService videoConsultationService, MeterRegistry meterRegistry,
+                         IceCandidateBatcher iceCandidateBatcher, RoomOwnership roomOwnership) {
+        this.videoConsultationService = videoConsultationService;
+        this.iceCandidateBatcher = iceCandidateBatcher;
+        this.roomOwnership = roomOwnership;
+        roomOwnership.onRebalance(this::handOffRooms);
+        Gauge.builder("webrtc.rooms.active", rooms, Map::size)
+                .description("Signaling rooms held in memory")
+                .register(meterRegistry);
+        Gauge.builder("webrtc.sessions.active", activeSessions, Map::size)
+                .description("WebRTC sessions held in memory")
+                .register(meterRegistry);
+        Gauge.builder("webrtc.peers.active", rooms, r -> r.values().stream().mapToInt(WebRTCRoom::size).sum())
+                .description("Peers across all signaling rooms")
+                .register(meterRegistry);
+        this.idleReaped = Counter.builder("webrtc.sessions.reaped")
+                .description("Sessions closed by the reaper")
+                .tag("reason", "idle")
+                .register(meterRegistry);
+        this.maxDurationReaped = Counter.builder("webrtc.sessions.reaped")
+                .description("Sessions closed by the reaper")
+                .tag("reason", "max-duration")
+                .register(meterRegistry);
+        this.prewarmed = Counter.builder("webrtc.rooms.prewarmed")
+                .description("Rooms opened ahead of their consultation's start")
+                .register(meterRegistry);
+        this.existingRoomJoins = joinTimer(meterRegistry, "existing");
+        this.coldJoins = joinTimer(meterRegistry, "cold");
+    }
+
+    private static Timer joinTimer(MeterRegistry meterRegistry, String room) {
+        return Timer.builder("webrtc.rooms.join")
+                .description("Time to join a peer to its room, cold when the join had to open the room")
+                .tag("room", room)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
 
     @Autowired(required = false)
     public void setMessagingTemplate(SimpMessagingTemplate messagingTemplate) {
         this.messagingTemplate = messagingTemplate;
     }
+
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
     
-    // In-memory storage for active sessions (in production, use Redis or database)
+    // In-memory storage for active sessions (in production, use Redis or database).
+    // Each room also holds its session, which is the roomId index.
     private final Map<String, WebRTCSession> activeSessions = new ConcurrentHashMap<>();
-    private final Map<String, List<WebRTCPeer>> roomPeers = new ConcurrentHashMap<>();
+    private final Map<String, WebRTCRoom> rooms = new ConcurrentHashMap<>();
     
+    // Room operations run on the node that owns the room (see RoomOwnership)
+
     public String createSession(String roomId) {
-        String sessionId = UUID.randomUUID().toString();
-        
-        WebRTCSession session = WebRTCSession.builder()
-                .sessionId(sessionId)
-                .roomId(roomId)
-                .status(SessionStatus.CREATED)
-                .createdAt(System.currentTimeMillis())
-                .build();
+        if (!roomOwnership.isLocal(roomId)) {
+            return roomOwnership.forward(roomId, command(RoomCommand.Type.CREATE, roomId).build(), String.class);
+        }
+        return createSessionLocally(roomId);
+    }
+
+    private String createSessionLocally(String roomId) {
+        WebRTCSession session = newSession(roomId);
+        String sessionId = session.getSessionId();
         
         activeSessions.put(sessionId, session);
-        roomPeers.put(roomId, new CopyOnWriteArrayList<>());
+        WebRTCRoom previous = rooms.put(roomId, new WebRTCRoom(roomId, session));
+        if (previous != null) {
+            activeSessions.remove(previous.getSession().getSessionId());
+        }
         
         log.info("Created WebRTC session: {} for room: {}", sessionId, roomId);
         return sessionId;
     }
+
+    /**
+     * Opens the room ahead of its consultation so the first join only attaches
+     * a peer. Unlike {@link #createSession}, an existing room is left alone.
+     * Returns whether the room was opened by this call.
+     */
+    public boolean prewarmRoom(String roomId) {
+        if (!roomOwnership.isLocal(roomId)) {
+            return Boolean.TRUE.equals(roomOwnership.forward(roomId,
+                    command(RoomCommand.Type.PREWARM, roomId).build(), Boolean.class));
+        }
+        return prewarmRoomLocally(roomId);
+    }
+
+    private boolean prewarmRoomLocally(String roomId) {
+        if (!openRoomLocally(roomId)) {
+            return false;
+        }
+        prewarmed.increment();
+        log.debug("Pre-warmed WebRTC room {}", roomId);
+        return true;
+    }
+
+    private boolean openRoomLocally(String roomId) {
+        if (rooms.containsKey(roomId)) {
+            return false;
+        }
+        WebRTCSession session = newSession(roomId);
+        activeSessions.put(session.getSessionId(), session);
+        if (rooms.putIfAbsent(roomId, new WebRTCRoom(roomId, session)) != null) {
+            activeSessions.remove(session.getSessionId());
+            return false;
+        }
+        return true;
+    }
+
+    private WebRTCSession newSession(String roomId) {
+        return WebRTCSession.builder()
+                .sessionId(UUID.randomUUID().toString())
+                .roomId(roomId)
+                .status(SessionStatus.CREATED)
+                .createdAt(clock.millis())
+                .build();
+    }
     
     public void initializeUserSession(String roomId, Long userId, String userRole) {
+        initializeUserSession(roomId, userId, userRole, false);
+    }
+
+    public void initializeUserSession(String roomId, Long userId, String userRole, boolean iceBatching) {
+        initializeUserSession(roomId, userId, userRole, iceBatching, null, null);
+    }
+
+    /**
+     * Joins a user to a room. The principal name and STOMP session id let
+     * signals be delivered to that one session instead of the room topic.
+     */
+    public void initializeUserSession(String roomId, Long userId, String userRole, boolean iceBatching,
+                                      String principalName, String stompSessionId) {
+        if (!roomOwnership.isLocal(roomId)) {
+            roomOwnership.forward(roomId, command(RoomCommand.Type.JOIN, roomId)
+                    .userId(userId)
+                    .userRole(userRole)
+                    .iceBatching(iceBatching)
+                    .principalName(principalName)
+                    .stompSessionId(stompSessionId)
+                    .build(), Void.class);
+            return;
+        }
+        initializeUserSessionLocally(roomId, userId, userRole, iceBatching, principalName, stompSessionId);
+    }
+
+    private void initializeUserSessionLocally(String roomId, Long userId, String userRole, boolean iceBatching,
+                                              String principalName, String stompSessionId) {
+        long start = System.nanoTime();
+        boolean cold = false;
+        if (!rooms.containsKey(roomId)) {
+            // A room that was not pre-warmed is opened by its first participant, and only by one
+            if (!videoConsultationService.isParticipant(roomId, userId)) {
+                throw new RuntimeException("Room not found: " + roomId);
+            }
+            cold = openRoomLocally(roomId);
+        }
         WebRTCPeer peer = WebRTCPeer.builder()
                 .userId(userId)
                 .userRole(userRole)
                 .peerId(UUID.randomUUID().toString())
-                .joinedAt(System.currentTimeMillis())
+                .joinedAt(clock.millis())
+                .iceBatching(iceBatching)
+                .principalName(principalName)
+                .stompSessionId(stompSessionId)
                 .build();
         
-        List<WebRTCPeer> peers = roomPeers.get(roomId);
-        if (peers != null) {
-            peers.add(peer);
-            
+        WebRTCRoom room = rooms.get(roomId);
+        if (room != null) {
+            WebRTCPeer replaced = room.join(peer);
+            if (replaced != null) {
+                // Reconnect: the old peer is gone, let the others drop its connection
+                iceCandidateBatcher.discard(batchScope(roomId), replaced.getPeerId());
+                notifyPeersUserLeft(roomId, replaced);
+                log.info("User {} rejoined room {}, replaced peer {}", userId, roomId, replaced.getPeerId());
+            }
+
             // Notify other peers about new user
             notifyPeersUserJoined(roomId, peer);
             
             // Send existing peers to new user
             sendExistingPeersToUser(roomId, peer);
         }
+        (cold ? coldJoins : existingRoomJoins).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         
         log.info("User {} joined room: {} as {}", userId, roomId, userRole);
     }
     
     public void handleWebRTCSignal(String roomId, Long userId, WebRTCSignalRequest signal) {
-        List<WebRTCPeer> peers = roomPeers.get(roomId);
-        if (peers == null) {
+        if (!roomOwnership.isLocal(roomId)) {
+            roomOwnership.forward(roomId, command(RoomCommand.Type.SIGNAL, roomId)
+                    .userId(userId)
+                    .signal(signal)
+                    .build(), Void.class);
+            return;
+        }
+        handleWebRTCSignalLocally(roomId, userId, signal);
+    }
+
+    private void handleWebRTCSignalLocally(String roomId, Long userId, WebRTCSignalRequest signal) {
+        WebRTCRoom room = rooms.get(roomId);
+        if (room == null) {
             log.warn("Room not found: {}", roomId);
             return;
         }
         
-        WebRTCPeer sender = peers.stream()
-                .filter(p -> p.getUserId().equals(userId))
-                .findFirst()
-                .orElse(null);
+        WebRTCPeer sender = room.findByUserId(userId);
         
         if (sender == null) {
             log.warn("Sender not found in room: {}", roomId);
@@ -107,7 +281,10 @@ public class WebRTCService {
     }
     
     private void handleOffer(String roomId, WebRTCPeer sender, WebRTCSignalRequest signal) {
-        // Forward offer to target peer or broadcast to room if no specific target
+        // Candidates still batched belong to the previous negotiation
+        iceCandidateBatcher.flush(batchScope(roomId), sender.getPeerId());
+
+        // Forward offer to target peer, or to every other peer if no specific target
         String targetPeerId = signal.getTargetPeerId();
 
         WebRTCMessage message = WebRTCMessage.builder()
@@ -120,18 +297,20 @@ public class WebRTCService {
         if (targetPeerId != null && !targetPeerId.isEmpty()) {
             WebRTCPeer targetPeer = findPeerById(roomId, targetPeerId);
             if (targetPeer != null) {
-                sendMessageToPeer(roomId, targetPeer.getUserId(), message);
+                sendMessageToPeer(roomId, targetPeer, message);
                 log.debug("Forwarded offer from {} to {}", sender.getPeerId(), targetPeerId);
             }
         } else {
-            // Broadcast to room if no specific target
-            broadcastToRoom(roomId, message);
-            log.debug("Broadcasted offer from {} to room {}", sender.getPeerId(), roomId);
+            // No specific target: every other peer in the room
+            sendToOtherPeers(roomId, sender, message);
+            log.debug("Sent offer from {} to room {}", sender.getPeerId(), roomId);
         }
     }
     
     private void handleAnswer(String roomId, WebRTCPeer sender, WebRTCSignalRequest signal) {
-        // Forward answer to target peer or broadcast to room if no specific target
+        iceCandidateBatcher.flush(batchScope(roomId), sender.getPeerId());
+
+        // Forward answer to target peer, or to every other peer if no specific target
         String targetPeerId = signal.getTargetPeerId();
 
         WebRTCMessage message = WebRTCMessage.builder()
@@ -144,89 +323,95 @@ public class WebRTCService {
         if (targetPeerId != null && !targetPeerId.isEmpty()) {
             WebRTCPeer targetPeer = findPeerById(roomId, targetPeerId);
             if (targetPeer != null) {
-                sendMessageToPeer(roomId, targetPeer.getUserId(), message);
+                sendMessageToPeer(roomId, targetPeer, message);
                 log.debug("Forwarded answer from {} to {}", sender.getPeerId(), targetPeerId);
             }
         } else {
-            // Broadcast to room if no specific target
-            broadcastToRoom(roomId, message);
-            log.debug("Broadcasted answer from {} to room {}", sender.getPeerId(), roomId);
+            // No specific target: every other peer in the room
+            sendToOtherPeers(roomId, sender, message);
+            log.debug("Sent answer from {} to room {}", sender.getPeerId(), roomId);
         }
     }
     
     private void handleIceCandidate(String roomId, WebRTCPeer sender, WebRTCSignalRequest signal) {
-        // Forward ICE candidate to target peer or broadcast to room if no specific target
         String targetPeerId = signal.getTargetPeerId();
 
+        if (signal.getData() != null && iceCandidateBatcher.isEnabled()
+                && receiversAcceptBatches(roomId, sender, targetPeerId)) {
+            // Collected for a few milliseconds and sent as one ICE_CANDIDATE_BATCH
+            iceCandidateBatcher.add(batchScope(roomId), sender.getPeerId(), targetPeerId, signal.getData(),
+                    candidates -> forwardIceCandidate(roomId, sender, targetPeerId, MessageType.ICE_CANDIDATE_BATCH, candidates));
+            return;
+        }
+        forwardIceCandidate(roomId, sender, targetPeerId, MessageType.ICE_CANDIDATE, signal.getData());
+    }
+
+    private void forwardIceCandidate(String roomId, WebRTCPeer sender, String targetPeerId, MessageType type, Object data) {
+        // Forward ICE candidate to target peer, or to every other peer if no specific target
         WebRTCMessage message = WebRTCMessage.builder()
-                .type(MessageType.ICE_CANDIDATE)
+                .type(type)
                 .fromPeerId(sender.getPeerId())
                 .toPeerId(targetPeerId)
-                .data(signal.getData())
+                .data(data)
                 .build();
 
         if (targetPeerId != null && !targetPeerId.isEmpty()) {
             WebRTCPeer targetPeer = findPeerById(roomId, targetPeerId);
             if (targetPeer != null) {
-                sendMessageToPeer(roomId, targetPeer.getUserId(), message);
+                sendMessageToPeer(roomId, targetPeer, message);
                 log.debug("Forwarded ICE candidate from {} to {}", sender.getPeerId(), targetPeerId);
             }
         } else {
-            // Broadcast to room if no specific target
-            broadcastToRoom(roomId, message);
-            log.debug("Broadcasted ICE candidate from {} to room {}", sender.getPeerId(), roomId);
+            // No specific target: every other peer in the room
+            sendToOtherPeers(roomId, sender, message);
+            log.debug("Sent ICE candidate from {} to room {}", sender.getPeerId(), roomId);
         }
     }
     
     private void handleScreenShareStart(String roomId, WebRTCPeer sender) {
         sender.setScreenSharing(true);
         
-        // Notify all other peers
-        List<WebRTCPeer> peers = roomPeers.get(roomId);
-        if (peers != null) {
-            peers.stream()
-                    .filter(p -> !p.getUserId().equals(sender.getUserId()))
-                    .forEach(peer -> {
-                        WebRTCMessage message = WebRTCMessage.builder()
-                                .type(MessageType.SCREEN_SHARE_START)
-                                .fromPeerId(sender.getPeerId())
-                                .build();
-                        
-                        sendMessageToPeer(roomId, peer.getUserId(), message);
-                    });
+        // Room-level event: one broadcast reaches all other peers
+        if (rooms.containsKey(roomId)) {
+            WebRTCMessage message = WebRTCMessage.builder()
+                    .type(MessageType.SCREEN_SHARE_START)
+                    .fromPeerId(sender.getPeerId())
+                    .build();
+
+            broadcastToRoom(roomId, message);
         }
     }
     
     private void handleScreenShareStop(String roomId, WebRTCPeer sender) {
         sender.setScreenSharing(false);
         
-        // Notify all other peers
-        List<WebRTCPeer> peers = roomPeers.get(roomId);
-        if (peers != null) {
-            peers.stream()
-                    .filter(p -> !p.getUserId().equals(sender.getUserId()))
-                    .forEach(peer -> {
-                        WebRTCMessage message = WebRTCMessage.builder()
-                                .type(MessageType.SCREEN_SHARE_STOP)
-                                .fromPeerId(sender.getPeerId())
-                                .build();
-                        
-                        sendMessageToPeer(roomId, peer.getUserId(), message);
-                    });
+        // Room-level event: one broadcast reaches all other peers
+        if (rooms.containsKey(roomId)) {
+            WebRTCMessage message = WebRTCMessage.builder()
+                    .type(MessageType.SCREEN_SHARE_STOP)
+                    .fromPeerId(sender.getPeerId())
+                    .build();
+
+            broadcastToRoom(roomId, message);
         }
     }
     
     public void removeUserFromRoom(String roomId, Long userId) {
-        List<WebRTCPeer> peers = roomPeers.get(roomId);
-        if (peers != null) {
-            WebRTCPeer removedPeer = peers.stream()
-                    .filter(p -> p.getUserId().equals(userId))
-                    .findFirst()
-                    .orElse(null);
+        if (!roomOwnership.isLocal(roomId)) {
+            roomOwnership.forward(roomId, command(RoomCommand.Type.LEAVE, roomId).userId(userId).build(), Void.class);
+            return;
+        }
+        removeUserFromRoomLocally(roomId, userId);
+    }
+
+    private void removeUserFromRoomLocally(String roomId, Long userId) {
+        WebRTCRoom room = rooms.get(roomId);
+        if (room != null) {
+            WebRTCPeer removedPeer = room.leave(userId, clock.millis());
             
             if (removedPeer != null) {
-                peers.remove(removedPeer);
-                
+                iceCandidateBatcher.discard(batchScope(roomId), removedPeer.getPeerId());
+
                 // Notify other peers
                 notifyPeersUserLeft(roomId, removedPeer);
             }
@@ -236,28 +421,70 @@ public class WebRTCService {
     }
     
     public void endSession(String roomId) {
+        endSession(roomId, null);
+    }
+
+    /**
+     * Ends the room's session, telling remaining peers why.
+     */
+    public void endSession(String roomId, String reason) {
+        if (!roomOwnership.isLocal(roomId)) {
+            roomOwnership.forward(roomId, command(RoomCommand.Type.END, roomId).reason(reason).build(), Void.class);
+            return;
+        }
+        closeRoom(roomId, reason);
+        log.info("Ended WebRTC session for room: {}", roomId);
+    }
+
+    /**
+     * Closes rooms nobody has been in for the idle timeout, and rooms whose call
+     * has run longer than the maximum duration since the first join. Remaining
+     * peers get SESSION_END and the consultation behind the room is closed.
+     */
+    @Scheduled(initialDelayString = "${app.webrtc.session.reaper-interval:60000}",
+               fixedDelayString = "${app.webrtc.session.reaper-interval:60000}")
+    public void reapExpiredSessions() {
+        long now = clock.millis();
+        long idleTimeoutMillis = TimeUnit.MINUTES.toMillis(idleTimeoutMinutes);
+        long maxDurationMillis = TimeUnit.MINUTES.toMillis(maxDurationMinutes);
+
+        for (WebRTCRoom room : rooms.values()) {
+            String reason = room.expiryReason(now, idleTimeoutMillis, maxDurationMillis);
+            if (reason == null || !closeRoom(room.getRoomId(), reason)) {
+                continue;
+            }
+            ("idle".equals(reason) ? idleReaped : maxDurationReaped).increment();
+            log.info("Reaped WebRTC session for room {} ({}), {} peers remained", room.getRoomId(), reason, room.size());
+            try {
+                videoConsultationService.closeAbandonedConsultation(room.getRoomId());
+            } catch (Exception e) {
+                log.warn("Failed to close consultation for reaped room {}: {}", room.getRoomId(), e.getMessage());
+            }
+        }
+    }
+
+    private boolean closeRoom(String roomId, String reason) {
         // Remove all peers from room
-        List<WebRTCPeer> peers = roomPeers.remove(roomId);
-        if (peers != null) {
-            // Notify all peers that session is ending
-            peers.forEach(peer -> {
-                WebRTCMessage message = WebRTCMessage.builder()
-                        .type(MessageType.SESSION_END)
-                        .build();
-                
-                sendMessageToPeer(roomId, peer.getUserId(), message);
-            });
+        WebRTCRoom room = rooms.remove(roomId);
+        if (room == null) {
+            return false;
         }
-        
+        iceCandidateBatcher.discard(batchScope(roomId));
+
+        // Notify all peers that session is ending
+        WebRTCMessage message = WebRTCMessage.builder()
+                .type(MessageType.SESSION_END)
+                .data(reason != null ? Map.of("reason", reason) : null)
+                .build();
+        broadcastToRoom(roomId, message);
+
         // Remove session
-        activeSessions.values().removeIf(session -> session.getRoomId().equals(roomId));
-        
-        log.info("Ended WebRTC session for room: {}", roomId);
+        activeSessions.remove(room.getSession().getSessionId());
+        return true;
     }
     
     private void notifyPeersUserJoined(String roomId, WebRTCPeer newPeer) {
-        List<WebRTCPeer> peers = roomPeers.get(roomId);
-        if (peers != null) {
+        if (rooms.containsKey(roomId)) {
             WebRTCMessage message = WebRTCMessage.builder()
                     .type(MessageType.USER_JOINED)
                     .fromPeerId(newPeer.getPeerId())
@@ -275,23 +502,20 @@ public class WebRTCService {
     }
     
     private void notifyPeersUserLeft(String roomId, WebRTCPeer leftPeer) {
-        List<WebRTCPeer> peers = roomPeers.get(roomId);
-        if (peers != null) {
-            peers.forEach(peer -> {
-                WebRTCMessage message = WebRTCMessage.builder()
-                        .type(MessageType.USER_LEFT)
-                        .fromPeerId(leftPeer.getPeerId())
-                        .build();
-                
-                sendMessageToPeer(roomId, peer.getUserId(), message);
-            });
+        if (rooms.containsKey(roomId)) {
+            WebRTCMessage message = WebRTCMessage.builder()
+                    .type(MessageType.USER_LEFT)
+                    .fromPeerId(leftPeer.getPeerId())
+                    .build();
+
+            broadcastToRoom(roomId, message);
         }
     }
     
     private void sendExistingPeersToUser(String roomId, WebRTCPeer newPeer) {
-        List<WebRTCPeer> peers = roomPeers.get(roomId);
-        if (peers != null) {
-            peers.stream()
+        WebRTCRoom room = rooms.get(roomId);
+        if (room != null) {
+            room.peers().stream()
                     .filter(p -> !p.getUserId().equals(newPeer.getUserId()))
                     .forEach(peer -> {
                         WebRTCMessage message = WebRTCMessage.builder()
@@ -300,34 +524,77 @@ public class WebRTCService {
                                 .data(Map.of("userRole", peer.getUserRole(), "screenSharing", peer.isScreenSharing()))
                                 .build();
                         
-                        sendMessageToPeer(roomId, newPeer.getUserId(), message);
+                        sendMessageToPeer(roomId, newPeer, message);
                     });
         }
     }
     
-    private WebRTCPeer findPeerById(String roomId, String peerId) {
-        List<WebRTCPeer> peers = roomPeers.get(roomId);
-        if (peers != null) {
-            return peers.stream()
-                    .filter(p -> p.getPeerId().equals(peerId))
-                    .findFirst()
-                    .orElse(null);
+    /**
+     * A batch is only sent when every peer that will receive it joined with
+     * ICE batching on: the target alone when it gets the signal on its own
+     * session, otherwise every other room member.
+     */
+    private boolean receiversAcceptBatches(String roomId, WebRTCPeer sender, String targetPeerId) {
+        WebRTCRoom room = rooms.get(roomId);
+        if (room == null || room.size() < 2) {
+            return false;
         }
-        return null;
+        if (targetPeerId != null && !targetPeerId.isEmpty()) {
+            WebRTCPeer target = room.findByPeerId(targetPeerId);
+            if (target != null && isTargeted(target)) {
+                return target.isIceBatching();
+            }
+        }
+        return room.peers().stream()
+                .filter(p -> !p.getUserId().equals(sender.getUserId()))
+                .allMatch(WebRTCPeer::isIceBatching);
     }
-    
-    private void sendMessageToPeer(String roomId, Long userId, WebRTCMessage message) {
-        if (messagingTemplate != null) {
-            // Send to both user-specific and room-wide topics
-            String userDestination = "/topic/webrtc/" + roomId + "/" + userId;
-            String roomDestination = "/topic/webrtc/" + roomId;
 
-            log.debug("Sending WebRTC message to user {} in room {}: {}", userId, roomId, message.getType());
-            messagingTemplate.convertAndSend(userDestination, message);
-            messagingTemplate.convertAndSend(roomDestination, message);
+    private static String batchScope(String roomId) {
+        return "webrtc/" + roomId;
+    }
+
+    private WebRTCPeer findPeerById(String roomId, String peerId) {
+        WebRTCRoom room = rooms.get(roomId);
+        return room != null ? room.findByPeerId(peerId) : null;
+    }
+    
+    private void sendMessageToPeer(String roomId, WebRTCPeer peer, WebRTCMessage message) {
+        if (messagingTemplate == null) {
+            log.debug("WebSocket not enabled, skipping WebRTC message for room: {}, user: {}", roomId, peer.getUserId());
+            return;
+        }
+        log.debug("Sending WebRTC message to user {} in room {}: {}", peer.getUserId(), roomId, message.getType());
+        if (isTargeted(peer)) {
+            // Only the session that joined receives it, on /user/queue/webrtc/{roomId}
+            SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            headers.setSessionId(peer.getStompSessionId());
+            headers.setLeaveMutable(true);
+            messagingTemplate.convertAndSendToUser(peer.getPrincipalName(), "/queue/webrtc/" + roomId,
+                    message, headers.getMessageHeaders());
         } else {
-            log.debug("WebSocket not enabled, skipping WebRTC message for room: {}, user: {}", roomId, userId);
+            // No session to target: the room topic, which is the one clients subscribe to; they match toPeerId
+            messagingTemplate.convertAndSend("/topic/webrtc/" + roomId, message);
+        }
+    }
+
+    private void sendToOtherPeers(String roomId, WebRTCPeer sender, WebRTCMessage message) {
+        WebRTCRoom room = rooms.get(roomId);
+        if (room == null) {
+            return;
+        }
+        if (!"targeted".equalsIgnoreCase(signalingDelivery)) {
+            broadcastToRoom(roomId, message);
+            return;
         }
+        room.peers().stream()
+                .filter(p -> !p.getUserId().equals(sender.getUserId()))
+                .forEach(peer -> sendMessageToPeer(roomId, peer, message));
+    }
+
+    private boolean isTargeted(WebRTCPeer peer) {
+        return "targeted".equalsIgnoreCase(signalingDelivery)
+                && peer.getPrincipalName() != null && peer.getStompSessionId() != null;
     }
 
     private void broadcastToRoom(String roomId, WebRTCMessage message) {
@@ -338,53 +605,96 @@ public class WebRTCService {
         }
     }
 
-    // New methods for recording and quality metrics
-    public String saveRecording(CallRecordingRequest request, Long userId) {
-        try {
-            // Decode base64 recording data
-            byte[] recordingBytes = Base64.getDecoder().decode(request.getRecordingData());
-
-            // Generate unique filename
-            String fileName = "recording_" + request.getConsultationId() + "_" +
-                            System.currentTimeMillis() + "." + getFileExtension(request.getMimeType());
-
-            // In production, save to cloud storage (AWS S3, Google Cloud Storage, etc.)
-            // For now, we'll simulate saving and return a URL
-            String recordingUrl = "/api/recordings/" + fileName;
-
-            log.info("Recording saved for consultation: {} by user: {}, size: {} bytes",
-                    request.getConsultationId(), userId, recordingBytes.length);
+    /**
+     * Runs a room command forwarded by another node. It is handled here even if
+     * this node's ring disagrees, so a command is never forwarded twice.
+     */
+    public Object execute(RoomCommand command) {
+        String roomId = command.getRoomId();
+        switch (command.getType()) {
+            case CREATE:
+                return createSessionLocally(roomId);
+            case PREWARM:
+                return prewarmRoomLocally(roomId);
+            case JOIN:
+                initializeUserSessionLocally(roomId, command.getUserId(), command.getUserRole(), command.isIceBatching(),
+                        command.getPrincipalName(), command.getStompSessionId());
+                return null;
+            case SIGNAL:
+                handleWebRTCSignalLocally(roomId, command.getUserId(), command.getSignal());
+                return null;
+            case LEAVE:
+                removeUserFromRoomLocally(roomId, command.getUserId());
+                return null;
+            case END:
+                closeRoom(roomId, command.getReason());
+                return null;
+            case STATUS:
+                return getRoomStatusLocally(roomId);
+            case HANDOFF:
+                adoptRoom(command);
+                return null;
+            default:
+                throw new RuntimeException("Unsupported room command: " + command.getType());
+        }
+    }
 
-            return recordingUrl;
+    /**
+     * Moves rooms this node no longer owns to their new owner after the ring
+     * changed. Open ICE batches are sent first so no candidate is lost.
+     */
+    private void handOffRooms() {
+        for (WebRTCRoom room : rooms.values()) {
+            String roomId = room.getRoomId();
+            if (roomOwnership.isLocal(roomId) || !rooms.remove(roomId, room)) {
+                continue;
+            }
+            room.peers().forEach(peer -> iceCandidateBatcher.flush(batchScope(roomId), peer.getPeerId()));
+            activeSessions.remove(room.getSession().getSessionId());
+            try {
+                roomOwnership.forward(roomId, command(RoomCommand.Type.HANDOFF, roomId)
+                        .session(room.getSession())
+                        .peers(List.copyOf(room.peers()))
+                        .build(), Void.class);
+                log.info("Handed off WebRTC room {} with {} peers to {}", roomId, room.size(), roomOwnership.ownerOf(roomId).id());
+            } catch (Exception e) {
+                log.warn("Failed to hand off WebRTC room {}, peers must rejoin: {}", roomId, e.getMessage());
+            }
+        }
+    }
 
-        } catch (Exception e) {
-            log.error("Failed to save recording: {}", e.getMessage());
-            throw new RuntimeException("Failed to save recording");
+    private void adoptRoom(RoomCommand command) {
+        WebRTCSession session = command.getSession();
+        WebRTCRoom room = rooms.computeIfAbsent(command.getRoomId(), id -> {
+            activeSessions.put(session.getSessionId(), session);
+            return new WebRTCRoom(id, session);
+        });
+        for (WebRTCPeer peer : command.getPeers()) {
+            // A peer that already rejoined here is newer than the handed-off one
+            if (room.findByUserId(peer.getUserId()) == null) {
+                room.join(peer);
+            }
         }
+        log.info("Adopted WebRTC room {} with {} peers", command.getRoomId(), room.size());
     }
 
-    public void saveQualityMetrics(CallQualityMetrics metrics, Long userId) {
-        try {
-            // In production, save to database
-            log.info("Quality metrics saved for consultation: {} by user: {}, " +
-                    "audio: {}, video: {}, latency: {}ms",
-                    metrics.getConsultationId(), userId,
-                    metrics.getAudioQuality(), metrics.getVideoQuality(), metrics.getLatencyMs());
+    private static RoomCommand.RoomCommandBuilder command(RoomCommand.Type type, String roomId) {
+        return RoomCommand.builder().type(type).roomId(roomId);
+    }
 
-        } catch (Exception e) {
-            log.error("Failed to save quality metrics: {}", e.getMessage());
-            throw new RuntimeException("Failed to save quality metrics");
+    public RoomStatusResponse getRoomStatus(String roomId, Long userId) {
+        if (!roomOwnership.isLocal(roomId)) {
+            return roomOwnership.forward(roomId, command(RoomCommand.Type.STATUS, roomId).userId(userId).build(),
+                    RoomStatusResponse.class);
         }
+        return getRoomStatusLocally(roomId);
     }
 
-    public RoomStatusResponse getRoomStatus(String roomId, Long userId) {
-        List<WebRTCPeer> peers = roomPeers.get(roomId);
-        WebRTCSession session = activeSessions.values().stream()
-                .filter(s -> s.getRoomId().equals(roomId))
-                .findFirst()
-                .orElse(null);
+    private RoomStatusResponse getRoomStatusLocally(String roomId) {
+        WebRTCRoom room = rooms.get(roomId);
+        WebRTCSession session = room != null ? room.getSession() : null;
 
-        int participantCount = peers != null ? peers.size() : 0;
+        int participantCount = room != null ? room.size() : 0;
         boolean isActive = session != null && session.getStatus() == SessionStatus.ACTIVE;
         long sessionStartTime = session != null ? session.getCreatedAt() : 0;
         String sessionStatus = session != null ? session.getStatus().name() : "NOT_FOUND";
@@ -392,16 +702,6 @@ public class WebRTCService {
         return new RoomStatusResponse(roomId, participantCount, isActive, sessionStartTime, sessionStatus);
     }
 
-    private String getFileExtension(String mimeType) {
-        switch (mimeType) {
-            case "video/webm": return "webm";
-            case "video/mp4": return "mp4";
-            case "audio/webm": return "webm";
-            case "audio/wav": return "wav";
-            default: return "webm";
-        }
-    }
-
     // Data classes
     public static class WebRTCSession {
         private String sessionId;
@@ -450,7 +750,10 @@ public class WebRTCService {
         private String userRole;
         private String peerId;
         private long joinedAt;
-        private boolean screenSharing = false;
+        private volatile boolean screenSharing = false;
+        private boolean iceBatching;
+        private String principalName;
+        private String stompSessionId;
         
         public static WebRTCPeerBuilder builder() {
             return new WebRTCPeerBuilder();
@@ -467,17 +770,29 @@ public class WebRTCService {
         public void setJoinedAt(long joinedAt) { this.joinedAt = joinedAt; }
         public boolean isScreenSharing() { return screenSharing; }
         public void setScreenSharing(boolean screenSharing) { this.screenSharing = screenSharing; }
+        public boolean isIceBatching() { return iceBatching; }
+        public void setIceBatching(boolean iceBatching) { this.iceBatching = iceBatching; }
+        public String getPrincipalName() { return principalName; }
+        public void setPrincipalName(String principalName) { this.principalName = principalName; }
+        public String getStompSessionId() { return stompSessionId; }
+        public void setStompSessionId(String stompSessionId) { this.stompSessionId = stompSessionId; }
         
         public static class WebRTCPeerBuilder {
             private Long userId;
             private String userRole;
             private String peerId;
             private long joinedAt;
+            private boolean iceBatching;
+            private String principalName;
+            private String stompSessionId;
             
             public WebRTCPeerBuilder userId(Long userId) { this.userId = userId; return this; }
             public WebRTCPeerBuilder userRole(String userRole) { this.userRole = userRole; return this; }
             public WebRTCPeerBuilder peerId(String peerId) { this.peerId = peerId; return this; }
             public WebRTCPeerBuilder joinedAt(long joinedAt) { this.joinedAt = joinedAt; return this; }
+            public WebRTCPeerBuilder iceBatching(boolean iceBatching) { this.iceBatching = iceBatching; return this; }
+            public WebRTCPeerBuilder principalName(String principalName) { this.principalName = principalName; return this; }
+            public WebRTCPeerBuilder stompSessionId(String stompSessionId) { this.stompSessionId = stompSessionId; return this; }
             
             public WebRTCPeer build() {
                 WebRTCPeer peer = new WebRTCPeer();
@@ -485,6 +800,9 @@ public class WebRTCService {
                 peer.userRole = this.userRole;
                 peer.peerId = this.peerId;
                 peer.joinedAt = this.joinedAt;
+                peer.iceBatching = this.iceBatching;
+                peer.principalName = this.principalName;
+                peer.stompSessionId = this.stompSessionId;
                 return peer;
             }
         }
@@ -555,7 +873,7 @@ public class WebRTCService {
     }
     
     public enum MessageType {
-        OFFER, ANSWER, ICE_CANDIDATE, USER_JOINED, USER_LEFT, EXISTING_PEER, 
+        OFFER, ANSWER, ICE_CANDIDATE, ICE_CANDIDATE_BATCH, USER_JOINED, USER_LEFT, EXISTING_PEER, 
         SCREEN_SHARE_START, SCREEN_SHARE_STOP, SESSION_END
     }
 }
@@ -0,0 +1,14 @@
+-- Marks prescriptions whose patient has already been told they are expiring
+ALTER TABLE digital_prescriptions
+ADD COLUMN expiry_notified_at TIMESTAMP NULL;
+
+CREATE INDEX idx_prescriptions_status_valid_until ON digital_prescriptions (status, valid_until);
+CREATE INDEX idx_prescriptions_expiry_notice ON digital_prescriptions (expiry_notified_at, status, expiry_date);
+
+-- Resumable progress for batch sweeps
+CREATE TABLE sweeper_watermarks (
+    job_name VARCHAR(100) PRIMARY KEY,
+    last_id BIGINT NOT NULL DEFAULT 0,
+    completed_through DATE NULL,
+    updated_at TIMESTAMP NULL
+);
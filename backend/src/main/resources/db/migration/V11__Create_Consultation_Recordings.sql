@@ -0,0 +1,23 @@
+-- Chunked, resumable consultation recording uploads
+CREATE TABLE consultation_recordings (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    upload_id VARCHAR(36) NOT NULL UNIQUE,
+    consultation_id BIGINT NOT NULL,
+    uploaded_by BIGINT NOT NULL,
+    mime_type VARCHAR(255) NOT NULL,
+    expected_size_bytes BIGINT NULL,
+    duration_seconds INT NULL,
+    status VARCHAR(20) NOT NULL,
+    file_path VARCHAR(500) NOT NULL,
+    size_bytes BIGINT NULL,
+    sha256 VARCHAR(64) NULL,
+    created_at TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP NULL,
+    CONSTRAINT fk_recording_consultation FOREIGN KEY (consultation_id) REFERENCES video_consultations(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_recordings_consultation ON consultation_recordings (consultation_id);
+
+-- The consultation's finished recording
+ALTER TABLE video_consultations
+ADD COLUMN recording_id BIGINT NULL;
@@ -0,0 +1,18 @@
+-- Per-consultation call-quality summaries with mergeable histograms
+CREATE TABLE call_quality_windows (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    consultation_id BIGINT NOT NULL,
+    doctor_id BIGINT NOT NULL,
+    window_start TIMESTAMP NOT NULL,
+    sample_count BIGINT NOT NULL,
+    latency_histogram TEXT,
+    jitter_histogram TEXT,
+    packet_loss_histogram TEXT,
+    created_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_quality_consultation FOREIGN KEY (consultation_id) REFERENCES video_consultations(id) ON DELETE CASCADE,
+    CONSTRAINT fk_quality_doctor FOREIGN KEY (doctor_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_quality_consultation_window ON call_quality_windows (consultation_id, window_start);
+CREATE INDEX idx_quality_doctor_window ON call_quality_windows (doctor_id, window_start);
+CREATE INDEX idx_quality_window ON call_quality_windows (window_start);
@@ -0,0 +1,3 @@
+-- Keyset paging of a doctor's or patient's appointments in (date, start_time, id) order
+CREATE INDEX idx_appointments_doctor_date_time ON appointments (doctor_id, date, start_time, id);
+CREATE INDEX idx_appointments_patient_date_time ON appointments (patient_id, date, start_time, id);
@@ -0,0 +1,10 @@
+-- Notifications the inbox writer failed to store; they were delivered live only
+CREATE TABLE notification_dead_letters (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    payload TEXT NOT NULL,
+    error TEXT,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_notification_dead_letters_created ON notification_dead_letters (created_at);
@@ -0,0 +1,2 @@
+-- Instant up to which a time-driven job (appointment reminders) has handled everything
+ALTER TABLE sweeper_watermarks ADD COLUMN completed_until TIMESTAMP NULL;
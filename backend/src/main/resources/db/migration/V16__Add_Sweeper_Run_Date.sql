@@ -0,0 +1,2 @@
+-- Day the in-progress run of an id-ordered sweep belongs to; last_id is only resumed on that day
+ALTER TABLE sweeper_watermarks ADD COLUMN run_date DATE NULL;
@@ -0,0 +1,37 @@
+-- Create notifications table for the persistent per-user notification inbox
+CREATE TABLE notifications (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    sequence_number BIGINT NOT NULL,
+    type VARCHAR(100) NOT NULL,
+    title VARCHAR(255),
+    message TEXT,
+    priority VARCHAR(20),
+    related_id BIGINT,
+    metadata TEXT,
+    is_read BOOLEAN NOT NULL DEFAULT FALSE,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    read_at TIMESTAMP NULL,
+
+    CONSTRAINT fk_notifications_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+    CONSTRAINT uk_notifications_user_sequence UNIQUE (user_id, sequence_number),
+
+    INDEX idx_notifications_user_read (user_id, is_read)
+);
+
+-- One row per user: unread counter and last issued sequence
+CREATE TABLE notification_inbox_state (
+    user_id BIGINT PRIMARY KEY,
+    unread_count BIGINT NOT NULL DEFAULT 0,
+    last_sequence BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NULL,
+
+    CONSTRAINT fk_notification_inbox_state_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+ALTER TABLE notifications
+COMMENT = 'Persistent notification inbox, delivered live over WebSocket and fetched on reconnect';
+
+ALTER TABLE notifications
+MODIFY COLUMN sequence_number BIGINT NOT NULL
+COMMENT 'Per-user sequence used by clients to fetch notifications missed while offline';
@@ -0,0 +1,75 @@
+package com.healthconnect.config;
+
+import com.healthconnect.service.RoomOwnership;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Which cluster settings a node accepts at startup.
+ */
+class ClusterConfigTest {
+
+    private final ClusterConfig config = new ClusterConfig();
+
+    ClusterConfigTest() {
+        ReflectionTestUtils.setField(config, "enabled", true);
+        ReflectionTestUtils.setField(config, "nodeId", "node-a");
+        // Nothing listens on port 1, so heartbeats fail fast
+        ReflectionTestUtils.setField(config, "nodes", new String[] {"node-a=http://127.0.0.1:1", "node-b=http://127.0.0.1:1"});
+        ReflectionTestUtils.setField(config, "secret", "cluster-secret");
+        ReflectionTestUtils.setField(config, "virtualNodes", 16);
+        ReflectionTestUtils.setField(config, "failureThreshold", 3);
+        ReflectionTestUtils.setField(config, "requestTimeoutMillis", 200L);
+        ReflectionTestUtils.setField(config, "heartbeatIntervalMillis", 60_000L);
+        ReflectionTestUtils.setField(config, "brokerMode", "relay");
+    }
+
+    @Test
+    void clusteringRequiresTheBrokerRelay() {
+        ReflectionTestUtils.setField(config, "brokerMode", "simple");
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> config.roomOwnership(WebClient.builder(), new SimpleMeterRegistry()));
+        assertTrue(error.getMessage().contains("app.websocket.broker.mode=relay"));
+    }
+
+    @Test
+    void simpleBrokerIsFineForASingleNode() {
+        ReflectionTestUtils.setField(config, "enabled", false);
+        ReflectionTestUtils.setField(config, "brokerMode", "simple");
+
+        RoomOwnership ownership = config.roomOwnership(WebClient.builder(), new SimpleMeterRegistry());
+
+        assertTrue(ownership.isLocal("room-1"));
+    }
+
+    @Test
+    void clusterWithRelayStartsWithOnlyItselfLive() {
+        RoomOwnership ownership = config.roomOwnership(WebClient.builder(), new SimpleMeterRegistry());
+        try {
+            assertEquals("node-a", ownership.getLocalNode().id());
+            // node-b joins only once it answers a heartbeat
+            assertEquals(Set.of("node-a"), ownership.liveNodes());
+        } finally {
+            ownership.shutdown();
+        }
+    }
+
+    @Test
+    void missingSecretOrUnlistedNodeIsRejected() {
+        ReflectionTestUtils.setField(config, "nodeId", "node-z");
+        assertThrows(IllegalStateException.class,
+                () -> config.roomOwnership(WebClient.builder(), new SimpleMeterRegistry()));
+
+        ReflectionTestUtils.setField(config, "nodeId", "node-a");
+        ReflectionTestUtils.setField(config, "secret", "");
+        assertThrows(IllegalStateException.class,
+                () -> config.roomOwnership(WebClient.builder(), new SimpleMeterRegistry()));
+    }
+}
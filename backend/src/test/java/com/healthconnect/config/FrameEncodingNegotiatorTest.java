@@ -0,0 +1,119 @@
+package com.healthconnect.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.healthconnect.config.FrameEncodingNegotiator.FrameEncoding;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Negotiation on CONNECT, transcoding of outbound MESSAGE frames and the
+ * per-payload transcode cache.
+ */
+class FrameEncodingNegotiatorTest {
+
+    private static final byte[] JSON = "{\"type\":\"ICE_CANDIDATE\",\"data\":{\"sdpMid\":\"0\",\"sdpMLineIndex\":0}}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final FrameEncodingNegotiator negotiator = new FrameEncodingNegotiator(json);
+
+    @Test
+    void firstSupportedEncodingInTheHeaderWins() {
+        assertEquals(FrameEncoding.SMILE, negotiator.negotiate("s1", "msgpack, smile, cbor"));
+        assertEquals(FrameEncoding.CBOR, negotiator.negotiate("s1", "CBOR"));
+        assertEquals(FrameEncoding.JSON, negotiator.negotiate("s1", "msgpack"));
+        assertEquals(FrameEncoding.JSON, negotiator.negotiate("s1", null));
+    }
+
+    @Test
+    void transcodingKeepsTheContent() throws Exception {
+        assertEquals(json.readTree(JSON),
+                json.copyWith(new CBORFactory()).readTree(negotiator.transcode(JSON.clone(), FrameEncoding.CBOR)));
+        assertEquals(json.readTree(JSON),
+                json.copyWith(new SmileFactory()).readTree(negotiator.transcode(JSON.clone(), FrameEncoding.SMILE)));
+    }
+
+    @Test
+    void samePayloadArrayIsTranscodedOncePerEncoding() throws Exception {
+        byte[] shared = JSON.clone();
+        byte[] first = negotiator.transcode(shared, FrameEncoding.CBOR);
+
+        assertSame(first, negotiator.transcode(shared, FrameEncoding.CBOR));
+        assertNotSame(first, negotiator.transcode(JSON.clone(), FrameEncoding.CBOR), "cache is keyed by identity");
+        assertNotSame(first, negotiator.transcode(shared, FrameEncoding.SMILE));
+
+        // Sessions racing on one payload all send the same bytes
+        byte[] raced = JSON.clone();
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(threads.submit(() -> {
+                    start.await();
+                    return negotiator.transcode(raced, FrameEncoding.CBOR);
+                }));
+            }
+            start.countDown();
+            byte[] winner = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<byte[]> result : results) {
+                assertSame(winner, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void onlyMessageFramesToMatchingDestinationsAreReEncoded() {
+        connect("s1", "cbor");
+        ChannelInterceptor outbound = negotiator.outboundInterceptor();
+
+        Message<?> signal = outbound.preSend(message("s1", "/topic/webrtc/room-1"), null);
+        assertEquals(MimeTypeUtils.APPLICATION_OCTET_STREAM, signal.getHeaders().get(MessageHeaders.CONTENT_TYPE));
+        assertEquals("cbor", SimpMessageHeaderAccessor.wrap(signal).getFirstNativeHeader(FrameEncodingNegotiator.ENCODING_HEADER));
+
+        Message<?> other = message("s1", "/topic/notifications/1");
+        assertSame(other, outbound.preSend(other, null));
+
+        Message<?> jsonSession = message("s2", "/topic/webrtc/room-1");
+        assertSame(jsonSession, outbound.preSend(jsonSession, null));
+    }
+
+    private void connect(String sessionId, String encodings) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        accessor.setNativeHeader(FrameEncodingNegotiator.ENCODING_HEADER, encodings);
+        negotiator.inboundInterceptor().preSend(
+                MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), null);
+    }
+
+    private static Message<byte[]> message(String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination(destination);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(JSON.clone(), accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,88 @@
+package com.healthconnect.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Holds the pool's only thread on a latch so the queued and active counts, and
+ * what happens once the queue is full, can be checked exactly.
+ */
+class InstrumentedChannelExecutorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final InstrumentedChannelExecutor executor =
+            InstrumentedChannelExecutor.platform("test", 1, 1, 1).bindTo(registry);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void countsQueuedAndActiveTasksAndRecordsQueueWait() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+            done.countDown();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(done::countDown);
+
+        assertEquals(1, executor.getActive());
+        assertEquals(1, executor.getQueued());
+        assertEquals(1.0, registry.get("websocket.channel.queued").tag("channel", "test").gauge().value());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        waitUntilIdle();
+        assertEquals(0, executor.getQueued());
+        assertEquals(2, registry.get("websocket.channel.queue.wait").tag("channel", "test").timer().count());
+    }
+
+    @Test
+    void fullQueueRunsTheTaskOnTheSendingThread() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> { });
+
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        executor.execute(() -> ranOn.set(Thread.currentThread()));
+
+        assertSame(Thread.currentThread(), ranOn.get());
+        assertEquals(1, executor.getQueued());
+        release.countDown();
+        waitUntilIdle();
+    }
+
+    private void waitUntilIdle() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((executor.getActive() > 0 || executor.getQueued() > 0) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, executor.getActive());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
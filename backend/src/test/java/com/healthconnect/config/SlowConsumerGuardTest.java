@@ -0,0 +1,227 @@
+package com.healthconnect.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Simulates clients that stop reading: the socket write blocks until the test
+ * releases it, while the broker keeps publishing chat, typing and presence
+ * frames to the session through the outbound channel. Written frames start
+ * with their STOMP command, as they do on a real socket, and the channel has
+ * ordered publishing configured like the application's.
+ */
+class SlowConsumerGuardTest {
+
+    private static final String SESSION_ID = "stalled";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch socketReleased = new CountDownLatch(1);
+    private final List<String> written = new CopyOnWriteArrayList<>();
+    private ExecutorService outboundThreads;
+    private SlowConsumerGuard guard;
+    private WebSocketSession socket;
+    private ExecutorSubscribableChannel outbound;
+    private volatile CountDownLatch handled = new CountDownLatch(0);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        guard = new SlowConsumerGuard(meterRegistry);
+        ReflectionTestUtils.setField(guard, "ephemeralThreshold", 8);
+        ReflectionTestUtils.setField(guard, "slowThreshold", 40);
+
+        socket = mock(WebSocketSession.class);
+        when(socket.getId()).thenReturn(SESSION_ID);
+        when(socket.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            socketReleased.await();
+            String frame = ((TextMessage) invocation.getArgument(0)).getPayload();
+            written.add(frame.startsWith("MESSAGE\n") ? frame.substring("MESSAGE\n".length()) : frame);
+            return null;
+        }).when(socket).sendMessage(any());
+
+        // The same stack Spring builds: concurrent send buffer around the tracked session
+        WebSocketSession session = new ConcurrentWebSocketSessionDecorator(
+                guard.track(socket), 60_000, 10 * 1024 * 1024);
+
+        outboundThreads = Executors.newFixedThreadPool(4);
+        outbound = new ExecutorSubscribableChannel(outboundThreads);
+        outbound.addInterceptor(guard);
+        OrderedMessageChannelDecorator.configureInterceptor(outbound, true);
+        outbound.subscribe(message -> {
+            try {
+                SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+                if (type == SimpMessageType.MESSAGE) {
+                    String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+                    String body = new String((byte[]) message.getPayload(), StandardCharsets.UTF_8);
+                    session.sendMessage(new TextMessage("MESSAGE\n" + destination + "|" + body));
+                } else if (type == SimpMessageType.HEARTBEAT) {
+                    session.sendMessage(new TextMessage("\n"));
+                }
+                // Other frames are handled without a write, like a DISCONNECT_ACK for a closing session
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                handled.countDown();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        socketReleased.countDown();
+        outboundThreads.shutdownNow();
+    }
+
+    @Test
+    void stalledConsumerKeepsChatAndCoalescesEphemeralFrames() throws Exception {
+        int chats = 100;
+        int typingPerChat = 10;
+        for (int i = 0; i < chats; i++) {
+            assertTrue(outbound.send(frame("/topic/chat/1", "chat-" + i)));
+            for (int t = 0; t < typingPerChat; t++) {
+                outbound.send(frame("/topic/chat/1/typing", "typing-" + (i * typingPerChat + t)));
+            }
+            outbound.send(frame("/topic/presence", "presence-" + i));
+        }
+
+        socketReleased.countDown();
+        String lastTyping = "/topic/chat/1/typing|typing-" + (chats * typingPerChat - 1);
+        awaitWritten(lastTyping);
+        awaitCount("/topic/chat/1|", chats);
+
+        long typingWritten = count("/topic/chat/1/typing|");
+        long presenceWritten = count("/topic/presence|");
+
+        assertEquals(chats, count("/topic/chat/1|"), "chat frames are never dropped");
+        assertTrue(typingWritten < chats * typingPerChat, "typing frames are coalesced while backlogged");
+        assertTrue(presenceWritten < chats, "presence frames are dropped while backlogged");
+        assertTrue(meterRegistry.get("websocket.outbound.held").tag("action", "coalesced").counter().count() > 0);
+        assertTrue(meterRegistry.get("websocket.outbound.held").tag("action", "dropped").counter().count() > 0);
+        assertEquals(0, guard.getPending(SESSION_ID));
+        verify(socket, never()).close(any(CloseStatus.class));
+    }
+
+    @Test
+    void framesOtherThanMessagesDoNotMoveTheBacklog() throws Exception {
+        socketReleased.countDown();
+        handled = new CountDownLatch(20);
+        for (int i = 0; i < 10; i++) {
+            outbound.send(control(SimpMessageType.HEARTBEAT));
+            outbound.send(control(SimpMessageType.DISCONNECT_ACK));
+        }
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+        assertEquals(0, guard.getPending(SESSION_ID));
+
+        // Had the unwritten frames been counted, these would now be treated as backlogged
+        for (int i = 0; i < 5; i++) {
+            outbound.send(frame("/topic/chat/1/typing", "typing-" + i));
+        }
+        awaitCount("/topic/chat/1/typing|", 5);
+        assertEquals(0, guard.getPending(SESSION_ID));
+        assertEquals(0.0, meterRegistry.get("websocket.outbound.held").tag("action", "coalesced").counter().count());
+    }
+
+    @Test
+    void heldFramesAreSentAgainThroughTheOutboundChannel() throws Exception {
+        List<String> intercepted = new CopyOnWriteArrayList<>();
+        outbound.addInterceptor(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                intercepted.add(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+                return message;
+            }
+        });
+
+        for (int i = 0; i < 10; i++) {
+            outbound.send(frame("/topic/chat/1", "chat-" + i));
+        }
+        outbound.send(frame("/topic/status/user/2", "away"));
+        outbound.send(frame("/topic/status/user/2", "online"));
+        assertEquals(0, count("/topic/status/user/2|"));
+
+        socketReleased.countDown();
+        awaitWritten("/topic/status/user/2|online");
+        awaitCount("/topic/chat/1|", 10);
+
+        assertEquals(1, count("/topic/status/user/2|"), "only the latest held frame is sent");
+        // Both were held by the guard before reaching later interceptors; only the re-send passed them all
+        assertEquals(1, intercepted.stream().filter("/topic/status/user/2"::equals).count());
+        assertTrue(written.indexOf("/topic/status/user/2|online") > written.indexOf("/topic/chat/1|chat-9"));
+        assertEquals(0, guard.getPending(SESSION_ID));
+    }
+
+    @Test
+    void sessionThatStaysSlowIsDisconnected() throws Exception {
+        ReflectionTestUtils.setField(guard, "slowTimeoutMillis", 100L);
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(outbound.send(frame("/topic/chat/1", "chat-" + i)));
+        }
+        Thread.sleep(150);
+        outbound.send(frame("/topic/chat/1", "chat-50"));
+
+        verify(socket, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1.0, meterRegistry.get("websocket.slow.disconnects").tag("reason", "backlog").counter().count());
+    }
+
+    private static Message<byte[]> frame(String destination, String body) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(SESSION_ID);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(body.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> control(SimpMessageType type) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(SESSION_ID);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private long count(String prefix) {
+        return written.stream().filter(w -> w.startsWith(prefix)).count();
+    }
+
+    private void awaitWritten(String frame) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!written.contains(frame)) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for " + frame);
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitCount(String prefix, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (count(prefix) < expected) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for " + expected + " x " + prefix);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.healthconnect.config;
+
+import com.healthconnect.entity.User;
+import com.healthconnect.entity.UserRole;
+import com.healthconnect.service.JwtService;
+import com.healthconnect.service.UserPresenceService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Sessions whose user was set by the HTTP handshake rather than a CONNECT
+ * token still reach handlers as a {@link StompPrincipal}.
+ */
+class WebSocketAuthInterceptorTest {
+
+    private static final String EMAIL = "doctor@example.com";
+
+    private final JwtService jwtService = mock(JwtService.class);
+    private final UserDetailsService userDetailsService = mock(UserDetailsService.class);
+    private final UserPresenceService userPresenceService = mock(UserPresenceService.class);
+    private final Map<String, Object> sessionAttributes = new HashMap<>();
+    private WebSocketAuthInterceptor interceptor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<UserPresenceService> presence = mock(ObjectProvider.class);
+        when(presence.getObject()).thenReturn(userPresenceService);
+        interceptor = new WebSocketAuthInterceptor(jwtService, userDetailsService, presence);
+
+        User user = new User();
+        user.setId(7L);
+        user.setEmail(EMAIL);
+        user.setRole(UserRole.DOCTOR);
+        user.setIsActive(true);
+        when(userDetailsService.loadUserByUsername(EMAIL)).thenReturn(user);
+    }
+
+    @Test
+    void handshakeUserIsMappedByNameOnConnectAndLaterFrames() {
+        Principal handshakeUser = new UsernamePasswordAuthenticationToken(EMAIL, null, List.of());
+
+        Message<?> connect = interceptor.preSend(frame(StompCommand.CONNECT, handshakeUser), null);
+        assertEquals(new StompPrincipal(7L, EMAIL, UserRole.DOCTOR), SimpMessageHeaderAccessor.getUser(connect.getHeaders()));
+        verify(userPresenceService).setUserOnline(eq(7L), any(), any());
+
+        // Spring keeps attaching the handshake user to every frame of the session
+        Message<?> send = interceptor.preSend(frame(StompCommand.SEND, handshakeUser), null);
+        assertEquals(new StompPrincipal(7L, EMAIL, UserRole.DOCTOR), SimpMessageHeaderAccessor.getUser(send.getHeaders()));
+        verify(userDetailsService, times(1)).loadUserByUsername(EMAIL);
+
+        interceptor.preSend(frame(StompCommand.DISCONNECT, handshakeUser), null);
+        verify(userPresenceService).setUserOffline(7L);
+    }
+
+    @Test
+    void unknownUserIsLeftUnchanged() {
+        Principal stranger = new UsernamePasswordAuthenticationToken("nobody@example.com", null, List.of());
+
+        Message<?> send = interceptor.preSend(frame(StompCommand.SEND, stranger), null);
+
+        assertSame(stranger, SimpMessageHeaderAccessor.getUser(send.getHeaders()));
+    }
+
+    private Message<byte[]> frame(StompCommand command, Principal user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId("s1");
+        accessor.setSessionAttributes(sessionAttributes);
+        accessor.setUser(user);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,34 @@
+package com.healthconnect.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The cursor string sent in X-Next-Cursor, and what the endpoint refuses.
+ */
+class AppointmentCursorTest {
+
+    @Test
+    void cursorSurvivesTheRoundTrip() {
+        AppointmentCursor cursor = new AppointmentCursor(LocalDate.of(2025, 3, 1), LocalTime.of(9, 30), 42L);
+
+        assertEquals("2025-03-01T09:30_42", cursor.toString());
+        assertEquals(cursor, AppointmentCursor.parse(cursor.toString()));
+        assertEquals(new AppointmentCursor(LocalDate.of(2025, 3, 1), LocalTime.of(9, 30, 15), 7L),
+                AppointmentCursor.parse("2025-03-01T09:30:15_7"));
+    }
+
+    @Test
+    void malformedCursorsAreIllegalArguments() {
+        for (String value : new String[] {
+                "", "garbage", "2025-03-01", "2025-03-01T09:30", "2025-03-01_42", "42_2025-03-01T09:30",
+                "2025-02-30T09:30_42", "2025-03-01T25:00_42", "2025-03-01T09:30_", "2025-03-01T09:30_abc",
+                "2025-03-01T09:30_99999999999999999999"}) {
+            assertThrows(IllegalArgumentException.class, () -> AppointmentCursor.parse(value), value);
+        }
+    }
+}
@@ -0,0 +1,585 @@
+package com.healthconnect.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.healthconnect.dto.MessageRequest;
+import com.healthconnect.entity.User;
+import com.healthconnect.entity.UserRole;
+import com.healthconnect.repository.UserRepository;
+import com.healthconnect.service.ChatService;
+import com.healthconnect.service.JwtService;
+import com.healthconnect.service.WebRTCService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Type;
+import java.text.DecimalFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * STOMP load harness. Starts the backend on a random port with the in-memory
+ * H2 database, connects thousands of authenticated STOMP clients in
+ * patient/doctor pairs and drives chat, typing, presence and video signaling
+ * traffic. Signaling goes through the {@code /app/webrtc} room mappings the
+ * web client uses, and presence updates come from clients that disconnect and
+ * reconnect, which is what publishes them. It measures end-to-end latency from
+ * send to delivery at every subscriber, throughput, and process resource
+ * usage. Results are written as JSON to {@code target/load-reports} for
+ * comparison across releases; the run fails if a traffic type is not
+ * delivered.
+ *
+ * Disabled in normal builds; run with:
+ * {@code mvn test -Dtest=StompLoadHarnessTest -Dloadtest=true -Dloadtest.clients=2000}
+ * Other knobs: loadtest.duration-seconds, loadtest.chat-interval-ms,
+ * loadtest.typing-interval-ms, loadtest.signal-interval-ms,
+ * loadtest.presence-interval-ms, loadtest.presence-subscriber-ratio,
+ * loadtest.label.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.autoconfigure.exclude=",
+        "spring.jpa.show-sql=false",
+        "logging.level.com.healthconnect=WARN",
+        "logging.level.org.springframework.security=WARN",
+        "app.reminders.enabled=false",
+        "app.prescriptions.sweep.enabled=false",
+        // The test profile's secret is too short to sign the tokens the clients connect with
+        "jwt.secret=loadTestSecretKeyForHealthConnectThatIsLongEnoughForHmacSha256"
+})
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class StompLoadHarnessTest {
+
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 1000);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.duration-seconds", 60);
+    private static final int CHAT_INTERVAL_MS = Integer.getInteger("loadtest.chat-interval-ms", 5000);
+    private static final int TYPING_INTERVAL_MS = Integer.getInteger("loadtest.typing-interval-ms", 2000);
+    private static final int SIGNAL_INTERVAL_MS = Integer.getInteger("loadtest.signal-interval-ms", 250);
+    private static final int PRESENCE_INTERVAL_MS = Integer.getInteger("loadtest.presence-interval-ms", 500);
+    private static final double PRESENCE_SUBSCRIBER_RATIO =
+            Double.parseDouble(System.getProperty("loadtest.presence-subscriber-ratio", "0.1"));
+    private static final int CONNECT_BATCH = 100;
+    private static final DecimalFormat PERCENTILE_FORMAT = new DecimalFormat("0.#");
+
+    private static final String CHAT = "chat";
+    private static final String TYPING = "typing";
+    private static final String SIGNAL = "signal";
+    private static final String PRESENCE = "presence";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private WebRTCService webRTCService;
+
+    @Autowired
+    private MeterRegistry serverMeters;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .enable(SerializationFeature.INDENT_OUTPUT);
+    private final SimpleMeterRegistry clientMeters = new SimpleMeterRegistry();
+    private final Map<String, AtomicLong> sent = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> received = new ConcurrentHashMap<>();
+    // userId:status -> when the disconnect or reconnect that publishes it was started
+    private final Map<String, Long> presenceChanges = new ConcurrentHashMap<>();
+    private final AtomicLong sendErrors = new AtomicLong();
+
+    @Test
+    void runLoad() throws Exception {
+        List<Client> clients = createClients();
+
+        ThreadPoolTaskScheduler heartbeats = new ThreadPoolTaskScheduler();
+        heartbeats.setPoolSize(4);
+        heartbeats.setThreadNamePrefix("load-heartbeat-");
+        heartbeats.initialize();
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        stompClient.setTaskScheduler(heartbeats);
+
+        ResourceSampler resources = new ResourceSampler();
+        resources.start();
+
+        Timer connectTime = latencyTimer("connect");
+        long connectStart = System.nanoTime();
+        int connected = connectAll(stompClient, clients, connectTime);
+        double connectSeconds = (System.nanoTime() - connectStart) / 1e9;
+
+        ScheduledExecutorService traffic = Executors.newScheduledThreadPool(
+                Math.max(4, Runtime.getRuntime().availableProcessors()));
+        long trafficStart = System.nanoTime();
+        List<Client> churners = new ArrayList<>();
+        for (Client client : clients) {
+            if (client.session != null) {
+                schedule(traffic, CHAT_INTERVAL_MS, () -> sendChat(client));
+                schedule(traffic, TYPING_INTERVAL_MS, () -> sendTyping(client));
+                if (client.inCall) {
+                    schedule(traffic, SIGNAL_INTERVAL_MS, () -> sendSignal(client));
+                } else {
+                    churners.add(client);
+                }
+            }
+        }
+        if (!churners.isEmpty()) {
+            schedule(traffic, PRESENCE_INTERVAL_MS, () -> reconnect(stompClient,
+                    churners.get(ThreadLocalRandom.current().nextInt(churners.size()))));
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(DURATION_SECONDS));
+        traffic.shutdownNow();
+        traffic.awaitTermination(30, TimeUnit.SECONDS);
+        double trafficSeconds = (System.nanoTime() - trafficStart) / 1e9;
+        // Let in-flight frames arrive before reading the counters
+        Thread.sleep(2000);
+
+        resources.stop();
+        for (Client client : clients) {
+            StompSession session = client.session;
+            if (session != null && session.isConnected()) {
+                session.disconnect();
+            }
+        }
+        stompClient.stop();
+        heartbeats.shutdown();
+
+        writeReport(report(clients.size(), connected, connectSeconds, connectTime, trafficSeconds, resources));
+
+        assertTrue(connected >= clients.size() * 0.95, "at least 95% of clients connected");
+        for (String type : List.of(CHAT, TYPING, SIGNAL, PRESENCE)) {
+            assertTrue(count(sent, type) > 0, type + " traffic was sent");
+            assertTrue(count(received, type) > 0, type + " traffic was delivered");
+            assertEquals(count(received, type), latencyTimer(type).count(), type + " deliveries all carry a send time");
+            assertEquals(0, count(received, type + "-unparsed"), type + " frames could be read");
+        }
+        // Both members of a chat receive each message; each candidate goes to the one other peer in the room
+        assertTrue(count(received, CHAT) >= count(sent, CHAT), "chat messages reached their chats");
+        assertTrue(count(received, SIGNAL) >= count(sent, SIGNAL) * 0.9, "ICE candidates reached the other peer");
+    }
+
+    // --- setup -------------------------------------------------------------------------------
+
+    private List<Client> createClients() {
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        List<Client> clients = new ArrayList<>(CLIENTS);
+        for (int pair = 0; pair < CLIENTS / 2; pair++) {
+            User patient = saveUser("load-" + run + "-patient-" + pair + "@healthconnect.test", UserRole.PATIENT);
+            User doctor = saveUser("load-" + run + "-doctor-" + pair + "@healthconnect.test", UserRole.DOCTOR);
+            Long chatId = chatService.createOrGetChat(patient.getId(), doctor.getId()).getId();
+            // Half of the pairs are in a video call and exchange signaling frames
+            boolean inCall = pair % 2 == 0;
+            String roomId = "load-room-" + pair;
+            if (inCall) {
+                // No consultation stands behind these rooms, so they are opened here instead of by a join
+                webRTCService.createSession(roomId);
+            }
+            clients.add(new Client(patient, jwtService.generateToken(patient), chatId, roomId, inCall,
+                    clients.size() < CLIENTS * PRESENCE_SUBSCRIBER_RATIO));
+            clients.add(new Client(doctor, jwtService.generateToken(doctor), chatId, roomId, inCall,
+                    clients.size() < CLIENTS * PRESENCE_SUBSCRIBER_RATIO));
+        }
+        return clients;
+    }
+
+    private User saveUser(String email, UserRole role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("load-test");
+        user.setFullName(role == UserRole.DOCTOR ? "Dr. Load " + email : "Load " + email);
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+
+    private int connectAll(WebSocketStompClient stompClient, List<Client> clients, Timer connectTime)
+            throws InterruptedException {
+        int connected = 0;
+        for (int from = 0; from < clients.size(); from += CONNECT_BATCH) {
+            List<Client> batch = clients.subList(from, Math.min(from + CONNECT_BATCH, clients.size()));
+            for (Client client : batch) {
+                client.connectStarted = System.nanoTime();
+                client.future = connect(stompClient, client);
+            }
+            for (Client client : batch) {
+                try {
+                    StompSession session = client.future.get(30, TimeUnit.SECONDS);
+                    connectTime.record(System.nanoTime() - client.connectStarted, TimeUnit.NANOSECONDS);
+                    subscribe(client, session);
+                    if (client.inCall) {
+                        joinCall(client, session);
+                    }
+                    client.session = session;
+                    connected++;
+                } catch (Exception e) {
+                    increment(sent, "connect-failed");
+                }
+            }
+        }
+        return connected;
+    }
+
+    private CompletableFuture<StompSession> connect(WebSocketStompClient stompClient, Client client) {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("Authorization", "Bearer " + client.token);
+        return stompClient.connectAsync("ws://localhost:" + port + "/ws", new WebSocketHttpHeaders(),
+                connectHeaders, new StompSessionHandlerAdapter() { });
+    }
+
+    private void subscribe(Client client, StompSession session) {
+        session.subscribe("/topic/chat/" + client.chatId,
+                handler(CHAT, node -> parseSentAt(node.path("content").asText())));
+        session.subscribe("/topic/chat/" + client.chatId + "/typing",
+                handler(TYPING, node -> parseSentAt(node.path("status").asText())));
+        if (client.inCall) {
+            // Targeted delivery reaches the joined session; broadcast delivery uses the room topic
+            StompFrameHandler signals = handler(SIGNAL, node -> "ICE_CANDIDATE".equals(node.path("type").asText())
+                    ? node.path("data").path("sentAt").asLong(0) : -1);
+            session.subscribe("/user/queue/webrtc/" + client.roomId, signals);
+            session.subscribe("/topic/webrtc/" + client.roomId, signals);
+        }
+        if (client.presenceSubscriber) {
+            session.subscribe("/topic/presence", handler(PRESENCE, node -> {
+                Long started = presenceChanges.get(node.path("userId").asLong() + ":" + node.path("status").asText());
+                return started != null ? started : -1;
+            }));
+        }
+    }
+
+    private void joinCall(Client client, StompSession session) {
+        Map<String, Object> join = new LinkedHashMap<>();
+        join.put("userRole", client.role.name());
+        join.put("iceBatching", false);
+        session.send("/app/webrtc/" + client.roomId + "/join", join);
+    }
+
+    // --- traffic -----------------------------------------------------------------------------
+
+    private void schedule(ScheduledExecutorService executor, int intervalMs, Runnable task) {
+        executor.scheduleAtFixedRate(task, ThreadLocalRandom.current().nextInt(intervalMs), intervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void sendChat(Client client) {
+        MessageRequest request = new MessageRequest();
+        request.setContent("load:" + System.nanoTime());
+        send(client, CHAT, "/app/chat/" + client.chatId + "/send", request);
+    }
+
+    private void sendTyping(Client client) {
+        send(client, TYPING, "/app/chat/" + client.chatId + "/typing", "load:" + System.nanoTime());
+    }
+
+    private void sendSignal(Client client) {
+        Map<String, Object> candidate = new LinkedHashMap<>();
+        candidate.put("candidate", "candidate:842163049 1 udp 1677729535 203.0.113.7 49203 typ srflx "
+                + "raddr 192.168.1.20 rport 49203 generation 0");
+        candidate.put("sdpMid", "0");
+        candidate.put("sdpMLineIndex", 0);
+        candidate.put("sentAt", System.nanoTime());
+        Map<String, Object> signal = new LinkedHashMap<>();
+        signal.put("type", "ICE_CANDIDATE");
+        signal.put("data", candidate);
+        send(client, SIGNAL, "/app/webrtc/" + client.roomId + "/signal", signal);
+    }
+
+    /**
+     * Drops and re-opens a client's connection. The server publishes the user
+     * going offline on DISCONNECT and online again on CONNECT.
+     */
+    private void reconnect(WebSocketStompClient stompClient, Client client) {
+        StompSession session = client.session;
+        if (session == null) {
+            return;
+        }
+        client.session = null;
+        try {
+            presenceChanges.put(client.userId + ":OFFLINE", System.nanoTime());
+            increment(sent, PRESENCE);
+            session.disconnect();
+            presenceChanges.put(client.userId + ":ONLINE", System.nanoTime());
+            increment(sent, PRESENCE);
+            StompSession reconnected = connect(stompClient, client).get(30, TimeUnit.SECONDS);
+            subscribe(client, reconnected);
+            client.session = reconnected;
+        } catch (Exception e) {
+            increment(sent, "reconnect-failed");
+        }
+    }
+
+    private void send(Client client, String type, String destination, Object payload) {
+        StompSession session = client.session;
+        if (session == null) {
+            // Reconnecting
+            return;
+        }
+        try {
+            session.send(destination, payload);
+            increment(sent, type);
+        } catch (Exception e) {
+            sendErrors.incrementAndGet();
+        }
+    }
+
+    private StompFrameHandler handler(String type, ToLongFunction<JsonNode> sentAt) {
+        Timer latency = latencyTimer(type);
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                long now = System.nanoTime();
+                long started;
+                try {
+                    started = sentAt.applyAsLong(objectMapper.readTree((byte[]) payload));
+                } catch (Exception e) {
+                    started = 0;
+                }
+                if (started > 0) {
+                    increment(received, type);
+                    latency.record(now - started, TimeUnit.NANOSECONDS);
+                } else if (started == 0) {
+                    increment(received, type + "-unparsed");
+                }
+                // Negative: another kind of frame on the same destination
+            }
+        };
+    }
+
+    private static long parseSentAt(String text) {
+        int marker = text.indexOf("load:");
+        if (marker < 0) {
+            return -1;
+        }
+        int end = marker + 5;
+        while (end < text.length() && Character.isDigit(text.charAt(end))) {
+            end++;
+        }
+        try {
+            return Long.parseLong(text.substring(marker + 5, end));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // --- reporting ---------------------------------------------------------------------------
+
+    private Timer latencyTimer(String type) {
+        return Timer.builder("load.latency")
+                .tag("type", type)
+                .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                .distributionStatisticExpiry(Duration.ofHours(1))
+                .distributionStatisticBufferLength(1)
+                .register(clientMeters);
+    }
+
+    private Map<String, Object> report(int clients, int connected, double connectSeconds, Timer connectTime,
+                                       double trafficSeconds, ResourceSampler resources) {
+        Map<String, Object> report = new LinkedHashMap<>();
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("timestamp", Instant.now().toString());
+        run.put("label", System.getProperty("loadtest.label", "local"));
+        run.put("clients", clients);
+        run.put("durationSeconds", DURATION_SECONDS);
+        run.put("chatIntervalMs", CHAT_INTERVAL_MS);
+        run.put("typingIntervalMs", TYPING_INTERVAL_MS);
+        run.put("signalIntervalMs", SIGNAL_INTERVAL_MS);
+        run.put("presenceIntervalMs", PRESENCE_INTERVAL_MS);
+        run.put("presenceSubscriberRatio", PRESENCE_SUBSCRIBER_RATIO);
+        run.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        run.put("maxHeapMb", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        report.put("run", run);
+
+        Map<String, Object> connect = new LinkedHashMap<>();
+        connect.put("connected", connected);
+        connect.put("failed", count(sent, "connect-failed"));
+        connect.put("seconds", round(connectSeconds));
+        connect.put("latencyMs", percentiles(connectTime));
+        report.put("connect", connect);
+
+        Map<String, Object> traffic = new LinkedHashMap<>();
+        for (String type : List.of(CHAT, TYPING, SIGNAL, PRESENCE)) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("sent", count(sent, type));
+            entry.put("received", count(received, type));
+            entry.put("sentPerSecond", round(count(sent, type) / trafficSeconds));
+            entry.put("receivedPerSecond", round(count(received, type) / trafficSeconds));
+            entry.put("latencyMs", percentiles(latencyTimer(type)));
+            traffic.put(type, entry);
+        }
+        traffic.put("sendErrors", sendErrors.get());
+        traffic.put("reconnectFailures", count(sent, "reconnect-failed"));
+        report.put("traffic", traffic);
+
+        report.put("resources", resources.summary());
+        report.put("server", serverMetrics());
+        return report;
+    }
+
+    private Map<String, Object> serverMetrics() {
+        Map<String, Object> server = new LinkedHashMap<>();
+        for (Timer timer : serverMeters.find("websocket.channel.queue.wait").timers()) {
+            server.put("queueWaitMs." + timer.getId().getTag("channel"), percentiles(timer));
+        }
+        serverMeters.find("websocket.outbound.held").counters().forEach(counter ->
+                server.put("outboundHeld." + counter.getId().getTag("action"), (long) counter.count()));
+        serverMeters.find("websocket.slow.disconnects").counters().forEach(counter ->
+                server.put("slowDisconnects." + counter.getId().getTag("reason"), (long) counter.count()));
+        return server;
+    }
+
+    private static Map<String, Object> percentiles(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", snapshot.count());
+        values.put("mean", round(snapshot.mean(TimeUnit.MILLISECONDS)));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            values.put("p" + PERCENTILE_FORMAT.format(percentile.percentile() * 100),
+                    round(percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        values.put("max", round(snapshot.max(TimeUnit.MILLISECONDS)));
+        return values;
+    }
+
+    private void writeReport(Map<String, Object> report) throws Exception {
+        File dir = new File(System.getProperty("loadtest.report-dir", "target/load-reports"));
+        dir.mkdirs();
+        File file = new File(dir, "stomp-load-" + System.currentTimeMillis() + ".json");
+        objectMapper.writeValue(file, report);
+    }
+
+    private static void increment(Map<String, AtomicLong> counters, String key) {
+        counters.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static long count(Map<String, AtomicLong> counters, String key) {
+        AtomicLong counter = counters.get(key);
+        return counter != null ? counter.get() : 0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static final class Client {
+        private final Long userId;
+        private final UserRole role;
+        private final String token;
+        private final Long chatId;
+        private final String roomId;
+        private final boolean inCall;
+        private final boolean presenceSubscriber;
+        private long connectStarted;
+        private CompletableFuture<StompSession> future;
+        // Null while reconnecting
+        private volatile StompSession session;
+
+        private Client(User user, String token, Long chatId, String roomId, boolean inCall,
+                       boolean presenceSubscriber) {
+            this.userId = user.getId();
+            this.role = user.getRole();
+            this.token = token;
+            this.chatId = chatId;
+            this.roomId = roomId;
+            this.inCall = inCall;
+            this.presenceSubscriber = presenceSubscriber;
+        }
+    }
+
+    /**
+     * Samples CPU, heap and thread count once a second while the load runs.
+     */
+    private static final class ResourceSampler {
+        private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        private final List<double[]> samples = new ArrayList<>();
+        private long gcCountStart;
+        private long gcTimeStart;
+        private long gcCount;
+        private long gcTime;
+
+        void start() {
+            gcCountStart = gcTotal(GarbageCollectorMXBean::getCollectionCount);
+            gcTimeStart = gcTotal(GarbageCollectorMXBean::getCollectionTime);
+            sampler.scheduleAtFixedRate(this::sample, 0, 1, TimeUnit.SECONDS);
+        }
+
+        void stop() throws InterruptedException {
+            sampler.shutdown();
+            sampler.awaitTermination(5, TimeUnit.SECONDS);
+            gcCount = gcTotal(GarbageCollectorMXBean::getCollectionCount) - gcCountStart;
+            gcTime = gcTotal(GarbageCollectorMXBean::getCollectionTime) - gcTimeStart;
+        }
+
+        private void sample() {
+            OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            double cpu = os instanceof com.sun.management.OperatingSystemMXBean sun ? sun.getProcessCpuLoad() : -1;
+            double heapMb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024.0 * 1024);
+            double threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            synchronized (samples) {
+                samples.add(new double[] {cpu, heapMb, threads});
+            }
+        }
+
+        Map<String, Object> summary() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            synchronized (samples) {
+                summary.put("processCpuAvg", round(samples.stream().mapToDouble(s -> s[0]).filter(v -> v >= 0).average().orElse(-1)));
+                summary.put("processCpuMax", round(samples.stream().mapToDouble(s -> s[0]).max().orElse(-1)));
+                summary.put("heapUsedMaxMb", round(samples.stream().mapToDouble(s -> s[1]).max().orElse(0)));
+                summary.put("threadsMax", (long) samples.stream().mapToDouble(s -> s[2]).max().orElse(0));
+            }
+            summary.put("gcCount", gcCount);
+            summary.put("gcTimeMs", gcTime);
+            return summary;
+        }
+
+        private static long gcTotal(ToLongFunction<GarbageCollectorMXBean> metric) {
+            return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(metric).filter(v -> v >= 0).sum();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.healthconnect.performance;
+
+import com.healthconnect.service.AgoraTokenService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Everyone joining at the top of the hour: many threads ask for the tokens of
+ * the same consultations at once, first with a cold cache and then after
+ * pre-issuance. Each distinct token must be signed exactly once. Enabled
+ * with -Dbenchmark=true.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AgoraTokenStampedeTest {
+
+    private static final int CONSULTATIONS = 50;
+    private static final int REQUESTS_PER_TOKEN = 40;
+    private static final int THREADS = 16;
+
+    private SimpleMeterRegistry registry;
+    private AgoraTokenService service;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        service = new AgoraTokenService(registry);
+        ReflectionTestUtils.setField(service, "appId", "0123456789abcdef0123456789abcdef");
+        ReflectionTestUtils.setField(service, "appCertificate", "fedcba9876543210fedcba9876543210");
+    }
+
+    @Test
+    void concurrentJoinsSignEachTokenOnce() throws Exception {
+        stampede();
+        int tokens = CONSULTATIONS * 2;
+        int requests = tokens * REQUESTS_PER_TOKEN;
+
+        assertEquals(tokens, requests("miss"), "one signature per token");
+        assertEquals(tokens, registry.get("agora.token.generation").timer().count());
+        assertEquals(requests, requests("miss") + requests("hit") + requests("coalesced"));
+    }
+
+    @Test
+    void preIssuedTokensAreServedFromCache() throws Exception {
+        for (int consultation = 0; consultation < CONSULTATIONS; consultation++) {
+            service.preIssueRtcToken(room(consultation), doctor(consultation), 3600);
+            service.preIssueRtcToken(room(consultation), patient(consultation), 3600);
+        }
+        double signedAhead = requests("miss");
+
+        stampede();
+        assertEquals(signedAhead, requests("miss"), "nothing is signed while participants join");
+    }
+
+    private void stampede() throws Exception {
+        Set<String> distinct = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = thread; i < CONSULTATIONS * 2 * REQUESTS_PER_TOKEN; i += THREADS) {
+                        int consultation = i % CONSULTATIONS;
+                        int uid = (i / CONSULTATIONS) % 2 == 0 ? doctor(consultation) : patient(consultation);
+                        distinct.add(service.generateRtcToken(room(consultation), uid, 3600));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        done.await();
+        executor.shutdown();
+        assertEquals(CONSULTATIONS * 2, distinct.size(), "every participant got its own token");
+    }
+
+    private double requests(String result) {
+        return registry.get("agora.token.requests").tag("result", result).counter().count();
+    }
+
+    private static String room(int consultation) {
+        return "consultation-room-" + consultation;
+    }
+
+    private static int doctor(int consultation) {
+        return 1_000 + consultation;
+    }
+
+    private static int patient(int consultation) {
+        return 2_000 + consultation;
+    }
+}
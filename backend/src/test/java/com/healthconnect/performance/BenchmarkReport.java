@@ -0,0 +1,49 @@
+package com.healthconnect.performance;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the numbers of one benchmark run, logs them and writes them as
+ * JSON to {@code target/benchmark-reports} (or -Dbenchmark.report-dir) so
+ * runs can be compared across changes.
+ */
+final class BenchmarkReport {
+
+    private static final Logger log = LoggerFactory.getLogger(BenchmarkReport.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final String name;
+    private final Map<String, Object> values = new LinkedHashMap<>();
+
+    BenchmarkReport(String name) {
+        this.name = name;
+    }
+
+    BenchmarkReport put(String key, Object value) {
+        values.put(key, value instanceof Double d ? round(d) : value);
+        return this;
+    }
+
+    void write() {
+        log.info("{}: {}", name, values);
+        File dir = new File(System.getProperty("benchmark.report-dir", "target/benchmark-reports"));
+        dir.mkdirs();
+        try {
+            objectMapper.writeValue(new File(dir, name + ".json"), values);
+        } catch (IOException e) {
+            log.warn("Could not write benchmark report {}: {}", name, e.getMessage());
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
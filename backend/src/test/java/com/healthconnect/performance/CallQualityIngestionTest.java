@@ -0,0 +1,110 @@
+package com.healthconnect.performance;
+
+import com.healthconnect.dto.CallQualityMetrics;
+import com.healthconnect.dto.CallQualityReport;
+import com.healthconnect.entity.User;
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.repository.CallQualityWindowRepository;
+import com.healthconnect.repository.VideoConsultationRepository;
+import com.healthconnect.service.CallQualityService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Call-quality posts from many concurrent calls, ingested in memory and
+ * flushed in one batch. Enabled with -Dbenchmark=true; the post count can be
+ * changed with -Dbenchmark.iterations.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CallQualityIngestionTest {
+
+    private static final int POSTS = Integer.getInteger("benchmark.iterations", 200_000);
+    private static final int CONSULTATIONS = 200;
+    private static final int THREADS = 8;
+    private static final long PATIENT_OFFSET = 100_000;
+
+    @Test
+    void concurrentPostsAreFlushedInOneBatch() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        CallQualityWindowRepository windowRepository = mock(CallQualityWindowRepository.class);
+        CallQualityService service = new CallQualityService(jdbcTemplate, windowRepository, consultations(),
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                Random random = new Random(thread);
+                for (int i = thread; i < POSTS; i += THREADS) {
+                    long consultationId = 1 + i % CONSULTATIONS;
+                    service.record(sample(consultationId, random), PATIENT_OFFSET + consultationId);
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        executor.shutdown();
+        verifyNoInteractions(jdbcTemplate);
+
+        CallQualityReport report = service.getConsultationReport(1L, 1L, null, null, null);
+        assertEquals(POSTS / CONSULTATIONS, report.getSamples(), "unflushed windows are reported");
+
+        int rows = service.flush();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), batch.capture());
+        assertEquals(rows, batch.getValue().size());
+        assertTrue(rows >= CONSULTATIONS, "one row per consultation and window");
+        long flushedSamples = batch.getValue().stream().mapToLong(row -> (Long) row[3]).sum();
+        assertEquals(POSTS, flushedSamples, "every post is in the flushed windows");
+        assertEquals(0, service.flush(), "nothing is written twice");
+    }
+
+    private static VideoConsultationRepository consultations() {
+        VideoConsultationRepository repository = mock(VideoConsultationRepository.class);
+        when(repository.findById(anyLong())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            VideoConsultation consultation = new VideoConsultation();
+            consultation.setId(id);
+            consultation.setDoctor(user(id));
+            consultation.setPatient(user(PATIENT_OFFSET + id));
+            return Optional.of(consultation);
+        });
+        return repository;
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static CallQualityMetrics sample(long consultationId, Random random) {
+        return CallQualityMetrics.builder()
+                .consultationId(consultationId)
+                .latencyMs(40 + (long) random.nextInt(160))
+                .jitterMs(random.nextDouble() * 30)
+                .packetLossPercentage(random.nextInt(10) == 0 ? random.nextDouble() * 5 : 0.0)
+                .audioQuality(4)
+                .videoQuality(4)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+}
@@ -0,0 +1,209 @@
+package com.healthconnect.performance;
+
+import com.healthconnect.dto.TimeSlotResponse;
+import com.healthconnect.entity.Appointment;
+import com.healthconnect.entity.AppointmentStatus;
+import com.healthconnect.entity.AppointmentType;
+import com.healthconnect.entity.User;
+import com.healthconnect.entity.UserRole;
+import com.healthconnect.repository.AppointmentRepository;
+import com.healthconnect.repository.UserRepository;
+import com.healthconnect.service.AppointmentReminderScheduler;
+import com.healthconnect.service.AppointmentService;
+import com.healthconnect.service.DoctorSlotIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The slot index at scale against an in-memory database: every (doctor, day)
+ * bitmap of a seeded random schedule is checked against the per-slot conflict
+ * scan it replaces, then single-day and month-long lookups are timed through
+ * AppointmentService once answered by the index and once by the database
+ * query it falls back to. Each lookup runs outside a test transaction so the
+ * database path pays for its own queries. Enabled with -Dbenchmark=true; the
+ * index lookup count can be changed with -Dbenchmark.iterations.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class DoctorSlotIndexBenchmarkTest {
+
+    private static final int LOOKUPS = Integer.getInteger("benchmark.iterations", 200_000);
+    // Each database lookup is two queries, so it gets a fraction of the index's count
+    private static final int DATABASE_LOOKUPS = Math.max(1_000, LOOKUPS / 100);
+    private static final int MONTHS = Math.max(50, LOOKUPS / 3_000);
+    private static final int DOCTORS = 200;
+    private static final int DAYS = 60;
+    private static final int APPOINTMENTS = 40_000;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final LocalDate today = LocalDate.now();
+    private final List<Object[]> rows = new ArrayList<>();
+    private final List<Long> doctorIds = new ArrayList<>();
+    private DoctorSlotIndex index;
+    private AppointmentService indexed;
+    private AppointmentService database;
+
+    @BeforeEach
+    void setUp() {
+        List<User> doctors = new ArrayList<>();
+        for (int i = 0; i < DOCTORS; i++) {
+            doctors.add(user("doctor-" + i + "@example.com", UserRole.DOCTOR));
+        }
+        doctors = userRepository.saveAll(doctors);
+        doctors.forEach(doctor -> doctorIds.add(doctor.getId()));
+        User patient = userRepository.save(user("patient@example.com", UserRole.PATIENT));
+
+        Random random = new Random(42);
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            // Mostly half-hour visits on the grid, some longer or off-grid
+            LocalTime start = LocalTime.of(9, 0).plusMinutes(15L * random.nextInt(32));
+            LocalTime end = start.plusMinutes(random.nextInt(4) == 0 ? 45 : 30);
+            Appointment appointment = new Appointment();
+            appointment.setDoctor(doctors.get(random.nextInt(DOCTORS)));
+            appointment.setPatient(patient);
+            appointment.setDate(today.plusDays(random.nextInt(DAYS)));
+            appointment.setStartTime(start);
+            appointment.setEndTime(end);
+            appointment.setType(AppointmentType.IN_PERSON);
+            appointment.setStatus(AppointmentStatus.SCHEDULED);
+            appointments.add(appointment);
+        }
+        for (Appointment appointment : appointmentRepository.saveAll(appointments)) {
+            rows.add(new Object[]{appointment.getId(), appointment.getDoctor().getId(), appointment.getDate(),
+                    appointment.getStartTime(), appointment.getEndTime()});
+        }
+
+        index = new DoctorSlotIndex(appointmentRepository, userRepository);
+        index.rebuild();
+        indexed = new AppointmentService(appointmentRepository, userRepository,
+                mock(AppointmentReminderScheduler.class), index);
+        // Never covers anything, so every lookup takes the database path
+        database = new AppointmentService(appointmentRepository, userRepository,
+                mock(AppointmentReminderScheduler.class), mock(DoctorSlotIndex.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Committed outside a test transaction, so cleared for the other tests sharing the database
+        appointmentRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void bitmapsMatchTheConflictScan() {
+        for (Long doctor : doctorIds) {
+            for (int day = 0; day < DAYS; day++) {
+                LocalDate date = today.plusDays(day);
+                assertEquals(scan(doctor, date), index.busySlots(doctor, date), "doctor " + doctor + " on " + date);
+            }
+        }
+    }
+
+    @Test
+    void indexLookupsAgainstTheDatabaseQuery() {
+        Random random = new Random(7);
+        List<Long> doctors = new ArrayList<>();
+        List<LocalDate> dates = new ArrayList<>();
+        for (int i = 0; i < LOOKUPS; i++) {
+            doctors.add(doctorIds.get(random.nextInt(DOCTORS)));
+            dates.add(today.plusDays(random.nextInt(DAYS - 30)));
+        }
+
+        // Same answers on both paths before anything is timed
+        for (int i = 0; i < DATABASE_LOOKUPS; i++) {
+            assertEquals(database.getAvailableTimeSlots(doctors.get(i), dates.get(i)),
+                    indexed.getAvailableTimeSlots(doctors.get(i), dates.get(i)));
+        }
+
+        double indexDay = nanosPerLookup(LOOKUPS, i -> indexed.getAvailableTimeSlots(doctors.get(i), dates.get(i)));
+        double databaseDay = nanosPerLookup(DATABASE_LOOKUPS,
+                i -> database.getAvailableTimeSlots(doctors.get(i), dates.get(i)));
+        double indexMonth = nanosPerLookup(MONTHS,
+                i -> indexed.getAvailableTimeSlots(doctors.get(i), dates.get(i), dates.get(i).plusDays(29)));
+        double databaseMonth = nanosPerLookup(MONTHS,
+                i -> database.getAvailableTimeSlots(doctors.get(i), dates.get(i), dates.get(i).plusDays(29)));
+
+        new BenchmarkReport("doctor-slot-index")
+                .put("appointments", APPOINTMENTS)
+                .put("indexMicrosPerDay", indexDay / 1_000)
+                .put("databaseMicrosPerDay", databaseDay / 1_000)
+                .put("daySpeedup", databaseDay / indexDay)
+                .put("indexMicrosPerMonth", indexMonth / 1_000)
+                .put("databaseMicrosPerMonth", databaseMonth / 1_000)
+                .put("monthSpeedup", databaseMonth / indexMonth)
+                .write();
+
+        assertTrue(indexDay < databaseDay, "index " + indexDay + "ns vs database " + databaseDay + "ns per day");
+        assertTrue(indexMonth < databaseMonth,
+                "index " + indexMonth + "ns vs database " + databaseMonth + "ns per month");
+    }
+
+    // Warmed up with a tenth of the run, then timed over all of it
+    private static double nanosPerLookup(int lookups, LookupAt lookup) {
+        Object sink = null;
+        for (int i = 0; i < Math.max(1, lookups / 10); i++) {
+            sink = lookup.at(i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            sink = lookup.at(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        assertNotNull(sink);
+        return (double) elapsed / lookups;
+    }
+
+    // The conflict check the index replaces: every slot against every appointment of the day
+    private long scan(long doctor, LocalDate date) {
+        long busy = 0;
+        for (int slot = 0; slot < DoctorSlotIndex.SLOTS_PER_DAY; slot++) {
+            LocalTime slotStart = DoctorSlotIndex.DAY_START.plusMinutes((long) slot * DoctorSlotIndex.SLOT_MINUTES);
+            LocalTime slotEnd = slotStart.plusMinutes(DoctorSlotIndex.SLOT_MINUTES);
+            for (Object[] row : rows) {
+                if ((Long) row[1] == doctor && row[2].equals(date)
+                        && slotStart.isBefore((LocalTime) row[4]) && slotEnd.isAfter((LocalTime) row[3])) {
+                    busy |= 1L << slot;
+                    break;
+                }
+            }
+        }
+        return busy;
+    }
+
+    private static User user(String email, UserRole role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setFullName(email);
+        user.setPassword("password");
+        user.setRole(role);
+        return user;
+    }
+
+    @FunctionalInterface
+    private interface LookupAt {
+        Object at(int i);
+    }
+}
@@ -0,0 +1,168 @@
+package com.healthconnect.performance;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.healthconnect.config.FrameEncodingNegotiator;
+import com.healthconnect.config.FrameEncodingNegotiator.FrameEncoding;
+import com.healthconnect.dto.MessageResponse;
+import com.healthconnect.dto.UserResponse;
+import com.healthconnect.entity.MessageStatus;
+import com.healthconnect.entity.MessageType;
+import com.healthconnect.entity.UserRole;
+import com.healthconnect.service.UserPresenceService.TypingNotificationMessage;
+import com.healthconnect.service.WebRTCService.WebRTCMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bytes per frame and encode/decode time for the high-frequency WebSocket
+ * payloads in JSON, CBOR and Smile, plus the cost of transcoding an already
+ * serialized JSON payload, which is what the outbound channel does for
+ * sessions that negotiated a binary encoding. Each payload gets a report and
+ * must shrink by at least {@link #MIN_REDUCTION} in both binary encodings.
+ * Enabled with -Dbenchmark=true; iterations can be raised with
+ * -Dbenchmark.iterations.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FrameEncodingBenchmarkTest {
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 20_000);
+    private static final int WARMUP = Math.max(1_000, ITERATIONS / 5);
+    // ICE candidates are mostly one SDP string, which no binary encoding shrinks; other frames save 10-20%
+    private static final double MIN_REDUCTION = 0.05;
+
+    private final ObjectMapper json = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final ObjectMapper cbor = json.copyWith(new CBORFactory());
+    private final ObjectMapper smile = json.copyWith(new SmileFactory());
+    private final FrameEncodingNegotiator negotiator = new FrameEncodingNegotiator(json);
+    // Keeps the measured results alive
+    private long consumed;
+
+    @Test
+    void compareFrameEncodings() throws Exception {
+        Map<String, Object> samples = new LinkedHashMap<>();
+        samples.put("ice-candidate", iceCandidate());
+        samples.put("typing", new TypingNotificationMessage(42L, 7L, true, LocalDateTime.now()));
+        samples.put("chat-message", chatMessage());
+
+        for (Map.Entry<String, Object> sample : samples.entrySet()) {
+            Object payload = sample.getValue();
+            byte[] jsonBytes = json.writeValueAsBytes(payload);
+            byte[] cborBytes = cbor.writeValueAsBytes(payload);
+            byte[] smileBytes = smile.writeValueAsBytes(payload);
+
+            new BenchmarkReport("frame-encoding-" + sample.getKey())
+                    .put("jsonBytes", jsonBytes.length)
+                    .put("cborBytes", cborBytes.length)
+                    .put("smileBytes", smileBytes.length)
+                    .put("cborReduction", reduction(cborBytes, jsonBytes))
+                    .put("smileReduction", reduction(smileBytes, jsonBytes))
+                    .put("jsonEncodeNanos", encodeNanos(json, payload))
+                    .put("cborEncodeNanos", encodeNanos(cbor, payload))
+                    .put("smileEncodeNanos", encodeNanos(smile, payload))
+                    .put("jsonDecodeNanos", decodeNanos(json, jsonBytes))
+                    .put("cborDecodeNanos", decodeNanos(cbor, cborBytes))
+                    .put("smileDecodeNanos", decodeNanos(smile, smileBytes))
+                    .put("jsonToCborTranscodeNanos", transcodeNanos(jsonBytes))
+                    .write();
+
+            assertTrue(reduction(cborBytes, jsonBytes) >= MIN_REDUCTION,
+                    sample.getKey() + " CBOR frame is " + cborBytes.length + " bytes, JSON " + jsonBytes.length);
+            assertTrue(reduction(smileBytes, jsonBytes) >= MIN_REDUCTION,
+                    sample.getKey() + " Smile frame is " + smileBytes.length + " bytes, JSON " + jsonBytes.length);
+            // Transcoding must not change the content
+            assertEquals(json.readTree(jsonBytes),
+                    cbor.readTree(negotiator.transcode(jsonBytes.clone(), FrameEncoding.CBOR)));
+            assertEquals(json.readTree(jsonBytes),
+                    smile.readTree(negotiator.transcode(jsonBytes.clone(), FrameEncoding.SMILE)));
+        }
+    }
+
+    private double encodeNanos(ObjectMapper mapper, Object payload) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            consumed += mapper.writeValueAsBytes(payload).length;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            consumed += mapper.writeValueAsBytes(payload).length;
+        }
+        return (double) (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    // Clients parse frames into a generic tree, not into the server's DTO types
+    private double decodeNanos(ObjectMapper mapper, byte[] frame) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            consumed += mapper.readTree(frame).size();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            consumed += mapper.readTree(frame).size();
+        }
+        return (double) (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private double transcodeNanos(byte[] jsonBytes) {
+        // A fresh array each time, so the per-payload cache never hits
+        byte[][] inputs = new byte[WARMUP + ITERATIONS][];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = jsonBytes.clone();
+        }
+        for (int i = 0; i < WARMUP; i++) {
+            consumed += negotiator.transcode(inputs[i], FrameEncoding.CBOR).length;
+        }
+        long start = System.nanoTime();
+        for (int i = WARMUP; i < inputs.length; i++) {
+            consumed += negotiator.transcode(inputs[i], FrameEncoding.CBOR).length;
+        }
+        return (double) (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private static double reduction(byte[] encoded, byte[] json) {
+        return 1 - (double) encoded.length / json.length;
+    }
+
+    private static WebRTCMessage iceCandidate() {
+        Map<String, Object> candidate = new LinkedHashMap<>();
+        candidate.put("candidate", "candidate:842163049 1 udp 1677729535 203.0.113.7 49203 typ srflx "
+                + "raddr 192.168.1.20 rport 49203 generation 0 ufrag sK3x network-cost 999");
+        candidate.put("sdpMid", "0");
+        candidate.put("sdpMLineIndex", 0);
+        candidate.put("usernameFragment", "sK3x");
+        return WebRTCMessage.builder()
+                .type(com.healthconnect.service.WebRTCService.MessageType.ICE_CANDIDATE)
+                .fromPeerId("peer-5f1c2a7e-patient-42")
+                .toPeerId("peer-9b3d4e10-doctor-7")
+                .data(candidate)
+                .build();
+    }
+
+    private static MessageResponse chatMessage() {
+        LocalDateTime now = LocalDateTime.now();
+        return MessageResponse.builder()
+                .id(120_034L)
+                .chatId(7L)
+                .sender(new UserResponse(42L, "Jane Patient", "jane.patient@example.com", UserRole.PATIENT,
+                        null, null, null))
+                .content("Hi doctor, the new dosage is working but I still get a mild headache in the evening.")
+                .status(MessageStatus.SENT)
+                .type(MessageType.TEXT)
+                .createdAt(now)
+                .deliveredAt(now)
+                .reactions(Map.of())
+                .mentionedUserIds(List.of())
+                .isUrgent(false)
+                .isEdited(false)
+                .hasAttachment(false)
+                .build();
+    }
+}
@@ -0,0 +1,150 @@
+package com.healthconnect.performance;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthconnect.dto.WebRTCSignalRequest;
+import com.healthconnect.service.IceCandidateBatcher;
+import com.healthconnect.service.RoomOwnership;
+import com.healthconnect.service.VideoConsultationService;
+import com.healthconnect.service.WebRTCService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Signaling frames produced by the ICE candidate exchange of one call setup,
+ * with and without batching. Each peer gathers candidates the way a browser
+ * does: host candidates at once, server-reflexive ones after the STUN round
+ * trip and relay candidates after the TURN allocation. Enabled with
+ * -Dbenchmark=true; the batching rules themselves are covered by
+ * IceCandidateBatcherTest.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class IceCandidateBatchingTest {
+
+    private static final String ROOM_ID = "room-ice";
+    private static final long PATIENT_ID = 42L;
+    private static final long DOCTOR_ID = 7L;
+    // Delay before each candidate, in ms: 4 host, 3 srflx, 3 relay
+    private static final long[] GATHERING = {0, 1, 1, 1, 45, 2, 2, 70, 3, 3};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void batchingReducesFramesPerCallSetup() throws Exception {
+        CallSetup unbatched = runCallSetup(false);
+        CallSetup batched = runCallSetup(true);
+
+        int candidates = 2 * GATHERING.length;
+        assertEquals(candidates, unbatched.candidatesDelivered);
+        assertEquals(candidates, batched.candidatesDelivered, "batching must not lose candidates");
+        assertTrue(batched.frames * 2 <= unbatched.frames, "batching at least halves the ICE frames");
+    }
+
+    private CallSetup runCallSetup(boolean iceBatching) throws Exception {
+        List<Frame> frames = new CopyOnWriteArrayList<>();
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            frames.add(new Frame(SimpMessageHeaderAccessor.getDestination(message.getHeaders()),
+                    (byte[]) message.getPayload()));
+            return true;
+        });
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+
+        IceCandidateBatcher batcher = new IceCandidateBatcher(new SimpleMeterRegistry());
+        WebRTCService service = new WebRTCService(mock(VideoConsultationService.class), new SimpleMeterRegistry(), batcher,
+                RoomOwnership.singleNode("test", new SimpleMeterRegistry()));
+        service.setMessagingTemplate(template);
+        try {
+            service.createSession(ROOM_ID);
+            service.initializeUserSession(ROOM_ID, PATIENT_ID, "PATIENT", iceBatching);
+            service.initializeUserSession(ROOM_ID, DOCTOR_ID, "DOCTOR", iceBatching);
+            String patientPeer = peerId(frames, PATIENT_ID);
+            String doctorPeer = peerId(frames, DOCTOR_ID);
+            frames.clear();
+
+            // Both sides gather at the same time
+            Thread patient = new Thread(() -> gather(service, PATIENT_ID, doctorPeer));
+            Thread doctor = new Thread(() -> gather(service, DOCTOR_ID, patientPeer));
+            patient.start();
+            doctor.start();
+            patient.join();
+            doctor.join();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (candidatesDelivered(frames) < 2 * GATHERING.length && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            return new CallSetup(frames.size(), candidatesDelivered(frames));
+        } finally {
+            batcher.shutdown();
+        }
+    }
+
+    private static void gather(WebRTCService service, long userId, String targetPeerId) {
+        try {
+            for (int i = 0; i < GATHERING.length; i++) {
+                Thread.sleep(GATHERING[i]);
+                WebRTCSignalRequest signal = new WebRTCSignalRequest();
+                signal.setType("ICE_CANDIDATE");
+                signal.setTargetPeerId(targetPeerId);
+                signal.setData(Map.of(
+                        "candidate", "candidate:" + i + " 1 udp 2122260223 192.0.2." + userId + " " + (50000 + i) + " typ host",
+                        "sdpMid", "0",
+                        "sdpMLineIndex", 0));
+                service.handleWebRTCSignal(ROOM_ID, userId, signal);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String peerId(List<Frame> frames, long userId) throws Exception {
+        for (Frame frame : frames) {
+            JsonNode node = objectMapper.readTree(frame.payload);
+            if ("USER_JOINED".equals(node.path("type").asText()) && node.path("data").path("userId").asLong() == userId) {
+                return node.path("fromPeerId").asText();
+            }
+        }
+        throw new IllegalStateException("No USER_JOINED for user " + userId);
+    }
+
+    /**
+     * Candidates addressed to their target. These peers joined without a STOMP
+     * session, so they go out once on the room topic with toPeerId set.
+     */
+    private int candidatesDelivered(List<Frame> frames) throws Exception {
+        int delivered = 0;
+        for (Frame frame : frames) {
+            if (!frame.destination.equals("/topic/webrtc/" + ROOM_ID)) {
+                continue;
+            }
+            JsonNode node = objectMapper.readTree(frame.payload);
+            if (node.path("toPeerId").asText().isEmpty()) {
+                continue;
+            }
+            switch (node.path("type").asText()) {
+                case "ICE_CANDIDATE" -> delivered++;
+                case "ICE_CANDIDATE_BATCH" -> delivered += node.path("data").size();
+                default -> { }
+            }
+        }
+        return delivered;
+    }
+
+    private record Frame(String destination, byte[] payload) {
+    }
+
+    private record CallSetup(int frames, int candidatesDelivered) {
+    }
+}
@@ -0,0 +1,187 @@
+package com.healthconnect.performance;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthconnect.dto.DoctorAvailabilityUpdate;
+import com.healthconnect.service.SerializedMessagePublisher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * In-process benchmark of notification fan-out through the simple broker, run
+ * on synchronous channels so each send includes its full delivery cost. Compares
+ * per-destination serialization of a map (the previous behaviour) with a payload
+ * serialized once and shared, reports the cost of reaching 1,000 subscribers
+ * on each path, and fails if sharing is slower beyond run-to-run noise.
+ * Enabled with -Dbenchmark=true; iterations can be raised with
+ * -Dbenchmark.iterations.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class NotificationFanoutBenchmarkTest {
+
+    private static final int SUBSCRIBERS = 1_000;
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200);
+    private static final int WARMUP = Math.max(10, ITERATIONS / 5);
+    // The paths take turns and the fastest round of each counts, so drift in the JVM hits both alike
+    private static final int ROUNDS = 7;
+    // On a broadcast the serialization saved is small next to the broker fan-out, within run-to-run noise
+    private static final double NOISE = 0.10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SimpleBrokerMessageHandler broker;
+    private SimpMessagingTemplate template;
+    private SerializedMessagePublisher publisher;
+    private final AtomicLong delivered = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+
+        // Stands in for the per-session STOMP handler
+        clientOutbound.subscribe(message -> {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+                delivered.incrementAndGet();
+            }
+        });
+
+        broker = new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+        broker.start();
+
+        template = new SimpMessagingTemplate(brokerChannel);
+        // Same converter chain the STOMP configuration registers by default
+        template.setMessageConverter(new CompositeMessageConverter(List.of(
+                new StringMessageConverter(), new ByteArrayMessageConverter(), new MappingJackson2MessageConverter())));
+
+        publisher = new SerializedMessagePublisher(objectMapper);
+        publisher.setMessagingTemplate(template);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broker.stop();
+    }
+
+    @Test
+    void broadcastToOneTopicWithThousandSubscribers() {
+        String destination = "/topic/availability/broadcast";
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            connect("session-" + i);
+            subscribe("session-" + i, destination);
+        }
+
+        double[] nanos = compare(i -> {
+            Map<String, Object> update = availabilityMap(i);
+            template.convertAndSend("/topic/availability/doctor/" + i, update);
+            template.convertAndSend(destination, update);
+        }, i ->
+                publisher.publish(publisher.serialize(availabilityUpdate(i)),
+                        "/topic/availability/doctor/" + i, destination));
+
+        assertEquals((long) (ROUNDS * ITERATIONS + WARMUP) * SUBSCRIBERS * 2, delivered.get());
+        report("notification-fanout-broadcast", nanos[0], nanos[1]);
+    }
+
+    @Test
+    void sameEventToThousandPerUserDestinations() {
+        String[] destinations = new String[SUBSCRIBERS];
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            destinations[i] = "/topic/status/user/" + i;
+            connect("session-" + i);
+            subscribe("session-" + i, destinations[i]);
+        }
+
+        double[] nanos = compare(i -> {
+            Map<String, Object> update = availabilityMap(i);
+            for (String destination : destinations) {
+                template.convertAndSend(destination, update);
+            }
+        }, i ->
+                publisher.publish(publisher.serialize(availabilityUpdate(i)), destinations));
+
+        assertEquals((long) (ROUNDS * ITERATIONS + WARMUP) * SUBSCRIBERS * 2, delivered.get());
+        report("notification-fanout-per-user", nanos[0], nanos[1]);
+    }
+
+    // Each measured iteration reaches all subscribers once
+    private static void report(String name, double mapNanos, double sharedNanos) {
+        new BenchmarkReport(name)
+                .put("subscribers", SUBSCRIBERS)
+                .put("iterations", ROUNDS * ITERATIONS)
+                .put("mapMicrosPer1000Subscribers", mapNanos / 1_000 * 1_000 / SUBSCRIBERS)
+                .put("sharedMicrosPer1000Subscribers", sharedNanos / 1_000 * 1_000 / SUBSCRIBERS)
+                .put("speedup", mapNanos / sharedNanos)
+                .write();
+        assertTrue(sharedNanos <= mapNanos * (1 + NOISE),
+                String.format("shared payload took %.0f ns per fan-out, map %.0f ns", sharedNanos, mapNanos));
+    }
+
+    // Best nanoseconds per fan-out of the map path and the shared path
+    private static double[] compare(IntConsumer mapFanOut, IntConsumer sharedFanOut) {
+        for (int i = 0; i < WARMUP; i++) {
+            mapFanOut.accept(i);
+            sharedFanOut.accept(i);
+        }
+        double[] best = {Double.MAX_VALUE, Double.MAX_VALUE};
+        for (int round = 0; round < ROUNDS; round++) {
+            best[0] = Math.min(best[0], measure(mapFanOut));
+            best[1] = Math.min(best[1], measure(sharedFanOut));
+        }
+        return best;
+    }
+
+    private static double measure(IntConsumer fanOut) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            fanOut.accept(i);
+        }
+        return (double) (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    // The broker only delivers to sessions it has seen connect
+    private void connect(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        accessor.setSessionId(sessionId);
+        broker.handleMessage(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private void subscribe(String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("sub-" + destination);
+        accessor.setDestination(destination);
+        broker.handleMessage(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private static Map<String, Object> availabilityMap(int i) {
+        Map<String, Object> update = new HashMap<>();
+        update.put("doctorId", (long) i);
+        update.put("availability", "AVAILABLE");
+        update.put("timestamp", System.currentTimeMillis());
+        return update;
+    }
+
+    private static DoctorAvailabilityUpdate availabilityUpdate(int i) {
+        return new DoctorAvailabilityUpdate((long) i, "AVAILABLE", System.currentTimeMillis());
+    }
+}
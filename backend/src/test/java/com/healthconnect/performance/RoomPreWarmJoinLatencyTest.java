@@ -0,0 +1,201 @@
+package com.healthconnect.performance;
+
+import com.healthconnect.entity.Appointment;
+import com.healthconnect.entity.AppointmentType;
+import com.healthconnect.entity.User;
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.repository.AppointmentRepository;
+import com.healthconnect.service.ConsultationPreWarmer;
+import com.healthconnect.service.IceCandidateBatcher;
+import com.healthconnect.service.RoomOwnership;
+import com.healthconnect.service.VideoConsultationService;
+import com.healthconnect.service.WebRTCService;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Every participant of the hour's consultations joins at once, first with
+ * rooms opened by the joins themselves and then with rooms pre-warmed by
+ * {@link ConsultationPreWarmer}. Reports the p50 and p99 of the
+ * webrtc.rooms.join timer for both runs and fails if joining a pre-warmed room
+ * is slower than the joins that had to open one, beyond run-to-run noise.
+ * Enabled with -Dbenchmark=true; the consultation count can be changed with
+ * -Dbenchmark.iterations.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RoomPreWarmJoinLatencyTest {
+
+    private static final int CONSULTATIONS = Integer.getInteger("benchmark.iterations", 2_000);
+    private static final int THREADS = 16;
+    // Percentiles come from a bucketed histogram and 16 racing threads, so allow for jitter between runs
+    private static final double NOISE = 0.25;
+
+    @Test
+    void preWarmedRoomsOnlyAttachPeersAtTheTopOfTheHour() throws Exception {
+        List<Appointment> appointments = appointments();
+        // JIT warm-up, so the cold run is not penalized for going first
+        topOfHour(new Node(), appointments);
+
+        Node cold = new Node();
+        topOfHour(cold, appointments);
+
+        Node warm = new Node();
+        int opened = warm.preWarmer.prewarm(appointments);
+        topOfHour(warm, appointments);
+
+        assertEquals(CONSULTATIONS, opened);
+        assertEquals(CONSULTATIONS, cold.joins("cold"), "the first join of each room opened it");
+        assertEquals(CONSULTATIONS, cold.joins("existing"));
+        assertEquals(0, warm.joins("cold"), "no join had to open a room");
+        assertEquals(CONSULTATIONS * 2, warm.joins("existing"));
+        for (Appointment appointment : appointments) {
+            assertEquals(2, warm.service.getRoomStatus(roomOf(appointment), null).getParticipantCount());
+        }
+
+        double coldP50 = cold.percentileMicros("cold", 0.5);
+        double coldP99 = cold.percentileMicros("cold", 0.99);
+        double warmP50 = warm.percentileMicros("existing", 0.5);
+        double warmP99 = warm.percentileMicros("existing", 0.99);
+        new BenchmarkReport("room-prewarm-join-latency")
+                .put("consultations", CONSULTATIONS)
+                .put("coldRunOpeningJoinP50Micros", coldP50)
+                .put("coldRunOpeningJoinP99Micros", coldP99)
+                .put("coldRunSecondJoinP50Micros", cold.percentileMicros("existing", 0.5))
+                .put("coldRunSecondJoinP99Micros", cold.percentileMicros("existing", 0.99))
+                .put("preWarmedJoinP50Micros", warmP50)
+                .put("preWarmedJoinP99Micros", warmP99)
+                .write();
+
+        assertTrue(warmP50 <= coldP50 * (1 + NOISE),
+                "pre-warmed p50 " + warmP50 + "us vs cold p50 " + coldP50 + "us");
+        assertTrue(warmP99 <= coldP99 * (1 + NOISE),
+                "pre-warmed p99 " + warmP99 + "us vs cold p99 " + coldP99 + "us");
+    }
+
+    private static void topOfHour(Node node, List<Appointment> appointments) throws Exception {
+        int joins = appointments.size() * 2;
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = thread; i < joins; i += THREADS) {
+                        int consultation = i / 2;
+                        String roomId = roomOf(appointments.get(consultation));
+                        if (i % 2 == 0) {
+                            node.service.initializeUserSession(roomId, doctor(consultation), "DOCTOR");
+                        } else {
+                            node.service.initializeUserSession(roomId, patient(consultation), "PATIENT");
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        done.await();
+        executor.shutdown();
+    }
+
+    private static List<Appointment> appointments() {
+        List<Appointment> appointments = new ArrayList<>();
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < CONSULTATIONS; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setId((long) i + 1);
+            appointment.setDate(today);
+            appointment.setStartTime(LocalTime.of(10, 0));
+            appointment.setType(AppointmentType.VIDEO_CALL);
+            appointment.setDoctor(user(doctor(i)));
+            appointment.setPatient(user(patient(i)));
+            appointments.add(appointment);
+        }
+        return appointments;
+    }
+
+    private static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static String roomOf(Appointment appointment) {
+        return "consultation-room-" + appointment.getId();
+    }
+
+    private static long doctor(int consultation) {
+        return 1_000_000L + consultation;
+    }
+
+    private static long patient(int consultation) {
+        return 2_000_000L + consultation;
+    }
+
+    private static final class Node {
+
+        final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        final WebRTCService service;
+        final ConsultationPreWarmer preWarmer;
+
+        Node() {
+            IceCandidateBatcher batcher = new IceCandidateBatcher(registry);
+            // Every joining user is a participant of the consultation behind the room
+            VideoConsultationService consultations = mock(VideoConsultationService.class);
+            when(consultations.isParticipant(anyString(), anyLong())).thenReturn(true);
+            RoomOwnership ownership = RoomOwnership.singleNode("test", registry);
+            service = new WebRTCService(consultations, registry, batcher, ownership);
+            SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> true);
+            template.setMessageConverter(new MappingJackson2MessageConverter());
+            service.setMessagingTemplate(template);
+
+            // The consultation records already exist or are created here; only the rooms are measured
+            when(consultations.prepareConsultation(any(), any())).thenAnswer(invocation -> {
+                Appointment appointment = invocation.getArgument(0);
+                VideoConsultation consultation = new VideoConsultation();
+                consultation.setRoomId(roomOf(appointment));
+                return consultation;
+            });
+            preWarmer = new ConsultationPreWarmer(mock(AppointmentRepository.class), consultations, service, ownership);
+        }
+
+        long joins(String room) {
+            return registry.get("webrtc.rooms.join").tag("room", room).timer().count();
+        }
+
+        double percentileMicros(String room, double percentile) {
+            for (ValueAtPercentile value : registry.get("webrtc.rooms.join").tag("room", room).timer()
+                    .takeSnapshot().percentileValues()) {
+                if (value.percentile() == percentile) {
+                    return value.value(TimeUnit.MICROSECONDS);
+                }
+            }
+            throw new AssertionError("no p" + percentile + " published for " + room + " joins");
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.healthconnect.performance;
+
+import com.healthconnect.config.InstrumentedChannelExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load test for the STOMP inbound channel: a burst of chat messages whose
+ * handler blocks on a simulated database write, while WebRTC signals arrive
+ * from other sessions. Compares signal latency (send to handled) on a small
+ * shared pool like the previous default with the configured inbound pool.
+ * Enabled with -Dbenchmark=true.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SignalingLatencyUnderChatLoadTest {
+
+    private static final int CHAT_MESSAGES = 400;
+    private static final int CHAT_WRITE_MILLIS = 20;
+    private static final int CHAT_SENDERS = 4;
+    private static final int SIGNALS = 100;
+    private static final int SIGNAL_INTERVAL_MILLIS = 5;
+    private static final String SENT_AT = "sentAt";
+
+    @Test
+    void signalingLatencyUnderChatWritePressure() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        InstrumentedChannelExecutor shared = InstrumentedChannelExecutor
+                .platform("shared-default", 8, 8, Integer.MAX_VALUE).bindTo(registry);
+        InstrumentedChannelExecutor configured = InstrumentedChannelExecutor
+                .platform("ws-inbound", 64, 64, 2000).bindTo(registry);
+
+        try {
+            long[] sharedLatency = run(shared);
+            long[] configuredLatency = run(configured);
+
+            assertTrue(percentile(configuredLatency, 0.99) < percentile(sharedLatency, 0.99),
+                    "signals should not queue behind blocking chat writes on the configured pool");
+            assertEquals(0, configured.getQueued());
+        } finally {
+            shared.shutdown();
+            configured.shutdown();
+        }
+    }
+
+    private long[] run(InstrumentedChannelExecutor executor) throws InterruptedException {
+        ExecutorSubscribableChannel inbound = new ExecutorSubscribableChannel(executor);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch chatsDone = new CountDownLatch(CHAT_MESSAGES);
+        CountDownLatch signalsDone = new CountDownLatch(SIGNALS);
+
+        inbound.subscribe(message -> {
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            if (destination.startsWith("/app/chat")) {
+                sleep(CHAT_WRITE_MILLIS);
+                chatsDone.countDown();
+            } else {
+                latencies.add(System.nanoTime() - (Long) message.getHeaders().get(SENT_AT));
+                signalsDone.countDown();
+            }
+        });
+
+        List<Thread> senders = new ArrayList<>();
+        for (int s = 0; s < CHAT_SENDERS; s++) {
+            int sender = s;
+            Thread thread = new Thread(() -> {
+                for (int i = sender; i < CHAT_MESSAGES; i += CHAT_SENDERS) {
+                    inbound.send(message("/app/chat/" + (i % 20) + "/send"));
+                }
+            });
+            thread.start();
+            senders.add(thread);
+        }
+        for (int i = 0; i < SIGNALS; i++) {
+            inbound.send(message("/app/webrtc/room-" + (i % 10) + "/signal"));
+            sleep(SIGNAL_INTERVAL_MILLIS);
+        }
+
+        for (Thread sender : senders) {
+            sender.join();
+        }
+        assertTrue(signalsDone.await(60, TimeUnit.SECONDS), "all signals handled");
+        assertTrue(chatsDone.await(60, TimeUnit.SECONDS), "all chat messages handled");
+
+        return latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static Message<byte[]> message(String destination) {
+        return MessageBuilder.withPayload(new byte[0])
+                .setHeader(SimpMessageHeaderAccessor.DESTINATION_HEADER, destination)
+                .setHeader(SENT_AT, System.nanoTime())
+                .build();
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
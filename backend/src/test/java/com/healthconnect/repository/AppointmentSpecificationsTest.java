@@ -0,0 +1,120 @@
+package com.healthconnect.repository;
+
+import com.healthconnect.dto.AppointmentCursor;
+import com.healthconnect.entity.Appointment;
+import com.healthconnect.entity.AppointmentType;
+import com.healthconnect.entity.User;
+import com.healthconnect.entity.UserRole;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keyset paging over an in-memory database, with several appointments at
+ * the same start so that only the id separates them.
+ */
+@DataJpaTest
+class AppointmentSpecificationsTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 2);
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User doctor;
+    private final List<Appointment> inOrder = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        doctor = userRepository.save(user("doctor@example.com", UserRole.DOCTOR));
+        User patient = userRepository.save(user("patient@example.com", UserRole.PATIENT));
+        User other = userRepository.save(user("other@example.com", UserRole.PATIENT));
+
+        inOrder.add(appointment(patient, DAY, LocalTime.of(9, 0)));
+        // Three at 09:30, saved in id order
+        inOrder.add(appointment(patient, DAY, LocalTime.of(9, 30)));
+        inOrder.add(appointment(other, DAY, LocalTime.of(9, 30)));
+        inOrder.add(appointment(patient, DAY, LocalTime.of(9, 30)));
+        inOrder.add(appointment(patient, DAY, LocalTime.of(10, 0)));
+        // A later day at an earlier time still comes after
+        inOrder.add(appointment(patient, DAY.plusDays(1), LocalTime.of(8, 0)));
+    }
+
+    @Test
+    void equalStartsAreSeparatedByIdSoNoneIsRepeatedOrSkipped() {
+        assertEquals(ids(inOrder.subList(2, 6)), ids(find(AppointmentCursor.of(inOrder.get(1)))));
+        assertEquals(ids(inOrder.subList(3, 6)), ids(find(AppointmentCursor.of(inOrder.get(2)))));
+        assertEquals(ids(inOrder.subList(4, 6)), ids(find(AppointmentCursor.of(inOrder.get(3)))));
+    }
+
+    @Test
+    void nullCursorStartsAtTheBeginningAndTheLastLeavesNothing() {
+        assertEquals(ids(inOrder), ids(find(null)));
+        assertEquals(List.of(), find(AppointmentCursor.of(inOrder.get(5))));
+    }
+
+    @Test
+    void pagesOfTwoWalkTheWholeListOnce() {
+        List<Appointment> walked = new ArrayList<>();
+        AppointmentCursor cursor = null;
+        do {
+            List<Appointment> page = appointmentRepository.findBy(filter(cursor), query -> query
+                    .sortBy(Sort.by("date", "startTime", "id"))
+                    .limit(2)
+                    .all());
+            walked.addAll(page);
+            cursor = page.size() < 2 ? null : AppointmentCursor.of(page.get(page.size() - 1));
+        } while (cursor != null);
+
+        assertEquals(ids(inOrder), ids(walked));
+    }
+
+    private List<Appointment> find(AppointmentCursor cursor) {
+        return appointmentRepository.findBy(filter(cursor), query -> query
+                .sortBy(Sort.by("date", "startTime", "id"))
+                .all());
+    }
+
+    private Specification<Appointment> filter(AppointmentCursor cursor) {
+        return Specification.where(AppointmentSpecifications.forDoctor(doctor.getId()))
+                .and(AppointmentSpecifications.after(cursor))
+                .and(AppointmentSpecifications.fetchParticipants());
+    }
+
+    private Appointment appointment(User patient, LocalDate date, LocalTime startTime) {
+        Appointment appointment = new Appointment();
+        appointment.setDoctor(doctor);
+        appointment.setPatient(patient);
+        appointment.setDate(date);
+        appointment.setStartTime(startTime);
+        appointment.setEndTime(startTime.plusMinutes(30));
+        appointment.setType(AppointmentType.IN_PERSON);
+        return appointmentRepository.save(appointment);
+    }
+
+    private static User user(String email, UserRole role) {
+        User user = new User();
+        user.setEmail(email);
+        user.setFullName(email);
+        user.setPassword("password");
+        user.setRole(role);
+        return user;
+    }
+
+    private static List<Long> ids(List<Appointment> appointments) {
+        return appointments.stream().map(Appointment::getId).toList();
+    }
+}
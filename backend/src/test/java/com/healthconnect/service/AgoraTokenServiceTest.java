@@ -0,0 +1,78 @@
+package com.healthconnect.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Which cached token a request gets, driven by a clock the test moves.
+ */
+class AgoraTokenServiceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AgoraTokenService service = new AgoraTokenService(registry);
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-03-02T10:00:00Z"), ZoneOffset.UTC);
+
+    AgoraTokenServiceTest() {
+        ReflectionTestUtils.setField(service, "appId", "0123456789abcdef0123456789abcdef");
+        ReflectionTestUtils.setField(service, "appCertificate", "fedcba9876543210fedcba9876543210");
+        service.setClock(clock);
+    }
+
+    @Test
+    void tokensAreCachedPerChannelUidAndLifetime() {
+        String first = service.generateRtcToken("room-1", 7, 3600);
+        assertEquals(first, service.generateRtcToken("room-1", 7, 3600));
+        assertNotEquals(first, service.generateRtcToken("room-1", 8, 3600));
+        assertNotEquals(first, service.generateRtcToken("room-1", 7, 7200));
+
+        service.purgeExpiredTokens();
+        assertEquals(3, requests("miss"));
+        assertEquals(1, requests("hit"));
+        assertEquals(3, registry.get("agora.token.cache.size").gauge().value(), "fresh tokens survive the purge");
+    }
+
+    @Test
+    void cachedTokenAlwaysHasHalfAnHourLeft() {
+        String first = service.generateRtcToken("room-1", 7, 3600);
+
+        clock.advance(Duration.ofMinutes(29));
+        assertEquals(first, service.generateRtcToken("room-1", 7, 3600));
+
+        // Past the refresh margin a late joiner gets a new token with the full lifetime
+        clock.advance(Duration.ofMinutes(2));
+        assertNotEquals(first, service.generateRtcToken("room-1", 7, 3600));
+        assertEquals(2, requests("miss"));
+    }
+
+    @Test
+    void longTokensAreReusedForHalfTheirLifetime() {
+        String first = service.generateRtcToken("room-1", 7, 86_400);
+
+        clock.advance(Duration.ofHours(11));
+        assertEquals(first, service.generateRtcToken("room-1", 7, 86_400));
+
+        clock.advance(Duration.ofHours(2));
+        service.purgeExpiredTokens();
+        assertEquals(0, registry.get("agora.token.cache.size").gauge().value());
+        assertNotEquals(first, service.generateRtcToken("room-1", 7, 86_400));
+    }
+
+    @Test
+    void tokensShorterThanTheMarginAreNeverReused() {
+        String first = service.generateRtcToken("room-1", 7, 600);
+
+        assertNotEquals(first, service.generateRtcToken("room-1", 7, 600));
+        assertEquals(2, requests("miss"));
+    }
+
+    private double requests(String result) {
+        return registry.get("agora.token.requests").tag("result", result).counter().count();
+    }
+}
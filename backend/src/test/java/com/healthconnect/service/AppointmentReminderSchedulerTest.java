@@ -0,0 +1,222 @@
+package com.healthconnect.service;
+
+import com.healthconnect.entity.Appointment;
+import com.healthconnect.entity.AppointmentStatus;
+import com.healthconnect.entity.SweeperWatermark;
+import com.healthconnect.entity.User;
+import com.healthconnect.repository.AppointmentRepository;
+import com.healthconnect.repository.SweeperWatermarkRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * The scheduler on a hand-driven clock and wheel: due reminders and
+ * changes, resuming from the stored watermark after downtime, and running
+ * only on the node that owns the job.
+ */
+class AppointmentReminderSchedulerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 2);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-03-02T10:00:00Z"), ZoneOffset.UTC);
+    private final List<Appointment> appointments = new ArrayList<>();
+    private AppointmentRepository appointmentRepository;
+    private NotificationService notificationService;
+    private SweeperWatermarkRepository watermarkRepository;
+    private RoomOwnership roomOwnership;
+    private AppointmentReminderScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository = mock(AppointmentRepository.class);
+        notificationService = mock(NotificationService.class);
+        watermarkRepository = mock(SweeperWatermarkRepository.class);
+        roomOwnership = spy(RoomOwnership.singleNode("local", new SimpleMeterRegistry()));
+
+        when(appointmentRepository.findStartingBetween(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            LocalDateTime from = LocalDateTime.of(invocation.<LocalDate>getArgument(1), invocation.getArgument(2));
+            LocalDateTime to = LocalDateTime.of(invocation.<LocalDate>getArgument(3), invocation.getArgument(4));
+            return appointments.stream().filter(a -> {
+                LocalDateTime start = LocalDateTime.of(a.getDate(), a.getStartTime());
+                return start.isAfter(from) && !start.isAfter(to);
+            }).toList();
+        });
+        when(appointmentRepository.findWithParticipantsByIdIn(any())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return appointments.stream().filter(a -> ids.contains(a.getId())).toList();
+        });
+
+        scheduler = new AppointmentReminderScheduler(appointmentRepository, notificationService,
+                watermarkRepository, roomOwnership);
+        scheduler.setClock(clock);
+        ReflectionTestUtils.setField(scheduler, "enabled", true);
+        ReflectionTestUtils.setField(scheduler, "tickMs", 100L);
+        ReflectionTestUtils.setField(scheduler, "lookaheadMinutes", 30L);
+        ReflectionTestUtils.setField(scheduler, "catchUpMinutes", 30L);
+        scheduler.createWheel();
+    }
+
+    @Test
+    void dueRemindersAreSentOnceAndThoseLongPastAreNot() {
+        appointments.add(appointment(1L, LocalTime.of(11, 10))); // 1h reminder at 10:10, 24h one yesterday
+
+        scheduler.loadUpcoming();
+        assertEquals(1, scheduler.getPendingReminderCount(), "the 10-minute reminder is beyond the horizon");
+        advance(Duration.ofMinutes(9));
+        verifyNoInteractions(notificationService);
+        advance(Duration.ofMinutes(1));
+
+        verify(notificationService, times(2)).sendAppointmentReminderNotification(anyLong(), eq(1L), contains("1 hour"));
+        verify(notificationService, never()).sendAppointmentReminderNotification(anyLong(), eq(1L), contains("24 hours"));
+        assertEquals(0, scheduler.getPendingReminderCount());
+    }
+
+    @Test
+    void changesAndCancellationsReplaceLoadedReminders() {
+        Appointment moved = appointment(1L, LocalTime.of(11, 10));
+        appointments.add(moved);
+        appointments.add(appointment(2L, LocalTime.of(11, 0)));
+        scheduler.loadUpcoming();
+
+        moved.setStartTime(LocalTime.of(11, 5));
+        scheduler.appointmentChanged(moved);
+        scheduler.appointmentCancelled(2L);
+        advance(Duration.ofMinutes(5));
+
+        verify(notificationService, times(2)).sendAppointmentReminderNotification(anyLong(), eq(1L), contains("1 hour"));
+        advance(Duration.ofMinutes(10));
+        verifyNoMoreInteractions(notificationService);
+        assertEquals(0, scheduler.getPendingReminderCount());
+    }
+
+    @Test
+    void remindersDueWhileDownAreSentOnTakeOverAndEarlierOnesAreNot() {
+        stored(LocalDateTime.of(TODAY, LocalTime.of(9, 50)));
+        appointments.add(appointment(1L, LocalTime.of(10, 55))); // 1h reminder at 09:55, missed while down
+        appointments.add(appointment(2L, LocalTime.of(10, 45))); // 1h reminder at 09:45, sent before the watermark
+        appointments.add(appointment(3L, LocalTime.of(11, 20))); // 1h reminder at 10:20, still ahead
+
+        scheduler.loadUpcoming();
+        scheduler.advanceWheel();
+
+        verify(notificationService, times(2)).sendAppointmentReminderNotification(anyLong(), eq(1L), anyString());
+        verify(notificationService, never()).sendAppointmentReminderNotification(anyLong(), eq(2L), anyString());
+        verify(notificationService, never()).sendAppointmentReminderNotification(anyLong(), eq(3L), anyString());
+
+        advance(Duration.ofMinutes(20));
+        verify(notificationService, times(2)).sendAppointmentReminderNotification(anyLong(), eq(3L), anyString());
+    }
+
+    @Test
+    void catchUpIsBoundedWhenTheWatermarkIsOld() {
+        stored(LocalDateTime.of(TODAY, LocalTime.of(6, 0)));
+        appointments.add(appointment(1L, LocalTime.of(10, 40))); // 1h reminder at 09:40, 20 minutes late
+        appointments.add(appointment(2L, LocalTime.of(10, 10))); // 1h reminder at 09:10, 50 minutes late
+
+        scheduler.loadUpcoming();
+        scheduler.advanceWheel();
+
+        verify(notificationService, times(2)).sendAppointmentReminderNotification(anyLong(), eq(1L), contains("1 hour"));
+        verify(notificationService, never()).sendAppointmentReminderNotification(anyLong(), eq(2L), contains("1 hour"));
+        // Its 10-minute reminder is due now
+        verify(notificationService, times(2)).sendAppointmentReminderNotification(anyLong(), eq(2L), contains("10 minutes"));
+    }
+
+    @Test
+    void progressIsCheckpointedAsTheHorizonMoves() {
+        stored(LocalDateTime.of(TODAY, LocalTime.of(9, 55)));
+        List<LocalDateTime> saved = new ArrayList<>();
+        when(watermarkRepository.save(any())).thenAnswer(invocation -> {
+            saved.add(invocation.<SweeperWatermark>getArgument(0).getCompletedUntil());
+            return invocation.getArgument(0);
+        });
+
+        scheduler.loadUpcoming();
+        advance(Duration.ofMinutes(1));
+        scheduler.loadUpcoming();
+
+        // The first run has not handled anything past the stored point yet; later runs trail the clock
+        assertEquals(List.of(LocalDateTime.of(TODAY, LocalTime.of(9, 55)),
+                LocalDateTime.of(TODAY, LocalTime.of(10, 0, 50))), saved);
+    }
+
+    @Test
+    void onlyTheOwningNodeLoadsAndSends() {
+        doReturn(false).when(roomOwnership).ownsJob(AppointmentReminderScheduler.JOB);
+        appointments.add(appointment(1L, LocalTime.of(10, 30)));
+
+        scheduler.loadUpcoming();
+        advance(Duration.ofMinutes(30));
+
+        verifyNoInteractions(notificationService);
+        verify(appointmentRepository, never()).findStartingBetween(any(), any(), any(), any(), any());
+        assertNull(scheduler.getLoadedUntil());
+    }
+
+    @Test
+    void losingOwnershipDropsScheduledReminders() {
+        stored(LocalDateTime.of(TODAY, LocalTime.of(10, 0)));
+        appointments.add(appointment(1L, LocalTime.of(11, 20)));
+        scheduler.loadUpcoming();
+        assertEquals(1, scheduler.getPendingReminderCount());
+
+        doReturn(false).when(roomOwnership).ownsJob(AppointmentReminderScheduler.JOB);
+        scheduler.loadUpcoming();
+        advance(Duration.ofMinutes(30));
+
+        assertEquals(0, scheduler.getPendingReminderCount());
+        verifyNoInteractions(notificationService);
+    }
+
+    private void advance(Duration duration) {
+        for (long step = 0; step < duration.toSeconds(); step++) {
+            clock.advance(Duration.ofSeconds(1));
+            scheduler.advanceWheel();
+        }
+    }
+
+    private void stored(LocalDateTime completedUntil) {
+        when(watermarkRepository.findById(AppointmentReminderScheduler.JOB)).thenReturn(Optional.of(
+                SweeperWatermark.builder().jobName(AppointmentReminderScheduler.JOB).completedUntil(completedUntil).build()));
+    }
+
+    private static Appointment appointment(Long id, LocalTime start) {
+        Appointment appointment = new Appointment();
+        appointment.setId(id);
+        appointment.setDate(TODAY);
+        appointment.setStartTime(start);
+        appointment.setEndTime(start.plusMinutes(30));
+        appointment.setStatus(AppointmentStatus.SCHEDULED);
+        appointment.setDoctor(user(100L + id, "Doctor " + id));
+        appointment.setPatient(user(200L + id, "Patient " + id));
+        return appointment;
+    }
+
+    private static User user(Long id, String name) {
+        User user = new User();
+        user.setId(id);
+        user.setFullName(name);
+        return user;
+    }
+}
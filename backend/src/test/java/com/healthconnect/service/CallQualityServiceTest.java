@@ -0,0 +1,111 @@
+package com.healthconnect.service;
+
+import com.healthconnect.dto.CallQualityMetrics;
+import com.healthconnect.entity.User;
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.repository.CallQualityWindowRepository;
+import com.healthconnect.repository.VideoConsultationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Windows in memory, in a running flush and in the database: each sample is
+ * reported exactly once, and a failed flush loses nothing.
+ */
+class CallQualityServiceTest {
+
+    private static final long PATIENT_ID = 11L;
+    private static final long DOCTOR_ID = 22L;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final CallQualityWindowRepository windowRepository = mock(CallQualityWindowRepository.class);
+    private final VideoConsultationRepository consultationRepository = mock(VideoConsultationRepository.class);
+    private CallQualityService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CallQualityService(jdbcTemplate, windowRepository, consultationRepository,
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+
+        VideoConsultation consultation = new VideoConsultation();
+        consultation.setId(1L);
+        consultation.setPatient(user(PATIENT_ID));
+        consultation.setDoctor(user(DOCTOR_ID));
+        when(consultationRepository.findById(1L)).thenReturn(Optional.of(consultation));
+    }
+
+    @Test
+    void windowsTakenByAFlushAreReportedUntilItCommits() {
+        record(3);
+        AtomicLong reportedDuringFlush = new AtomicLong();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            reportedDuringFlush.set(service.getConsultationReport(1L, PATIENT_ID, null, null, null).getSamples());
+            return new int[0];
+        });
+
+        assertTrue(service.flush() > 0);
+
+        assertEquals(3, reportedDuringFlush.get());
+        // Committed windows are read from the database from now on
+        assertEquals(0, service.getConsultationReport(1L, PATIENT_ID, null, null, null).getSamples());
+        assertEquals(0, service.flush(), "nothing is written twice");
+    }
+
+    @Test
+    void failedFlushPutsTheWindowsBackForTheNextOne() {
+        record(2);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("database down"))
+                .thenReturn(new int[0]);
+
+        assertEquals(0, service.flush());
+        assertEquals(2, service.getDoctorReport(DOCTOR_ID, DOCTOR_ID, null, null, null).getSamples());
+
+        record(1);
+        int rows = service.flush();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), batch.capture());
+        assertEquals(rows, batch.getValue().size());
+        assertEquals(3, batch.getValue().stream().mapToLong(row -> (Long) row[3]).sum(),
+                "retried samples are written with the new one");
+    }
+
+    @Test
+    void reportsAreLimitedToTheCallersOwnCalls() {
+        assertThrows(RuntimeException.class, () -> service.getConsultationReport(1L, 99L, null, null, null));
+        assertThrows(RuntimeException.class, () -> service.getDoctorReport(DOCTOR_ID, PATIENT_ID, null, null, null));
+    }
+
+    private void record(int samples) {
+        for (int i = 0; i < samples; i++) {
+            service.record(CallQualityMetrics.builder()
+                    .consultationId(1L)
+                    .latencyMs(80L)
+                    .jitterMs(5.0)
+                    .packetLossPercentage(0.0)
+                    .timestamp(System.currentTimeMillis())
+                    .build(), PATIENT_ID);
+        }
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,116 @@
+package com.healthconnect.service;
+
+import com.healthconnect.entity.Appointment;
+import com.healthconnect.entity.AppointmentStatus;
+import com.healthconnect.entity.AppointmentType;
+import com.healthconnect.entity.User;
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.entity.VideoConsultation.ConsultationType;
+import com.healthconnect.repository.AppointmentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * What pre-warming creates, and who may open a room that was not pre-warmed.
+ */
+class ConsultationPreWarmerTest {
+
+    private static final long DOCTOR_ID = 7L;
+    private static final long PATIENT_ID = 42L;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AppointmentRepository appointmentRepository = mock(AppointmentRepository.class);
+    private final VideoConsultationService consultations = mock(VideoConsultationService.class);
+    private final IceCandidateBatcher batcher = new IceCandidateBatcher(registry);
+    private final WebRTCService webRTCService = new WebRTCService(consultations, registry, batcher,
+            RoomOwnership.singleNode("test", registry));
+    private final ConsultationPreWarmer preWarmer = new ConsultationPreWarmer(appointmentRepository, consultations,
+            webRTCService, RoomOwnership.singleNode("test", registry));
+
+    ConsultationPreWarmerTest() {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> true);
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+        webRTCService.setMessagingTemplate(template);
+        when(consultations.prepareConsultation(any(), any())).thenAnswer(invocation -> {
+            VideoConsultation consultation = new VideoConsultation();
+            consultation.setRoomId("room-" + invocation.<Appointment>getArgument(0).getId());
+            consultation.setType(invocation.getArgument(1));
+            return consultation;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        preWarmer.shutdown();
+        batcher.shutdown();
+    }
+
+    @Test
+    void recordsArePreparedQuietlyWithTheTypeOfTheAppointment() {
+        when(appointmentRepository.existsByDoctorIdAndPatientIdAndStatusAndDateBefore(
+                eq(DOCTOR_ID), eq(PATIENT_ID), eq(AppointmentStatus.COMPLETED), any())).thenReturn(true);
+
+        assertEquals(1, preWarmer.prewarm(List.of(appointment(1L))));
+
+        verify(consultations).prepareConsultation(any(), eq(ConsultationType.FOLLOW_UP));
+        verify(consultations, never()).createConsultation(any(), any());
+        assertEquals(1, registry.get("webrtc.rooms.prewarmed").counter().count());
+    }
+
+    @Test
+    void firstVisitIsARoutineCheckup() {
+        preWarmer.prewarm(List.of(appointment(1L)));
+
+        verify(consultations).prepareConsultation(any(), eq(ConsultationType.ROUTINE_CHECKUP));
+    }
+
+    @Test
+    void preWarmingLeavesOpenRoomsAlone() {
+        webRTCService.createSession("room-1");
+        webRTCService.initializeUserSession("room-1", DOCTOR_ID, "DOCTOR");
+
+        assertEquals(0, preWarmer.prewarm(List.of(appointment(1L))), "the room was already open");
+        assertEquals(1, webRTCService.getRoomStatus("room-1", null).getParticipantCount());
+        assertEquals(0, registry.get("webrtc.rooms.prewarmed").counter().count());
+    }
+
+    @Test
+    void onlyAParticipantOpensARoomThatWasNotPreWarmed() {
+        when(consultations.isParticipant("room-1", PATIENT_ID)).thenReturn(true);
+
+        assertThrows(RuntimeException.class, () -> webRTCService.initializeUserSession("room-1", 99L, "PATIENT"));
+        assertEquals(0, webRTCService.getRoomStatus("room-1", null).getParticipantCount());
+
+        webRTCService.initializeUserSession("room-1", PATIENT_ID, "PATIENT");
+        assertEquals(1, webRTCService.getRoomStatus("room-1", null).getParticipantCount());
+        assertEquals(1, registry.get("webrtc.rooms.join").tag("room", "cold").timer().count());
+    }
+
+    private static Appointment appointment(Long id) {
+        Appointment appointment = new Appointment();
+        appointment.setId(id);
+        appointment.setDoctor(user(DOCTOR_ID));
+        appointment.setPatient(user(PATIENT_ID));
+        appointment.setDate(LocalDate.now());
+        appointment.setStartTime(LocalTime.of(10, 0));
+        appointment.setType(AppointmentType.VIDEO_CALL);
+        return appointment;
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,168 @@
+package com.healthconnect.service;
+
+import com.healthconnect.dto.TimeSlotResponse;
+import com.healthconnect.entity.Appointment;
+import com.healthconnect.entity.AppointmentStatus;
+import com.healthconnect.entity.User;
+import com.healthconnect.repository.AppointmentRepository;
+import com.healthconnect.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Slot bitmaps of a small index built from mocked repositories: which slots
+ * an appointment holds, changes after the build, and changes that land
+ * while a build is reading the database. No transaction is active, so
+ * changes apply at once.
+ */
+class DoctorSlotIndexTest {
+
+    private final LocalDate today = LocalDate.now();
+    private final List<Object[]> rows = new ArrayList<>();
+    private final AppointmentRepository appointmentRepository = mock(AppointmentRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final DoctorSlotIndex index = new DoctorSlotIndex(appointmentRepository, userRepository);
+
+    @BeforeEach
+    void setUp() {
+        when(appointmentRepository.findSlotRowsFrom(any(), any())).thenReturn(rows);
+        when(userRepository.findDoctorIds()).thenReturn(List.of(1L, 2L));
+    }
+
+    @Test
+    void maskHoldsEverySlotTheAppointmentOverlaps() {
+        assertEquals(0b1L, DoctorSlotIndex.maskOf(LocalTime.of(9, 0), LocalTime.of(9, 30)));
+        assertEquals(0b110L, DoctorSlotIndex.maskOf(LocalTime.of(9, 30), LocalTime.of(10, 30)));
+        // Off the grid: 09:15-10:00 touches the first two slots
+        assertEquals(0b11L, DoctorSlotIndex.maskOf(LocalTime.of(9, 15), LocalTime.of(10, 0)));
+        assertEquals(0b111L, DoctorSlotIndex.maskOf(LocalTime.of(9, 0), LocalTime.of(10, 15)));
+        // Outside the working day
+        assertEquals(0L, DoctorSlotIndex.maskOf(LocalTime.of(8, 0), LocalTime.of(9, 0)));
+        assertEquals(1L << 15, DoctorSlotIndex.maskOf(LocalTime.of(16, 45), LocalTime.of(18, 0)));
+    }
+
+    @Test
+    void buildCoversListedDoctorsFromToday() {
+        rows.add(new Object[]{10L, 1L, today, LocalTime.of(9, 0), LocalTime.of(9, 30)});
+        rows.add(new Object[]{11L, 1L, today.plusDays(2), LocalTime.of(10, 0), LocalTime.of(11, 0)});
+        assertFalse(index.covers(1L, today), "nothing is covered before the first build");
+
+        index.rebuild();
+
+        assertTrue(index.covers(1L, today));
+        assertFalse(index.covers(1L, today.minusDays(1)));
+        assertFalse(index.covers(3L, today));
+        index.registerDoctor(3L);
+        assertTrue(index.covers(3L, today));
+        assertEquals(Map.of(today, 0b1L, today.plusDays(1), 0L, today.plusDays(2), 0b1100L),
+                index.busySlots(1L, today, today.plusDays(2)));
+        assertEquals(0L, index.busySlots(2L, today));
+    }
+
+    @Test
+    void changesAreAppliedAndSharedSlotsStayBusy() {
+        index.rebuild();
+        LocalDate date = today.plusDays(3);
+        Appointment first = appointment(1L, date, LocalTime.of(10, 0), LocalTime.of(11, 0));
+        Appointment second = appointment(2L, date, LocalTime.of(10, 30), LocalTime.of(11, 30));
+        index.appointmentChanged(first);
+        index.appointmentChanged(second);
+        assertEquals(0b11100L, index.busySlots(1L, date));
+
+        index.appointmentCancelled(first.getId());
+        assertEquals(0b11000L, index.busySlots(1L, date), "10:30-11:00 is still held by the second appointment");
+
+        second.setDate(date.plusDays(1));
+        index.appointmentChanged(second);
+        assertEquals(0L, index.busySlots(1L, date), "a moved appointment frees its old day");
+        assertEquals(0b11000L, index.busySlots(1L, date.plusDays(1)));
+
+        second.setStatus(AppointmentStatus.NO_SHOW);
+        index.appointmentChanged(second);
+        assertEquals(0L, index.busySlots(1L, date.plusDays(1)));
+    }
+
+    @Test
+    void changesCommittedDuringARebuildAreKept() {
+        index.rebuild();
+        LocalDate date = today.plusDays(1);
+        Appointment booked = appointment(20L, date, LocalTime.of(14, 0), LocalTime.of(14, 30));
+        Appointment cancelled = appointment(21L, date, LocalTime.of(9, 0), LocalTime.of(9, 30));
+        // The database read misses the new booking and still has the cancelled one
+        when(appointmentRepository.findSlotRowsFrom(any(), any())).thenAnswer(invocation -> {
+            index.appointmentChanged(booked);
+            index.appointmentCancelled(cancelled.getId());
+            return List.<Object[]>of(new Object[]{21L, 1L, date, LocalTime.of(9, 0), LocalTime.of(9, 30)});
+        });
+
+        index.rebuild();
+
+        assertEquals(DoctorSlotIndex.maskOf(LocalTime.of(14, 0), LocalTime.of(14, 30)), index.busySlots(1L, date));
+    }
+
+    @Test
+    void availabilityIsAnsweredFromTheIndexOnceBuilt() {
+        rows.add(new Object[]{10L, 1L, today, LocalTime.of(9, 30), LocalTime.of(10, 0)});
+        index.rebuild();
+        AppointmentService service = new AppointmentService(appointmentRepository, userRepository,
+                mock(AppointmentReminderScheduler.class), index);
+
+        List<TimeSlotResponse> slots = service.getAvailableTimeSlots(1L, today);
+
+        assertEquals(DoctorSlotIndex.SLOTS_PER_DAY, slots.size());
+        assertTrue(slots.get(0).isAvailable());
+        assertFalse(slots.get(1).isAvailable());
+        assertEquals(LocalTime.of(9, 30), slots.get(1).getStartTime());
+        assertEquals(15, slots.stream().filter(TimeSlotResponse::isAvailable).count());
+        verify(userRepository, never()).findById(anyLong());
+        verify(appointmentRepository, never()).findByDoctorAndDateOrderByStartTimeAsc(any(), any());
+    }
+
+    @Test
+    void indexHitsDoNotOpenATransaction() throws Exception {
+        rows.add(new Object[]{10L, 1L, today, LocalTime.of(9, 30), LocalTime.of(10, 0)});
+        index.rebuild();
+        // Transactional the way the application context proxies it; beginning a transaction takes a connection
+        DataSource dataSource = mock(DataSource.class);
+        ProxyFactory factory = new ProxyFactory(new AppointmentService(appointmentRepository, userRepository,
+                mock(AppointmentReminderScheduler.class), index));
+        factory.setProxyTargetClass(true);
+        factory.addAdvice(new TransactionInterceptor(new DataSourceTransactionManager(dataSource),
+                new AnnotationTransactionAttributeSource()));
+        AppointmentService service = (AppointmentService) factory.getProxy();
+
+        assertFalse(service.getAvailableTimeSlots(1L, today).get(1).isAvailable());
+        assertEquals(3, service.getAvailableTimeSlots(1L, today, today.plusDays(2)).size());
+
+        verify(dataSource, never()).getConnection();
+    }
+
+    private static Appointment appointment(Long id, LocalDate date, LocalTime start, LocalTime end) {
+        User doctor = new User();
+        doctor.setId(1L);
+        Appointment appointment = new Appointment();
+        appointment.setId(id);
+        appointment.setDoctor(doctor);
+        appointment.setDate(date);
+        appointment.setStartTime(start);
+        appointment.setEndTime(end);
+        appointment.setStatus(AppointmentStatus.SCHEDULED);
+        return appointment;
+    }
+}
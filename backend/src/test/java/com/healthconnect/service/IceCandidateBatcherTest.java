@@ -0,0 +1,148 @@
+package com.healthconnect.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthconnect.dto.WebRTCSignalRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * When a batch leaves: full, flushed ahead of an offer or answer, dropped with
+ * its sender, or when the window closes. Apart from the last test the window
+ * is long enough never to close during a test.
+ */
+class IceCandidateBatcherTest {
+
+    private static final String SCOPE = "webrtc/room-1";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final IceCandidateBatcher batcher = new IceCandidateBatcher(meterRegistry);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    IceCandidateBatcherTest() {
+        ReflectionTestUtils.setField(batcher, "windowMillis", 60_000L);
+        ReflectionTestUtils.setField(batcher, "maxBatch", 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+    }
+
+    @Test
+    void fullBatchIsSentAtOnceInArrivalOrder() {
+        List<List<Object>> sent = new ArrayList<>();
+
+        batcher.add(SCOPE, "a", "b", "c1", sent::add);
+        batcher.add(SCOPE, "a", "b", "c2", sent::add);
+        assertTrue(sent.isEmpty());
+        batcher.add(SCOPE, "a", "b", "c3", sent::add);
+        batcher.add(SCOPE, "a", "b", "c4", sent::add);
+
+        assertEquals(List.of(List.of("c1", "c2", "c3")), sent);
+        assertEquals(4, meterRegistry.get("webrtc.ice.candidates").counter().count());
+        assertEquals(1, meterRegistry.get("webrtc.ice.batches").counter().count());
+    }
+
+    @Test
+    void flushSendsEveryBatchOfThatSenderOnly() {
+        List<List<Object>> toB = new ArrayList<>();
+        List<List<Object>> toC = new ArrayList<>();
+        List<List<Object>> fromB = new ArrayList<>();
+        batcher.add(SCOPE, "a", "b", "c1", toB::add);
+        batcher.add(SCOPE, "a", "c", "c2", toC::add);
+        batcher.add(SCOPE, "b", "a", "c3", fromB::add);
+        // A sender id that only shares a prefix is a different sender
+        batcher.add(SCOPE, "ab", "b", "c4", fromB::add);
+
+        batcher.flush(SCOPE, "a");
+
+        assertEquals(List.of(List.of("c1")), toB);
+        assertEquals(List.of(List.of("c2")), toC);
+        assertTrue(fromB.isEmpty());
+    }
+
+    @Test
+    void discardedBatchesAreNeverSent() {
+        List<List<Object>> sent = new ArrayList<>();
+        batcher.add(SCOPE, "a", "b", "c1", sent::add);
+        batcher.add(SCOPE, "b", "a", "c2", sent::add);
+        batcher.add("webrtc/room-2", "a", "b", "c3", sent::add);
+
+        batcher.discard(SCOPE, "a");
+        batcher.flush(SCOPE, "a");
+        assertTrue(sent.isEmpty());
+
+        batcher.discard(SCOPE);
+        batcher.flush(SCOPE, "b");
+        assertTrue(sent.isEmpty());
+
+        batcher.flush("webrtc/room-2", "a");
+        assertEquals(List.of(List.of("c3")), sent);
+    }
+
+    @Test
+    void closingWindowSendsTheBatch() throws Exception {
+        ReflectionTestUtils.setField(batcher, "windowMillis", 10L);
+        BlockingQueue<List<Object>> sent = new LinkedBlockingQueue<>();
+
+        batcher.add(SCOPE, "a", "b", "c1", sent::add);
+        batcher.add(SCOPE, "a", "b", "c2", sent::add);
+
+        assertEquals(List.of("c1", "c2"), sent.poll(5, TimeUnit.SECONDS));
+        batcher.flush(SCOPE, "a");
+        assertNull(sent.poll(50, TimeUnit.MILLISECONDS), "a batch is sent once");
+    }
+
+    @Test
+    void candidatesGatheredBeforeAnOfferArriveAheadOfIt() throws Exception {
+        List<JsonNode> frames = new ArrayList<>();
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            try {
+                frames.add(objectMapper.readTree((byte[]) message.getPayload()));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return true;
+        });
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+        WebRTCService service = new WebRTCService(mock(VideoConsultationService.class), meterRegistry, batcher,
+                RoomOwnership.singleNode("test", meterRegistry));
+        service.setMessagingTemplate(template);
+        service.createSession("room-1");
+        service.initializeUserSession("room-1", 1L, "PATIENT", true);
+        service.initializeUserSession("room-1", 2L, "DOCTOR", true);
+        frames.clear();
+
+        service.handleWebRTCSignal("room-1", 1L, signal("ICE_CANDIDATE", Map.of("candidate", "c1")));
+        service.handleWebRTCSignal("room-1", 1L, signal("ICE_CANDIDATE", Map.of("candidate", "c2")));
+        assertTrue(frames.isEmpty(), "candidates wait for the window");
+        service.handleWebRTCSignal("room-1", 1L, signal("OFFER", Map.of("sdp", "v=0")));
+
+        // Each message goes to the peer's own topic and the room topic
+        List<String> types = frames.stream().map(frame -> frame.path("type").asText()).distinct().toList();
+        assertEquals(List.of("ICE_CANDIDATE_BATCH", "OFFER"), types);
+        assertEquals(2, frames.get(0).path("data").size());
+    }
+
+    private static WebRTCSignalRequest signal(String type, Object data) {
+        WebRTCSignalRequest signal = new WebRTCSignalRequest();
+        signal.setType(type);
+        signal.setData(data);
+        return signal;
+    }
+}
@@ -0,0 +1,298 @@
+package com.healthconnect.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthconnect.controller.WebRTCController.RoomStatusResponse;
+import com.healthconnect.dto.RoomCommand;
+import com.healthconnect.dto.WebRTCSignalRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Three signaling nodes in one JVM. Commands between nodes go through a
+ * transport that serializes them to JSON and back, as the HTTP transport
+ * does, and all nodes publish to one shared broker, as with the broker relay.
+ * Heartbeats are driven by hand. The forwarding latency comparison is enabled
+ * with -Dbenchmark=true; iterations can be raised with -Dbenchmark.iterations.
+ */
+class MultiNodeSignalingTest {
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 5_000);
+    private static final List<String> NODE_IDS = List.of("node-a", "node-b", "node-c");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Frame> broker = new CopyOnWriteArrayList<>();
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private final Set<String> upNodes = ConcurrentHashMap.newKeySet();
+    private final List<String> pingThreads = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            broker.add(new Frame(SimpMessageHeaderAccessor.getDestination(message.getHeaders()),
+                    (byte[]) message.getPayload()));
+            return true;
+        });
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+
+        List<ClusterTransport.ClusterNode> clusterNodes = NODE_IDS.stream()
+                .map(id -> new ClusterTransport.ClusterNode(id, "http://" + id))
+                .toList();
+        ClusterTransport transport = new JsonRoundTripTransport();
+        for (ClusterTransport.ClusterNode clusterNode : clusterNodes) {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            IceCandidateBatcher batcher = new IceCandidateBatcher(registry);
+            ReflectionTestUtils.setField(batcher, "enabled", false);
+            RoomOwnership ownership = new RoomOwnership(clusterNode, clusterNodes, transport, 128, 2, registry);
+            WebRTCService service = new WebRTCService(mock(VideoConsultationService.class), registry, batcher, ownership);
+            service.setMessagingTemplate(template);
+            nodes.put(clusterNode.id(), new Node(service, ownership, batcher));
+            upNodes.add(clusterNode.id());
+        }
+        heartbeatAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodes.values().forEach(node -> node.batcher.shutdown());
+    }
+
+    @Test
+    void allNodesAgreeOnOwnersAndSpreadRoomsEvenly() {
+        Map<String, Integer> owned = new HashMap<>();
+        for (int i = 0; i < 3_000; i++) {
+            String roomId = "consultation-" + i;
+            String owner = nodes.get("node-a").ownership.ownerOf(roomId).id();
+            for (Node node : nodes.values()) {
+                assertEquals(owner, node.ownership.ownerOf(roomId).id(), "owner of " + roomId);
+            }
+            owned.merge(owner, 1, Integer::sum);
+        }
+        owned.values().forEach(count -> assertTrue(count > 600 && count < 1_400, "uneven spread: " + owned));
+    }
+
+    @Test
+    void participantsOnDifferentNodesShareTheRoom() throws Exception {
+        String roomId = roomNotOwnedBy("node-b", "node-c");
+        nodes.get("node-b").service.createSession(roomId);
+        nodes.get("node-b").service.initializeUserSession(roomId, 42L, "PATIENT", false, "patient@example.com", "s-42");
+        nodes.get("node-c").service.initializeUserSession(roomId, 7L, "DOCTOR", false, "doctor@example.com", "s-7");
+
+        String doctorPeer = peerId(7L);
+        assertNotNull(peerId(42L));
+        broker.clear();
+
+        nodes.get("node-b").service.handleWebRTCSignal(roomId, 42L, signal("OFFER", doctorPeer, Map.of("sdp", "v=0")));
+
+        assertEquals(1, broker.size(), "the offer reaches only the doctor");
+        assertTrue(broker.get(0).destination.startsWith("/user/doctor@example.com/queue/webrtc/" + roomId));
+        for (Node node : nodes.values()) {
+            assertEquals(2, node.service.getRoomStatus(roomId, 42L).getParticipantCount());
+        }
+    }
+
+    @Test
+    void roomsMoveToTheirNewOwnerWhenANodeJoins() {
+        upNodes.remove("node-c");
+        heartbeatAll();
+        heartbeatAll();
+        assertEquals(Set.of("node-a", "node-b"), nodes.get("node-a").ownership.liveNodes());
+
+        List<String> roomIds = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            String roomId = "rebalance-" + i;
+            roomIds.add(roomId);
+            Node entry = nodes.get(i % 2 == 0 ? "node-a" : "node-b");
+            entry.service.createSession(roomId);
+            entry.service.initializeUserSession(roomId, 1_000L + i, "PATIENT", false, "p" + i + "@example.com", "s" + i);
+        }
+
+        upNodes.add("node-c");
+        heartbeatAll();
+
+        long movedToC = roomIds.stream()
+                .filter(roomId -> nodes.get("node-c").ownership.ownerOf(roomId).id().equals("node-c"))
+                .count();
+        assertTrue(movedToC > 0, "some rooms move to the new node");
+        for (String roomId : roomIds) {
+            for (Node node : nodes.values()) {
+                RoomStatusResponse status = node.service.getRoomStatus(roomId, 1L);
+                assertEquals(1, status.getParticipantCount(), roomId + " via " + node.ownership.getLocalNode().id());
+                assertEquals("CREATED", status.getSessionStatus());
+            }
+        }
+    }
+
+    @Test
+    void heartbeatsRunOnTheirOwnThread() throws Exception {
+        upNodes.remove("node-c");
+        RoomOwnership ownership = nodes.get("node-a").ownership;
+        pingThreads.clear();
+        ownership.startHeartbeat(Duration.ofMillis(10));
+        try {
+            // node-c misses two rounds and leaves the ring
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (ownership.liveNodes().contains("node-c") && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            ownership.shutdown();
+        }
+
+        assertEquals(Set.of("node-a", "node-b"), ownership.liveNodes());
+        assertFalse(pingThreads.isEmpty());
+        pingThreads.forEach(thread -> assertEquals("cluster-heartbeat", thread));
+    }
+
+    @Test
+    void singleNodeNeverStartsHeartbeats() throws Exception {
+        RoomOwnership ownership = RoomOwnership.singleNode("local", new SimpleMeterRegistry());
+        CountDownLatch never = new CountDownLatch(1);
+        ownership.onRebalance(never::countDown);
+
+        ownership.startHeartbeat(Duration.ofMillis(1));
+        ownership.shutdown();
+
+        assertFalse(never.await(20, TimeUnit.MILLISECONDS));
+        assertTrue(ownership.isLocal("room-1"));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void forwardedSignalLatency() throws Exception {
+        String roomId = roomNotOwnedBy("node-b");
+        String owner = nodes.get("node-a").ownership.ownerOf(roomId).id();
+        Node ownerNode = nodes.get(owner);
+        ownerNode.service.createSession(roomId);
+        ownerNode.service.initializeUserSession(roomId, 42L, "PATIENT", false, "patient@example.com", "s-42");
+        ownerNode.service.initializeUserSession(roomId, 7L, "DOCTOR", false, "doctor@example.com", "s-7");
+        String doctorPeer = peerId(7L);
+
+        WebRTCSignalRequest candidate = signal("ICE_CANDIDATE", doctorPeer, Map.of(
+                "candidate", "candidate:1 1 udp 2122260223 192.0.2.42 50000 typ host",
+                "sdpMid", "0",
+                "sdpMLineIndex", 0));
+        long[] local = measure(ownerNode.service, roomId, candidate);
+        long[] forwarded = measure(nodes.get("node-b").service, roomId, candidate);
+
+        // Forwarding costs a JSON round trip of the command on top of the owner's work
+        assertTrue(percentile(local, 50) > 0);
+        assertTrue(percentile(forwarded, 50) > 0);
+    }
+
+    private long[] measure(WebRTCService service, String roomId, WebRTCSignalRequest signal) {
+        for (int i = 0; i < ITERATIONS / 5; i++) {
+            service.handleWebRTCSignal(roomId, 42L, signal);
+        }
+        broker.clear();
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            service.handleWebRTCSignal(roomId, 42L, signal);
+            samples[i] = System.nanoTime() - start;
+        }
+        assertEquals(ITERATIONS, broker.size(), "every signal is delivered");
+        broker.clear();
+        return samples;
+    }
+
+    private static long percentile(long[] samples, int percentile) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)];
+    }
+
+    private void heartbeatAll() {
+        nodes.entrySet().stream()
+                .filter(entry -> upNodes.contains(entry.getKey()))
+                .forEach(entry -> entry.getValue().ownership.heartbeat());
+    }
+
+    private String roomNotOwnedBy(String... nodeIds) {
+        List<String> excluded = List.of(nodeIds);
+        for (int i = 0; ; i++) {
+            String roomId = "room-" + i;
+            if (!excluded.contains(nodes.get("node-a").ownership.ownerOf(roomId).id())) {
+                return roomId;
+            }
+        }
+    }
+
+    private String peerId(long userId) throws Exception {
+        for (Frame frame : broker) {
+            JsonNode node = objectMapper.readTree(frame.payload);
+            if ("USER_JOINED".equals(node.path("type").asText()) && node.path("data").path("userId").asLong() == userId) {
+                return node.path("fromPeerId").asText();
+            }
+        }
+        throw new IllegalStateException("No USER_JOINED for user " + userId);
+    }
+
+    private static WebRTCSignalRequest signal(String type, String targetPeerId, Object data) {
+        WebRTCSignalRequest signal = new WebRTCSignalRequest();
+        signal.setType(type);
+        signal.setTargetPeerId(targetPeerId);
+        signal.setData(data);
+        return signal;
+    }
+
+    /**
+     * Serializes every command and result to JSON and back, as the HTTP
+     * transport does, and calls the target node directly.
+     */
+    private class JsonRoundTripTransport implements ClusterTransport {
+
+        @Override
+        public boolean ping(ClusterNode node) {
+            pingThreads.add(Thread.currentThread().getName());
+            return upNodes.contains(node.id());
+        }
+
+        @Override
+        public <T> T send(ClusterNode node, RoomCommand command, Class<T> responseType) {
+            if (!upNodes.contains(node.id())) {
+                throw new IllegalStateException(node.id() + " is down");
+            }
+            try {
+                RoomCommand received = objectMapper.readValue(objectMapper.writeValueAsBytes(command), RoomCommand.class);
+                Object result = nodes.get(node.id()).service.execute(received);
+                if (result == null || responseType == Void.class) {
+                    return null;
+                }
+                return objectMapper.readValue(objectMapper.writeValueAsBytes(result), responseType);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private record Node(WebRTCService service, RoomOwnership ownership, IceCandidateBatcher batcher) {
+    }
+
+    private record Frame(String destination, byte[] payload) {
+    }
+}
@@ -0,0 +1,170 @@
+package com.healthconnect.service;
+
+import com.healthconnect.dto.NotificationPayload;
+import com.healthconnect.entity.Chat;
+import com.healthconnect.entity.Message;
+import com.healthconnect.entity.User;
+import com.healthconnect.repository.AppointmentRepository;
+import com.healthconnect.repository.ChatRepository;
+import com.healthconnect.repository.MessageRepository;
+import com.healthconnect.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Digest windows of the coalescer on a controlled clock, and the path from
+ * a stored chat message through the after-commit hook into a window.
+ */
+class NotificationCoalescerTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-03-02T09:00:00Z"), ZoneOffset.UTC);
+    private final NotificationInboxService inbox = mock(NotificationInboxService.class);
+    private final NotificationCoalescer coalescer = new NotificationCoalescer(inbox);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(coalescer, "windowMillis", 2000L);
+        ReflectionTestUtils.setField(coalescer, "threshold", 5);
+        coalescer.setClock(clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void windowIsHeldUntilItExpires() {
+        coalescer.submit(1L, chat(10L, "one"));
+        clock.advance(Duration.ofMillis(1999));
+        coalescer.flushExpiredWindows();
+        verifyNoInteractions(inbox);
+        assertEquals(1, coalescer.getOpenWindowCount());
+
+        clock.advance(Duration.ofMillis(1));
+        coalescer.flushExpiredWindows();
+        verify(inbox).enqueue(eq(1L), argThatHasMessage("one"));
+        assertEquals(0, coalescer.getOpenWindowCount());
+
+        // The next message opens a new window measured from its own arrival
+        coalescer.submit(1L, chat(10L, "two"));
+        clock.advance(Duration.ofMillis(1000));
+        coalescer.flushExpiredWindows();
+        verify(inbox, times(1)).enqueue(anyLong(), any());
+    }
+
+    @Test
+    void repeatedNotificationsForOneRecipientAreMerged() {
+        coalescer.submit(1L, chat(10L, "first"));
+        coalescer.submit(1L, chat(10L, "second"));
+        coalescer.submit(1L, chat(10L, "third"));
+        // Another sender, another recipient and an urgent message each stay apart
+        coalescer.submit(1L, chat(11L, "other sender"));
+        coalescer.submit(2L, chat(10L, "other recipient"));
+        coalescer.submit(1L, chat(10L, "urgent").toBuilder().priority("URGENT").isUrgent(true).build());
+        verify(inbox).enqueue(eq(1L), argThatHasMessage("urgent"));
+        assertEquals(3, coalescer.getOpenWindowCount());
+
+        clock.advance(Duration.ofSeconds(2));
+        coalescer.flushExpiredWindows();
+
+        ArgumentCaptor<NotificationPayload> sent = ArgumentCaptor.forClass(NotificationPayload.class);
+        verify(inbox, times(4)).enqueue(anyLong(), sent.capture());
+        NotificationPayload digest = sent.getAllValues().stream()
+                .filter(n -> Boolean.TRUE.equals(n.getCoalesced()))
+                .findFirst().orElseThrow();
+        assertEquals(3, digest.getCount());
+        assertEquals("third", digest.getLatestMessage());
+        assertEquals("3 new messages from Sender 10", digest.getMessage());
+        assertEquals(2, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    void windowIsFlushedEarlyAtTheThreshold() {
+        for (int i = 0; i < 5; i++) {
+            coalescer.submit(1L, chat(10L, "message " + i));
+        }
+        ArgumentCaptor<NotificationPayload> sent = ArgumentCaptor.forClass(NotificationPayload.class);
+        verify(inbox).enqueue(eq(1L), sent.capture());
+        assertEquals(5, sent.getValue().getCount());
+        assertEquals(0, coalescer.getOpenWindowCount());
+    }
+
+    @Test
+    void chatMessagesReachTheWindowOnlyAfterCommit() {
+        User patient = user(1L);
+        User doctor = user(2L);
+        Chat chat = new Chat();
+        chat.setId(50L);
+        chat.setPatient(patient);
+        chat.setDoctor(doctor);
+        ChatRepository chatRepository = mock(ChatRepository.class);
+        MessageRepository messageRepository = mock(MessageRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        when(chatRepository.findById(50L)).thenReturn(Optional.of(chat));
+        when(userRepository.findById(2L)).thenReturn(Optional.of(doctor));
+        when(messageRepository.save(any(Message.class))).thenAnswer(call -> call.getArgument(0));
+        ChatService chatService = new ChatService(chatRepository, messageRepository, userRepository,
+                mock(AppointmentRepository.class));
+        chatService.setNotificationService(new NotificationService(coalescer, mock(SerializedMessagePublisher.class)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        chatService.sendMessage(50L, "How are you feeling?", 2L);
+        chatService.sendMessage(50L, "Any fever?", 2L);
+        assertEquals(0, coalescer.getOpenWindowCount(), "nothing is submitted before the commit");
+
+        List<TransactionSynchronization> hooks = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        hooks.forEach(TransactionSynchronization::afterCommit);
+        assertEquals(1, coalescer.getOpenWindowCount());
+
+        clock.advance(Duration.ofSeconds(2));
+        coalescer.flushExpiredWindows();
+        ArgumentCaptor<NotificationPayload> sent = ArgumentCaptor.forClass(NotificationPayload.class);
+        verify(inbox).enqueue(eq(1L), sent.capture());
+        assertEquals(2, sent.getValue().getCount());
+        assertEquals("Sender 2: Any fever?", sent.getValue().getLatestMessage());
+    }
+
+    private static NotificationPayload argThatHasMessage(String text) {
+        return argThat(n -> n.getMessage().contains(text));
+    }
+
+    private static NotificationPayload chat(Long senderId, String text) {
+        return NotificationPayload.builder()
+                .type("NEW_CHAT_MESSAGE")
+                .title("New Message")
+                .message(text)
+                .senderId(senderId)
+                .senderName("Sender " + senderId)
+                .priority("MEDIUM")
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    private static User user(Long id) {
+        User user = new User();
+        user.setId(id);
+        user.setFullName("Sender " + id);
+        return user;
+    }
+}
@@ -0,0 +1,116 @@
+package com.healthconnect.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthconnect.dto.NotificationPayload;
+import com.healthconnect.entity.NotificationDeadLetter;
+import com.healthconnect.repository.NotificationDeadLetterRepository;
+import com.healthconnect.repository.NotificationInboxStateRepository;
+import com.healthconnect.repository.NotificationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the inbox writer against an in-memory database: a failing row is
+ * retried alone and dead-lettered without losing the rest of its batch, and
+ * two writers sharing the database hand out each sequence once.
+ */
+class NotificationInboxServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private DataSourceTransactionManager transactionManager;
+    private NotificationInboxStateRepository inboxStateRepository;
+    private NotificationDeadLetterRepository deadLetterRepository;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:inbox-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbcTemplate.execute("CREATE TABLE notifications (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id BIGINT NOT NULL, " +
+                "sequence_number BIGINT NOT NULL, type VARCHAR(100) NOT NULL, title VARCHAR(255), message TEXT, " +
+                "priority VARCHAR(20), related_id BIGINT, metadata TEXT, is_read BOOLEAN NOT NULL, " +
+                "created_at TIMESTAMP NOT NULL, CONSTRAINT uk_user_sequence UNIQUE (user_id, sequence_number))");
+        jdbcTemplate.execute("CREATE TABLE notification_inbox_state (user_id BIGINT PRIMARY KEY, " +
+                "unread_count BIGINT NOT NULL, last_sequence BIGINT NOT NULL, updated_at TIMESTAMP)");
+
+        // Every writer believes the state rows are missing and relies on the duplicate-key handling
+        inboxStateRepository = mock(NotificationInboxStateRepository.class);
+        when(inboxStateRepository.findAllById(anyIterable())).thenReturn(List.of());
+        deadLetterRepository = mock(NotificationDeadLetterRepository.class);
+    }
+
+    @Test
+    void failingRowIsDeadLetteredAndTheRestOfTheBatchIsStored() {
+        NotificationInboxService writer = writer();
+        writer.enqueue(1L, notification("CHAT"));
+        writer.enqueue(2L, notification("CHAT"));
+        writer.enqueue(1L, notification(null)); // violates NOT NULL on type
+        writer.enqueue(1L, notification("APPOINTMENT"));
+
+        writer.flushPending();
+
+        assertEquals(List.of(1L, 2L), sequences(1L), "the failed row's reservation is rolled back");
+        assertEquals(List.of(1L), sequences(2L));
+        assertEquals(2L, jdbcTemplate.queryForObject(
+                "SELECT unread_count FROM notification_inbox_state WHERE user_id = 1", Long.class));
+
+        ArgumentCaptor<NotificationDeadLetter> deadLetter = ArgumentCaptor.forClass(NotificationDeadLetter.class);
+        verify(deadLetterRepository).save(deadLetter.capture());
+        assertEquals(1L, deadLetter.getValue().getUserId());
+        assertFalse(deadLetter.getValue().getPayload().contains("\"type\""));
+    }
+
+    @Test
+    void writersSharingTheDatabaseNeverReuseASequence() {
+        NotificationInboxService first = writer();
+        NotificationInboxService second = writer();
+        int perWriter = 300;
+        for (int i = 0; i < perWriter; i++) {
+            first.enqueue(1L + i % 3, notification("CHAT"));
+            second.enqueue(1L + i % 3, notification("CHAT"));
+        }
+
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(first::flushPending),
+                CompletableFuture.runAsync(second::flushPending)).join();
+
+        for (long userId = 1; userId <= 3; userId++) {
+            assertEquals(LongStream.rangeClosed(1, 2 * perWriter / 3).boxed().toList(), sequences(userId));
+        }
+        verify(deadLetterRepository, never()).save(any());
+    }
+
+    private NotificationInboxService writer() {
+        SerializedMessagePublisher publisher = mock(SerializedMessagePublisher.class);
+        NotificationInboxService service = new NotificationInboxService(mock(NotificationRepository.class),
+                inboxStateRepository, deadLetterRepository, jdbcTemplate, transactionManager,
+                new ObjectMapper(), publisher, 10_000);
+        ReflectionTestUtils.setField(service, "batchSize", 50);
+        return service;
+    }
+
+    private List<Long> sequences(long userId) {
+        return jdbcTemplate.queryForList(
+                "SELECT sequence_number FROM notifications WHERE user_id = ? ORDER BY sequence_number", Long.class, userId);
+    }
+
+    private static NotificationPayload notification(String type) {
+        return NotificationPayload.builder().type(type).title("title").message("message").priority("NORMAL").build();
+    }
+}
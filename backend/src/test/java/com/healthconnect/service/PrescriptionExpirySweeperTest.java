@@ -0,0 +1,172 @@
+package com.healthconnect.service;
+
+import com.healthconnect.entity.DigitalPrescription;
+import com.healthconnect.entity.DigitalPrescription.PrescriptionStatus;
+import com.healthconnect.entity.SweeperWatermark;
+import com.healthconnect.repository.DigitalPrescriptionRepository;
+import com.healthconnect.repository.SweeperWatermarkRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Keyset paging of the prescription sweeps against mocked repositories: the
+ * watermark each batch stores, resuming from it, and notifications that only
+ * go out once the batch that claimed them has committed.
+ */
+class PrescriptionExpirySweeperTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 3, 2);
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final DigitalPrescriptionRepository prescriptionRepository = mock(DigitalPrescriptionRepository.class);
+    private final SweeperWatermarkRepository watermarkRepository = mock(SweeperWatermarkRepository.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final PrescriptionExpirySweeper sweeper = new PrescriptionExpirySweeper(
+            prescriptionRepository, watermarkRepository, notificationService, transactionManager);
+
+    private final Map<String, SweeperWatermark> watermarks = new HashMap<>();
+    private final List<Long> afterIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(sweeper, "batchSize", 2);
+        ReflectionTestUtils.setField(sweeper, "noticeDays", 7);
+        when(watermarkRepository.findById(anyString()))
+                .thenAnswer(call -> Optional.ofNullable(watermarks.get(call.<String>getArgument(0))));
+        when(watermarkRepository.save(any())).thenAnswer(call -> {
+            SweeperWatermark watermark = call.getArgument(0);
+            watermarks.put(watermark.getJobName(), watermark);
+            return watermark;
+        });
+    }
+
+    @Test
+    void expiryPagesThroughIdsAndCompletesTheDay() {
+        expirable(3L, 5L, 8L, 9L, 12L);
+
+        assertEquals(5, sweeper.expireLapsed(TODAY, NO_DEADLINE));
+
+        assertEquals(List.of(0L, 5L, 9L, 12L), afterIds);
+        SweeperWatermark watermark = watermarks.get(PrescriptionExpirySweeper.EXPIRY_JOB);
+        assertEquals(TODAY, watermark.getCompletedThrough());
+        assertEquals(0L, watermark.getLastId());
+
+        // Completed for today: a second run does not query at all
+        assertEquals(0, sweeper.expireLapsed(TODAY, NO_DEADLINE));
+        assertEquals(4, afterIds.size());
+    }
+
+    @Test
+    void interruptedRunResumesFromItsWatermarkTheSameDay() {
+        expirable(3L, 5L, 8L, 9L, 12L);
+        when(prescriptionRepository.markExpired(eq(List.of(8L, 9L)), any(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("connection lost"))
+                .thenReturn(2);
+
+        assertThrows(IllegalStateException.class, () -> sweeper.expireLapsed(TODAY, NO_DEADLINE));
+        assertEquals(5L, watermarks.get(PrescriptionExpirySweeper.EXPIRY_JOB).getLastId());
+
+        afterIds.clear();
+        assertEquals(3, sweeper.expireLapsed(TODAY, NO_DEADLINE));
+        assertEquals(List.of(5L, 9L, 12L), afterIds);
+    }
+
+    @Test
+    void watermarkFromAnEarlierDayIsDiscarded() {
+        expirable(3L, 5L, 8L);
+        watermarks.put(PrescriptionExpirySweeper.EXPIRY_JOB, SweeperWatermark.builder()
+                .jobName(PrescriptionExpirySweeper.EXPIRY_JOB)
+                .lastId(5L)
+                .runDate(TODAY.minusDays(1))
+                .build());
+
+        // Resumed after midnight: today's query selects rows below the old position too
+        assertEquals(3, sweeper.expireLapsed(TODAY, NO_DEADLINE));
+        assertEquals(0L, afterIds.get(0));
+        assertEquals(TODAY, watermarks.get(PrescriptionExpirySweeper.EXPIRY_JOB).getRunDate());
+    }
+
+    @Test
+    void patientsAreNotifiedOnlyAfterTheirBatchCommits() {
+        DigitalPrescription expiring = prescription(4L, 0, null);
+        DigitalPrescription refillable = prescription(7L, 2, TODAY.plusDays(30));
+        DigitalPrescription later = prescription(9L, 0, null);
+        when(prescriptionRepository.findUnnotifiedExpiring(eq(TODAY.plusDays(7)), anyLong(), any()))
+                .thenAnswer(call -> {
+                    long afterId = call.getArgument(1);
+                    afterIds.add(afterId);
+                    return List.of(expiring, refillable, later).stream()
+                            .filter(p -> p.getId() > afterId)
+                            .limit(call.<Pageable>getArgument(2).getPageSize())
+                            .toList();
+                });
+        when(prescriptionRepository.markExpiryNotified(any(), any()))
+                .thenAnswer(call -> call.<List<?>>getArgument(0).size());
+
+        assertEquals(3, sweeper.notifyExpiring(TODAY, NO_DEADLINE));
+
+        InOrder inOrder = inOrder(prescriptionRepository, transactionManager, notificationService);
+        inOrder.verify(prescriptionRepository).markExpiryNotified(eq(List.of(4L, 7L)), any());
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(notificationService).sendPrescriptionExpiringNotification(expiring);
+        inOrder.verify(notificationService).sendPrescriptionRefillReminderNotification(refillable);
+        inOrder.verify(prescriptionRepository).markExpiryNotified(eq(List.of(9L)), any());
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(notificationService).sendPrescriptionExpiringNotification(later);
+        assertEquals(List.of(0L, 7L, 9L), afterIds);
+    }
+
+    @Test
+    void failedCommitSendsNothing() {
+        DigitalPrescription expiring = prescription(4L, 0, null);
+        when(prescriptionRepository.findUnnotifiedExpiring(any(), anyLong(), any())).thenReturn(List.of(expiring));
+        doThrow(new TransactionSystemException("commit failed")).when(transactionManager).commit(any());
+
+        assertThrows(TransactionSystemException.class, () -> sweeper.notifyExpiring(TODAY, NO_DEADLINE));
+        verifyNoInteractions(notificationService);
+    }
+
+    // Keyset pages over the given ids, all past their validity
+    private void expirable(Long... ids) {
+        when(prescriptionRepository.findIdsToExpire(any(), eq(TODAY), anyLong(), any())).thenAnswer(call -> {
+            long afterId = call.getArgument(2);
+            afterIds.add(afterId);
+            return List.of(ids).stream()
+                    .filter(id -> id > afterId)
+                    .limit(call.<Pageable>getArgument(3).getPageSize())
+                    .toList();
+        });
+        when(prescriptionRepository.markExpired(any(), any(), eq(PrescriptionStatus.EXPIRED), eq(TODAY), any()))
+                .thenAnswer(call -> call.<List<?>>getArgument(0).size());
+    }
+
+    private static DigitalPrescription prescription(Long id, int refillsRemaining, LocalDate validUntil) {
+        return DigitalPrescription.builder()
+                .id(id)
+                .status(PrescriptionStatus.ISSUED)
+                .expiryDate(TODAY.plusDays(3))
+                .refillsRemaining(refillsRemaining)
+                .validUntil(validUntil)
+                .build();
+    }
+}
@@ -0,0 +1,52 @@
+package com.healthconnect.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Percentiles read from merged and re-decoded histograms against exact ones.
+ */
+class QualityHistogramTest {
+
+    @Test
+    void percentilesStayWithinTwoPercentAfterMergeAndDecode() {
+        Random random = new Random(42);
+        double[] latencies = new double[100_000];
+        QualityHistogram first = new QualityHistogram();
+        QualityHistogram second = new QualityHistogram();
+        for (int i = 0; i < latencies.length; i++) {
+            // Log-normal around 80 ms with a long tail
+            latencies[i] = Math.exp(Math.log(80) + 0.6 * random.nextGaussian());
+            (i % 2 == 0 ? first : second).record(latencies[i]);
+        }
+        // Merged halves, stored and read back
+        QualityHistogram merged = QualityHistogram.decode(first.encode());
+        merged.merge(QualityHistogram.decode(second.encode()));
+
+        double[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        for (double percentile : new double[]{50, 90, 95, 99, 99.9}) {
+            double exact = sorted[(int) Math.ceil(sorted.length * percentile / 100) - 1];
+            assertEquals(exact, merged.percentile(percentile), exact * 0.02, "p" + percentile);
+        }
+        assertEquals(latencies.length, merged.getCount());
+    }
+
+    @Test
+    void zeroPacketLossIsReportedAsZero() {
+        QualityHistogram packetLoss = new QualityHistogram();
+        for (int i = 0; i < 98; i++) {
+            packetLoss.record(0.0);
+        }
+        packetLoss.record(2.5);
+        packetLoss.record(10.0);
+
+        assertEquals(0.0, packetLoss.percentile(50));
+        assertEquals(2.5, packetLoss.percentile(99), 2.5 * 0.02);
+        assertEquals(10.0, packetLoss.percentile(100));
+    }
+}
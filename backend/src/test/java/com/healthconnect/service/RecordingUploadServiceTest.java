@@ -0,0 +1,240 @@
+package com.healthconnect.service;
+
+import com.healthconnect.controller.WebRTCController;
+import com.healthconnect.dto.RecordingUploadRequest;
+import com.healthconnect.dto.RecordingUploadStatus;
+import com.healthconnect.entity.ConsultationRecording;
+import com.healthconnect.entity.User;
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.repository.ConsultationRecordingRepository;
+import com.healthconnect.repository.VideoConsultationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Resumable recording uploads against a temporary directory: offsets,
+ * checksum and stream failures, and the final move into place.
+ */
+class RecordingUploadServiceTest {
+
+    private static final long USER_ID = 42L;
+    private static final byte[] FIRST = "first chunk of the recording|".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SECOND = "second chunk".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path recordings;
+
+    private final ConsultationRecordingRepository recordingRepository = mock(ConsultationRecordingRepository.class);
+    private final VideoConsultationRepository consultationRepository = mock(VideoConsultationRepository.class);
+    private final Map<String, ConsultationRecording> saved = new ConcurrentHashMap<>();
+    private final VideoConsultation consultation = new VideoConsultation();
+    private RecordingUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new RecordingUploadService(recordingRepository, consultationRepository);
+        ReflectionTestUtils.setField(service, "recordingsDir", recordings.toString());
+        ReflectionTestUtils.setField(service, "bufferBytes", 8);
+
+        User patient = new User();
+        patient.setId(USER_ID);
+        User doctor = new User();
+        doctor.setId(7L);
+        consultation.setId(1L);
+        consultation.setPatient(patient);
+        consultation.setDoctor(doctor);
+        when(consultationRepository.findById(1L)).thenReturn(Optional.of(consultation));
+        when(recordingRepository.save(any(ConsultationRecording.class))).thenAnswer(invocation -> {
+            ConsultationRecording recording = invocation.getArgument(0);
+            saved.put(recording.getUploadId(), recording);
+            return recording;
+        });
+        when(recordingRepository.findByUploadId(any()))
+                .thenAnswer(invocation -> Optional.ofNullable(saved.get(invocation.<String>getArgument(0))));
+    }
+
+    @Test
+    void chunkAtTheWrongOffsetIsAConflictCarryingTheCurrentOffset() {
+        String uploadId = start(FIRST.length + SECOND.length);
+        service.writeChunk(uploadId, USER_ID, 0, sha256(FIRST), stream(FIRST));
+
+        JwtService jwtService = mock(JwtService.class);
+        when(jwtService.extractUserId("token")).thenReturn(USER_ID);
+        WebRTCController controller = new WebRTCController(mock(WebRTCService.class),
+                mock(VideoConsultationService.class), jwtService, service, mock(CallQualityService.class));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setContent(SECOND);
+
+        // The client believes nothing was stored yet
+        ResponseEntity<?> response = controller.uploadRecordingChunk(uploadId, 0, sha256(SECOND), "Bearer token", request);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals(FIRST.length, ((RecordingUploadStatus) response.getBody()).getOffset());
+    }
+
+    @Test
+    void chunkWithTheWrongChecksumIsTruncatedAway() throws Exception {
+        String uploadId = start(null);
+        service.writeChunk(uploadId, USER_ID, 0, sha256(FIRST), stream(FIRST));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(uploadId, USER_ID, FIRST.length, sha256(FIRST), stream(SECOND)));
+
+        assertEquals(FIRST.length, service.getUpload(uploadId, USER_ID).getOffset());
+        assertArrayEquals(FIRST, Files.readAllBytes(part(uploadId)));
+    }
+
+    @Test
+    void uploadResumesAfterAChunkBrokeOffPartWay() throws Exception {
+        String uploadId = start(null);
+        service.writeChunk(uploadId, USER_ID, 0, sha256(FIRST), stream(FIRST));
+
+        // More than one buffer reaches the file before the connection drops
+        InputStream broken = new InputStream() {
+            private int read;
+
+            @Override
+            public int read() throws IOException {
+                if (read == 10) {
+                    throw new IOException("connection reset");
+                }
+                return SECOND[read++];
+            }
+        };
+        assertThrows(RuntimeException.class,
+                () -> service.writeChunk(uploadId, USER_ID, FIRST.length, sha256(SECOND), broken));
+        long offset = service.getUpload(uploadId, USER_ID).getOffset();
+        assertEquals(FIRST.length, offset);
+
+        RecordingUploadStatus resumed = service.writeChunk(uploadId, USER_ID, offset, sha256(SECOND), stream(SECOND));
+
+        assertEquals(FIRST.length + SECOND.length, resumed.getOffset());
+        assertArrayEquals(concat(FIRST, SECOND), Files.readAllBytes(part(uploadId)));
+    }
+
+    @Test
+    void completionMovesTheVerifiedFileIntoPlace() throws Exception {
+        String uploadId = start(FIRST.length + SECOND.length);
+        service.writeChunk(uploadId, USER_ID, 0, sha256(FIRST), stream(FIRST));
+        Path part = part(uploadId);
+
+        assertThrows(IllegalStateException.class, () -> service.completeUpload(uploadId, USER_ID, null),
+                "short of the announced size");
+        service.writeChunk(uploadId, USER_ID, FIRST.length, sha256(SECOND), stream(SECOND));
+        assertThrows(IllegalArgumentException.class, () -> service.completeUpload(uploadId, USER_ID, sha256(FIRST)));
+        assertTrue(Files.exists(part), "nothing moves until the recording verifies");
+
+        String digest = sha256(concat(FIRST, SECOND));
+        RecordingUploadStatus completed = service.completeUpload(uploadId, USER_ID, digest);
+
+        Path target = part.resolveSibling(uploadId + ".webm");
+        assertFalse(Files.exists(part));
+        assertArrayEquals(concat(FIRST, SECOND), Files.readAllBytes(target));
+        assertEquals("COMPLETED", completed.getStatus());
+        assertEquals(digest, completed.getSha256());
+        assertEquals("/api/recordings/" + uploadId, consultation.getRecordingUrl());
+        // Completing again returns the same result; writing again is refused
+        assertEquals(digest, service.completeUpload(uploadId, USER_ID, digest).getSha256());
+        assertThrows(IllegalStateException.class,
+                () -> service.writeChunk(uploadId, USER_ID, completed.getOffset(), sha256(SECOND), stream(SECOND)));
+    }
+
+    @Test
+    void concurrentWriterIsRejectedAndNothingIsLeftTracked() throws Exception {
+        String uploadId = start(null);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream slow = new InputStream() {
+            private boolean sent;
+
+            @Override
+            public int read() throws IOException {
+                if (sent) {
+                    return -1;
+                }
+                reading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                sent = true;
+                return FIRST[0];
+            }
+        };
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            Future<RecordingUploadStatus> first = writer.submit(() ->
+                    service.writeChunk(uploadId, USER_ID, 0, sha256(new byte[] {FIRST[0]}), slow));
+            assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+            assertThrows(IllegalStateException.class,
+                    () -> service.writeChunk(uploadId, USER_ID, 0, sha256(FIRST), stream(FIRST)));
+            release.countDown();
+            assertEquals(1, first.get(5, TimeUnit.SECONDS).getOffset());
+        } finally {
+            writer.shutdownNow();
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> service.writeChunk(uploadId, USER_ID, 1, sha256(FIRST), stream(SECOND)));
+        assertEquals(Set.of(), ReflectionTestUtils.getField(service, "uploadsInProgress"));
+    }
+
+    private String start(Integer size) {
+        return service.startUpload(RecordingUploadRequest.builder()
+                .consultationId(1L)
+                .fileSizeBytes(size != null ? size.longValue() : null)
+                .build(), USER_ID).getUploadId();
+    }
+
+    private Path part(String uploadId) {
+        return recordings.toAbsolutePath().resolve("1").resolve(uploadId + ".part");
+    }
+
+    private static InputStream stream(byte[] bytes) {
+        return new ByteArrayInputStream(bytes);
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = new byte[first.length + second.length];
+        System.arraycopy(first, 0, bytes, 0, first.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
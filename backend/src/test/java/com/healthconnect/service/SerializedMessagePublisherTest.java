@@ -0,0 +1,59 @@
+package com.healthconnect.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthconnect.dto.DoctorAvailabilityUpdate;
+import com.healthconnect.service.SerializedMessagePublisher.SerializedPayload;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that one serialized payload reaches every destination as the same
+ * bytes, each with its own destination header.
+ */
+class SerializedMessagePublisherTest {
+
+    private final SerializedMessagePublisher publisher = new SerializedMessagePublisher(new ObjectMapper());
+    private final List<Message<?>> sent = new ArrayList<>();
+
+    @Test
+    void payloadIsSerializedOnceAndSharedAcrossDestinations() {
+        ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel();
+        channel.subscribe(sent::add);
+        publisher.setMessagingTemplate(new SimpMessagingTemplate(channel));
+
+        SerializedPayload payload = publisher.serialize(new DoctorAvailabilityUpdate(7L, "AVAILABLE", 1_000L));
+        publisher.publish(payload, "/topic/a", "/topic/b", "/topic/c");
+
+        assertEquals(3, sent.size());
+        Object first = sent.get(0).getPayload();
+        assertEquals("{\"doctorId\":7,\"availability\":\"AVAILABLE\",\"timestamp\":1000}",
+                new String((byte[]) first, StandardCharsets.UTF_8));
+        assertEquals(payload.size(), ((byte[]) first).length);
+        List<String> destinations = new ArrayList<>();
+        for (Message<?> message : sent) {
+            assertSame(first, message.getPayload());
+            assertEquals(MimeTypeUtils.APPLICATION_JSON,
+                    message.getHeaders().get(MessageHeaders.CONTENT_TYPE));
+            destinations.add(SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+        }
+        assertEquals(List.of("/topic/a", "/topic/b", "/topic/c"), destinations);
+    }
+
+    @Test
+    void publishingWithoutATemplateIsANoOp() {
+        assertFalse(publisher.isEnabled());
+        publisher.publish(new DoctorAvailabilityUpdate(7L, "AVAILABLE", 1_000L), "/topic/a");
+        assertTrue(sent.isEmpty());
+    }
+}
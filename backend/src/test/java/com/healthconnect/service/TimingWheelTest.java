@@ -0,0 +1,92 @@
+package com.healthconnect.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the wheel by hand with a clock that only moves when told to, so every
+ * expiry can be checked against the tick it belongs to.
+ */
+class TimingWheelTest {
+
+    private static final long TICK_MS = 100;
+    private static final int WHEEL_SIZE = 8;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+    private final Map<String, Long> firedAt = new HashMap<>();
+    private final TimingWheel<String> wheel = new TimingWheel<>("test", TICK_MS, WHEEL_SIZE, clock,
+            due -> due.forEach(payload -> assertNull(firedAt.put(payload, clock.millis()), payload + " fired twice")));
+
+    @Test
+    void deadlinesAcrossRotationsAndOverflowLevelsFireInTheirOwnTick() {
+        long start = clock.millis();
+        Map<String, Long> deadlines = new HashMap<>();
+        deadlines.put("due-now", start + 50);
+        deadlines.put("last-bucket", start + 790);
+        deadlines.put("first-overflow", start + 1_234);
+        deadlines.put("second-overflow", start + 7_777);
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            deadlines.put("random-" + i, start + random.nextInt(20_000));
+        }
+        deadlines.forEach(wheel::schedule);
+        assertEquals(deadlines.size(), wheel.size());
+
+        runUntil(start + 21_000);
+
+        assertEquals(0, wheel.size());
+        deadlines.forEach((payload, deadline) -> {
+            Long at = firedAt.get(payload);
+            assertNotNull(at, payload + " never fired");
+            assertTrue(at >= deadline - deadline % TICK_MS, payload + " fired before its tick");
+            assertTrue(at < deadline + TICK_MS, payload + " fired more than a tick late");
+        });
+    }
+
+    @Test
+    void cancelledTimeoutsNeverFire() {
+        long start = clock.millis();
+        TimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", start + 300);
+        TimingWheel.Timeout<String> sameBucket = wheel.schedule("same-bucket", start + 330);
+        TimingWheel.Timeout<String> overflow = wheel.schedule("overflow", start + 5_000);
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel(), "second cancel is a no-op");
+        assertTrue(overflow.cancel());
+        assertEquals(1, wheel.size());
+
+        runUntil(start + 6_000);
+
+        assertEquals(List.of("same-bucket"), List.copyOf(firedAt.keySet()));
+        assertFalse(sameBucket.isPending());
+        assertFalse(sameBucket.cancel(), "a fired timeout cannot be cancelled");
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deadlinesAlreadyPastFireOnTheNextPass() {
+        long start = clock.millis();
+        clock.advance(Duration.ofSeconds(10));
+        wheel.schedule("late", start + 1_000);
+
+        wheel.advance();
+
+        assertEquals(clock.millis(), firedAt.get("late"));
+    }
+
+    private void runUntil(long endMs) {
+        while (clock.millis() <= endMs) {
+            wheel.advance();
+            clock.advance(Duration.ofMillis(10));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.healthconnect.service;
+
+import com.healthconnect.entity.User;
+import com.healthconnect.entity.UserPresence;
+import com.healthconnect.repository.UserPresenceRepository;
+import com.healthconnect.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Activity coalescing, the journal that carries pending activity over a
+ * crash, and the forward-only UPDATE against an in-memory H2 table. The
+ * journal thread is given a long interval so tests sync it by hand.
+ */
+class UserActivityTrackerTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 3, 2, 9, 0);
+
+    @TempDir
+    Path journalDir;
+
+    private final UserPresenceRepository userPresenceRepository = mock(UserPresenceRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+
+    @Test
+    void journaledActivityIsReplayedAfterACrash() throws IOException {
+        UserActivityTracker crashed = tracker(mock(JdbcTemplate.class), mock(PlatformTransactionManager.class));
+        crashed.recordActivity(1L, T0);
+        crashed.recordActivity(2L, T0.plusMinutes(1));
+        // Already dirty: coalesced in memory, not journaled again
+        crashed.recordActivity(1L, T0.plusMinutes(5));
+        assertEquals(2, crashed.syncJournal());
+        assertEquals(0, crashed.syncJournal(), "nothing left to sync");
+        try (Stream<Path> segments = Files.list(journalDir)) {
+            Path segment = segments.findFirst().orElseThrow();
+            Files.writeString(segment, "3,2026-03-", StandardOpenOption.APPEND);
+        }
+
+        // The process dies here: no flush, no shutdown
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(call -> new int[call.<List<?>>getArgument(1).size()]);
+        when(userPresenceRepository.findByUserId(anyLong())).thenReturn(Optional.of(new UserPresence()));
+        UserActivityTracker restarted = tracker(jdbcTemplate, mock(PlatformTransactionManager.class));
+
+        assertEquals(2, restarted.getPendingCount(), "the torn line is skipped");
+        assertEquals(T0, restarted.getPendingActivity(1L));
+        assertEquals(T0.plusMinutes(1), restarted.getPendingActivity(2L));
+
+        assertEquals(2, restarted.flush());
+        UserActivityTracker afterFlush = tracker(mock(JdbcTemplate.class), mock(PlatformTransactionManager.class));
+        assertEquals(0, afterFlush.getPendingCount(), "flushed segments are deleted");
+    }
+
+    @Test
+    void flushWritesOneRowPerUserWithItsNewestActivity() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        UserActivityTracker tracker = tracker(jdbcTemplate, mock(PlatformTransactionManager.class));
+        List<List<Object[]>> batches = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(call -> {
+            List<Object[]> args = call.getArgument(1);
+            batches.add(args);
+            // A ping that lands while the batch is being written
+            tracker.recordActivity(2L, T0.plusMinutes(30));
+            int[] counts = new int[args.size()];
+            Arrays.fill(counts, 1);
+            return counts;
+        });
+
+        assertEquals(0, tracker.flush(), "nothing to flush");
+        verifyNoInteractions(jdbcTemplate);
+
+        tracker.recordActivity(1L, T0);
+        tracker.recordActivity(1L, T0.plusMinutes(2));
+        tracker.recordActivity(1L, T0.plusMinutes(1));
+        tracker.recordActivity(2L, T0.plusMinutes(3));
+        assertEquals(2, tracker.flush());
+
+        assertEquals(1, batches.size());
+        Map<Object, Object> written = new HashMap<>();
+        for (Object[] row : batches.get(0)) {
+            assertEquals(row[0], row[2], "the guard compares against the value being written");
+            written.put(row[1], ((Timestamp) row[0]).toLocalDateTime());
+        }
+        assertEquals(Map.of(1L, T0.plusMinutes(2), 2L, T0.plusMinutes(3)), written);
+
+        assertNull(tracker.getPendingActivity(1L));
+        assertEquals(T0.plusMinutes(30), tracker.getPendingActivity(2L), "activity recorded during the flush stays pending");
+    }
+
+    @Test
+    void updateOnlyMovesLastActivityForward() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:activity-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE user_presence (user_id BIGINT PRIMARY KEY, last_activity TIMESTAMP)");
+        jdbcTemplate.update("INSERT INTO user_presence VALUES (1, ?)", T0.plusMinutes(10));
+        jdbcTemplate.update("INSERT INTO user_presence VALUES (2, ?)", T0);
+        jdbcTemplate.update("INSERT INTO user_presence VALUES (3, NULL)");
+        when(userPresenceRepository.findByUserId(anyLong())).thenReturn(Optional.of(new UserPresence()));
+        UserActivityTracker tracker = tracker(jdbcTemplate, new DataSourceTransactionManager(dataSource));
+
+        tracker.recordActivity(1L, T0.plusMinutes(5));
+        tracker.recordActivity(2L, T0.plusMinutes(5));
+        tracker.recordActivity(3L, T0.plusMinutes(5));
+        assertEquals(3, tracker.flush());
+
+        assertEquals(T0.plusMinutes(10), lastActivity(jdbcTemplate, 1L), "an older ping does not rewind the column");
+        assertEquals(T0.plusMinutes(5), lastActivity(jdbcTemplate, 2L));
+        assertEquals(T0.plusMinutes(5), lastActivity(jdbcTemplate, 3L));
+        // User 1's update matched no row, but the row exists, so nothing is created
+        verify(userPresenceRepository).findByUserId(1L);
+        verify(userPresenceRepository, never()).save(any());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void missingPresenceRowIsCreatedOnFlush() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{0});
+        when(userPresenceRepository.findByUserId(4L)).thenReturn(Optional.empty());
+        User user = new User();
+        when(userRepository.findById(4L)).thenReturn(Optional.of(user));
+        UserActivityTracker tracker = tracker(jdbcTemplate, mock(PlatformTransactionManager.class));
+
+        tracker.recordActivity(4L, T0);
+        tracker.flush();
+
+        ArgumentCaptor<UserPresence> saved = ArgumentCaptor.forClass(UserPresence.class);
+        verify(userPresenceRepository).save(saved.capture());
+        assertSame(user, saved.getValue().getUser());
+        assertEquals(T0, saved.getValue().getLastActivity());
+    }
+
+    private UserActivityTracker tracker(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        UserActivityTracker tracker = new UserActivityTracker(
+                jdbcTemplate, userPresenceRepository, userRepository, transactionManager);
+        ReflectionTestUtils.setField(tracker, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(tracker, "journalSyncMillis", 3_600_000L);
+        tracker.init();
+        return tracker;
+    }
+
+    private static LocalDateTime lastActivity(JdbcTemplate jdbcTemplate, Long userId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT last_activity FROM user_presence WHERE user_id = ?", LocalDateTime.class, userId);
+    }
+}
@@ -0,0 +1,97 @@
+package com.healthconnect.service;
+
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.entity.VideoConsultation.ConsultationStatus;
+import com.healthconnect.repository.VideoConsultationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Keyset paging, the per-tick budget and deadline, and rows that moved on
+ * between the page read and their guarded update.
+ */
+class VideoConsultationLifecycleSweeperTest {
+
+    private static final LocalDateTime CUTOFF = LocalDateTime.now();
+
+    private final VideoConsultationService videoConsultationService = mock(VideoConsultationService.class);
+    private final AuditService auditService = mock(AuditService.class);
+    private final WebRTCService webRTCService = mock(WebRTCService.class);
+    private final List<VideoConsultation> stuck = LongStream.rangeClosed(1, 5).mapToObj(this::consultation).toList();
+    private final List<Long> pagesAfter = new ArrayList<>();
+    private VideoConsultationLifecycleSweeper sweeper;
+    private VideoConsultationLifecycleSweeper.Pass pass;
+
+    @BeforeEach
+    void setUp() {
+        sweeper = new VideoConsultationLifecycleSweeper(mock(VideoConsultationRepository.class), videoConsultationService,
+                auditService, webRTCService, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(sweeper, "batchSize", 2);
+        pass = new VideoConsultationLifecycleSweeper.Pass(ConsultationStatus.COMPLETED,
+                "VIDEO_CONSULTATION_AUTO_COMPLETED", "max-duration", "details", (cutoff, afterId, pageable) -> {
+                    pagesAfter.add(afterId);
+                    return stuck.stream()
+                            .filter(consultation -> consultation.getId() > afterId)
+                            .limit(pageable.getPageSize())
+                            .toList();
+                });
+        when(videoConsultationService.closeConsultation(any(), eq(ConsultationStatus.COMPLETED), any())).thenReturn(true);
+    }
+
+    @Test
+    void pagesFollowTheLastIdUntilAShortPage() {
+        VideoConsultationLifecycleSweeper.Result result = sweeper.close(pass, CUTOFF, 100, far());
+
+        assertEquals(new VideoConsultationLifecycleSweeper.Result(5, 5), result);
+        assertEquals(List.of(0L, 2L, 4L), pagesAfter);
+        verify(webRTCService, times(5)).endSession(anyString(), eq("max-duration"));
+    }
+
+    @Test
+    void budgetAndDeadlineBoundTheWork() {
+        assertEquals(3, sweeper.close(pass, CUTOFF, 3, far()).examined());
+        // The last page is cut to what is left of the budget
+        assertEquals(List.of(0L, 2L), pagesAfter);
+
+        pagesAfter.clear();
+        assertEquals(new VideoConsultationLifecycleSweeper.Result(0, 0),
+                sweeper.close(pass, CUTOFF, 100, System.currentTimeMillis() - 1));
+        assertTrue(pagesAfter.isEmpty());
+    }
+
+    @Test
+    void rowsThatMovedOnAreNeitherAuditedNorEnded() {
+        when(videoConsultationService.closeConsultation(same(stuck.get(1)), any(), any())).thenReturn(false);
+
+        VideoConsultationLifecycleSweeper.Result result = sweeper.close(pass, CUTOFF, 2, far());
+
+        assertEquals(new VideoConsultationLifecycleSweeper.Result(2, 1), result);
+        verify(auditService).logVideoConsultationTransitions(List.of(stuck.get(0)),
+                "VIDEO_CONSULTATION_AUTO_COMPLETED", "details");
+        verify(webRTCService).endSession("room-1", "max-duration");
+        verify(webRTCService, never()).endSession(eq("room-2"), any());
+    }
+
+    private VideoConsultation consultation(long id) {
+        VideoConsultation consultation = new VideoConsultation();
+        consultation.setId(id);
+        consultation.setRoomId("room-" + id);
+        consultation.setStatus(ConsultationStatus.IN_PROGRESS);
+        return consultation;
+    }
+
+    private static long far() {
+        return System.currentTimeMillis() + 60_000;
+    }
+}
@@ -0,0 +1,74 @@
+package com.healthconnect.service;
+
+import com.healthconnect.entity.User;
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.entity.VideoConsultation.ConsultationStatus;
+import com.healthconnect.repository.VideoConsultationRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * The guarded close shared by the session reaper and the lifecycle sweeper.
+ */
+class VideoConsultationServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 2, 10, 0);
+
+    private final VideoConsultationRepository consultationRepository = mock(VideoConsultationRepository.class);
+    private final WaitingRoomService waitingRoomService = mock(WaitingRoomService.class);
+    private final VideoConsultationService service = new VideoConsultationService(consultationRepository,
+            mock(NotificationService.class), mock(AuditService.class), waitingRoomService);
+
+    @Test
+    void completedCallGetsItsDurationFromTheActualStart() {
+        VideoConsultation consultation = consultation(ConsultationStatus.IN_PROGRESS);
+        consultation.setActualStartTime(NOW.minusMinutes(42));
+        when(consultationRepository.closeConsultation(1L, List.of(ConsultationStatus.IN_PROGRESS),
+                ConsultationStatus.COMPLETED, NOW, 42)).thenReturn(1);
+
+        assertTrue(service.closeConsultation(consultation, ConsultationStatus.COMPLETED, NOW));
+        verify(waitingRoomService).consultationClosed(1L, 7L, 42);
+    }
+
+    @Test
+    void consultationThatMovedOnIsLeftAlone() {
+        VideoConsultation consultation = consultation(ConsultationStatus.WAITING_FOR_PATIENT);
+        when(consultationRepository.closeConsultation(eq(1L), any(), eq(ConsultationStatus.NO_SHOW), eq(NOW), isNull()))
+                .thenReturn(0);
+
+        assertFalse(service.closeConsultation(consultation, ConsultationStatus.NO_SHOW, NOW));
+        verifyNoInteractions(waitingRoomService);
+        assertThrows(IllegalArgumentException.class,
+                () -> service.closeConsultation(consultation, ConsultationStatus.CANCELLED, NOW));
+    }
+
+    @Test
+    void reaperClosesByCurrentStatus() {
+        when(consultationRepository.findByRoomId("room-1"))
+                .thenReturn(Optional.of(consultation(ConsultationStatus.WAITING_FOR_DOCTOR)));
+
+        service.closeAbandonedConsultation("room-1");
+
+        verify(consultationRepository).closeConsultation(eq(1L),
+                eq(List.of(ConsultationStatus.WAITING_FOR_DOCTOR, ConsultationStatus.WAITING_FOR_PATIENT)),
+                eq(ConsultationStatus.NO_SHOW), any(), isNull());
+    }
+
+    private static VideoConsultation consultation(ConsultationStatus status) {
+        VideoConsultation consultation = new VideoConsultation();
+        consultation.setId(1L);
+        consultation.setRoomId("room-1");
+        User doctor = new User();
+        doctor.setId(7L);
+        consultation.setDoctor(doctor);
+        consultation.setStatus(status);
+        return consultation;
+    }
+}
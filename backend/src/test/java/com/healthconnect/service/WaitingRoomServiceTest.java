@@ -0,0 +1,258 @@
+package com.healthconnect.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.healthconnect.dto.RoomCommand;
+import com.healthconnect.dto.WaitingRoomPosition;
+import com.healthconnect.entity.User;
+import com.healthconnect.entity.VideoConsultation;
+import com.healthconnect.entity.VideoConsultation.ConsultationStatus;
+import com.healthconnect.entity.VideoConsultation.ConsultationType;
+import com.healthconnect.repository.VideoConsultationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Queue order, the positions pushed when a queue changes, wait estimates on
+ * a clock the tests move, and queues owned by another node. No transaction
+ * is active, so every change applies at once.
+ */
+class WaitingRoomServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 3, 2, 10, 0);
+    private static final String DOCTOR_EMAIL = "doctor@example.com";
+
+    private final VideoConsultationRepository consultationRepository = mock(VideoConsultationRepository.class);
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final MutableClock clock = new MutableClock(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    private final List<Push> pushes = new ArrayList<>();
+    private final User doctor = new User();
+    private WaitingRoomService service;
+
+    @BeforeEach
+    void setUp() {
+        doctor.setId(7L);
+        doctor.setEmail(DOCTOR_EMAIL);
+        service = waitingRoomService(RoomOwnership.singleNode("test", new SimpleMeterRegistry()));
+        doAnswer(invocation -> pushes.add(new Push(invocation.getArgument(0), invocation.getArgument(2))))
+                .when(messagingTemplate).convertAndSendToUser(anyString(), eq(WaitingRoomService.DESTINATION), any());
+    }
+
+    @Test
+    void urgentPatientsGoFirstThenEarlierAppointmentsThenArrival() {
+        service.patientWaiting(waiting(1L, ConsultationType.ROUTINE_CHECKUP, NOW.plusMinutes(30)));
+        service.patientWaiting(waiting(2L, ConsultationType.ROUTINE_CHECKUP, NOW.plusMinutes(15)));
+        service.patientWaiting(waiting(3L, ConsultationType.URGENT_CARE, NOW.plusMinutes(45)));
+        clock.advance(Duration.ofMinutes(1));
+        service.patientWaiting(waiting(4L, ConsultationType.ROUTINE_CHECKUP, NOW.plusMinutes(15)));
+        service.patientWaiting(waiting(5L, ConsultationType.EMERGENCY_CONSULTATION, null));
+        // Joining again keeps the patient's place
+        service.patientWaiting(waiting(2L, ConsultationType.ROUTINE_CHECKUP, NOW.plusMinutes(15)));
+
+        assertEquals(List.of(5L, 3L, 2L, 4L, 1L), consultationIds(service.getQueue(7L)));
+        assertTrue(service.getPosition(5L, 7L).isUrgent());
+        assertEquals(4, service.getPosition(4L, 7L).getPosition());
+        assertNull(service.getPosition(99L, 7L));
+    }
+
+    @Test
+    void onlyPatientsWhosePlaceMovedArePushedAndTheDoctorGetsTheQueue() {
+        service.patientWaiting(waiting(1L, ConsultationType.URGENT_CARE, NOW));
+        service.patientWaiting(waiting(2L, ConsultationType.ROUTINE_CHECKUP, NOW.plusMinutes(30)));
+        pushes.clear();
+
+        service.patientWaiting(waiting(3L, ConsultationType.ROUTINE_CHECKUP, NOW.plusMinutes(15)));
+
+        assertEquals(List.of("patient3@example.com", "patient2@example.com", DOCTOR_EMAIL), recipients());
+        assertEquals(2, ((WaitingRoomPosition) pushes.get(0).payload()).getPosition());
+        assertEquals(3, ((WaitingRoomPosition) pushes.get(1).payload()).getPosition());
+        assertEquals(List.of(1L, 3L, 2L), consultationIds(doctorView(pushes.get(2))));
+        pushes.clear();
+
+        // The first patient is called in: they leave, everyone else moves up
+        service.consultationStarted(started(1L, NOW));
+
+        assertEquals(List.of("patient1@example.com", "patient3@example.com", "patient2@example.com", DOCTOR_EMAIL),
+                recipients());
+        WaitingRoomPosition left = (WaitingRoomPosition) pushes.get(0).payload();
+        assertEquals("LEFT", left.getStatus());
+        assertEquals(0, left.getPosition());
+        assertEquals(1, ((WaitingRoomPosition) pushes.get(1).payload()).getPosition());
+        assertEquals(List.of(3L, 2L), consultationIds(doctorView(pushes.get(3))));
+    }
+
+    @Test
+    void estimateIsTheCurrentCallLeftPlusAnAverageCallPerPatientAhead() {
+        service.consultationStarted(started(1L, NOW.minusMinutes(5)));
+        service.patientWaiting(waiting(2L, ConsultationType.ROUTINE_CHECKUP, NOW.minusMinutes(10)));
+        service.patientWaiting(waiting(3L, ConsultationType.ROUTINE_CHECKUP, NOW.minusMinutes(5)));
+        // Never earlier than the appointment itself
+        service.patientWaiting(waiting(4L, ConsultationType.ROUTINE_CHECKUP, NOW.plusMinutes(60)));
+
+        assertEquals(List.of(10L, 25L, 60L), estimates(service.getQueue(7L)));
+
+        clock.advance(Duration.ofMinutes(20));
+        assertEquals(List.of(0L, 15L, 40L), estimates(service.getQueue(7L)));
+
+        // A 40 minute call moves the 15 minute average a fifth of the way to 40
+        pushes.clear();
+        service.consultationClosed(1L, 7L, 40);
+
+        assertEquals(List.of(0L, 20L, 40L), estimates(service.getQueue(7L)));
+        assertEquals(20L, pushes.stream()
+                .filter(push -> push.recipient().equals("patient3@example.com"))
+                .map(push -> ((WaitingRoomPosition) push.payload()).getEstimatedWaitMinutes())
+                .findFirst().orElseThrow());
+    }
+
+    @Test
+    void closingAWaitingConsultationMovesUpOnlyThoseBehindIt() {
+        service.patientWaiting(waiting(1L, ConsultationType.ROUTINE_CHECKUP, NOW));
+        service.patientWaiting(waiting(2L, ConsultationType.ROUTINE_CHECKUP, NOW.plusMinutes(15)));
+        service.patientWaiting(waiting(3L, ConsultationType.ROUTINE_CHECKUP, NOW.plusMinutes(30)));
+        pushes.clear();
+
+        service.consultationClosed(2L, 7L, null);
+        // Closing it again, or another doctor's consultation, pushes nothing
+        service.consultationClosed(2L, 7L, null);
+        service.consultationClosed(2L, 8L, null);
+
+        assertEquals(List.of("patient2@example.com", "patient3@example.com", DOCTOR_EMAIL), recipients());
+        assertEquals(List.of(1L, 3L), consultationIds(service.getQueue(7L)));
+    }
+
+    @Test
+    void queueOwnedByAnotherNodeIsKeptThereAndTakenOverWhenItLeaves() {
+        Map<String, WaitingRoomService> services = new ConcurrentHashMap<>();
+        Set<String> upNodes = ConcurrentHashMap.newKeySet();
+        ClusterTransport transport = new JsonRoundTripTransport(services, upNodes);
+        List<ClusterTransport.ClusterNode> clusterNodes = List.of(
+                new ClusterTransport.ClusterNode("node-a", "http://node-a"),
+                new ClusterTransport.ClusterNode("node-b", "http://node-b"));
+        Map<String, RoomOwnership> ownerships = new ConcurrentHashMap<>();
+        for (ClusterTransport.ClusterNode node : clusterNodes) {
+            RoomOwnership ownership = new RoomOwnership(node, clusterNodes, transport, 64, 1, new SimpleMeterRegistry());
+            ownerships.put(node.id(), ownership);
+            services.put(node.id(), waitingRoomService(ownership));
+            upNodes.add(node.id());
+        }
+        ownerships.values().forEach(RoomOwnership::heartbeat);
+        long doctorId = 1;
+        while (ownerships.get("node-a").isLocal(WaitingRoomService.queueKey(doctorId))) {
+            doctorId++;
+        }
+        doctor.setId(doctorId);
+        VideoConsultation consultation = waiting(1L, ConsultationType.ROUTINE_CHECKUP, NOW);
+
+        services.get("node-a").patientWaiting(consultation);
+
+        assertEquals(List.of(1L), consultationIds(services.get("node-b").getQueue(doctorId)));
+        assertEquals(1, services.get("node-a").getPosition(1L, doctorId).getPosition());
+        assertEquals(Map.of(), ReflectionTestUtils.getField(services.get("node-a"), "queues"));
+        assertEquals(List.of("patient1@example.com", DOCTOR_EMAIL), recipients());
+
+        // node-b goes away and node-a restores the queue from the database
+        when(consultationRepository.findWithParticipantsByStatusIn(any())).thenReturn(List.of(consultation));
+        upNodes.remove("node-b");
+        ownerships.get("node-a").heartbeat();
+
+        assertEquals(List.of(1L), consultationIds(services.get("node-a").getQueue(doctorId)));
+        services.get("node-a").consultationClosed(1L, doctorId, null);
+        assertEquals(List.of(), services.get("node-a").getQueue(doctorId));
+    }
+
+    private WaitingRoomService waitingRoomService(RoomOwnership ownership) {
+        WaitingRoomService waitingRoomService = new WaitingRoomService(consultationRepository, ownership,
+                new SimpleMeterRegistry());
+        waitingRoomService.setClock(clock);
+        waitingRoomService.setMessagingTemplate(messagingTemplate);
+        return waitingRoomService;
+    }
+
+    private VideoConsultation waiting(Long id, ConsultationType type, LocalDateTime scheduledStart) {
+        User patient = new User();
+        patient.setId(100 + id);
+        patient.setEmail("patient" + id + "@example.com");
+        patient.setFullName("Patient " + id);
+        VideoConsultation consultation = new VideoConsultation();
+        consultation.setId(id);
+        consultation.setDoctor(doctor);
+        consultation.setPatient(patient);
+        consultation.setType(type);
+        consultation.setStatus(ConsultationStatus.WAITING_FOR_DOCTOR);
+        consultation.setScheduledStartTime(scheduledStart);
+        consultation.setPatientJoinTime(LocalDateTime.now(clock));
+        return consultation;
+    }
+
+    private VideoConsultation started(Long id, LocalDateTime since) {
+        VideoConsultation consultation = waiting(id, ConsultationType.ROUTINE_CHECKUP, null);
+        consultation.setStatus(ConsultationStatus.IN_PROGRESS);
+        consultation.setActualStartTime(since);
+        return consultation;
+    }
+
+    private List<String> recipients() {
+        return pushes.stream().map(Push::recipient).toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<WaitingRoomPosition> doctorView(Push push) {
+        return (List<WaitingRoomPosition>) push.payload();
+    }
+
+    private static List<Long> consultationIds(List<WaitingRoomPosition> queue) {
+        return queue.stream().map(WaitingRoomPosition::getConsultationId).toList();
+    }
+
+    private static List<Long> estimates(List<WaitingRoomPosition> queue) {
+        return queue.stream().map(WaitingRoomPosition::getEstimatedWaitMinutes).toList();
+    }
+
+    private record Push(String recipient, Object payload) {
+    }
+
+    /**
+     * Serializes commands to JSON and back, as the HTTP transport does.
+     */
+    private record JsonRoundTripTransport(Map<String, WaitingRoomService> services, Set<String> upNodes)
+            implements ClusterTransport {
+
+        private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().findAndRegisterModules();
+
+        @Override
+        public boolean ping(ClusterNode node) {
+            return upNodes.contains(node.id());
+        }
+
+        @Override
+        public <T> T send(ClusterNode node, RoomCommand command, Class<T> responseType) {
+            try {
+                RoomCommand received = OBJECT_MAPPER.readValue(OBJECT_MAPPER.writeValueAsBytes(command), RoomCommand.class);
+                Object result = services.get(node.id()).execute(received);
+                if (result == null || responseType == Void.class) {
+                    return null;
+                }
+                return OBJECT_MAPPER.readValue(OBJECT_MAPPER.writeValueAsBytes(result), responseType);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
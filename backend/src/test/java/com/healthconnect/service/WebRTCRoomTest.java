@@ -0,0 +1,123 @@
+package com.healthconnect.service;
+
+import com.healthconnect.service.WebRTCService.WebRTCPeer;
+import com.healthconnect.service.WebRTCService.WebRTCSession;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The user and peer indexes of a room: rejoining replaces the old peer,
+ * leaving clears both indexes, and racing joins and leaves never leave the
+ * two out of step.
+ */
+class WebRTCRoomTest {
+
+    private final WebRTCRoom room = new WebRTCRoom("room-1", WebRTCSession.builder()
+            .sessionId("session-1")
+            .roomId("room-1")
+            .createdAt(System.currentTimeMillis())
+            .build());
+
+    @Test
+    void rejoinReplacesThePreviousPeer() {
+        WebRTCPeer first = peer(42L, "peer-a");
+        WebRTCPeer reconnect = peer(42L, "peer-b");
+
+        assertNull(room.join(first));
+        assertSame(first, room.join(reconnect));
+
+        assertEquals(1, room.size());
+        assertSame(reconnect, room.findByUserId(42L));
+        assertSame(reconnect, room.findByPeerId("peer-b"));
+        assertNull(room.findByPeerId("peer-a"), "the replaced peer id no longer resolves");
+    }
+
+    @Test
+    void leaveEmptiesBothIndexes() {
+        room.join(peer(42L, "peer-a"));
+        room.join(peer(7L, "peer-d"));
+
+        assertEquals("peer-a", room.leave(42L, System.currentTimeMillis()).getPeerId());
+        assertNull(room.leave(42L, System.currentTimeMillis()), "leaving twice is a no-op");
+        assertEquals("peer-d", room.leave(7L, System.currentTimeMillis()).getPeerId());
+
+        assertEquals(0, room.size());
+        assertTrue(room.peers().isEmpty());
+        assertNull(room.findByUserId(42L));
+        assertNull(room.findByPeerId("peer-a"));
+        assertNull(room.findByPeerId("peer-d"));
+    }
+
+    @Test
+    void concurrentJoinsAndLeavesKeepTheIndexesConsistent() throws Exception {
+        int users = 8;
+        int rounds = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(users * 2);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (int u = 0; u < users; u++) {
+                long userId = u;
+                // Two connections of the same user rejoin and leave against each other
+                for (int connection = 0; connection < 2; connection++) {
+                    String prefix = "peer-" + userId + "-" + connection + "-";
+                    tasks.add(executor.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < rounds; i++) {
+                            room.join(peer(userId, prefix + i));
+                            if (i % 3 == 0) {
+                                room.leave(userId, System.currentTimeMillis());
+                            }
+                        }
+                        return null;
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Every indexed user resolves to a peer whose id maps back to it, and no peer id is orphaned
+        int indexed = 0;
+        for (long userId = 0; userId < users; userId++) {
+            WebRTCPeer peer = room.findByUserId(userId);
+            if (peer != null) {
+                indexed++;
+                assertSame(peer, room.findByPeerId(peer.getPeerId()));
+            }
+        }
+        assertEquals(indexed, room.size());
+        for (long userId = 0; userId < users; userId++) {
+            for (int connection = 0; connection < 2; connection++) {
+                for (int i = 0; i < rounds; i++) {
+                    WebRTCPeer byId = room.findByPeerId("peer-" + userId + "-" + connection + "-" + i);
+                    if (byId != null) {
+                        assertSame(byId, room.findByUserId(userId));
+                    }
+                }
+            }
+        }
+    }
+
+    private static WebRTCPeer peer(Long userId, String peerId) {
+        return WebRTCPeer.builder()
+                .userId(userId)
+                .userRole("PATIENT")
+                .peerId(peerId)
+                .joinedAt(System.currentTimeMillis())
+                .build();
+    }
+}
@@ -0,0 +1,200 @@
+package com.healthconnect.service;
+
+import com.healthconnect.dto.WebRTCSignalRequest;
+import com.healthconnect.service.WebRTCService.MessageType;
+import com.healthconnect.service.WebRTCService.WebRTCMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Room reaping on a controlled clock: the idle and max-duration reasons,
+ * their counters, and handing the room's consultation over to be closed.
+ * Also where a signal for one peer is delivered.
+ */
+class WebRTCServiceTest {
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-03-02T09:00:00Z"), ZoneOffset.UTC);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final VideoConsultationService videoConsultationService = mock(VideoConsultationService.class);
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private IceCandidateBatcher batcher;
+    private WebRTCService service;
+
+    @BeforeEach
+    void setUp() {
+        batcher = new IceCandidateBatcher(meterRegistry);
+        ReflectionTestUtils.setField(batcher, "enabled", false);
+        service = new WebRTCService(videoConsultationService, meterRegistry, batcher,
+                RoomOwnership.singleNode("test", meterRegistry));
+        ReflectionTestUtils.setField(service, "idleTimeoutMinutes", 10L);
+        ReflectionTestUtils.setField(service, "maxDurationMinutes", 240L);
+        service.setMessagingTemplate(messagingTemplate);
+        service.setClock(clock);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+    }
+
+    @Test
+    void roomIsReapedOnceEmptyForTheIdleTimeout() {
+        service.createSession("room-1");
+        service.initializeUserSession("room-1", 42L, "PATIENT");
+        clock.advance(Duration.ofMinutes(5));
+        service.removeUserFromRoom("room-1", 42L);
+
+        clock.advance(Duration.ofMinutes(9));
+        service.reapExpiredSessions();
+        assertEquals("CREATED", status("room-1"));
+        verifyNoInteractions(videoConsultationService);
+
+        clock.advance(Duration.ofMinutes(1));
+        service.reapExpiredSessions();
+        assertEquals("NOT_FOUND", status("room-1"));
+        assertEquals(1, reaped("idle"));
+        assertEquals(0, reaped("max-duration"));
+        assertEquals("idle", sessionEndReason("room-1"));
+        verify(videoConsultationService).closeAbandonedConsultation("room-1");
+    }
+
+    @Test
+    void preWarmedRoomNobodyJoinsIsReapedAsIdle() {
+        service.prewarmRoom("room-1");
+
+        clock.advance(Duration.ofMinutes(10));
+        service.reapExpiredSessions();
+
+        assertEquals("NOT_FOUND", status("room-1"));
+        assertEquals(1, reaped("idle"));
+        verify(videoConsultationService).closeAbandonedConsultation("room-1");
+    }
+
+    @Test
+    void maxDurationIsMeasuredFromTheFirstJoin() {
+        service.prewarmRoom("room-1");
+        clock.advance(Duration.ofMinutes(5));
+        // The patient waits in the room, so it never goes idle
+        service.initializeUserSession("room-1", 42L, "PATIENT");
+        clock.advance(Duration.ofMinutes(30));
+        service.initializeUserSession("room-1", 7L, "DOCTOR");
+
+        // 240 minutes after the pre-warm, but only 235 into the call
+        clock.advance(Duration.ofMinutes(205));
+        service.reapExpiredSessions();
+        assertEquals("CREATED", status("room-1"));
+
+        clock.advance(Duration.ofMinutes(5));
+        service.reapExpiredSessions();
+        assertEquals("NOT_FOUND", status("room-1"));
+        assertEquals(0, reaped("idle"));
+        assertEquals(1, reaped("max-duration"));
+        assertEquals("max-duration", sessionEndReason("room-1"));
+        verify(videoConsultationService).closeAbandonedConsultation("room-1");
+    }
+
+    @Test
+    void failedConsultationCloseDoesNotStopTheReaper() {
+        service.createSession("room-1");
+        service.createSession("room-2");
+        doThrow(new IllegalStateException("database down"))
+                .when(videoConsultationService).closeAbandonedConsultation("room-1");
+
+        clock.advance(Duration.ofMinutes(10));
+        service.reapExpiredSessions();
+
+        assertEquals("NOT_FOUND", status("room-1"));
+        assertEquals("NOT_FOUND", status("room-2"));
+        assertEquals(2, reaped("idle"));
+        verify(videoConsultationService).closeAbandonedConsultation("room-2");
+
+        // Already closed: the next pass has nothing to hand over
+        service.reapExpiredSessions();
+        verify(videoConsultationService, times(2)).closeAbandonedConsultation(any());
+    }
+
+    @Test
+    void targetedSignalReachesOnlyTheTargetSession() {
+        service.createSession("room-1");
+        service.initializeUserSession("room-1", 42L, "PATIENT", false, "patient@example.com", "s-42");
+        service.initializeUserSession("room-1", 7L, "DOCTOR", false, "doctor@example.com", "s-7");
+        String doctorPeer = peerId("room-1", 7L);
+        clearInvocations(messagingTemplate);
+
+        service.handleWebRTCSignal("room-1", 42L, signal("OFFER", doctorPeer));
+
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        ArgumentCaptor<MessageHeaders> headers = ArgumentCaptor.forClass(MessageHeaders.class);
+        verify(messagingTemplate).convertAndSendToUser(eq("doctor@example.com"), eq("/queue/webrtc/room-1"),
+                payload.capture(), headers.capture());
+        assertEquals("s-7", SimpMessageHeaderAccessor.getSessionId(headers.getValue()));
+        assertEquals(MessageType.OFFER, ((WebRTCMessage) payload.getValue()).getType());
+        assertEquals(doctorPeer, ((WebRTCMessage) payload.getValue()).getToPeerId());
+        verifyNoMoreInteractions(messagingTemplate);
+    }
+
+    @Test
+    void signalForAPeerWithoutASessionGoesToTheRoomTopicOnce() {
+        service.createSession("room-1");
+        // Joined without a STOMP session, so it cannot be addressed directly
+        service.initializeUserSession("room-1", 42L, "PATIENT");
+        service.initializeUserSession("room-1", 7L, "DOCTOR");
+        String doctorPeer = peerId("room-1", 7L);
+        clearInvocations(messagingTemplate);
+
+        service.handleWebRTCSignal("room-1", 42L, signal("ANSWER", doctorPeer));
+
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/webrtc/room-1"), payload.capture());
+        assertEquals(doctorPeer, ((WebRTCMessage) payload.getValue()).getToPeerId());
+        verifyNoMoreInteractions(messagingTemplate);
+    }
+
+    private String peerId(String roomId, Long userId) {
+        Map<?, ?> rooms = (Map<?, ?>) ReflectionTestUtils.getField(service, "rooms");
+        return ((WebRTCRoom) rooms.get(roomId)).findByUserId(userId).getPeerId();
+    }
+
+    private static WebRTCSignalRequest signal(String type, String targetPeerId) {
+        WebRTCSignalRequest signal = new WebRTCSignalRequest();
+        signal.setType(type);
+        signal.setTargetPeerId(targetPeerId);
+        signal.setData(Map.of("sdp", "v=0"));
+        return signal;
+    }
+
+    private String status(String roomId) {
+        return service.getRoomStatus(roomId, null).getSessionStatus();
+    }
+
+    private long reaped(String reason) {
+        return (long) meterRegistry.get("webrtc.sessions.reaped").tag("reason", reason).counter().count();
+    }
+
+    private String sessionEndReason(String roomId) {
+        ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, atLeastOnce()).convertAndSend(eq("/topic/webrtc/" + roomId), sent.capture());
+        WebRTCMessage end = sent.getAllValues().stream()
+                .map(WebRTCMessage.class::cast)
+                .filter(message -> message.getType() == MessageType.SESSION_END)
+                .findFirst().orElseThrow();
+        return (String) ((Map<?, ?>) end.getData()).get("reason");
+    }
+}
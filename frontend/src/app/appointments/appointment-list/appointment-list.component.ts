@@ -16,6 +16,10 @@ export class AppointmentListComponent implements OnInit {
   currentUser: User | null = null;
   loading = false;
   error: string | null = null;
+  // Where the next page starts; null once everything is loaded
+  nextCursor: string | null = null;
+  // Appointments per page; without a limit the server returns the whole list
+  pageSize = 200;
 
   // Filter options
   statusFilter: AppointmentStatus | '' = '';
@@ -48,12 +52,30 @@ export class AppointmentListComponent implements OnInit {
   }
 
   loadAppointments(): void {
+    this.appointments = [];
+    this.nextCursor = null;
+    this.loadPage();
+  }
+
+  loadMore(): void {
+    if (this.nextCursor && !this.loading) {
+      this.loadPage();
+    }
+  }
+
+  private loadPage(): void {
     this.loading = true;
     this.error = null;
 
-    this.appointmentService.getAppointments().subscribe({
-      next: (appointments) => {
-        this.appointments = appointments;
+    this.appointmentService.getAppointmentsPage(
+      this.statusFilter || undefined,
+      this.typeFilter || undefined,
+      this.nextCursor,
+      this.pageSize
+    ).subscribe({
+      next: (page) => {
+        this.appointments = this.appointments.concat(page.appointments);
+        this.nextCursor = page.nextCursor;
         this.applyFilters();
         this.loading = false;
       },
@@ -73,12 +95,13 @@ export class AppointmentListComponent implements OnInit {
     });
   }
 
+  // Filters are applied by the server, so a change starts again from the first page
   onStatusFilterChange(): void {
-    this.applyFilters();
+    this.loadAppointments();
   }
 
   onTypeFilterChange(): void {
-    this.applyFilters();
+    this.loadAppointments();
   }
 
   viewAppointment(appointment: Appointment): void {
@@ -1,6 +1,7 @@
 import { Injectable } from '@angular/core';
 import { HttpClient, HttpParams } from '@angular/common/http';
 import { Observable } from 'rxjs';
+import { map } from 'rxjs/operators';
 import {
   Appointment,
   AppointmentRequest,
@@ -12,6 +13,12 @@ import {
 } from '../models/appointment.model';
 import { environment } from '../../../environments/environment';
 
+export interface AppointmentPage {
+  appointments: Appointment[];
+  // Pass as cursor to load the next page; null on the last page
+  nextCursor: string | null;
+}
+
 @Injectable({
   providedIn: 'root'
 })
@@ -59,6 +66,27 @@ export class AppointmentService {
     return this.http.get<Appointment[]>(`${this.apiUrl}/appointments`, { params });
   }
 
+  // One page of appointments in date order, filtered on the server
+  getAppointmentsPage(
+    status?: AppointmentStatus,
+    type?: AppointmentType,
+    cursor?: string | null,
+    limit?: number
+  ): Observable<AppointmentPage> {
+    let params = new HttpParams();
+    if (status) params = params.set('status', status);
+    if (type) params = params.set('type', type);
+    if (cursor) params = params.set('cursor', cursor);
+    if (limit) params = params.set('limit', limit);
+
+    return this.http.get<Appointment[]>(`${this.apiUrl}/appointments`, { params, observe: 'response' }).pipe(
+      map(response => ({
+        appointments: response.body ?? [],
+        nextCursor: response.headers.get('X-Next-Cursor')
+      }))
+    );
+  }
+
   getAppointment(id: number): Observable<Appointment> {
     return this.http.get<Appointment>(`${this.apiUrl}/appointments/${id}`);
   }
@@ -0,0 +1,82 @@
+import { Injectable } from '@angular/core';
+import { Observable, Subject } from 'rxjs';
+import { AuthService } from './auth.service';
+import { Client } from '@stomp/stompjs';
+import SockJS from 'sockjs-client';
+import { environment } from '../../../environments/environment';
+
+export interface WaitingRoomPosition {
+  consultationId: number;
+  doctorId: number;
+  patientId: number;
+  patientName: string;
+  status: 'WAITING' | 'LEFT';
+  position: number;
+  queueLength: number;
+  estimatedWaitMinutes: number;
+  urgent: boolean;
+  scheduledStartTime: string;
+  waitingSince: string;
+}
+
+/**
+ * Live waiting-room updates from /user/queue/waiting-room: a patient receives
+ * their own position, a doctor receives the whole queue.
+ */
+@Injectable({
+  providedIn: 'root'
+})
+export class WaitingRoomService {
+  private stompClient: Client | null = null;
+  private wsUrl = environment.wsUrl;
+
+  private positions$ = new Subject<WaitingRoomPosition>();
+  private queue$ = new Subject<WaitingRoomPosition[]>();
+
+  constructor(private authService: AuthService) {}
+
+  connect(): void {
+    const token = this.authService.getToken();
+    if (!token || this.stompClient?.active) {
+      return;
+    }
+
+    this.stompClient = new Client({
+      webSocketFactory: () => new SockJS(this.wsUrl),
+      connectHeaders: {
+        Authorization: `Bearer ${token}`
+      },
+      reconnectDelay: 5000,
+      onConnect: () => {
+        this.stompClient?.subscribe('/user/queue/waiting-room', (message) => {
+          const update = JSON.parse(message.body);
+          if (Array.isArray(update)) {
+            this.queue$.next(update);
+          } else {
+            this.positions$.next(update);
+          }
+        });
+      },
+      onStompError: (frame) => {
+        console.error('Waiting room STOMP error:', frame);
+      }
+    });
+
+    this.stompClient.activate();
+  }
+
+  disconnect(): void {
+    this.stompClient?.deactivate();
+    this.stompClient = null;
+  }
+
+  /** The patient's own position whenever it changes. */
+  getPositionUpdates(): Observable<WaitingRoomPosition> {
+    return this.positions$.asObservable();
+  }
+
+  /** The doctor's whole queue whenever it changes. */
+  getQueueUpdates(): Observable<WaitingRoomPosition[]> {
+    return this.queue$.asObservable();
+  }
+}
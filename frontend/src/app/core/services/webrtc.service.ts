@@ -12,7 +12,7 @@ export interface WebRTCPeer {
 }
 
 export interface WebRTCMessage {
-  type: 'OFFER' | 'ANSWER' | 'ICE_CANDIDATE' | 'USER_JOINED' | 'USER_LEFT' | 'EXISTING_PEER' | 'SCREEN_SHARE_START' | 'SCREEN_SHARE_STOP' | 'SESSION_END';
+  type: 'OFFER' | 'ANSWER' | 'ICE_CANDIDATE' | 'ICE_CANDIDATE_BATCH' | 'USER_JOINED' | 'USER_LEFT' | 'EXISTING_PEER' | 'SCREEN_SHARE_START' | 'SCREEN_SHARE_STOP' | 'SESSION_END';
   fromPeerId?: string;
   toPeerId?: string;
   data?: any;
@@ -308,6 +308,11 @@ export class WebRTCService {
         console.log('Received WebRTC message:', webrtcMessage);
         this.handleWebRTCMessage(webrtcMessage);
       });
+      // Offers, answers and ICE candidates addressed to this session
+      this.stompClient.subscribe(`/user/queue/webrtc/${this.roomId}`, (message: any) => {
+        const webrtcMessage: WebRTCMessage = JSON.parse(message.body);
+        this.handleWebRTCMessage(webrtcMessage);
+      });
     }
   }
 
@@ -331,6 +336,13 @@ export class WebRTCService {
           await this.handleIceCandidate(message.fromPeerId, message.data);
         }
         break;
+      case 'ICE_CANDIDATE_BATCH':
+        if (message.fromPeerId && Array.isArray(message.data)) {
+          for (const candidate of message.data) {
+            await this.handleIceCandidate(message.fromPeerId, candidate);
+          }
+        }
+        break;
       case 'USER_JOINED':
         // Handle user joined - create offer if we're not the one who joined
         if (message.fromPeerId && message.fromPeerId !== this.localPeerId) {
@@ -481,7 +493,8 @@ export class WebRTCService {
       const joinMessage = {
         userRole: userRole,
         peerId: this.localPeerId,
-        userId: userId
+        userId: userId,
+        iceBatching: true
       };
 
       console.log('Sending join message:', joinMessage);
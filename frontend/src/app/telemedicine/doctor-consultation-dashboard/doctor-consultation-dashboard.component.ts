@@ -4,6 +4,7 @@ import { Subscription } from 'rxjs';
 import { VideoConsultationService, VideoConsultation } from '../../core/services/video-consultation.service';
 import { AuthService } from '../../core/services/auth.service';
 import { NotificationService } from '../../core/services/notification.service';
+import { WaitingRoomService } from '../../core/services/waiting-room.service';
 
 @Component({
   selector: 'app-doctor-consultation-dashboard',
@@ -24,11 +25,14 @@ export class DoctorConsultationDashboardComponent implements OnInit, OnDestroy {
   selectedTab = 'upcoming';
   
   private subscriptions: Subscription[] = [];
+  // Consultations last seen in the waiting room; estimate refreshes alone do not reload
+  private waitingConsultationIds = '';
 
   constructor(
     private videoConsultationService: VideoConsultationService,
     private authService: AuthService,
     private notificationService: NotificationService,
+    private waitingRoomService: WaitingRoomService,
     private router: Router
   ) {
     this.currentUser = this.authService.getCurrentUser();
@@ -41,15 +45,21 @@ export class DoctorConsultationDashboardComponent implements OnInit, OnDestroy {
     }
     
     this.loadConsultations();
-    
-    // Auto-refresh every 30 seconds
-    setInterval(() => {
-      this.loadConsultations();
-    }, 30000);
+
+    // Reload when a patient enters or leaves the waiting room instead of polling
+    this.waitingRoomService.connect();
+    this.subscriptions.push(this.waitingRoomService.getQueueUpdates().subscribe(queue => {
+      const waiting = queue.map(entry => entry.consultationId).join(',');
+      if (waiting !== this.waitingConsultationIds) {
+        this.waitingConsultationIds = waiting;
+        this.loadConsultations();
+      }
+    }));
   }
 
   ngOnDestroy(): void {
     this.subscriptions.forEach(sub => sub.unsubscribe());
+    this.waitingRoomService.disconnect();
   }
 
   loadConsultations(): void {
@@ -4,6 +4,7 @@ import { Subscription } from 'rxjs';
 import { VideoConsultationService, VideoConsultation } from '../../core/services/video-consultation.service';
 import { AuthService } from '../../core/services/auth.service';
 import { NotificationService } from '../../core/services/notification.service';
+import { WaitingRoomService, WaitingRoomPosition } from '../../core/services/waiting-room.service';
 
 @Component({
   selector: 'app-patient-consultation-dashboard',
@@ -22,6 +23,9 @@ export class PatientConsultationDashboardComponent implements OnInit, OnDestroy
   isLoading = false;
   error: string | null = null;
   selectedTab = 'upcoming';
+
+  // Live waiting-room positions by consultation id
+  waitingPositions = new Map<number, WaitingRoomPosition>();
   
   private subscriptions: Subscription[] = [];
 
@@ -29,6 +33,7 @@ export class PatientConsultationDashboardComponent implements OnInit, OnDestroy
     private videoConsultationService: VideoConsultationService,
     private authService: AuthService,
     private notificationService: NotificationService,
+    private waitingRoomService: WaitingRoomService,
     private router: Router
   ) {
     this.currentUser = this.authService.getCurrentUser();
@@ -41,15 +46,22 @@ export class PatientConsultationDashboardComponent implements OnInit, OnDestroy
     }
     
     this.loadConsultations();
-    
-    // Auto-refresh every 30 seconds
-    setInterval(() => {
-      this.loadConsultations();
-    }, 30000);
+
+    // Position and wait are pushed; the list is reloaded when the consultation leaves the queue
+    this.waitingRoomService.connect();
+    this.subscriptions.push(this.waitingRoomService.getPositionUpdates().subscribe(update => {
+      if (update.status === 'LEFT') {
+        this.waitingPositions.delete(update.consultationId);
+        this.loadConsultations();
+      } else {
+        this.waitingPositions.set(update.consultationId, update);
+      }
+    }));
   }
 
   ngOnDestroy(): void {
     this.subscriptions.forEach(sub => sub.unsubscribe());
+    this.waitingRoomService.disconnect();
   }
 
   loadConsultations(): void {
@@ -216,6 +216,14 @@ export class WebRTCVideoService {
           }
           break;
 
+        case 'ice-candidates':
+          if (message.senderId !== this.currentUser?.id) {
+            for (const candidate of message.candidates) {
+              await this.handleIceCandidate(candidate);
+            }
+          }
+          break;
+
         case 'user-left':
           this.handleUserLeft(message.userId);
           break;